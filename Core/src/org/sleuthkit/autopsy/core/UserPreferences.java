@@ -18,7 +18,9 @@
  */
 package org.sleuthkit.autopsy.core;
 
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import java.util.prefs.BackingStoreException;
 import org.sleuthkit.autopsy.events.MessageServiceConnectionInfo;
 import java.util.prefs.PreferenceChangeListener;
@@ -47,6 +49,14 @@ public final class UserPreferences {
     public static final String HIDE_KNOWN_FILES_IN_VIEWS_TREE = "HideKnownFilesInViewsTree"; //NON-NLS 
     public static final String DISPLAY_TIMES_IN_LOCAL_TIME = "DisplayTimesInLocalTime"; //NON-NLS
     public static final String NUMBER_OF_FILE_INGEST_THREADS = "NumberOfFileIngestThreads"; //NON-NLS
+    public static final String NUMBER_OF_DATA_SOURCE_INGEST_THREADS = "NumberOfDataSourceIngestThreads"; //NON-NLS
+    public static final String FILE_INGEST_THREAD_AUTO_TUNING_ENABLED = "FileIngestThreadAutoTuningEnabled"; //NON-NLS
+    public static final String BULK_DIRECTORY_EXPANSION_ENABLED = "BulkDirectoryExpansionEnabled"; //NON-NLS
+    public static final String FILE_INGEST_PRIORITY_POLICIES = "FileIngestPriorityPolicies"; //NON-NLS
+    public static final String STAGED_FILE_INGEST_PIPELINE_ENABLED = "StagedFileIngestPipelineEnabled"; //NON-NLS
+    public static final String FILE_CONTENT_CACHE_SIZE_MB = "FileContentCacheSizeMB"; //NON-NLS
+    public static final String IN_MEMORY_HASH_LOOKUP_ENABLED = "InMemoryHashLookupEnabled"; //NON-NLS
+    public static final String IN_MEMORY_HASH_LOOKUP_MEMORY_BUDGET_MB = "InMemoryHashLookupMemoryBudgetMB"; //NON-NLS
     public static final String IS_MULTI_USER_MODE_ENABLED = "IsMultiUserModeEnabled"; //NON-NLS
     public static final String EXTERNAL_DATABASE_HOSTNAME_OR_IP = "ExternalDatabaseHostnameOrIp"; //NON-NLS
     public static final String EXTERNAL_DATABASE_PORTNUMBER = "ExternalDatabasePortNumber"; //NON-NLS
@@ -139,6 +149,162 @@ public static void setNumberOfFileIngestThreads(int value) {
         preferences.putInt(NUMBER_OF_FILE_INGEST_THREADS, value);
     }
 
+    public static int numberOfDataSourceIngestThreads() {
+        return preferences.getInt(NUMBER_OF_DATA_SOURCE_INGEST_THREADS, 1);
+    }
+
+    public static void setNumberOfDataSourceIngestThreads(int value) {
+        preferences.putInt(NUMBER_OF_DATA_SOURCE_INGEST_THREADS, value);
+    }
+
+    public static boolean fileIngestThreadAutoTuningEnabled() {
+        return preferences.getBoolean(FILE_INGEST_THREAD_AUTO_TUNING_ENABLED, false);
+    }
+
+    public static void setFileIngestThreadAutoTuningEnabled(boolean value) {
+        preferences.putBoolean(FILE_INGEST_THREAD_AUTO_TUNING_ENABLED, value);
+    }
+
+    /**
+     * Reads persisted setting of whether the ingest tasks scheduler should
+     * query the case database for the children of many directories at once
+     * when scheduling file ingest tasks. Takes effect for ingest jobs started
+     * after the setting is changed.
+     *
+     * @return True if bulk directory expansion is enabled, false otherwise.
+     */
+    public static boolean bulkDirectoryExpansionEnabled() {
+        return preferences.getBoolean(BULK_DIRECTORY_EXPANSION_ENABLED, false);
+    }
+
+    /**
+     * Stores persisted setting of whether the ingest tasks scheduler should
+     * query the case database for the children of many directories at once
+     * when scheduling file ingest tasks.
+     *
+     * @param enabled True to enable bulk directory expansion.
+     */
+    public static void setBulkDirectoryExpansionEnabled(boolean enabled) {
+        preferences.putBoolean(BULK_DIRECTORY_EXPANSION_ENABLED, enabled);
+    }
+
+    /**
+     * Reads persisted names of the file ingest priority policies used by
+     * ingest jobs whose settings do not select any policies. The first policy
+     * decides the order in which files are analyzed; each following policy
+     * breaks the ties of the ones before it. Takes effect for ingest jobs
+     * started after the setting is changed.
+     *
+     * @return The policy names, most significant first. Empty if the default
+     *         policy should be used.
+     */
+    public static List<String> fileIngestPriorityPolicyNames() {
+        List<String> policyNames = new ArrayList<>();
+        for (String policyName : preferences.get(FILE_INGEST_PRIORITY_POLICIES, "").split(",")) {
+            if (!policyName.trim().isEmpty()) {
+                policyNames.add(policyName.trim());
+            }
+        }
+        return policyNames;
+    }
+
+    /**
+     * Stores persisted names of the file ingest priority policies used by
+     * ingest jobs whose settings do not select any policies.
+     *
+     * @param policyNames The policy names, most significant first. Empty to
+     *                    use the default policy.
+     */
+    public static void setFileIngestPriorityPolicyNames(List<String> policyNames) {
+        preferences.put(FILE_INGEST_PRIORITY_POLICIES, String.join(",", policyNames));
+    }
+
+    /**
+     * Reads persisted setting of whether file ingest should run each file
+     * ingest module as a separate pipeline stage with its own queue and
+     * workers, instead of running all of the modules for a file in sequence
+     * on one file ingest thread. Takes effect for ingest jobs started after the
+     * setting is changed.
+     *
+     * @return True if the staged file ingest pipeline is enabled, false
+     *         otherwise.
+     */
+    public static boolean stagedFileIngestPipelineEnabled() {
+        return preferences.getBoolean(STAGED_FILE_INGEST_PIPELINE_ENABLED, false);
+    }
+
+    /**
+     * Stores persisted setting of whether file ingest should run each file
+     * ingest module as a separate pipeline stage.
+     *
+     * @param enabled True to enable the staged file ingest pipeline.
+     */
+    public static void setStagedFileIngestPipelineEnabled(boolean enabled) {
+        preferences.putBoolean(STAGED_FILE_INGEST_PIPELINE_ENABLED, enabled);
+    }
+
+    /**
+     * Reads persisted memory budget for caching the content of files while
+     * they are in the file ingest pipelines. Zero disables the cache.
+     *
+     * @return The memory budget in megabytes.
+     */
+    public static int fileContentCacheSizeMegabytes() {
+        return preferences.getInt(FILE_CONTENT_CACHE_SIZE_MB, 256);
+    }
+
+    /**
+     * Stores persisted memory budget for caching the content of files while
+     * they are in the file ingest pipelines.
+     *
+     * @param value The memory budget in megabytes, zero to disable the cache.
+     */
+    public static void setFileContentCacheSizeMegabytes(int value) {
+        preferences.putInt(FILE_CONTENT_CACHE_SIZE_MB, value);
+    }
+
+    /**
+     * Reads persisted setting of whether hash database lookup indexes should
+     * be loaded into memory at the start of ingest, so that lookups of hashes
+     * that are not in a hash database do not go to disk.
+     *
+     * @return True if in-memory hash lookup is enabled, false otherwise.
+     */
+    public static boolean inMemoryHashLookupEnabled() {
+        return preferences.getBoolean(IN_MEMORY_HASH_LOOKUP_ENABLED, false);
+    }
+
+    /**
+     * Stores persisted setting of whether hash database lookup indexes should
+     * be loaded into memory at the start of ingest.
+     *
+     * @param enabled True to enable in-memory hash lookup.
+     */
+    public static void setInMemoryHashLookupEnabled(boolean enabled) {
+        preferences.putBoolean(IN_MEMORY_HASH_LOOKUP_ENABLED, enabled);
+    }
+
+    /**
+     * Reads persisted memory budget for in-memory hash database lookup
+     * indexes. Hash databases that do not fit in the budget are looked up on
+     * disk.
+     *
+     * @return The memory budget in megabytes.
+     */
+    public static int inMemoryHashLookupMemoryBudgetMegabytes() {
+        return preferences.getInt(IN_MEMORY_HASH_LOOKUP_MEMORY_BUDGET_MB, 1024);
+    }
+
+    /**
+     * Stores persisted memory budget for in-memory hash database lookup
+     * indexes.
+     *
+     * @param value The memory budget in megabytes.
+     */
+    public static void setInMemoryHashLookupMemoryBudgetMegabytes(int value) {
+        preferences.putInt(IN_MEMORY_HASH_LOOKUP_MEMORY_BUDGET_MB, value);
+    }
+
     /**
      * Reads persisted case database connection info.
      * @return An object encapsulating the database connection info.
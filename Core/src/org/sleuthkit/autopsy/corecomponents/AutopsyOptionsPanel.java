@@ -19,16 +19,23 @@
 package org.sleuthkit.autopsy.corecomponents;
 
 import java.text.NumberFormat;
+import java.util.Collections;
+import java.util.List;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JFormattedTextField;
 import org.openide.util.NbBundle;
 import org.sleuthkit.autopsy.core.UserPreferences;
+import org.sleuthkit.autopsy.ingest.FileIngestPriorityPolicy;
+import org.sleuthkit.autopsy.ingest.IngestJobSettings;
+import org.sleuthkit.autopsy.ingest.IngestManager;
 
 /**
  * Options panel that allow users to set application preferences.
  */
 final class AutopsyOptionsPanel extends javax.swing.JPanel {
 
+    private final List<FileIngestPriorityPolicy> filePriorityPolicies = IngestJobSettings.getAvailableFilePriorityPolicies();
+
     AutopsyOptionsPanel(AutopsyOptionsPanelController controller) {
         initComponents();
         int availableProcessors = Runtime.getRuntime().availableProcessors();
@@ -69,6 +76,12 @@ final class AutopsyOptionsPanel extends javax.swing.JPanel {
             recommendedFileIngestThreadCount = 1;
         }
         numberOfFileIngestThreadsComboBox.setModel(new DefaultComboBoxModel<>(fileIngestThreadCountChoices));
+        numberOfDataSourceIngestThreadsComboBox.setModel(new DefaultComboBoxModel<>(new Integer[]{1, 2, 3, 4, 5, 6, 7, 8}));
+        DefaultComboBoxModel<String> filePriorityPolicyModel = new DefaultComboBoxModel<>();
+        for (FileIngestPriorityPolicy policy : filePriorityPolicies) {
+            filePriorityPolicyModel.addElement(policy.getDisplayName());
+        }
+        filePriorityPolicyComboBox.setModel(filePriorityPolicyModel);
         restartRequiredLabel.setText(NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.restartRequiredLabel.text", recommendedFileIngestThreadCount));
         // TODO listen to changes in form fields and call controller.changed()
     }
@@ -83,6 +96,17 @@ void load() {
         useLocalTimeRB.setSelected(useLocalTime);
         useGMTTimeRB.setSelected(!useLocalTime);
         numberOfFileIngestThreadsComboBox.setSelectedItem(UserPreferences.numberOfFileIngestThreads());
+        numberOfDataSourceIngestThreadsComboBox.setSelectedItem(UserPreferences.numberOfDataSourceIngestThreads());
+        fileIngestThreadAutoTuningCB.setSelected(UserPreferences.fileIngestThreadAutoTuningEnabled());
+        // The first available policy is the one used when none is selected.
+        filePriorityPolicyComboBox.setSelectedIndex(0);
+        List<String> policyNames = UserPreferences.fileIngestPriorityPolicyNames();
+        for (int i = 0; i < filePriorityPolicies.size() && !policyNames.isEmpty(); ++i) {
+            if (filePriorityPolicies.get(i).getName().equals(policyNames.get(0))) {
+                filePriorityPolicyComboBox.setSelectedIndex(i);
+                break;
+            }
+        }
         if (UserPreferences.getIsTimeOutEnabled()) {
             // user specified time out
             jCheckBoxEnableProcTimeout.setSelected(true);
@@ -96,6 +120,10 @@ void load() {
             int timeOutHrs = UserPreferences.getProcessTimeOutHrs();
             jFormattedTextFieldProcTimeOutHrs.setValue((long) timeOutHrs);
         }
+        bulkDirectoryExpansionCB.setSelected(UserPreferences.bulkDirectoryExpansionEnabled());
+        inMemoryHashLookupCB.setSelected(UserPreferences.inMemoryHashLookupEnabled());
+        hashLookupMemoryBudgetSpinner.setValue(UserPreferences.inMemoryHashLookupMemoryBudgetMegabytes());
+        hashLookupMemoryBudgetSpinner.setEnabled(inMemoryHashLookupCB.isSelected());
     }
 
     void store() {
@@ -104,6 +132,21 @@ void store() {
         UserPreferences.setHideKnownFilesInViewsTree(viewsHideKnownCB.isSelected());
         UserPreferences.setDisplayTimesInLocalTime(useLocalTimeRB.isSelected());
         UserPreferences.setNumberOfFileIngestThreads((Integer) numberOfFileIngestThreadsComboBox.getSelectedItem());
+        if (!IngestManager.getInstance().isFileIngestThreadAutoTuningEnabled()) {
+            IngestManager.getInstance().setNumberOfFileIngestThreads((Integer) numberOfFileIngestThreadsComboBox.getSelectedItem());
+        }
+        UserPreferences.setNumberOfDataSourceIngestThreads((Integer) numberOfDataSourceIngestThreadsComboBox.getSelectedItem());
+        UserPreferences.setFileIngestThreadAutoTuningEnabled(fileIngestThreadAutoTuningCB.isSelected());
+        if (IngestManager.getInstance().isFileIngestThreadAutoTuningEnabled() != fileIngestThreadAutoTuningCB.isSelected()) {
+            IngestManager.getInstance().setFileIngestThreadAutoTuningEnabled(fileIngestThreadAutoTuningCB.isSelected());
+        }
+        // Only replace the stored policies if the most significant one was
+        // changed, so that the policies that break its ties are kept.
+        List<String> policyNames = UserPreferences.fileIngestPriorityPolicyNames();
+        String selectedPolicyName = filePriorityPolicies.get(filePriorityPolicyComboBox.getSelectedIndex()).getName();
+        if (policyNames.isEmpty() ? filePriorityPolicyComboBox.getSelectedIndex() != 0 : !policyNames.get(0).equals(selectedPolicyName)) {
+            UserPreferences.setFileIngestPriorityPolicyNames(Collections.singletonList(selectedPolicyName));
+        }
 
         UserPreferences.setIsTimeOutEnabled(jCheckBoxEnableProcTimeout.isSelected());
         if (jCheckBoxEnableProcTimeout.isSelected()) {
@@ -111,6 +154,9 @@ void store() {
             long timeOutHrs = (long) jFormattedTextFieldProcTimeOutHrs.getValue();
             UserPreferences.setProcessTimeOutHrs((int) timeOutHrs);
         }
+        UserPreferences.setBulkDirectoryExpansionEnabled(bulkDirectoryExpansionCB.isSelected());
+        UserPreferences.setInMemoryHashLookupEnabled(inMemoryHashLookupCB.isSelected());
+        UserPreferences.setInMemoryHashLookupMemoryBudgetMegabytes((Integer) hashLookupMemoryBudgetSpinner.getValue());
     }
 
     boolean valid() {
@@ -143,6 +189,18 @@ private void initComponents() {
         jCheckBoxEnableProcTimeout = new javax.swing.JCheckBox();
         jLabelProcessTimeOutUnits = new javax.swing.JLabel();
         jFormattedTextFieldProcTimeOutHrs = new JFormattedTextField(NumberFormat.getIntegerInstance());
+        jLabelIngestScheduling = new javax.swing.JLabel();
+        bulkDirectoryExpansionCB = new javax.swing.JCheckBox();
+        inMemoryHashLookupCB = new javax.swing.JCheckBox();
+        jLabelHashLookupMemoryBudget = new javax.swing.JLabel();
+        hashLookupMemoryBudgetSpinner = new javax.swing.JSpinner();
+        jLabelHashLookupMemoryBudgetUnits = new javax.swing.JLabel();
+        jLabelNumDataSourceThreads = new javax.swing.JLabel();
+        numberOfDataSourceIngestThreadsComboBox = new javax.swing.JComboBox<Integer>();
+        dataSourceIngestRestartRequiredLabel = new javax.swing.JLabel();
+        fileIngestThreadAutoTuningCB = new javax.swing.JCheckBox();
+        jLabelFilePriorityPolicy = new javax.swing.JLabel();
+        filePriorityPolicyComboBox = new javax.swing.JComboBox<String>();
 
         buttonGroup1.add(useBestViewerRB);
         useBestViewerRB.setSelected(true);
@@ -188,6 +246,37 @@ public void actionPerformed(java.awt.event.ActionEvent evt) {
 
         jFormattedTextFieldProcTimeOutHrs.setText(org.openide.util.NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.jFormattedTextFieldProcTimeOutHrs.text")); // NOI18N
 
+        org.openide.awt.Mnemonics.setLocalizedText(jLabelIngestScheduling, org.openide.util.NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.jLabelIngestScheduling.text")); // NOI18N
+
+        org.openide.awt.Mnemonics.setLocalizedText(bulkDirectoryExpansionCB, org.openide.util.NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.bulkDirectoryExpansionCB.text")); // NOI18N
+        bulkDirectoryExpansionCB.setToolTipText(org.openide.util.NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.bulkDirectoryExpansionCB.toolTipText")); // NOI18N
+
+        org.openide.awt.Mnemonics.setLocalizedText(inMemoryHashLookupCB, org.openide.util.NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.inMemoryHashLookupCB.text")); // NOI18N
+        inMemoryHashLookupCB.setToolTipText(org.openide.util.NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.inMemoryHashLookupCB.toolTipText")); // NOI18N
+        inMemoryHashLookupCB.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                inMemoryHashLookupCBActionPerformed(evt);
+            }
+        });
+
+        org.openide.awt.Mnemonics.setLocalizedText(jLabelHashLookupMemoryBudget, org.openide.util.NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.jLabelHashLookupMemoryBudget.text")); // NOI18N
+
+        hashLookupMemoryBudgetSpinner.setModel(new javax.swing.SpinnerNumberModel(1024, 64, 65536, 64));
+
+        org.openide.awt.Mnemonics.setLocalizedText(jLabelHashLookupMemoryBudgetUnits, org.openide.util.NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.jLabelHashLookupMemoryBudgetUnits.text")); // NOI18N
+
+        org.openide.awt.Mnemonics.setLocalizedText(jLabelNumDataSourceThreads, org.openide.util.NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.jLabelNumDataSourceThreads.text")); // NOI18N
+
+        dataSourceIngestRestartRequiredLabel.setIcon(new javax.swing.ImageIcon(getClass().getResource("/org/sleuthkit/autopsy/corecomponents/warning16.png"))); // NOI18N
+        org.openide.awt.Mnemonics.setLocalizedText(dataSourceIngestRestartRequiredLabel, org.openide.util.NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.dataSourceIngestRestartRequiredLabel.text")); // NOI18N
+
+        org.openide.awt.Mnemonics.setLocalizedText(fileIngestThreadAutoTuningCB, org.openide.util.NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.fileIngestThreadAutoTuningCB.text")); // NOI18N
+        fileIngestThreadAutoTuningCB.setToolTipText(org.openide.util.NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.fileIngestThreadAutoTuningCB.toolTipText")); // NOI18N
+
+        org.openide.awt.Mnemonics.setLocalizedText(jLabelFilePriorityPolicy, org.openide.util.NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.jLabelFilePriorityPolicy.text")); // NOI18N
+
+        filePriorityPolicyComboBox.setToolTipText(org.openide.util.NbBundle.getMessage(AutopsyOptionsPanel.class, "AutopsyOptionsPanel.filePriorityPolicyComboBox.toolTipText")); // NOI18N
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(this);
         this.setLayout(layout);
         layout.setHorizontalGroup(
@@ -228,7 +317,34 @@ public void actionPerformed(java.awt.event.ActionEvent evt) {
                                 .addComponent(jFormattedTextFieldProcTimeOutHrs, javax.swing.GroupLayout.PREFERRED_SIZE, 27, javax.swing.GroupLayout.PREFERRED_SIZE)
                                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                                 .addComponent(jLabelProcessTimeOutUnits))
-                            .addComponent(jLabelSetProcessTimeOut))
+                            .addComponent(jLabelSetProcessTimeOut)
+                            .addComponent(jLabelIngestScheduling)
+                            .addGroup(layout.createSequentialGroup()
+                                .addGap(10, 10, 10)
+                                .addComponent(bulkDirectoryExpansionCB))
+                            .addGroup(layout.createSequentialGroup()
+                                .addGap(10, 10, 10)
+                                .addComponent(inMemoryHashLookupCB))
+                            .addGroup(layout.createSequentialGroup()
+                                .addGap(32, 32, 32)
+                                .addComponent(jLabelHashLookupMemoryBudget)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(hashLookupMemoryBudgetSpinner, javax.swing.GroupLayout.PREFERRED_SIZE, 70, javax.swing.GroupLayout.PREFERRED_SIZE)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(jLabelHashLookupMemoryBudgetUnits))
+                            .addComponent(jLabelNumDataSourceThreads)
+                            .addGroup(layout.createSequentialGroup()
+                                .addGap(10, 10, 10)
+                                .addComponent(numberOfDataSourceIngestThreadsComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                                .addGap(18, 18, 18)
+                                .addComponent(dataSourceIngestRestartRequiredLabel))
+                            .addGroup(layout.createSequentialGroup()
+                                .addGap(10, 10, 10)
+                                .addComponent(fileIngestThreadAutoTuningCB))
+                            .addComponent(jLabelFilePriorityPolicy)
+                            .addGroup(layout.createSequentialGroup()
+                                .addGap(10, 10, 10)
+                                .addComponent(filePriorityPolicyComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)))
                         .addGap(0, 0, Short.MAX_VALUE))))
         );
         layout.setVerticalGroup(
@@ -265,6 +381,29 @@ public void actionPerformed(java.awt.event.ActionEvent evt) {
                     .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                         .addComponent(jFormattedTextFieldProcTimeOutHrs, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
                         .addComponent(jLabelProcessTimeOutUnits)))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addComponent(jLabelIngestScheduling)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(bulkDirectoryExpansionCB)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(inMemoryHashLookupCB)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(jLabelHashLookupMemoryBudget)
+                    .addComponent(hashLookupMemoryBudgetSpinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(jLabelHashLookupMemoryBudgetUnits))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addComponent(jLabelNumDataSourceThreads)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(numberOfDataSourceIngestThreadsComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(dataSourceIngestRestartRequiredLabel))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addComponent(fileIngestThreadAutoTuningCB)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addComponent(jLabelFilePriorityPolicy)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(filePriorityPolicyComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addContainerGap(103, Short.MAX_VALUE))
         );
     }// </editor-fold>//GEN-END:initComponents
@@ -273,19 +412,35 @@ private void jCheckBoxEnableProcTimeoutActionPerformed(java.awt.event.ActionEven
         jFormattedTextFieldProcTimeOutHrs.setEditable(jCheckBoxEnableProcTimeout.isSelected());
     }//GEN-LAST:event_jCheckBoxEnableProcTimeoutActionPerformed
 
+    private void inMemoryHashLookupCBActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_inMemoryHashLookupCBActionPerformed
+        hashLookupMemoryBudgetSpinner.setEnabled(inMemoryHashLookupCB.isSelected());
+    }//GEN-LAST:event_inMemoryHashLookupCBActionPerformed
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JCheckBox bulkDirectoryExpansionCB;
     private javax.swing.ButtonGroup buttonGroup1;
     private javax.swing.ButtonGroup buttonGroup3;
+    private javax.swing.JLabel dataSourceIngestRestartRequiredLabel;
     private javax.swing.JCheckBox dataSourcesHideKnownCB;
+    private javax.swing.JCheckBox fileIngestThreadAutoTuningCB;
+    private javax.swing.JComboBox<String> filePriorityPolicyComboBox;
+    private javax.swing.JSpinner hashLookupMemoryBudgetSpinner;
+    private javax.swing.JCheckBox inMemoryHashLookupCB;
     private javax.swing.JCheckBox jCheckBoxEnableProcTimeout;
     private javax.swing.JFormattedTextField jFormattedTextFieldProcTimeOutHrs;
+    private javax.swing.JLabel jLabelFilePriorityPolicy;
+    private javax.swing.JLabel jLabelHashLookupMemoryBudget;
+    private javax.swing.JLabel jLabelHashLookupMemoryBudgetUnits;
     private javax.swing.JLabel jLabelHideKnownFiles;
+    private javax.swing.JLabel jLabelIngestScheduling;
+    private javax.swing.JLabel jLabelNumDataSourceThreads;
     private javax.swing.JLabel jLabelNumThreads;
     private javax.swing.JLabel jLabelProcessTimeOutUnits;
     private javax.swing.JLabel jLabelSelectFile;
     private javax.swing.JLabel jLabelSetProcessTimeOut;
     private javax.swing.JLabel jLabelTimeDisplay;
     private javax.swing.JRadioButton keepCurrentViewerRB;
+    private javax.swing.JComboBox<Integer> numberOfDataSourceIngestThreadsComboBox;
     private javax.swing.JComboBox<Integer> numberOfFileIngestThreadsComboBox;
     private javax.swing.JLabel restartRequiredLabel;
     private javax.swing.JRadioButton useBestViewerRB;
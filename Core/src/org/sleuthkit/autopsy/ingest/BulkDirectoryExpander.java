@@ -0,0 +1,210 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.sleuthkit.autopsy.casemodule.Case;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbQuery;
+import org.sleuthkit.datamodel.TskCoreException;
+import org.sleuthkit.datamodel.TskData;
+
+/**
+ * Expands batches of directories for an ingest job using two case database
+ * queries per batch, one for the child files themselves and one for the
+ * metadata the ingest tasks scheduler needs to decide how to queue them: child
+ * counts, file system types and whether or not the parent of a file is a file
+ * system root directory. The metadata of child directories is cached until the
+ * directories are expanded in turn, so that filtering the directories requires
+ * no further case database access.
+ */
+final class BulkDirectoryExpander {
+
+    /**
+     * The maximum number of directories expanded with a single pair of
+     * queries, to keep the IN clauses of the queries to a reasonable size.
+     */
+    static final int MAX_DIRECTORIES_PER_BATCH = 256;
+
+    private static final String CHILD_METADATA_QUERY = "SELECT objects.par_obj_id AS par_obj_id, files.obj_id AS obj_id, " //NON-NLS
+            + "(SELECT COUNT(*) FROM tsk_objects AS children WHERE children.par_obj_id = files.obj_id) AS child_count, " //NON-NLS
+            + "fs.fs_type AS fs_type, " //NON-NLS
+            + "CASE WHEN parent.meta_addr = fs.root_inum AND parent.fs_obj_id = files.fs_obj_id THEN 1 ELSE 0 END AS parent_is_root " //NON-NLS
+            + "FROM tsk_objects AS objects " //NON-NLS
+            + "JOIN tsk_files AS files ON files.obj_id = objects.obj_id " //NON-NLS
+            + "LEFT JOIN tsk_files AS parent ON parent.obj_id = objects.par_obj_id " //NON-NLS
+            + "LEFT JOIN tsk_fs_info AS fs ON fs.obj_id = files.fs_obj_id " //NON-NLS
+            + "WHERE objects.par_obj_id IN (%s)"; //NON-NLS
+    private static final String CHILD_FILES_WHERE_CLAUSE = "obj_id IN (SELECT obj_id FROM tsk_objects WHERE par_obj_id IN (%s))"; //NON-NLS
+
+    /**
+     * Cached metadata for child directories that have been found but not yet
+     * expanded, keyed by object id.
+     */
+    private final ConcurrentHashMap<Long, FileMetadata> directoryMetadata;
+
+    /**
+     * Constructs an object that expands batches of directories for an ingest
+     * job.
+     */
+    BulkDirectoryExpander() {
+        this.directoryMetadata = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the child files of a batch of directories, along with the metadata
+     * for each child.
+     *
+     * @param directories The directories, no more than
+     *                    MAX_DIRECTORIES_PER_BATCH.
+     *
+     * @return A mapping of directory object ids to the children of the
+     *         directories, in the order returned by the case database.
+     *
+     * @throws TskCoreException if there is a problem querying the case
+     *                          database.
+     */
+    Map<Long, List<ChildFile>> getChildren(Collection<AbstractFile> directories) throws TskCoreException {
+        Map<Long, List<ChildFile>> childrenByParent = new HashMap<>();
+        if (directories.isEmpty()) {
+            return childrenByParent;
+        }
+        StringBuilder parentIds = new StringBuilder();
+        for (AbstractFile directory : directories) {
+            if (parentIds.length() > 0) {
+                parentIds.append(',');
+            }
+            parentIds.append(directory.getId());
+            childrenByParent.put(directory.getId(), new ArrayList<>());
+        }
+
+        SleuthkitCase caseDb = Case.getCurrentCase().getSleuthkitCase();
+        Map<Long, Long> parentIdsByChildId = new HashMap<>();
+        Map<Long, FileMetadata> childMetadata = new HashMap<>();
+        try (CaseDbQuery dbQuery = caseDb.executeQuery(String.format(CHILD_METADATA_QUERY, parentIds))) {
+            ResultSet resultSet = dbQuery.getResultSet();
+            while (resultSet.next()) {
+                long objId = resultSet.getLong("obj_id"); //NON-NLS
+                int fsType = resultSet.getInt("fs_type"); //NON-NLS
+                if (resultSet.wasNull()) {
+                    fsType = TskData.TSK_FS_TYPE_ENUM.TSK_FS_TYPE_UNSUPP.getValue();
+                }
+                parentIdsByChildId.put(objId, resultSet.getLong("par_obj_id")); //NON-NLS
+                childMetadata.put(objId, new FileMetadata(resultSet.getLong("child_count"), fsType, resultSet.getInt("parent_is_root") == 1)); //NON-NLS
+            }
+        } catch (SQLException ex) {
+            throw new TskCoreException("Error querying child file metadata", ex); //NON-NLS
+        }
+
+        for (AbstractFile child : caseDb.findAllFilesWhere(String.format(CHILD_FILES_WHERE_CLAUSE, parentIds))) {
+            Long parentId = parentIdsByChildId.get(child.getId());
+            FileMetadata metadata = childMetadata.get(child.getId());
+            if (null == parentId || null == metadata) {
+                // The file was added after the metadata query was done, it
+                // will be picked up by the normal mechanisms for adding files
+                // to ingest jobs.
+                continue;
+            }
+            if (metadata.hasChildren()) {
+                this.directoryMetadata.put(child.getId(), metadata);
+            }
+            childrenByParent.get(parentId).add(new ChildFile(child, metadata));
+        }
+        return childrenByParent;
+    }
+
+    /**
+     * Gets and discards the cached metadata for a directory that is about to
+     * be expanded.
+     *
+     * @param directory The directory.
+     *
+     * @return The metadata or null if the directory was not found by this
+     *         expander.
+     */
+    FileMetadata takeDirectoryMetadata(AbstractFile directory) {
+        return this.directoryMetadata.remove(directory.getId());
+    }
+
+    /**
+     * A child file found by a bulk directory expansion.
+     */
+    static final class ChildFile {
+
+        private final AbstractFile file;
+        private final FileMetadata metadata;
+
+        private ChildFile(AbstractFile file, FileMetadata metadata) {
+            this.file = file;
+            this.metadata = metadata;
+        }
+
+        AbstractFile getFile() {
+            return this.file;
+        }
+
+        FileMetadata getMetadata() {
+            return this.metadata;
+        }
+    }
+
+    /**
+     * The metadata of a file that is needed to schedule an ingest task for the
+     * file.
+     */
+    static final class FileMetadata {
+
+        private final long childCount;
+        private final int fileSystemType;
+        private final boolean parentIsRoot;
+
+        private FileMetadata(long childCount, int fileSystemType, boolean parentIsRoot) {
+            this.childCount = childCount;
+            this.fileSystemType = fileSystemType;
+            this.parentIsRoot = parentIsRoot;
+        }
+
+        boolean hasChildren() {
+            return this.childCount > 0;
+        }
+
+        /**
+         * Gets the value of the TSK_FS_TYPE_ENUM for the file system that
+         * contains the file.
+         *
+         * @return The file system type value.
+         */
+        int getFileSystemType() {
+            return this.fileSystemType;
+        }
+
+        boolean parentIsRoot() {
+            return this.parentIsRoot;
+        }
+    }
+
+}
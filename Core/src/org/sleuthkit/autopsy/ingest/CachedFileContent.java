@@ -0,0 +1,511 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Provides file ingest modules with read access to the content of a file that
+ * is being run through a file ingest pipeline. The content is read from the
+ * image once, the first time any module reads it, and is then served to all of
+ * the modules in the pipeline from a pooled off-heap buffer (small files) or a
+ * spill file (large files). Files that are too large to cache, that arrive
+ * when the cache memory budget is used up, or whose content cannot be read in
+ * full, are read directly from the image.
+ * <p>
+ * The pooled buffer or spill file is reference counted: the cache holds a
+ * reference until the file leaves the pipeline, and each read holds one while
+ * it copies bytes out, so the buffer is not returned to the pool, nor the
+ * spill file closed, while a read is still using it.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class CachedFileContent {
+
+    private static final Logger logger = Logger.getLogger(CachedFileContent.class.getName());
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+    private static final int NOT_CACHED = -2;
+    private final AbstractFile file;
+    private final FileContentCache cache;
+    private volatile ByteBuffer content;
+    private volatile FileChannel spillChannel;
+    private Path spillFile;
+    private volatile boolean loaded;
+    private int references = 1; // guarded by this
+    private boolean released; // guarded by this
+
+    /**
+     * Constructs an object that provides read access to the content of a file.
+     *
+     * @param file  The file.
+     * @param cache The cache that owns this content, or null if the content
+     *              is not to be cached.
+     */
+    CachedFileContent(AbstractFile file, FileContentCache cache) {
+        this.file = file;
+        this.cache = cache;
+        this.loaded = (null == cache);
+    }
+
+    /**
+     * Gets the file whose content this is.
+     *
+     * @return The file.
+     */
+    public AbstractFile getFile() {
+        return this.file;
+    }
+
+    /**
+     * Gets the size of the content.
+     *
+     * @return The size in bytes.
+     */
+    public long getSize() {
+        return this.file.getSize();
+    }
+
+    /**
+     * Reads bytes of the content into a buffer.
+     *
+     * @param buffer The buffer.
+     * @param offset The offset into the content to start reading from.
+     * @param length The maximum number of bytes to read.
+     *
+     * @return The number of bytes read, -1 if the offset is at or past the end
+     *         of the content.
+     *
+     * @throws TskCoreException if there is a problem reading the content from
+     *                          the image.
+     */
+    public int read(byte[] buffer, long offset, int length) throws TskCoreException {
+        int bytesRead = this.readCached(buffer, 0, offset, length);
+        if (bytesRead != NOT_CACHED) {
+            return bytesRead;
+        }
+        return this.readImage(buffer, offset, length);
+    }
+
+    /**
+     * Reads bytes of the content from the pooled buffer or spill file, if the
+     * content is cached.
+     *
+     * @param buffer       The buffer.
+     * @param bufferOffset The offset into the buffer to start writing at.
+     * @param offset       The offset into the content to start reading from.
+     * @param length       The maximum number of bytes to read.
+     *
+     * @return The number of bytes read, -1 if the offset is at or past the end
+     *         of the content, or NOT_CACHED if the content has to be read from
+     *         the image.
+     *
+     * @throws TskCoreException if there is a problem reading the content from
+     *                          the image into the cache.
+     */
+    private int readCached(byte[] buffer, int bufferOffset, long offset, int length) throws TskCoreException {
+        this.load();
+        if (!this.acquireReference()) {
+            return NOT_CACHED;
+        }
+        try {
+            ByteBuffer data = this.content;
+            if (null != data) {
+                if (offset >= data.limit()) {
+                    return -1;
+                }
+                ByteBuffer view = data.duplicate();
+                view.position((int) offset);
+                int bytesToRead = Math.min(length, view.remaining());
+                view.get(buffer, bufferOffset, bytesToRead);
+                return bytesToRead;
+            }
+            FileChannel channel = this.spillChannel;
+            if (null != channel) {
+                try {
+                    return readSpillFile(channel, buffer, bufferOffset, offset, length);
+                } catch (IOException ex) {
+                    logger.log(Level.WARNING, String.format("Error reading spill file for %s (objId=%d), reading from image instead", this.file.getName(), this.file.getId()), ex); //NON-NLS
+                }
+            }
+            return NOT_CACHED;
+        } finally {
+            this.releaseReference();
+        }
+    }
+
+    /**
+     * Reads bytes of the content directly from the image.
+     *
+     * @param buffer The buffer.
+     * @param offset The offset into the content to start reading from.
+     * @param length The maximum number of bytes to read.
+     *
+     * @return The number of bytes read, -1 if the offset is at or past the end
+     *         of the content.
+     *
+     * @throws TskCoreException if there is a problem reading the content from
+     *                          the image.
+     */
+    private int readImage(byte[] buffer, long offset, int length) throws TskCoreException {
+        int bytesRead = this.file.read(buffer, offset, length);
+        return (bytesRead <= 0 && offset >= this.getSize()) ? -1 : bytesRead;
+    }
+
+    /**
+     * Gets an input stream over the content.
+     *
+     * @return The input stream.
+     */
+    public InputStream getInputStream() {
+        return new ContentInputStream();
+    }
+
+    /**
+     * Queries whether or not the content has been read from the image into
+     * the cache.
+     *
+     * @return True or false.
+     */
+    boolean isCached() {
+        return this.loaded && (null != this.content || null != this.spillChannel);
+    }
+
+    /**
+     * Takes a reference to the pooled buffer or spill file for a read.
+     *
+     * @return True if the content is cached and a reference was taken, false
+     *         if the content has to be read from the image.
+     */
+    private synchronized boolean acquireReference() {
+        if (this.released || (null == this.content && null == this.spillChannel)) {
+            return false;
+        }
+        ++this.references;
+        return true;
+    }
+
+    /**
+     * Gives up a reference to the pooled buffer or spill file. The last one
+     * to give up its reference frees them.
+     */
+    private synchronized void releaseReference() {
+        if (--this.references == 0) {
+            ByteBuffer data = this.content;
+            this.content = null;
+            if (null != data) {
+                FileContentCache.releaseBuffer(data);
+            }
+            this.releaseSpillFile();
+        }
+    }
+
+    /**
+     * Reads the content from the image into a pooled buffer or a spill file,
+     * the first time it is called.
+     *
+     * @throws TskCoreException if there is a problem reading the content from
+     *                          the image.
+     */
+    private void load() throws TskCoreException {
+        if (this.loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (this.loaded) {
+                return;
+            }
+            long size = this.getSize();
+            if (size > 0 && size <= FileContentCache.BUFFER_SIZE) {
+                this.content = this.readIntoBuffer(size);
+            }
+            if (null == this.content && size > 0 && size <= FileContentCache.MAX_SPILL_FILE_SIZE && FileContentCache.isEnabled()) {
+                try {
+                    this.spill(size);
+                } catch (IOException ex) {
+                    logger.log(Level.WARNING, String.format("Error spilling content of %s (objId=%d), reading from image instead", this.file.getName(), this.file.getId()), ex); //NON-NLS
+                    this.releaseSpillFile();
+                } catch (TskCoreException ex) {
+                    this.releaseSpillFile();
+                    throw ex;
+                }
+            }
+            this.loaded = true;
+        }
+    }
+
+    /**
+     * Reads the content from the image into a pooled buffer.
+     *
+     * @param size The size of the content.
+     *
+     * @return The content, or null if the memory budget is used up or the
+     *         content could not be read in full.
+     *
+     * @throws TskCoreException if there is a problem reading the content from
+     *                          the image.
+     */
+    private ByteBuffer readIntoBuffer(long size) throws TskCoreException {
+        ByteBuffer buffer = FileContentCache.acquireBuffer();
+        if (null == buffer) {
+            return null;
+        }
+        boolean complete = false;
+        try {
+            byte[] chunk = new byte[READ_CHUNK_SIZE];
+            long offset = 0;
+            while (offset < size) {
+                int bytesRead = this.file.read(chunk, offset, (int) Math.min(READ_CHUNK_SIZE, size - offset));
+                if (bytesRead <= 0) {
+                    break;
+                }
+                buffer.put(chunk, 0, bytesRead);
+                offset += bytesRead;
+            }
+            complete = this.checkReadComplete(offset, size);
+        } finally {
+            if (!complete) {
+                FileContentCache.releaseBuffer(buffer);
+            }
+        }
+        if (!complete) {
+            return null;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Copies the content to a spill file and keeps the file open for reading.
+     * The spill file is read through a file channel rather than mapped into
+     * memory, since a mapped file cannot be deleted on Windows until the
+     * mapping is garbage collected.
+     *
+     * @param size The size of the content.
+     *
+     * @throws IOException      if there is a problem writing the spill file.
+     * @throws TskCoreException if there is a problem reading the content from
+     *                          the image.
+     */
+    private void spill(long size) throws IOException, TskCoreException {
+        this.spillFile = this.cache.createSpillFile(this.file);
+        FileChannel channel = FileChannel.open(this.spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean complete = false;
+        try {
+            byte[] chunk = new byte[READ_CHUNK_SIZE];
+            long offset = 0;
+            while (offset < size) {
+                int bytesRead = this.file.read(chunk, offset, (int) Math.min(READ_CHUNK_SIZE, size - offset));
+                if (bytesRead <= 0) {
+                    break;
+                }
+                ByteBuffer source = ByteBuffer.wrap(chunk, 0, bytesRead);
+                while (source.hasRemaining()) {
+                    channel.write(source);
+                }
+                offset += bytesRead;
+            }
+            complete = this.checkReadComplete(offset, size);
+        } finally {
+            if (complete) {
+                this.spillChannel = channel;
+            } else {
+                channel.close();
+                this.releaseSpillFile();
+            }
+        }
+    }
+
+    /**
+     * Checks that all of the content was read from the image. Content that
+     * was cut short is not cached, so that modules get the same result they
+     * would get reading the file directly.
+     *
+     * @param bytesRead The number of bytes read.
+     * @param size      The size of the content.
+     *
+     * @return True if all of the content was read.
+     */
+    private boolean checkReadComplete(long bytesRead, long size) {
+        if (bytesRead < size) {
+            logger.log(Level.WARNING, String.format("Read %d of %d bytes of %s (objId=%d), reading from image instead of caching", bytesRead, size, this.file.getName(), this.file.getId())); //NON-NLS
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads bytes of the content from the spill file.
+     *
+     * @param channel      The channel of the spill file.
+     * @param buffer       The buffer.
+     * @param bufferOffset The offset into the buffer to start writing at.
+     * @param offset       The offset into the content to start reading from.
+     * @param length       The maximum number of bytes to read.
+     *
+     * @return The number of bytes read, -1 if the offset is at or past the end
+     *         of the content.
+     *
+     * @throws IOException if there is a problem reading the spill file.
+     */
+    private int readSpillFile(FileChannel channel, byte[] buffer, int bufferOffset, long offset, int length) throws IOException {
+        long size = this.getSize();
+        if (offset >= size) {
+            return -1;
+        }
+        ByteBuffer target = ByteBuffer.wrap(buffer, bufferOffset, (int) Math.min(length, size - offset));
+        while (target.hasRemaining()) {
+            if (channel.read(target, offset + target.position() - bufferOffset) < 0) {
+                break;
+            }
+        }
+        return target.position() - bufferOffset;
+    }
+
+    /**
+     * Gives up the reference of the cache to the pooled buffer or spill file,
+     * if any. They are freed when the reads that are still using them are
+     * done, and the content is read directly from the image after this is
+     * called.
+     */
+    synchronized void release() {
+        this.loaded = true;
+        if (!this.released) {
+            this.released = true;
+            this.releaseReference();
+        }
+    }
+
+    /**
+     * Closes and deletes the spill file, if any.
+     */
+    private void releaseSpillFile() {
+        FileChannel channel = this.spillChannel;
+        this.spillChannel = null;
+        if (null != channel) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, String.format("Error closing spill file %s", this.spillFile), ex); //NON-NLS
+            }
+        }
+        if (null != this.spillFile) {
+            try {
+                Files.deleteIfExists(this.spillFile);
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, String.format("Could not delete spill file %s", this.spillFile), ex); //NON-NLS
+            }
+            this.spillFile = null;
+        }
+    }
+
+    /**
+     * An input stream over the content.
+     */
+    private final class ContentInputStream extends InputStream {
+
+        private long position;
+        private long mark;
+        private final byte[] singleByte = new byte[1];
+        private byte[] imageReadBuffer;
+
+        @Override
+        public int read() throws IOException {
+            int bytesRead = this.read(this.singleByte, 0, 1);
+            return (bytesRead <= 0) ? -1 : (this.singleByte[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            int bytesRead;
+            try {
+                bytesRead = CachedFileContent.this.readCached(buffer, offset, this.position, length);
+                if (bytesRead == NOT_CACHED) {
+                    bytesRead = this.readImage(buffer, offset, length);
+                }
+            } catch (TskCoreException ex) {
+                throw new IOException(ex);
+            }
+            if (bytesRead <= 0) {
+                return -1;
+            }
+            this.position += bytesRead;
+            return bytesRead;
+        }
+
+        /**
+         * Reads bytes of the content directly from the image into a buffer,
+         * through a read buffer that is kept for the life of the stream if
+         * the bytes do not go to the start of the buffer.
+         */
+        private int readImage(byte[] buffer, int offset, int length) throws TskCoreException {
+            if (offset == 0) {
+                return CachedFileContent.this.readImage(buffer, this.position, length);
+            }
+            if (null == this.imageReadBuffer || this.imageReadBuffer.length < length) {
+                this.imageReadBuffer = new byte[length];
+            }
+            int bytesRead = CachedFileContent.this.readImage(this.imageReadBuffer, this.position, length);
+            if (bytesRead > 0) {
+                System.arraycopy(this.imageReadBuffer, 0, buffer, offset, bytesRead);
+            }
+            return bytesRead;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = Math.max(0, Math.min(n, CachedFileContent.this.getSize() - this.position));
+            this.position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(0, CachedFileContent.this.getSize() - this.position));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            this.mark = this.position;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            this.position = this.mark;
+        }
+    }
+
+}
@@ -18,6 +18,10 @@
  */
 package org.sleuthkit.autopsy.ingest;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -33,6 +37,8 @@
 import org.netbeans.api.progress.ProgressHandleFactory;
 import org.openide.util.Cancellable;
 import org.openide.util.NbBundle;
+import org.sleuthkit.autopsy.casemodule.Case;
+import org.sleuthkit.autopsy.core.UserPreferences;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.datamodel.Content;
@@ -99,24 +105,57 @@ private static enum Stages {
      * A data source ingest job has a collection of identical file level ingest
      * module pipelines, one for each file level ingest thread in the ingest
      * manager. A blocking queue is used to dole out the pipelines to the
-     * threads and an ordinary list is used when the ingest job needs to access
-     * the pipelines to query their status.
+     * threads and a list is used when the ingest job needs to access the
+     * pipelines to query their status. When file ingest threads are added
+     * while the job is running, pipelines are added for them as they are
+     * needed; when threads are retired, pipelines are shut down as they are
+     * handed back, so that there is one pipeline per thread again.
      */
+    private final Object fileIngestPipelinesLock = new Object();
     private final LinkedBlockingQueue<FileIngestPipeline> fileIngestPipelinesQueue = new LinkedBlockingQueue<>();
-    private final List<FileIngestPipeline> fileIngestPipelines = new ArrayList<>();
+    private final List<FileIngestPipeline> fileIngestPipelines = new CopyOnWriteArrayList<>();
+    private List<IngestModuleTemplate> fileIngestModuleTemplates;
+    private boolean fileIngestPipelineStartUpFailed;
+
+    /**
+     * Alternatively, if the staged file ingest pipeline is enabled, a data
+     * source ingest job has a single staged file level ingest module pipeline
+     * that is fed by all of the file level ingest threads. Each module in a
+     * staged pipeline has its own queue and workers.
+     */
+    private StagedFileIngestPipeline stagedFileIngestPipeline;
+
+    /**
+     * The content of the files in the file ingest pipelines is cached so that
+     * it is read from the image only once.
+     */
+    private final FileContentCache fileContentCache;
+
+    /**
+     * Timing and throughput metrics are recorded for each ingest module and
+     * exported to the case output directory when the job finishes.
+     */
+    private static final String MODULE_METRICS_DIRECTORY_NAME = "IngestMetrics"; //NON-NLS
+    private final IngestModuleMetricsRecorder moduleMetrics;
+
+    /**
+     * The order in which the files of the data source are analyzed is decided
+     * by the file ingest priority policies selected in the job settings.
+     */
+    private final FileIngestPriorityPolicies filePriorityPolicies;
 
     /**
      * A data source ingest job supports cancellation of either the currently
      * running data source level ingest module or the entire ingest job.
+     * Cancellation of the currently running data source level ingest module
+     * is tracked by the current data source level ingest pipeline.
      *
-     * TODO: The currentDataSourceIngestModuleCancelled field and all of the
-     * code concerned with it is a hack to avoid an API change. The next time an
-     * API change is legal, a cancel() method needs to be added to the
-     * IngestModule interface and this field should be removed. The "ingest job
-     * is canceled" queries should also be removed from the IngestJobContext
-     * class.
+     * TODO: The data source level ingest module cancellation code is a hack to
+     * avoid an API change. The next time an API change is legal, a cancel()
+     * method needs to be added to the IngestModule interface and this code
+     * should be removed. The "ingest job is canceled" queries should also be
+     * removed from the IngestJobContext class.
      */
-    private volatile boolean currentDataSourceIngestModuleCancelled;
     private volatile boolean cancelled;
     private volatile IngestJob.CancellationReason cancellationReason = IngestJob.CancellationReason.NOT_CANCELLED;
     private final Object cancellationStateMonitor = new Object();
@@ -172,6 +211,9 @@ private static enum Stages {
     DataSourceIngestJob(IngestJob parentJob, Content dataSource, IngestJobSettings settings, boolean runInteractively) {
         this.parentJob = parentJob;
         this.id = DataSourceIngestJob.nextJobId.getAndIncrement();
+        this.fileContentCache = new FileContentCache(this.id);
+        this.moduleMetrics = new IngestModuleMetricsRecorder();
+        this.filePriorityPolicies = new FileIngestPriorityPolicies(settings.getFilePriorityPolicyNames());
         this.dataSource = dataSource;
         this.settings = settings;
         this.doUI = runInteractively;
@@ -219,6 +261,7 @@ private void createIngestPipelines() {
         for (IngestModuleTemplate template : fileModuleTemplates.values()) {
             fileIngestModuleTemplates.add(template);
         }
+        this.fileIngestModuleTemplates = fileIngestModuleTemplates;
 
         /**
          * Construct the data source ingest pipelines.
@@ -227,10 +270,15 @@ private void createIngestPipelines() {
         this.secondStageDataSourceIngestPipeline = new DataSourceIngestPipeline(this, secondStageDataSourceModuleTemplates);
 
         /**
-         * Construct the file ingest pipelines, one per file ingest thread.
+         * Construct either a single staged file ingest pipeline or the file
+         * ingest pipelines, one per file ingest thread.
          */
+        int numberOfFileIngestThreads = IngestManager.getInstance().getNumberOfFileIngestThreads();
+        if (UserPreferences.stagedFileIngestPipelineEnabled()) {
+            this.stagedFileIngestPipeline = new StagedFileIngestPipeline(this, fileIngestModuleTemplates, numberOfFileIngestThreads, Runtime.getRuntime().availableProcessors());
+            return;
+        }
         try {
-            int numberOfFileIngestThreads = IngestManager.getInstance().getNumberOfFileIngestThreads();
             for (int i = 0; i < numberOfFileIngestThreads; ++i) {
                 FileIngestPipeline pipeline = new FileIngestPipeline(this, fileIngestModuleTemplates);
                 this.fileIngestPipelinesQueue.put(pipeline);
@@ -271,6 +319,35 @@ private static List<IngestModuleTemplate> getConfiguredIngestModuleTemplates(Map
         return templates;
     }
 
+    /**
+     * Gets the cache of the content of the files in the file ingest pipelines
+     * of this job.
+     *
+     * @return The file content cache.
+     */
+    FileContentCache getFileContentCache() {
+        return this.fileContentCache;
+    }
+
+    /**
+     * Gets the recorder of the timing and throughput metrics of the ingest
+     * modules of this job.
+     *
+     * @return The metrics recorder.
+     */
+    IngestModuleMetricsRecorder getModuleMetricsRecorder() {
+        return this.moduleMetrics;
+    }
+
+    /**
+     * Gets the file ingest priority policies of this job.
+     *
+     * @return The policies.
+     */
+    FileIngestPriorityPolicies getFilePriorityPolicies() {
+        return this.filePriorityPolicies;
+    }
+
     /**
      * Gets the identifier of this job.
      *
@@ -336,6 +413,9 @@ private boolean hasSecondStageDataSourceIngestPipeline() {
      * @return True or false.
      */
     private boolean hasFileIngestPipeline() {
+        if (null != this.stagedFileIngestPipeline) {
+            return !this.stagedFileIngestPipeline.isEmpty();
+        }
         if (!this.fileIngestPipelines.isEmpty()) {
             return !this.fileIngestPipelines.get(0).isEmpty();
         }
@@ -376,6 +456,17 @@ private List<IngestModuleError> startUpIngestPipelines() {
         // Start up the second stage data source ingest pipeline.
         errors.addAll(this.secondStageDataSourceIngestPipeline.startUp());
 
+        // Start up the staged file ingest pipeline, if there is one.
+        if (null != this.stagedFileIngestPipeline && errors.isEmpty()) {
+            errors.addAll(this.stagedFileIngestPipeline.startUp());
+            if (!errors.isEmpty()) {
+                List<IngestModuleError> shutDownErrors = this.stagedFileIngestPipeline.shutDown();
+                if (!shutDownErrors.isEmpty()) {
+                    logIngestModuleErrors(shutDownErrors);
+                }
+            }
+        }
+
         // Start up the file ingest pipelines (one per file ingest thread). 
         for (FileIngestPipeline pipeline : this.fileIngestPipelinesQueue) {
             errors.addAll(pipeline.startUp());
@@ -543,7 +634,7 @@ public boolean cancel() {
      * Checks to see if the ingest tasks for the current stage of this job are
      * completed and does a stage transition if they are.
      */
-    private void checkForStageCompleted() {
+    void checkForStageCompleted() {
         synchronized (this.stageCompletionCheckLock) {
             if (DataSourceIngestJob.taskScheduler.tasksForJobAreCompleted(this)) {
                 switch (this.stage) {
@@ -575,6 +666,9 @@ private void finishFirstStage() {
                 errors.addAll(pipeline.shutDown());
             }
         }
+        if (null != this.stagedFileIngestPipeline && this.stagedFileIngestPipeline.isRunning()) {
+            errors.addAll(this.stagedFileIngestPipeline.shutDown());
+        }
         if (!errors.isEmpty()) {
             logIngestModuleErrors(errors);
         }
@@ -627,9 +721,28 @@ private void finish() {
             }
         }
 
+        logger.log(Level.INFO, "File content cache for {0} (jobId={1}): {2} hits, {3} misses", new Object[]{dataSource.getName(), this.id, this.fileContentCache.getHitCount(), this.fileContentCache.getMissCount()}); //NON-NLS
+        this.exportModuleMetrics();
+
+        DataSourceIngestJob.taskScheduler.notifyIngestJobFinished(this);
         this.parentJob.dataSourceJobFinished(this);
     }
 
+    /**
+     * Writes the ingest module metrics of this job to a JSON file in the case
+     * output directory.
+     */
+    private void exportModuleMetrics() {
+        try {
+            String fileName = String.format("%s-%d-job%d-metrics.json", new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(this.createTime)), this.dataSource.getId(), this.id); //NON-NLS
+            Path path = Paths.get(Case.getCurrentCase().getOutputDirectory(), MODULE_METRICS_DIRECTORY_NAME, fileName);
+            this.moduleMetrics.exportToJson(path, this.id, this.dataSource.getName(), this.createTime, System.currentTimeMillis());
+            logger.log(Level.INFO, "Ingest module metrics for {0} (jobId={1}) written to {2}", new Object[]{dataSource.getName(), this.id, path}); //NON-NLS
+        } catch (IOException | IllegalStateException ex) {
+            logger.log(Level.WARNING, String.format("Error writing ingest module metrics for %s (jobId=%d)", dataSource.getName(), this.id), ex); //NON-NLS
+        }
+    }
+
     /**
      * Passes the data source for this job through the currently active data
      * source level ingest pipeline.
@@ -679,26 +792,16 @@ void process(DataSourceIngestTask task) {
      *                              collection.
      */
     void process(FileIngestTask task) throws InterruptedException {
+        if (null != this.stagedFileIngestPipeline) {
+            this.processStaged(task);
+            return;
+        }
         try {
             if (!this.isCancelled()) {
-                FileIngestPipeline pipeline = this.fileIngestPipelinesQueue.take();
+                FileIngestPipeline pipeline = this.takeFileIngestPipeline();
                 if (!pipeline.isEmpty()) {
                     AbstractFile file = task.getFile();
-
-                    synchronized (this.fileIngestProgressLock) {
-                        ++this.processedFiles;
-                        if (this.doUI) {
-                            /**
-                             * Update the file ingest progress bar.
-                             */
-                            if (this.processedFiles <= this.estimatedFilesToProcess) {
-                                this.fileIngestProgress.progress(file.getName(), (int) this.processedFiles);
-                            } else {
-                                this.fileIngestProgress.progress(file.getName(), (int) this.estimatedFilesToProcess);
-                            }
-                            this.filesInProgress.add(file.getName());
-                        }
-                    }
+                    this.fileIngestStarted(file);
 
                     /**
                      * Run the file through the pipeline.
@@ -709,22 +812,9 @@ void process(FileIngestTask task) throws InterruptedException {
                         logIngestModuleErrors(errors);
                     }
 
-                    if (this.doUI && !this.cancelled) {
-                        synchronized (this.fileIngestProgressLock) {
-                            /**
-                             * Update the file ingest progress bar again, in
-                             * case the file was being displayed.
-                             */
-                            this.filesInProgress.remove(file.getName());
-                            if (this.filesInProgress.size() > 0) {
-                                this.fileIngestProgress.progress(this.filesInProgress.get(0));
-                            } else {
-                                this.fileIngestProgress.progress("");
-                            }
-                        }
-                    }
+                    this.fileIngestFinished(file);
                 }
-                this.fileIngestPipelinesQueue.put(pipeline);
+                this.releaseFileIngestPipeline(pipeline);
             }
         } finally {
             DataSourceIngestJob.taskScheduler.notifyTaskCompleted(task);
@@ -732,6 +822,167 @@ void process(FileIngestTask task) throws InterruptedException {
         }
     }
 
+    /**
+     * Takes a file ingest pipeline for the calling file ingest thread. If all
+     * of the pipelines are in use and there are more file ingest threads than
+     * pipelines, a pipeline is added.
+     *
+     * @return The pipeline.
+     *
+     * @throws InterruptedException if the thread executing this code is
+     *                              interrupted while blocked on taking a
+     *                              pipeline.
+     */
+    private FileIngestPipeline takeFileIngestPipeline() throws InterruptedException {
+        FileIngestPipeline pipeline = this.fileIngestPipelinesQueue.poll();
+        if (null != pipeline) {
+            return pipeline;
+        }
+        synchronized (this.fileIngestPipelinesLock) {
+            if (!this.fileIngestPipelineStartUpFailed
+                    && this.stage == DataSourceIngestJob.Stages.FIRST
+                    && this.fileIngestPipelines.size() < IngestManager.getInstance().getNumberOfFileIngestThreads()) {
+                pipeline = new FileIngestPipeline(this, this.fileIngestModuleTemplates);
+                List<IngestModuleError> errors = pipeline.startUp();
+                if (errors.isEmpty()) {
+                    this.fileIngestPipelines.add(pipeline);
+                    logger.log(Level.INFO, "Added file ingest pipeline for {0} (jobId={1}), {2} pipelines", new Object[]{dataSource.getName(), this.id, this.fileIngestPipelines.size()}); //NON-NLS
+                    return pipeline;
+                }
+                // Don't keep trying, the job goes on with the pipelines it has.
+                this.fileIngestPipelineStartUpFailed = true;
+                logIngestModuleErrors(errors);
+                List<IngestModuleError> shutDownErrors = pipeline.shutDown();
+                if (!shutDownErrors.isEmpty()) {
+                    logIngestModuleErrors(shutDownErrors);
+                }
+            }
+        }
+        return this.fileIngestPipelinesQueue.take();
+    }
+
+    /**
+     * Hands a file ingest pipeline back after a file ingest thread is done
+     * with it. If there are more pipelines than file ingest threads, the
+     * pipeline is shut down instead.
+     *
+     * @param pipeline The pipeline.
+     *
+     * @throws InterruptedException if the thread executing this code is
+     *                              interrupted while blocked on putting the
+     *                              pipeline back.
+     */
+    private void releaseFileIngestPipeline(FileIngestPipeline pipeline) throws InterruptedException {
+        boolean retire = false;
+        synchronized (this.fileIngestPipelinesLock) {
+            if (this.fileIngestPipelines.size() > Math.max(1, IngestManager.getInstance().getNumberOfFileIngestThreads())) {
+                this.fileIngestPipelines.remove(pipeline);
+                retire = true;
+            }
+        }
+        if (!retire) {
+            this.fileIngestPipelinesQueue.put(pipeline);
+            return;
+        }
+        logger.log(Level.INFO, "Retired file ingest pipeline for {0} (jobId={1}), {2} pipelines", new Object[]{dataSource.getName(), this.id, this.fileIngestPipelines.size()}); //NON-NLS
+        List<IngestModuleError> errors = pipeline.shutDown();
+        if (!errors.isEmpty()) {
+            logIngestModuleErrors(errors);
+        }
+    }
+
+    /**
+     * Puts a file from the data source for this job into the staged file level
+     * ingest pipeline. The pipeline calls back when it is done with the file.
+     *
+     * @param task A file ingest task.
+     *
+     * @throws InterruptedException if the thread executing this code is
+     *                              interrupted while blocked on putting the
+     *                              file into the pipeline.
+     */
+    private void processStaged(FileIngestTask task) throws InterruptedException {
+        boolean submitted = false;
+        try {
+            if (!this.isCancelled() && !this.stagedFileIngestPipeline.isEmpty()) {
+                this.stagedFileIngestPipeline.setIoBoundWorkerCount(IngestManager.getInstance().getNumberOfFileIngestThreads());
+                this.fileIngestStarted(task.getFile());
+                this.stagedFileIngestPipeline.process(task);
+                submitted = true;
+            }
+        } finally {
+            if (!submitted) {
+                DataSourceIngestJob.taskScheduler.notifyTaskCompleted(task);
+                this.checkForStageCompleted();
+            }
+        }
+    }
+
+    /**
+     * Called by the staged file level ingest pipeline when it is done with a
+     * file.
+     *
+     * @param task   The file ingest task.
+     * @param errors The processing errors for the file, possibly empty.
+     */
+    void stagedFileIngestTaskCompleted(FileIngestTask task, List<IngestModuleError> errors) {
+        try {
+            if (!errors.isEmpty()) {
+                logIngestModuleErrors(errors);
+            }
+            this.fileIngestFinished(task.getFile());
+        } finally {
+            DataSourceIngestJob.taskScheduler.notifyTaskCompleted(task);
+            this.checkForStageCompleted();
+        }
+    }
+
+    /**
+     * Updates the file ingest progress for this job when a file is about to be
+     * run through the file level ingest pipeline.
+     *
+     * @param file The file.
+     */
+    private void fileIngestStarted(AbstractFile file) {
+        synchronized (this.fileIngestProgressLock) {
+            ++this.processedFiles;
+            if (this.doUI) {
+                /**
+                 * Update the file ingest progress bar.
+                 */
+                if (this.processedFiles <= this.estimatedFilesToProcess) {
+                    this.fileIngestProgress.progress(file.getName(), (int) this.processedFiles);
+                } else {
+                    this.fileIngestProgress.progress(file.getName(), (int) this.estimatedFilesToProcess);
+                }
+                this.filesInProgress.add(file.getName());
+            }
+        }
+    }
+
+    /**
+     * Updates the file ingest progress for this job when a file has been run
+     * through the file level ingest pipeline.
+     *
+     * @param file The file.
+     */
+    private void fileIngestFinished(AbstractFile file) {
+        if (this.doUI && !this.cancelled) {
+            synchronized (this.fileIngestProgressLock) {
+                /**
+                 * Update the file ingest progress bar again, in case the file
+                 * was being displayed.
+                 */
+                this.filesInProgress.remove(file.getName());
+                if (this.filesInProgress.size() > 0) {
+                    this.fileIngestProgress.progress(this.filesInProgress.get(0));
+                } else {
+                    this.fileIngestProgress.progress("");
+                }
+            }
+        }
+    }
+
     /**
      * Adds more files from the data source for this job to the job, i.e., adds
      * extracted or carved files. Not currently supported for the second stage
@@ -846,8 +1097,10 @@ void advanceDataSourceIngestProgressBar(String currentTask) {
      */
     void advanceDataSourceIngestProgressBar(String currentTask, int workUnits) {
         if (this.doUI && !this.cancelled) {
-            synchronized (this.fileIngestProgressLock) {
-                this.dataSourceIngestProgress.progress(currentTask, workUnits);
+            synchronized (this.dataSourceIngestProgressLock) {
+                if (null != this.dataSourceIngestProgress) {
+                    this.dataSourceIngestProgress.progress(currentTask, workUnits);
+                }
             }
         }
     }
@@ -860,7 +1113,8 @@ void advanceDataSourceIngestProgressBar(String currentTask, int workUnits) {
      * @return True or false.
      */
     boolean currentDataSourceIngestModuleIsCancelled() {
-        return this.currentDataSourceIngestModuleCancelled;
+        DataSourceIngestPipeline pipeline = this.currentDataSourceIngestPipeline;
+        return null != pipeline && pipeline.currentModuleIsCancelled();
     }
 
     /**
@@ -870,7 +1124,6 @@ boolean currentDataSourceIngestModuleIsCancelled() {
      * @param moduleDisplayName The display name of the module that was stopped.
      */
     void currentDataSourceIngestModuleCancellationCompleted(String moduleDisplayName) {
-        this.currentDataSourceIngestModuleCancelled = false;
         this.cancelledDataSourceIngestModules.add(moduleDisplayName);
 
         if (this.doUI) {
@@ -907,7 +1160,10 @@ DataSourceIngestPipeline.PipelineModule getCurrentDataSourceIngestModule() {
      * job in order to stop the currently executing data source ingest module.
      */
     void cancelCurrentDataSourceIngestModule() {
-        this.currentDataSourceIngestModuleCancelled = true;
+        DataSourceIngestPipeline pipeline = this.currentDataSourceIngestPipeline;
+        if (null != pipeline) {
+            pipeline.cancelCurrentModule();
+        }
     }
 
     /**
@@ -1048,6 +1304,7 @@ final class Snapshot {
         private final boolean jobCancelled;
         private final IngestJob.CancellationReason jobCancellationReason;
         private final List<String> cancelledDataSourceModules;
+        private final List<IngestModuleMetrics> moduleMetrics;
 
         /**
          * Constructs an object to store basic diagnostic statistics for a data
@@ -1073,10 +1330,16 @@ final class Snapshot {
                     this.fileIngestStartTime = pipelineStartTime;
                 }
             }
+            StagedFileIngestPipeline stagedPipeline = DataSourceIngestJob.this.stagedFileIngestPipeline;
+            if (null != stagedPipeline) {
+                this.fileIngestRunning = stagedPipeline.isRunning();
+                this.fileIngestStartTime = stagedPipeline.getStartTime();
+            }
 
             this.jobCancelled = cancelled;
             this.jobCancellationReason = cancellationReason;
             this.cancelledDataSourceModules = new ArrayList<>(DataSourceIngestJob.this.cancelledDataSourceIngestModules);
+            this.moduleMetrics = DataSourceIngestJob.this.moduleMetrics.getMetrics();
 
             if (getIngestTasksSnapshot) {
                 synchronized (DataSourceIngestJob.this.fileIngestProgressLock) {
@@ -1234,6 +1497,16 @@ List<String> getCancelledDataSourceIngestModules() {
             return Collections.unmodifiableList(this.cancelledDataSourceModules);
         }
 
+        /**
+         * Gets the timing and throughput metrics of the ingest modules of the
+         * job, sorted by descending total time.
+         *
+         * @return The metrics, possibly empty.
+         */
+        List<IngestModuleMetrics> getModuleMetrics() {
+            return Collections.unmodifiableList(this.moduleMetrics);
+        }
+
     }
 
 }
@@ -18,17 +18,42 @@
  */
 package org.sleuthkit.autopsy.ingest;
 
+import java.util.function.BooleanSupplier;
 import org.netbeans.api.progress.ProgressHandle;
 
 /**
  * Used by data source ingest modules to report progress.
+ * <p>
+ * When data source ingest modules of a job run concurrently, they share the
+ * data source ingest progress bar of the job. Each module then gets a progress
+ * object of its own that records the progress of the module, and only the
+ * module shown on the progress bar updates it. The module that is shown next
+ * puts its recorded progress back on the progress bar.
  */
 public class DataSourceIngestModuleProgress {
 
+    private static final int INDETERMINATE = -1;
     private final DataSourceIngestJob job;
+    private final BooleanSupplier shown;
+    private int totalWorkUnits = INDETERMINATE;
+    private int workUnits;
+    private String currentTask = "";
 
     DataSourceIngestModuleProgress(DataSourceIngestJob job) {
+        this(job, () -> true);
+    }
+
+    /**
+     * Constructs an object used by a data source ingest module to report
+     * progress, for a module that may run concurrently with other modules.
+     *
+     * @param job   The ingest job of the module.
+     * @param shown Tests whether the module is the one shown on the progress
+     *              bar of the job.
+     */
+    DataSourceIngestModuleProgress(DataSourceIngestJob job, BooleanSupplier shown) {
         this.job = job;
+        this.shown = shown;
     }
 
     /**
@@ -39,16 +64,23 @@ public class DataSourceIngestModuleProgress {
      * @param workUnits Total number of work units for the processing of the
      *                  data source.
      */
-    public void switchToDeterminate(int workUnits) {
-        this.job.switchDataSourceIngestProgressBarToDeterminate(workUnits);
+    public synchronized void switchToDeterminate(int workUnits) {
+        this.totalWorkUnits = workUnits;
+        this.workUnits = 0;
+        if (this.shown.getAsBoolean()) {
+            this.job.switchDataSourceIngestProgressBarToDeterminate(workUnits);
+        }
     }
 
     /**
      * Switches the progress bar to indeterminate mode. This should be called if
      * the total work units to process the data source is unknown.
      */
-    public void switchToIndeterminate() {
-        this.job.switchDataSourceIngestProgressBarToIndeterminate();
+    public synchronized void switchToIndeterminate() {
+        this.totalWorkUnits = INDETERMINATE;
+        if (this.shown.getAsBoolean()) {
+            this.job.switchDataSourceIngestProgressBarToIndeterminate();
+        }
     }
 
     /**
@@ -57,8 +89,12 @@ public void switchToIndeterminate() {
      *
      * @param workUnits Number of work units performed so far by the module.
      */
-    public void progress(int workUnits) {
-        this.job.advanceDataSourceIngestProgressBar("", workUnits);
+    public synchronized void progress(int workUnits) {
+        this.workUnits = workUnits;
+        this.currentTask = "";
+        if (this.shown.getAsBoolean()) {
+            this.job.advanceDataSourceIngestProgressBar("", workUnits);
+        }
     }
 
     /**
@@ -66,8 +102,11 @@ public void progress(int workUnits) {
      *
      * @param message Message to display
      */
-    public void progress(String message) {
-        this.job.advanceDataSourceIngestProgressBar(message);
+    public synchronized void progress(String message) {
+        this.currentTask = message;
+        if (this.shown.getAsBoolean()) {
+            this.job.advanceDataSourceIngestProgressBar(message);
+        }
     }
 
     /**
@@ -77,8 +116,26 @@ public void progress(String message) {
      * @param currentTask The task name.
      * @param workUnits   Number of work units performed so far by the module.
      */
-    public void progress(String currentTask, int workUnits) {
-        this.job.advanceDataSourceIngestProgressBar(currentTask, workUnits);
+    public synchronized void progress(String currentTask, int workUnits) {
+        this.currentTask = currentTask;
+        this.workUnits = workUnits;
+        if (this.shown.getAsBoolean()) {
+            this.job.advanceDataSourceIngestProgressBar(currentTask, workUnits);
+        }
+    }
+
+    /**
+     * Puts the recorded progress of the module back on the progress bar, when
+     * the module is shown on it again.
+     */
+    synchronized void show() {
+        if (INDETERMINATE == this.totalWorkUnits) {
+            this.job.switchDataSourceIngestProgressBarToIndeterminate();
+            this.job.advanceDataSourceIngestProgressBar(this.currentTask);
+        } else {
+            this.job.switchDataSourceIngestProgressBarToDeterminate(this.totalWorkUnits);
+            this.job.advanceDataSourceIngestProgressBar(this.currentTask, this.workUnits);
+        }
     }
 
 }
@@ -18,9 +18,19 @@
  */
 package org.sleuthkit.autopsy.ingest;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import org.openide.util.NbBundle;
 import org.sleuthkit.autopsy.coreutils.Logger;
@@ -32,6 +42,11 @@
  * source ingest job. It starts the modules, runs data sources through them, and
  * shuts them down when data source level ingest is complete.
  * <p>
+ * By default the modules run one after another in pipeline order. If any of
+ * the module factories declare the data source ingest modules their modules
+ * depend on, each module instead runs as soon as the modules it depends on
+ * have finished, so independent modules run concurrently.
+ * <p>
  * This class is thread-safe.
  */
 final class DataSourceIngestPipeline {
@@ -41,6 +56,9 @@ final class DataSourceIngestPipeline {
     private final DataSourceIngestJob job;
     private final List<PipelineModule> modules = new ArrayList<>();
     private volatile PipelineModule currentModule;
+    private final List<PipelineModule> runningModules = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<PipelineModule> moduleOnThread = new ThreadLocal<>();
+    private final Map<PipelineModule, DataSourceIngestModuleProgress> moduleProgress = new ConcurrentHashMap<>();
 
     /**
      * Constructs an object that manages a sequence of data source level ingest
@@ -56,7 +74,8 @@ final class DataSourceIngestPipeline {
         this.job = job;
         for (IngestModuleTemplate template : moduleTemplates) {
             if (template.isDataSourceIngestModuleTemplate()) {
-                PipelineModule module = new PipelineModule(template.createDataSourceIngestModule(), template.getModuleName());
+                PipelineModule module = new PipelineModule(template.createDataSourceIngestModule(), template.getModuleName(),
+                        template.getModuleFactory().getClass().getCanonicalName(), template.getDataSourceIngestModuleDependencies());
                 modules.add(module);
             }
         }
@@ -89,7 +108,8 @@ synchronized List<IngestModuleError> startUp() {
     }
 
     /**
-     * Runs a data source through the ingest modules in sequential order.
+     * Runs a data source through the ingest modules, in sequential order
+     * unless some of the modules have declared their dependencies.
      *
      * @param task A data source level ingest task containing a data source to
      *             be processed.
@@ -99,32 +119,17 @@ synchronized List<IngestModuleError> startUp() {
     synchronized List<IngestModuleError> process(DataSourceIngestTask task) {
         List<IngestModuleError> errors = new ArrayList<>();
         if (!this.job.isCancelled()) {
-            Content dataSource = task.getDataSource();
-            for (PipelineModule module : modules) {
-                try {
-                    this.currentModule = module;
-                    String displayName = NbBundle.getMessage(this.getClass(),
-                            "IngestJob.progress.dataSourceIngest.displayName",
-                            module.getDisplayName(), dataSource.getName());
-                    this.job.updateDataSourceIngestProgressBarDisplayName(displayName);
-                    this.job.switchDataSourceIngestProgressBarToIndeterminate();
-                    DataSourceIngestPipeline.ingestManager.setIngestTaskProgress(task, module.getDisplayName());
-                    logger.log(Level.INFO, "{0} analysis of {1} (jobId={2}) starting", new Object[]{module.getDisplayName(), this.job.getDataSource().getName(), this.job.getDataSource().getId()});
-                    module.process(dataSource, new DataSourceIngestModuleProgress(this.job));
-                    logger.log(Level.INFO, "{0} analysis of {1} (jobId={2}) finished", new Object[]{module.getDisplayName(), this.job.getDataSource().getName(), this.job.getDataSource().getId()});
-                } catch (Throwable ex) { // Catch-all exception firewall
-                    errors.add(new IngestModuleError(module.getDisplayName(), ex));
-                    String msg = ex.getMessage();
-                    // Jython run-time errors don't seem to have a message, but have details in toString.
-                    if (msg == null) {
-                        msg = ex.toString();
+            if (this.hasDeclaredDependencies()) {
+                errors.addAll(this.processConcurrently(task));
+            } else {
+                for (PipelineModule module : modules) {
+                    IngestModuleError error = this.runModule(task, module);
+                    if (null != error) {
+                        errors.add(error);
+                    }
+                    if (this.job.isCancelled()) {
+                        break;
                     }
-                    MessageNotifyUtil.Notify.error(module.getDisplayName() + " Error", msg);
-                }
-                if (this.job.isCancelled()) {
-                    break;
-                } else if (this.job.currentDataSourceIngestModuleIsCancelled()) {
-                    this.job.currentDataSourceIngestModuleCancellationCompleted(currentModule.getDisplayName());
                 }
             }
         }
@@ -134,7 +139,142 @@ synchronized List<IngestModuleError> process(DataSourceIngestTask task) {
     }
 
     /**
-     * Gets the currently running module.
+     * Queries whether or not any of the modules in this pipeline have declared
+     * their dependencies.
+     *
+     * @return True or false.
+     */
+    private boolean hasDeclaredDependencies() {
+        for (PipelineModule module : modules) {
+            if (null != module.getDependencies()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs a data source through the ingest modules, starting each module as
+     * soon as the modules it depends on have finished. A module that has not
+     * declared its dependencies depends on all of the modules that come before
+     * it in the pipeline. Dependencies on modules that come later in the
+     * pipeline, or that are not in the pipeline, are ignored.
+     *
+     * @param task A data source level ingest task containing a data source to
+     *             be processed.
+     *
+     * @return A list of processing errors, possible empty.
+     */
+    private List<IngestModuleError> processConcurrently(DataSourceIngestTask task) {
+        List<IngestModuleError> errors = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("IM-data-source-module-%d").build()); //NON-NLS
+        try {
+            List<CompletableFuture<Void>> moduleRuns = new ArrayList<>();
+            Map<String, CompletableFuture<Void>> moduleRunsByFactory = new HashMap<>();
+            for (PipelineModule module : modules) {
+                List<CompletableFuture<Void>> prerequisites = new ArrayList<>();
+                Set<String> dependencies = module.getDependencies();
+                if (null == dependencies) {
+                    prerequisites.addAll(moduleRuns);
+                } else {
+                    for (String dependency : dependencies) {
+                        CompletableFuture<Void> prerequisite = moduleRunsByFactory.get(dependency);
+                        if (null != prerequisite) {
+                            prerequisites.add(prerequisite);
+                        }
+                    }
+                }
+                CompletableFuture<Void> moduleRun = CompletableFuture.allOf(prerequisites.toArray(new CompletableFuture<?>[prerequisites.size()])).thenRunAsync(() -> {
+                    if (!this.job.isCancelled()) {
+                        IngestModuleError error = this.runModule(task, module);
+                        if (null != error) {
+                            errors.add(error);
+                        }
+                    }
+                }, executor);
+                moduleRuns.add(moduleRun);
+                moduleRunsByFactory.put(module.getFactoryClassName(), moduleRun);
+            }
+            CompletableFuture.allOf(moduleRuns.toArray(new CompletableFuture<?>[moduleRuns.size()])).join();
+        } finally {
+            executor.shutdown();
+        }
+        return new ArrayList<>(errors);
+    }
+
+    /**
+     * Runs a data source through a single ingest module.
+     *
+     * @param task   A data source level ingest task containing a data source
+     *               to be processed.
+     * @param module The module.
+     *
+     * @return The processing error, or null if there was no error.
+     */
+    private IngestModuleError runModule(DataSourceIngestTask task, PipelineModule module) {
+        IngestModuleError error = null;
+        Content dataSource = task.getDataSource();
+        // Only the module shown on the shared progress bar updates it, so
+        // concurrent modules don't contend for it or undo each other's mode.
+        DataSourceIngestModuleProgress progress = new DataSourceIngestModuleProgress(this.job, () -> this.currentModule == module);
+        this.moduleProgress.put(module, progress);
+        this.runningModules.add(module);
+        this.moduleOnThread.set(module);
+        IngestModuleMetricsRecorder metrics = this.job.getModuleMetricsRecorder();
+        long start = System.nanoTime();
+        try {
+            this.currentModule = module;
+            String displayName = NbBundle.getMessage(this.getClass(),
+                    "IngestJob.progress.dataSourceIngest.displayName",
+                    module.getDisplayName(), dataSource.getName());
+            this.job.updateDataSourceIngestProgressBarDisplayName(displayName);
+            this.job.switchDataSourceIngestProgressBarToIndeterminate();
+            DataSourceIngestPipeline.ingestManager.setIngestTaskProgress(task, module.getDisplayName());
+            logger.log(Level.INFO, "{0} analysis of {1} (jobId={2}) starting", new Object[]{module.getDisplayName(), this.job.getDataSource().getName(), this.job.getDataSource().getId()});
+            IngestModule.ProcessResult result = module.process(dataSource, progress);
+            metrics.record(module.getDisplayName(), System.nanoTime() - start, dataSource.getSize(), result == IngestModule.ProcessResult.ERROR);
+            logger.log(Level.INFO, "{0} analysis of {1} (jobId={2}) finished", new Object[]{module.getDisplayName(), this.job.getDataSource().getName(), this.job.getDataSource().getId()});
+        } catch (Throwable ex) { // Catch-all exception firewall
+            metrics.record(module.getDisplayName(), System.nanoTime() - start, dataSource.getSize(), true);
+            error = new IngestModuleError(module.getDisplayName(), ex);
+            String msg = ex.getMessage();
+            // Jython run-time errors don't seem to have a message, but have details in toString.
+            if (msg == null) {
+                msg = ex.toString();
+            }
+            MessageNotifyUtil.Notify.error(module.getDisplayName() + " Error", msg);
+        } finally {
+            this.moduleOnThread.remove();
+            this.runningModules.remove(module);
+            this.moduleProgress.remove(module);
+        }
+
+        /*
+         * If other modules are still running, show one of them on the progress
+         * bar again, with the progress it recorded while it was not shown.
+         */
+        if (!this.runningModules.isEmpty()) {
+            PipelineModule stillRunning = this.runningModules.get(this.runningModules.size() - 1);
+            this.currentModule = stillRunning;
+            this.job.updateDataSourceIngestProgressBarDisplayName(NbBundle.getMessage(this.getClass(),
+                    "IngestJob.progress.dataSourceIngest.displayName",
+                    stillRunning.getDisplayName(), dataSource.getName()));
+            DataSourceIngestModuleProgress stillRunningProgress = this.moduleProgress.get(stillRunning);
+            if (null != stillRunningProgress) {
+                stillRunningProgress.show();
+            }
+            DataSourceIngestPipeline.ingestManager.setIngestTaskProgress(task, stillRunning.getDisplayName());
+        }
+
+        if (!this.job.isCancelled() && module.isCancelled()) {
+            this.job.currentDataSourceIngestModuleCancellationCompleted(module.getDisplayName());
+        }
+        return error;
+    }
+
+    /**
+     * Gets the currently running module. If more than one module is running,
+     * this is the one most recently started.
      *
      * @return The module, possibly null if no module is currently running.
      */
@@ -142,6 +282,31 @@ PipelineModule getCurrentlyRunningModule() {
         return this.currentModule;
     }
 
+    /**
+     * Requests cancellation of the currently running module.
+     */
+    void cancelCurrentModule() {
+        PipelineModule module = this.currentModule;
+        if (null != module) {
+            module.cancel();
+        }
+    }
+
+    /**
+     * Queries whether or not cancellation of the currently running module has
+     * been requested. When called from a thread that is running a module, the
+     * query is about that module.
+     *
+     * @return True or false.
+     */
+    boolean currentModuleIsCancelled() {
+        PipelineModule module = this.moduleOnThread.get();
+        if (null == module) {
+            module = this.currentModule;
+        }
+        return null != module && module.isCancelled();
+    }
+
     /**
      * This class decorates a data source level ingest module with a display
      * name and a processing start time.
@@ -150,19 +315,29 @@ static class PipelineModule implements DataSourceIngestModule {
 
         private final DataSourceIngestModule module;
         private final String displayName;
+        private final String factoryClassName;
+        private final Set<String> dependencies;
         private volatile Date processingStartTime;
+        private volatile boolean cancelled;
 
         /**
          * Constructs an object that decorates a data source level ingest module
          * with a display name and a processing start time.
          *
-         * @param module      The data source level ingest module to be
-         *                    decorated.
-         * @param displayName The display name.
+         * @param module           The data source level ingest module to be
+         *                         decorated.
+         * @param displayName      The display name.
+         * @param factoryClassName The class name of the factory that created
+         *                         the module.
+         * @param dependencies     The class names of the factories of the
+         *                         modules the module depends on, or null if
+         *                         the module has not declared its dependencies.
          */
-        PipelineModule(DataSourceIngestModule module, String displayName) {
+        PipelineModule(DataSourceIngestModule module, String displayName, String factoryClassName, Set<String> dependencies) {
             this.module = module;
             this.displayName = displayName;
+            this.factoryClassName = factoryClassName;
+            this.dependencies = dependencies;
             this.processingStartTime = new Date();
         }
 
@@ -184,6 +359,44 @@ String getDisplayName() {
             return this.displayName;
         }
 
+        /**
+         * Gets the class name of the factory that created the decorated ingest
+         * module.
+         *
+         * @return The class name.
+         */
+        String getFactoryClassName() {
+            return this.factoryClassName;
+        }
+
+        /**
+         * Gets the class names of the factories of the modules the decorated
+         * ingest module depends on.
+         *
+         * @return The class names, or null if the module has not declared its
+         *         dependencies.
+         */
+        Set<String> getDependencies() {
+            return this.dependencies;
+        }
+
+        /**
+         * Requests cancellation of the decorated ingest module.
+         */
+        void cancel() {
+            this.cancelled = true;
+        }
+
+        /**
+         * Queries whether or not cancellation of the decorated ingest module
+         * has been requested.
+         *
+         * @return True or false.
+         */
+        boolean isCancelled() {
+            return this.cancelled;
+        }
+
         /**
          * Gets the time the decorated ingest module started processing the data
          * source.
@@ -0,0 +1,225 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.sleuthkit.autopsy.casemodule.Case;
+import org.sleuthkit.autopsy.core.UserPreferences;
+import org.sleuthkit.datamodel.AbstractFile;
+
+/**
+ * Caches the content of the files that are in the file ingest pipelines of a
+ * data source ingest job, so that the content of each file is read from the
+ * image only once no matter how many file ingest modules read it. A file is
+ * opened in the cache when it enters a pipeline and closed when it leaves.
+ * <p>
+ * Small files are held in off-heap buffers taken from a pool that is shared by
+ * all ingest jobs and limited by the file content cache memory budget user
+ * preference. Large files are held in spill files in the case temp directory.
+ * The file type, hash lookup, keyword search, EXIF and archive extraction
+ * modules read file content through the ingest job context, and so through
+ * the cache.
+ * <p>
+ * This class is thread-safe.
+ */
+final class FileContentCache {
+
+    /**
+     * The size of the pooled buffers, i.e., the largest file that is held in
+     * memory rather than in a spill file.
+     */
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The largest file that is held in a spill file. Larger files are read
+     * directly from the image.
+     */
+    static final long MAX_SPILL_FILE_SIZE = 1024L * 1024 * 1024;
+
+    private static final String SPILL_DIRECTORY_NAME = "IngestContentCache"; //NON-NLS
+    private static final ConcurrentLinkedQueue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger allocatedBuffers = new AtomicInteger(0);
+    private final ConcurrentHashMap<Long, CachedFileContent> openFiles = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final long jobId;
+
+    /**
+     * Constructs an object that caches the content of the files that are in
+     * the file ingest pipelines of a data source ingest job.
+     *
+     * @param jobId The identifier of the data source ingest job.
+     */
+    FileContentCache(long jobId) {
+        this.jobId = jobId;
+    }
+
+    /**
+     * Queries whether or not file content caching is enabled, i.e., whether
+     * the memory budget is greater than zero.
+     *
+     * @return True or false.
+     */
+    static boolean isEnabled() {
+        return UserPreferences.fileContentCacheSizeMegabytes() > 0;
+    }
+
+    /**
+     * Opens a file in the cache when it enters a file ingest pipeline. The
+     * content is not read until a module asks for it.
+     *
+     * @param file The file.
+     */
+    void open(AbstractFile file) {
+        if (isEnabled()) {
+            this.openFiles.putIfAbsent(file.getId(), new CachedFileContent(file, this));
+        }
+    }
+
+    /**
+     * Closes a file when it leaves a file ingest pipeline, releasing its
+     * cached content.
+     *
+     * @param file The file.
+     */
+    void close(AbstractFile file) {
+        CachedFileContent content = this.openFiles.remove(file.getId());
+        if (null != content) {
+            content.release();
+        }
+    }
+
+    /**
+     * Gets the content of a file for a module. If the file is not open in the
+     * cache, the content is read directly from the image.
+     *
+     * @param file The file.
+     *
+     * @return The content.
+     */
+    CachedFileContent get(AbstractFile file) {
+        CachedFileContent content = this.openFiles.get(file.getId());
+        if (null == content) {
+            content = new CachedFileContent(file, null);
+        }
+        if (content.isCached()) {
+            this.hits.incrementAndGet();
+        } else {
+            this.misses.incrementAndGet();
+        }
+        return content;
+    }
+
+    /**
+     * Gets the number of times a module got the content of a file that was
+     * already cached.
+     *
+     * @return The hit count.
+     */
+    long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * Gets the number of times a module got the content of a file that was not
+     * cached, either because no module had read it yet or because it could not
+     * be cached.
+     *
+     * @return The miss count.
+     */
+    long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Creates an empty spill file for the content of a file.
+     *
+     * @param file The file.
+     *
+     * @return The path of the spill file.
+     *
+     * @throws IOException if there is a problem creating the file.
+     */
+    Path createSpillFile(AbstractFile file) throws IOException {
+        Path spillDirectory = Paths.get(Case.getCurrentCase().getTempDirectory(), SPILL_DIRECTORY_NAME);
+        Files.createDirectories(spillDirectory);
+        return Files.createTempFile(spillDirectory, String.format("%d-%d-", this.jobId, file.getId()), ".bin"); //NON-NLS
+    }
+
+    /**
+     * Takes a buffer from the pool, allocating a new one if the pool is empty
+     * and the memory budget allows it.
+     *
+     * @return A cleared buffer of BUFFER_SIZE bytes, or null if the memory
+     *         budget is used up.
+     */
+    static ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (null != buffer) {
+            buffer.clear();
+            return buffer;
+        }
+        int maxBuffers = getMaxBuffers();
+        while (true) {
+            int allocated = allocatedBuffers.get();
+            if (allocated >= maxBuffers) {
+                return null;
+            }
+            if (allocatedBuffers.compareAndSet(allocated, allocated + 1)) {
+                return ByteBuffer.allocateDirect(BUFFER_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Returns a buffer to the pool. If the memory budget has been reduced
+     * since the buffer was allocated, the buffer is dropped instead.
+     *
+     * @param buffer The buffer.
+     */
+    static void releaseBuffer(ByteBuffer buffer) {
+        if (null == buffer) {
+            return;
+        }
+        if (allocatedBuffers.get() > getMaxBuffers()) {
+            allocatedBuffers.decrementAndGet();
+        } else {
+            freeBuffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Gets the number of pooled buffers allowed by the memory budget.
+     *
+     * @return The maximum number of buffers.
+     */
+    private static int getMaxBuffers() {
+        long budget = (long) UserPreferences.fileContentCacheSizeMegabytes() * 1024 * 1024;
+        return (int) Math.min(Integer.MAX_VALUE, budget / BUFFER_SIZE);
+    }
+
+}
@@ -116,12 +116,18 @@ synchronized List<IngestModuleError> process(FileIngestTask task) {
         List<IngestModuleError> errors = new ArrayList<>();
         if (!this.job.isCancelled()) {
             AbstractFile file = task.getFile();
+            FileContentCache contentCache = this.job.getFileContentCache();
+            IngestModuleMetricsRecorder metrics = this.job.getModuleMetricsRecorder();
+            contentCache.open(file);
             for (PipelineModule module : this.modules) {
+                long start = System.nanoTime();
                 try {
                     FileIngestPipeline.ingestManager.setIngestTaskProgress(task, module.getDisplayName());
                     this.job.setCurrentFileIngestModule(module.getDisplayName(), task.getFile().getName());
-                    module.process(file);
+                    IngestModule.ProcessResult result = module.process(file);
+                    metrics.record(module.getDisplayName(), System.nanoTime() - start, file.getSize(), result == IngestModule.ProcessResult.ERROR);
                 } catch (Throwable ex) { // Catch-all exception firewall
+                    metrics.record(module.getDisplayName(), System.nanoTime() - start, file.getSize(), true);
                     errors.add(new IngestModuleError(module.getDisplayName(), ex));
                     String msg = ex.getMessage();
                     // Jython run-time errors don't seem to have a message, but have details in toString.
@@ -134,6 +140,7 @@ synchronized List<IngestModuleError> process(FileIngestTask task) {
                     break;
                 }
             }
+            contentCache.close(file);
             file.close();
             if (!this.job.isCancelled()) {
                 IngestManager.getInstance().fireFileIngestDone(file);
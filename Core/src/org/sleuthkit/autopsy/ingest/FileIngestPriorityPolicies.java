@@ -0,0 +1,130 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import org.openide.util.Lookup;
+import org.sleuthkit.autopsy.core.UserPreferences;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.datamodel.AbstractFile;
+
+/**
+ * Finds file ingest priority policies by name and applies the policies of an
+ * ingest job to files.
+ */
+final class FileIngestPriorityPolicies {
+
+    private static final Logger logger = Logger.getLogger(FileIngestPriorityPolicies.class.getName());
+    static final String DEFAULT_POLICY_NAME = PathRulesPriorityPolicy.NAME;
+    private final List<FileIngestPriorityPolicy> policies;
+
+    /**
+     * Gets the built-in policies followed by the policies discovered with the
+     * NetBeans Lookup.
+     *
+     * @return The policies.
+     */
+    static List<FileIngestPriorityPolicy> getAvailablePolicies() {
+        List<FileIngestPriorityPolicy> available = new ArrayList<>();
+        available.add(new PathRulesPriorityPolicy());
+        available.add(new RecencyPriorityPolicy());
+        available.add(new FileSizePriorityPolicy());
+        available.add(new MimeHintPriorityPolicy());
+        available.addAll(Lookup.getDefault().lookupAll(FileIngestPriorityPolicy.class));
+        return available;
+    }
+
+    /**
+     * Constructs an object that applies a list of policies to files. If the
+     * list is empty, the policies selected in the user preferences are used.
+     * Unknown policy names are logged and skipped; if none of the names is
+     * known, the default policy is used.
+     *
+     * @param policyNames The names of the policies, most significant first.
+     */
+    FileIngestPriorityPolicies(List<String> policyNames) {
+        List<FileIngestPriorityPolicy> available = getAvailablePolicies();
+        List<FileIngestPriorityPolicy> selected = new ArrayList<>();
+        for (String name : policyNames.isEmpty() ? UserPreferences.fileIngestPriorityPolicyNames() : policyNames) {
+            FileIngestPriorityPolicy policy = find(available, name);
+            if (null != policy) {
+                selected.add(policy);
+            } else {
+                logger.log(Level.WARNING, "Unknown file ingest priority policy {0}", name); //NON-NLS
+            }
+        }
+        if (selected.isEmpty()) {
+            selected.add(find(available, DEFAULT_POLICY_NAME));
+        }
+        this.policies = Collections.unmodifiableList(selected);
+    }
+
+    /**
+     * Gets the priority of a file under each of the policies.
+     *
+     * @param file The file.
+     *
+     * @return The priorities, most significant first.
+     */
+    long[] getPriority(AbstractFile file) {
+        long[] priority = new long[this.policies.size()];
+        for (int i = 0; i < priority.length; ++i) {
+            try {
+                priority[i] = this.policies.get(i).getPriority(file);
+            } catch (RuntimeException ex) {
+                logger.log(Level.WARNING, String.format("Error getting the priority of %s from %s", file.getName(), this.policies.get(i).getName()), ex); //NON-NLS
+            }
+        }
+        return priority;
+    }
+
+    /**
+     * Compares two priorities. Higher priorities compare lower, so they come
+     * first in priority queues.
+     *
+     * @param p1 A priority.
+     * @param p2 Another priority.
+     *
+     * @return A negative integer, zero, or a positive integer as p1 comes
+     *         before, ties with or comes after p2.
+     */
+    static int compare(long[] p1, long[] p2) {
+        int length = Math.min(p1.length, p2.length);
+        for (int i = 0; i < length; ++i) {
+            int cmp = Long.compare(p2[i], p1[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private static FileIngestPriorityPolicy find(List<FileIngestPriorityPolicy> available, String name) {
+        for (FileIngestPriorityPolicy policy : available) {
+            if (policy.getName().equals(name)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import org.sleuthkit.datamodel.AbstractFile;
+
+/**
+ * Interface for policies that decide the order in which the files of a data
+ * source are handed to the file ingest modules. The policies of an ingest job
+ * are selected by name in its ingest job settings; when more than one is
+ * selected, the later policies break the ties of the earlier ones.
+ * <p>
+ * Besides the built-in policies, policies are discovered with the NetBeans
+ * Lookup, so a policy can be added by annotating an implementation with
+ * {@code @ServiceProvider(service = FileIngestPriorityPolicy.class)}.
+ * Implementations must be thread-safe.
+ */
+public interface FileIngestPriorityPolicy {
+
+    /**
+     * Gets the unique name of the policy, which is stored in ingest job
+     * settings.
+     *
+     * @return The name.
+     */
+    String getName();
+
+    /**
+     * Gets the display name of the policy.
+     *
+     * @return The display name.
+     */
+    String getDisplayName();
+
+    /**
+     * Gets the priority of a file or directory. Files with higher priorities
+     * are analyzed first, and the contents of directories with higher
+     * priorities are expanded first. This method is called once for every
+     * file of a data source, so it must be fast and must not read file
+     * content.
+     *
+     * @param file The file.
+     *
+     * @return The priority.
+     */
+    long getPriority(AbstractFile file);
+
+}
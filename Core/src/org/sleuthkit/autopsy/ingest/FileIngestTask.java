@@ -28,6 +28,7 @@
 final class FileIngestTask extends IngestTask {
 
     private final AbstractFile file;
+    private volatile long[] priority;
 
     FileIngestTask(DataSourceIngestJob job, AbstractFile file) {
         super(job);
@@ -38,6 +39,21 @@ AbstractFile getFile() {
         return file;
     }
 
+    /**
+     * Gets the priority of the file under the file ingest priority policies of
+     * the ingest job, computing it on first use.
+     *
+     * @return The priority, most significant policy first.
+     */
+    long[] getPriority() {
+        long[] filePriority = this.priority;
+        if (null == filePriority) {
+            filePriority = getIngestJob().getFilePriorityPolicies().getPriority(file);
+            this.priority = filePriority;
+        }
+        return filePriority;
+    }
+
     @Override
     void execute(long threadId) throws InterruptedException {
         super.setThreadId(threadId);
@@ -0,0 +1,171 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+
+/**
+ * Periodically adjusts the number of file ingest threads to the ingest task
+ * backlog and the saturation of the machine, one thread at a time:
+ * <ul>
+ * <li>A thread is added when there is a backlog of file ingest tasks, no file
+ * ingest thread is idle and the CPUs have headroom.</li>
+ * <li>A thread is retired when the CPUs are saturated.</li>
+ * <li>A thread that was added is retired again if file ingest throughput did
+ * not improve, which is the case when the threads are waiting on the same
+ * saturated disk. No thread is added for a while after such a roll back.</li>
+ * </ul>
+ * The tuner leaves the pool alone while no ingest jobs are running.
+ */
+final class FileIngestThreadPoolTuner {
+
+    private static final Logger logger = Logger.getLogger(FileIngestThreadPoolTuner.class.getName());
+    private static final long SAMPLE_INTERVAL_SECS = 10;
+    private static final double CPU_HEADROOM_THRESHOLD = 0.85;
+    private static final double CPU_SATURATION_THRESHOLD = 0.95;
+    private static final double MIN_THROUGHPUT_GAIN = 0.05;
+    private static final int SAMPLES_TO_HOLD_AFTER_ROLL_BACK = 6;
+    private final IngestManager ingestManager;
+    private ScheduledExecutorService sampler;
+    private long lastCompletedCount;
+    private long lastThroughput;
+    private boolean addedThread;
+    private int samplesToHold;
+
+    /**
+     * Constructs an object that periodically adjusts the number of file ingest
+     * threads of the ingest manager.
+     *
+     * @param ingestManager The ingest manager.
+     */
+    FileIngestThreadPoolTuner(IngestManager ingestManager) {
+        this.ingestManager = ingestManager;
+        this.lastThroughput = -1;
+    }
+
+    /**
+     * Starts tuning, if not already started.
+     */
+    synchronized void start() {
+        if (null != this.sampler) {
+            return;
+        }
+        this.lastCompletedCount = this.ingestManager.getFileIngestTasksCompletedCount();
+        this.lastThroughput = -1;
+        this.addedThread = false;
+        this.samplesToHold = 0;
+        this.sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("IM-file-ingest-tuner-%d").build()); //NON-NLS
+        this.sampler.scheduleWithFixedDelay(this::sample, SAMPLE_INTERVAL_SECS, SAMPLE_INTERVAL_SECS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops tuning. The number of file ingest threads is left as it is.
+     */
+    synchronized void stop() {
+        if (null != this.sampler) {
+            this.sampler.shutdownNow();
+            this.sampler = null;
+        }
+    }
+
+    /**
+     * Queries whether or not tuning is started.
+     *
+     * @return True or false.
+     */
+    synchronized boolean isRunning() {
+        return null != this.sampler;
+    }
+
+    /**
+     * Takes a sample of the ingest task backlog, file ingest throughput and
+     * CPU load, and adds or retires a file ingest thread if called for.
+     */
+    private synchronized void sample() {
+        try {
+            long completedCount = this.ingestManager.getFileIngestTasksCompletedCount();
+            long throughput = completedCount - this.lastCompletedCount;
+            this.lastCompletedCount = completedCount;
+
+            List<DataSourceIngestJob.Snapshot> jobSnapshots = this.ingestManager.getIngestJobSnapshots();
+            if (jobSnapshots.isEmpty()) {
+                this.lastThroughput = -1;
+                this.addedThread = false;
+                return;
+            }
+            long backlog = 0;
+            for (DataSourceIngestJob.Snapshot snapshot : jobSnapshots) {
+                backlog += snapshot.getRootQueueSize() + snapshot.getDirQueueSize() + snapshot.getFileQueueSize();
+            }
+            int idleThreads = IngestTasksScheduler.getInstance().getIdleFileIngestThreadCount();
+            int threads = this.ingestManager.getNumberOfFileIngestThreads();
+            double cpuLoad = getCpuLoad();
+
+            if (this.samplesToHold > 0) {
+                --this.samplesToHold;
+            }
+            if (cpuLoad > CPU_SATURATION_THRESHOLD && threads > IngestManager.MIN_NUMBER_OF_FILE_INGEST_THREADS) {
+                this.resize(threads - 1, String.format("CPU load %.2f", cpuLoad)); //NON-NLS
+                this.addedThread = false;
+            } else if (this.addedThread && this.lastThroughput >= 0 && throughput <= this.lastThroughput * (1 + MIN_THROUGHPUT_GAIN)) {
+                this.resize(threads - 1, String.format("throughput %d -> %d tasks per sample", this.lastThroughput, throughput)); //NON-NLS
+                this.addedThread = false;
+                this.samplesToHold = SAMPLES_TO_HOLD_AFTER_ROLL_BACK;
+            } else if (backlog > threads && idleThreads == 0 && cpuLoad < CPU_HEADROOM_THRESHOLD
+                    && threads < IngestManager.MAX_NUMBER_OF_FILE_INGEST_THREADS && this.samplesToHold == 0) {
+                this.resize(threads + 1, String.format("backlog %d, CPU load %.2f", backlog, cpuLoad)); //NON-NLS
+                this.addedThread = true;
+            } else {
+                this.addedThread = false;
+            }
+            this.lastThroughput = throughput;
+        } catch (RuntimeException ex) {
+            logger.log(Level.SEVERE, "Error tuning the file ingest thread pool", ex); //NON-NLS
+        }
+    }
+
+    private void resize(int numberOfThreads, String reason) {
+        logger.log(Level.INFO, "Auto-tuning file ingest threads to {0} ({1})", new Object[]{numberOfThreads, reason}); //NON-NLS
+        this.ingestManager.setNumberOfFileIngestThreads(numberOfThreads);
+    }
+
+    /**
+     * Gets the recent CPU load of the machine.
+     *
+     * @return The load, from 0.0 to 1.0, or a negative value if it is not
+     *         available.
+     */
+    private static double getCpuLoad() {
+        OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) osBean).getSystemCpuLoad();
+        }
+        double loadAverage = osBean.getSystemLoadAverage();
+        return (loadAverage < 0) ? loadAverage : loadAverage / osBean.getAvailableProcessors();
+    }
+
+}
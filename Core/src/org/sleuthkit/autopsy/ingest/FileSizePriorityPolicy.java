@@ -0,0 +1,47 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import org.openide.util.NbBundle;
+import org.sleuthkit.datamodel.AbstractFile;
+
+/**
+ * A file ingest priority policy that analyzes the smallest files first, so
+ * that as many files as possible are analyzed early in the job.
+ */
+final class FileSizePriorityPolicy implements FileIngestPriorityPolicy {
+
+    static final String NAME = "FileSize"; //NON-NLS
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return NbBundle.getMessage(this.getClass(), "FileSizePriorityPolicy.displayName");
+    }
+
+    @Override
+    public long getPriority(AbstractFile file) {
+        return -file.getSize();
+    }
+
+}
@@ -324,6 +324,17 @@ public List<String> getCancelledDataSourceIngestModules() {
                 return snapshot.getCancelledDataSourceIngestModules();
             }
 
+            /**
+             * Gets the timing and throughput metrics of the ingest modules
+             * that have processed the data source, sorted by descending total
+             * time.
+             *
+             * @return The metrics, possibly empty.
+             */
+            public List<IngestModuleMetrics> getModuleMetrics() {
+                return snapshot.getModuleMetrics();
+            }
+
         }
 
         /**
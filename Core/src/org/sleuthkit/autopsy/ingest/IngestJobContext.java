@@ -111,6 +111,21 @@ public void scheduleFiles(List<AbstractFile> files) {
         this.addFilesToJob(files);
     }
 
+    /**
+     * Gets the content of a file that is being processed by the file ingest
+     * modules of the ingest job associated with this context. If the file
+     * content cache is enabled, the content is read from the image once and
+     * shared by all of the modules in the pipeline that read it through this
+     * method, so modules should prefer this to reading the file directly.
+     *
+     * @param file The file.
+     *
+     * @return The content of the file.
+     */
+    public CachedFileContent getFileContent(AbstractFile file) {
+        return this.ingestJob.getFileContentCache().get(file);
+    }
+
     /**
      * Adds one or more files, i.e., extracted or carved files, to the ingest
      * job associated with this context.
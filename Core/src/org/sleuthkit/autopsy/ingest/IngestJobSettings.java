@@ -48,6 +48,7 @@ public class IngestJobSettings {
     private static final String DISABLED_MODULES_KEY = "Disabled_Ingest_Modules"; //NON-NLS
     private static final String PARSE_UNALLOC_SPACE_KEY = "Process_Unallocated_Space"; //NON-NLS    
     private static final String PROCESS_UNALLOC_SPACE_DEFAULT = "true"; //NON-NLS
+    private static final String FILE_PRIORITY_POLICIES_KEY = "File_Priority_Policies"; //NON-NLS
     private static final String MODULE_SETTINGS_FOLDER = "IngestModuleSettings"; //NON-NLS
     private static final String MODULE_SETTINGS_FOLDER_PATH = Paths.get(PlatformUtil.getUserConfigDirectory(), IngestJobSettings.MODULE_SETTINGS_FOLDER).toAbsolutePath().toString();
     private static final String MODULE_SETTINGS_FILE_EXT = ".settings"; //NON-NLS
@@ -58,6 +59,7 @@ public class IngestJobSettings {
     private static final CharSequence pythonModuleSettingsPrefixCS = "org.python.proxies.".subSequence(0, "org.python.proxies.".length() - 1);
     private final List<IngestModuleTemplate> moduleTemplates;
     private boolean processUnallocatedSpace;
+    private final List<String> filePriorityPolicyNames;
     private final List<String> warnings;
 
     // Determines which modeules to run
@@ -81,6 +83,7 @@ public IngestJobSettings(String context) {
         this.ingestType = IngestType.ALL_MODULES;
         this.moduleTemplates = new ArrayList<>();
         this.processUnallocatedSpace = Boolean.parseBoolean(IngestJobSettings.PROCESS_UNALLOC_SPACE_DEFAULT);
+        this.filePriorityPolicyNames = new ArrayList<>();
         this.warnings = new ArrayList<>();
         this.createSavedModuleSettingsFolder();
         this.load();
@@ -103,6 +106,7 @@ public IngestJobSettings(String context, IngestType ingestType) {
 
         this.moduleTemplates = new ArrayList<>();
         this.processUnallocatedSpace = Boolean.parseBoolean(IngestJobSettings.PROCESS_UNALLOC_SPACE_DEFAULT);
+        this.filePriorityPolicyNames = new ArrayList<>();
         this.warnings = new ArrayList<>();
         this.createSavedModuleSettingsFolder();
         this.load();
@@ -181,6 +185,40 @@ void setProcessUnallocatedSpace(boolean processUnallocatedSpace) {
         this.processUnallocatedSpace = processUnallocatedSpace;
     }
 
+    /**
+     * Gets the names of the file ingest priority policies part of these ingest
+     * job settings, most significant first. If there are none, ingest jobs use
+     * the policies selected in the user preferences (see
+     * UserPreferences.fileIngestPriorityPolicyNames), or the default policy.
+     *
+     * @return The policy names, possibly empty.
+     */
+    public List<String> getFilePriorityPolicyNames() {
+        return Collections.unmodifiableList(this.filePriorityPolicyNames);
+    }
+
+    /**
+     * Sets the file ingest priority policies for these ingest job settings.
+     * The first policy decides the order in which files are analyzed; each
+     * following policy breaks the ties of the ones before it.
+     *
+     * @param policyNames The policy names, most significant first.
+     */
+    public void setFilePriorityPolicyNames(List<String> policyNames) {
+        this.filePriorityPolicyNames.clear();
+        this.filePriorityPolicyNames.addAll(policyNames);
+    }
+
+    /**
+     * Gets the file ingest priority policies that can be selected in ingest
+     * job settings.
+     *
+     * @return The policies.
+     */
+    public static List<FileIngestPriorityPolicy> getAvailableFilePriorityPolicies() {
+        return FileIngestPriorityPolicies.getAvailablePolicies();
+    }
+
     /**
      * Returns the path to the ingest module settings folder.
      *
@@ -295,6 +333,22 @@ private void load() {
             ModuleSettings.setConfigSetting(this.context, IngestJobSettings.PARSE_UNALLOC_SPACE_KEY, IngestJobSettings.PROCESS_UNALLOC_SPACE_DEFAULT);
         }
         this.processUnallocatedSpace = Boolean.parseBoolean(ModuleSettings.getConfigSetting(this.context, IngestJobSettings.PARSE_UNALLOC_SPACE_KEY));
+
+        // Get the file priority policies setting. If the setting does not
+        // exist yet, leave it empty so that the policies in the user
+        // preferences are used.
+        if (ModuleSettings.settingExists(this.context, IngestJobSettings.FILE_PRIORITY_POLICIES_KEY) == false) {
+            ModuleSettings.setConfigSetting(this.context, IngestJobSettings.FILE_PRIORITY_POLICIES_KEY, "");
+        }
+        this.filePriorityPolicyNames.clear();
+        String policyNames = ModuleSettings.getConfigSetting(this.context, IngestJobSettings.FILE_PRIORITY_POLICIES_KEY);
+        if (null != policyNames) {
+            for (String policyName : policyNames.split(",")) {
+                if (!policyName.trim().isEmpty()) {
+                    this.filePriorityPolicyNames.add(policyName.trim());
+                }
+            }
+        }
     }
 
     /**
@@ -429,6 +483,12 @@ private void store() {
          */
         String processUnalloc = Boolean.toString(this.processUnallocatedSpace);
         ModuleSettings.setConfigSetting(this.context, PARSE_UNALLOC_SPACE_KEY, processUnalloc);
+
+        /**
+         * Save the file priority policies setting. The order of the policies
+         * matters, so they are not saved as a set.
+         */
+        ModuleSettings.setConfigSetting(this.context, FILE_PRIORITY_POLICIES_KEY, String.join(",", this.filePriorityPolicyNames));
     }
 
     /**
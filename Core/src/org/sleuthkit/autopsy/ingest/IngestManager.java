@@ -22,9 +22,11 @@
 import java.awt.EventQueue;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -32,6 +34,7 @@
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -96,16 +99,40 @@ public class IngestManager {
      * Ingest jobs use an ingest task scheduler to break themselves down into
      * data source level and file level tasks. The ingest scheduler puts these
      * ingest tasks into queues for execution on ingest manager pool threads by
-     * ingest task executers. There is a single data source level ingest thread
-     * and a user configurable number of file level ingest threads.
+     * ingest task executers. There are user configurable numbers of data
+     * source level and file level ingest threads.
      */
+    private static final int MIN_NUMBER_OF_DATA_SOURCE_INGEST_THREADS = 1;
+    private static final int MAX_NUMBER_OF_DATA_SOURCE_INGEST_THREADS = 8;
+    private static final int DEFAULT_NUMBER_OF_DATA_SOURCE_INGEST_THREADS = 1;
+    private int numberOfDataSourceIngestThreads;
     private final ExecutorService dataSourceIngestThreadPool;
-    private static final int MIN_NUMBER_OF_FILE_INGEST_THREADS = 1;
-    private static final int MAX_NUMBER_OF_FILE_INGEST_THREADS = 16;
+    static final int MIN_NUMBER_OF_FILE_INGEST_THREADS = 1;
+    static final int MAX_NUMBER_OF_FILE_INGEST_THREADS = 16;
     private static final int DEFAULT_NUMBER_OF_FILE_INGEST_THREADS = 2;
-    private int numberOfFileIngestThreads;
+    private volatile int numberOfFileIngestThreads;
     private final ExecutorService fileIngestThreadPool;
 
+    /**
+     * The file ingest thread pool can be resized while ingest jobs are
+     * running. Workers are added by submitting new ingest task executers to
+     * the pool and retired by asking the most recently started executers to
+     * exit once they finish their current tasks. The workers deque is guarded
+     * by the file ingest threads lock.
+     */
+    private final Object fileIngestThreadsLock;
+    private final Deque<ExecuteIngestJobsTask> fileIngestWorkers;
+    private final AtomicLong fileIngestTasksCompleted;
+    private final FileIngestThreadPoolTuner fileIngestThreadPoolTuner;
+
+    /**
+     * The workers of the staged file ingest pipelines of all of the running
+     * ingest jobs share one pool of threads, so the number of threads does not
+     * grow with the number of jobs, stages and module instances.
+     */
+    private static final int NUMBER_OF_STAGED_FILE_INGEST_THREADS = Math.max(MAX_NUMBER_OF_FILE_INGEST_THREADS, Runtime.getRuntime().availableProcessors());
+    private final ExecutorService stagedFileIngestThreadPool;
+
     private static final String JOB_EVENT_CHANNEL_NAME = "%s-Ingest-Job-Events";
     private static final String MODULE_EVENT_CHANNEL_NAME = "%s-Ingest-Module-Events";
     private static final Set<String> jobEventNames = Stream.of(IngestJobEvent.values())
@@ -261,7 +288,6 @@ private IngestManager() {
         this.eventPublishingExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("IM-ingest-events-%d").build()); //NON-NLS
         this.jobEventPublisher = new AutopsyEventPublisher();
         this.moduleEventPublisher = new AutopsyEventPublisher();
-        this.dataSourceIngestThreadPool = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("IM-data-source-ingest-%d").build()); //NON-NLS
         this.startIngestJobsThreadPool = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("IM-start-ingest-jobs-%d").build()); //NON-NLS
         this.nextThreadId = new AtomicLong(0L);
         this.jobsById = new ConcurrentHashMap<>();
@@ -270,16 +296,34 @@ private IngestManager() {
         this.servicesMonitor = ServicesMonitor.getInstance();
         subscribeToServiceMonitorEvents();
 
-        this.startDataSourceIngestThread();
+        numberOfDataSourceIngestThreads = UserPreferences.numberOfDataSourceIngestThreads();
+        if ((numberOfDataSourceIngestThreads < MIN_NUMBER_OF_DATA_SOURCE_INGEST_THREADS) || (numberOfDataSourceIngestThreads > MAX_NUMBER_OF_DATA_SOURCE_INGEST_THREADS)) {
+            numberOfDataSourceIngestThreads = DEFAULT_NUMBER_OF_DATA_SOURCE_INGEST_THREADS;
+            UserPreferences.setNumberOfDataSourceIngestThreads(numberOfDataSourceIngestThreads);
+        }
+        dataSourceIngestThreadPool = Executors.newFixedThreadPool(numberOfDataSourceIngestThreads, new ThreadFactoryBuilder().setNameFormat("IM-data-source-ingest-%d").build()); //NON-NLS
+        for (int i = 0; i < numberOfDataSourceIngestThreads; ++i) {
+            startDataSourceIngestThread();
+        }
 
         numberOfFileIngestThreads = UserPreferences.numberOfFileIngestThreads();
         if ((numberOfFileIngestThreads < MIN_NUMBER_OF_FILE_INGEST_THREADS) || (numberOfFileIngestThreads > MAX_NUMBER_OF_FILE_INGEST_THREADS)) {
             numberOfFileIngestThreads = DEFAULT_NUMBER_OF_FILE_INGEST_THREADS;
             UserPreferences.setNumberOfFileIngestThreads(numberOfFileIngestThreads);
         }
-        fileIngestThreadPool = Executors.newFixedThreadPool(numberOfFileIngestThreads, new ThreadFactoryBuilder().setNameFormat("IM-file-ingest-%d").build()); //NON-NLS
-        for (int i = 0; i < numberOfFileIngestThreads; ++i) {
-            startFileIngestThread();
+        fileIngestThreadPool = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("IM-file-ingest-%d").build()); //NON-NLS
+        fileIngestThreadsLock = new Object();
+        fileIngestWorkers = new ArrayDeque<>();
+        fileIngestTasksCompleted = new AtomicLong(0L);
+        synchronized (fileIngestThreadsLock) {
+            for (int i = 0; i < numberOfFileIngestThreads; ++i) {
+                startFileIngestThread();
+            }
+        }
+        stagedFileIngestThreadPool = Executors.newFixedThreadPool(NUMBER_OF_STAGED_FILE_INGEST_THREADS, new ThreadFactoryBuilder().setNameFormat("IM-file-ingest-stage-%d").build()); //NON-NLS
+        fileIngestThreadPoolTuner = new FileIngestThreadPoolTuner(this);
+        if (UserPreferences.fileIngestThreadAutoTuningEnabled()) {
+            fileIngestThreadPoolTuner.start();
         }
     }
 
@@ -295,12 +339,21 @@ private void startDataSourceIngestThread() {
 
     /**
      * Submits a ingest task executer Callable to the file level ingest thread
-     * pool.
+     * pool. The caller must hold the file ingest threads lock.
      */
     private void startFileIngestThread() {
         long threadId = nextThreadId.incrementAndGet();
-        fileIngestThreadPool.submit(new ExecuteIngestJobsTask(threadId, IngestTasksScheduler.getInstance().getFileIngestTaskQueue()));
+        ExecuteIngestJobsTask worker = new ExecuteIngestJobsTask(threadId, IngestTasksScheduler.getInstance().getFileIngestTaskQueue());
+        fileIngestWorkers.push(worker);
         ingestThreadActivitySnapshots.put(threadId, new IngestThreadActivitySnapshot(threadId));
+        fileIngestThreadPool.submit(() -> {
+            try {
+                worker.run();
+            } finally {
+                IngestTasksScheduler.getInstance().releaseFileIngestThread();
+                ingestThreadActivitySnapshots.remove(threadId);
+            }
+        });
     }
 
     /**
@@ -457,6 +510,16 @@ private void clearIngestMessageBox() {
         }
     }
 
+    /**
+     * Gets the number of data source ingest threads the ingest manager will use
+     * to do ingest jobs.
+     *
+     * @return The number of data source ingest threads.
+     */
+    public int getNumberOfDataSourceIngestThreads() {
+        return numberOfDataSourceIngestThreads;
+    }
+
     /**
      * Gets the number of file ingest threads the ingest manager will use to do
      * ingest jobs.
@@ -467,6 +530,75 @@ public int getNumberOfFileIngestThreads() {
         return numberOfFileIngestThreads;
     }
 
+    /**
+     * Resizes the file ingest thread pool without interrupting running ingest
+     * jobs. New threads start taking file ingest tasks immediately, and
+     * running jobs add file ingest pipelines (or staged pipeline workers) for
+     * them as they are needed. Threads that are retired finish the file they
+     * are working on first, and any file ingest tasks they have queued are
+     * handed over to the remaining threads; running jobs shut the extra
+     * pipelines down as they are handed back. The user preference is not
+     * changed.
+     *
+     * @param numberOfThreads The new number of file ingest threads, clamped to
+     *                        the supported range.
+     */
+    public void setNumberOfFileIngestThreads(int numberOfThreads) {
+        int newNumberOfThreads = Math.max(MIN_NUMBER_OF_FILE_INGEST_THREADS, Math.min(MAX_NUMBER_OF_FILE_INGEST_THREADS, numberOfThreads));
+        synchronized (fileIngestThreadsLock) {
+            if (newNumberOfThreads == numberOfFileIngestThreads) {
+                return;
+            }
+            logger.log(Level.INFO, "Resizing file ingest thread pool from {0} to {1} threads", new Object[]{numberOfFileIngestThreads, newNumberOfThreads}); //NON-NLS
+            // Jobs size their pipelines by this number, so it is set before
+            // the new threads ask for pipelines.
+            numberOfFileIngestThreads = newNumberOfThreads;
+            while (fileIngestWorkers.size() < newNumberOfThreads) {
+                startFileIngestThread();
+            }
+            while (fileIngestWorkers.size() > newNumberOfThreads) {
+                fileIngestWorkers.pop().retire();
+            }
+        }
+    }
+
+    /**
+     * Turns automatic tuning of the number of file ingest threads on or off.
+     * While it is on, the number of threads is adjusted to the ingest task
+     * backlog and to CPU saturation. When it is turned off, the number of
+     * threads goes back to the user preference.
+     *
+     * @param enabled True to turn auto-tuning on, false to turn it off.
+     */
+    public void setFileIngestThreadAutoTuningEnabled(boolean enabled) {
+        if (enabled) {
+            fileIngestThreadPoolTuner.start();
+        } else {
+            fileIngestThreadPoolTuner.stop();
+            setNumberOfFileIngestThreads(UserPreferences.numberOfFileIngestThreads());
+        }
+    }
+
+    /**
+     * Queries whether or not the number of file ingest threads is being tuned
+     * automatically.
+     *
+     * @return True or false.
+     */
+    public boolean isFileIngestThreadAutoTuningEnabled() {
+        return fileIngestThreadPoolTuner.isRunning();
+    }
+
+    /**
+     * Gets the number of file ingest tasks completed by the file ingest
+     * threads since the application started.
+     *
+     * @return The completed task count.
+     */
+    long getFileIngestTasksCompletedCount() {
+        return fileIngestTasksCompleted.get();
+    }
+
     /**
      * Queues an ingest job that will process a collection of data sources. The
      * job will be started on a worker thread.
@@ -836,7 +968,9 @@ void setIngestTaskProgress(FileIngestTask task, String ingestModuleDisplayName)
         IngestThreadActivitySnapshot newSnap = new IngestThreadActivitySnapshot(task.getThreadId(), task.getIngestJob().getId(), ingestModuleDisplayName, task.getDataSource(), task.getFile());
         ingestThreadActivitySnapshots.put(task.getThreadId(), newSnap);
 
-        incrementModuleRunTime(prevSnap.getActivity(), newSnap.getStartTime().getTime() - prevSnap.getStartTime().getTime());
+        if (null != prevSnap) {
+            incrementModuleRunTime(prevSnap.getActivity(), newSnap.getStartTime().getTime() - prevSnap.getStartTime().getTime());
+        }
     }
 
     /**
@@ -857,16 +991,82 @@ void setIngestTaskProgressCompleted(FileIngestTask task) {
         IngestThreadActivitySnapshot prevSnap = ingestThreadActivitySnapshots.get(task.getThreadId());
         IngestThreadActivitySnapshot newSnap = new IngestThreadActivitySnapshot(task.getThreadId());
         ingestThreadActivitySnapshots.put(task.getThreadId(), newSnap);
-        incrementModuleRunTime(prevSnap.getActivity(), newSnap.getStartTime().getTime() - prevSnap.getStartTime().getTime());
+        if (null != prevSnap) {
+            incrementModuleRunTime(prevSnap.getActivity(), newSnap.getStartTime().getTime() - prevSnap.getStartTime().getTime());
+        }
+        fileIngestTasksCompleted.incrementAndGet();
+    }
+
+    /**
+     * Adds an idle activity snapshot for a thread that works on ingest tasks
+     * but is not an ingest thread of this manager, e.g., a staged file ingest
+     * pipeline worker.
+     *
+     * @return The id to use for the thread in the activity snapshots.
+     */
+    long addIngestThreadActivitySnapshot() {
+        long threadId = nextThreadId.incrementAndGet();
+        ingestThreadActivitySnapshots.put(threadId, new IngestThreadActivitySnapshot(threadId));
+        return threadId;
+    }
+
+    /**
+     * Removes the activity snapshot for a thread added with
+     * addIngestThreadActivitySnapshot.
+     *
+     * @param threadId The id of the thread in the activity snapshots.
+     */
+    void removeIngestThreadActivitySnapshot(long threadId) {
+        ingestThreadActivitySnapshots.remove(threadId);
+    }
+
+    /**
+     * Called each time a staged file ingest pipeline worker starts a module on
+     * a file. The worker records the module run time itself.
+     *
+     * @param threadId                The id of the worker in the activity
+     *                                snapshots.
+     * @param task                    The file ingest task.
+     * @param ingestModuleDisplayName The display name of the module.
+     */
+    void setIngestThreadActivity(long threadId, FileIngestTask task, String ingestModuleDisplayName) {
+        ingestThreadActivitySnapshots.put(threadId, new IngestThreadActivitySnapshot(threadId, task.getIngestJob().getId(), ingestModuleDisplayName, task.getDataSource(), task.getFile()));
+    }
+
+    /**
+     * Called each time a staged file ingest pipeline worker finishes a module
+     * on a file.
+     *
+     * @param threadId The id of the worker in the activity snapshots.
+     */
+    void setIngestThreadIdle(long threadId) {
+        ingestThreadActivitySnapshots.put(threadId, new IngestThreadActivitySnapshot(threadId));
     }
 
     /**
-     * Internal method to update the times associated with each module.
+     * Gets the pool of threads shared by the workers of the staged file ingest
+     * pipelines.
+     *
+     * @return The thread pool.
+     */
+    Executor getStagedFileIngestThreadPool() {
+        return stagedFileIngestThreadPool;
+    }
+
+    /**
+     * Called when a staged file ingest pipeline is complete for a given file.
+     */
+    void stagedFileIngestTaskCompleted() {
+        fileIngestTasksCompleted.incrementAndGet();
+    }
+
+    /**
+     * Updates the times associated with each module.
      *
      * @param moduleName
      * @param duration
      */
-    private void incrementModuleRunTime(String moduleName, Long duration) {
+    void incrementModuleRunTime(String moduleName, Long duration) {
         if (moduleName.equals("IDLE")) { //NON-NLS
             return;
         }
@@ -988,17 +1188,54 @@ private final class ExecuteIngestJobsTask implements Runnable {
 
         private final long threadId;
         private final IngestTaskQueue tasks;
+        private Thread thread;
+        private boolean waitingForTask;
+        private boolean retired;
 
         ExecuteIngestJobsTask(long threadId, IngestTaskQueue tasks) {
             this.threadId = threadId;
             this.tasks = tasks;
         }
 
+        /**
+         * Asks this executer to exit. If it is waiting for a task it is
+         * interrupted, otherwise it exits when its current task is done.
+         */
+        synchronized void retire() {
+            retired = true;
+            if (waitingForTask && null != thread) {
+                thread.interrupt();
+            }
+        }
+
         @Override
         public void run() {
+            synchronized (this) {
+                thread = Thread.currentThread();
+            }
             while (true) {
+                synchronized (this) {
+                    if (retired) {
+                        break;
+                    }
+                    waitingForTask = true;
+                }
+                IngestTask task;
+                try {
+                    task = tasks.getNextTask(); // Blocks.
+                } catch (InterruptedException ex) {
+                    break;
+                } finally {
+                    synchronized (this) {
+                        waitingForTask = false;
+                        if (retired) {
+                            // A retirement interrupt that arrived just after
+                            // a task was taken must not disturb the task.
+                            Thread.interrupted();
+                        }
+                    }
+                }
                 try {
-                    IngestTask task = tasks.getNextTask(); // Blocks.
                     task.execute(threadId);
                 } catch (InterruptedException ex) {
                     break;
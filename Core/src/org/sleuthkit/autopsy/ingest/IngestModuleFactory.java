@@ -18,6 +18,8 @@
  */
 package org.sleuthkit.autopsy.ingest;
 
+import java.util.Set;
+
 /**
  * An interface that must be implemented by all providers of Autopsy ingest
  * modules. An ingest module factory is used to create instances of a type of
@@ -240,4 +242,58 @@ public interface IngestModuleFactory {
      * @return A file ingest module instance.
      */
     FileIngestModule createFileIngestModule(IngestModuleIngestJobSettings settings);
+
+    /**
+     * Queries the factory to determine which system resource most limits the
+     * throughput of the file ingest modules it creates. When file ingest is
+     * done with a staged pipeline, the ingest framework uses this to decide
+     * how many instances of the module to run concurrently. Factories that do
+     * not override this method get the IO_BOUND workload.
+     *
+     * @return The workload of the file ingest modules created by the factory.
+     */
+    default FileIngestModuleWorkload getFileIngestModuleWorkload() {
+        return FileIngestModuleWorkload.IO_BOUND;
+    }
+
+    /**
+     * Queries the factory for the data source ingest modules that the data
+     * source ingest modules it creates depend on, i.e., the modules that must
+     * finish processing a data source before a module created by this factory
+     * starts. The ingest framework runs a data source ingest module as soon as
+     * the modules it depends on are finished, so modules that depend on
+     * nothing can run concurrently with other modules.
+     * <p>
+     * Factories that do not override this method get null, which means the
+     * module depends on all of the data source ingest modules that come before
+     * it in the ingest pipeline, i.e., the modules run one after another in
+     * pipeline order.
+     * <p>
+     * Modules that run concurrently share the data source ingest progress bar
+     * of the ingest job, which shows the most recently started of them.
+     *
+     * @return The fully qualified class names of the factories of the modules
+     *         depended on, possibly empty, or null.
+     */
+    default Set<String> getDataSourceIngestModuleDependencies() {
+        return null;
+    }
+
+    /**
+     * The kinds of system resources that can limit the throughput of a file
+     * ingest module.
+     */
+    public enum FileIngestModuleWorkload {
+
+        /**
+         * The module spends most of its time computing, e.g., parsing or
+         * extracting text from file content.
+         */
+        CPU_BOUND,
+        /**
+         * The module spends most of its time waiting on reads of file content
+         * or on the case database.
+         */
+        IO_BOUND
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+/**
+ * A snapshot of the timing and throughput metrics of an ingest module for a
+ * data source ingest job. For a file ingest module an invocation is the
+ * processing of one file; for a data source ingest module it is the processing
+ * of the data source.
+ * <p>
+ * Latency percentiles are estimated from a histogram with a relative error of
+ * at most 12.5%.
+ */
+public final class IngestModuleMetrics {
+
+    private final String moduleDisplayName;
+    private final long invocationCount;
+    private final long errorCount;
+    private final long bytesProcessed;
+    private final long totalTimeNanos;
+    private final long maxLatencyNanos;
+    private final long medianLatencyNanos;
+    private final long p90LatencyNanos;
+    private final long p99LatencyNanos;
+
+    IngestModuleMetrics(String moduleDisplayName, long invocationCount, long errorCount, long bytesProcessed, long totalTimeNanos,
+            long maxLatencyNanos, long medianLatencyNanos, long p90LatencyNanos, long p99LatencyNanos) {
+        this.moduleDisplayName = moduleDisplayName;
+        this.invocationCount = invocationCount;
+        this.errorCount = errorCount;
+        this.bytesProcessed = bytesProcessed;
+        this.totalTimeNanos = totalTimeNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+        this.medianLatencyNanos = medianLatencyNanos;
+        this.p90LatencyNanos = p90LatencyNanos;
+        this.p99LatencyNanos = p99LatencyNanos;
+    }
+
+    /**
+     * Gets the display name of the ingest module.
+     *
+     * @return The display name.
+     */
+    public String getModuleDisplayName() {
+        return moduleDisplayName;
+    }
+
+    /**
+     * Gets the number of times the module was invoked.
+     *
+     * @return The invocation count.
+     */
+    public long getInvocationCount() {
+        return invocationCount;
+    }
+
+    /**
+     * Gets the number of invocations that returned an error or threw an
+     * exception.
+     *
+     * @return The error count.
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Gets the total size of the files or data sources the module processed.
+     *
+     * @return The size in bytes.
+     */
+    public long getBytesProcessed() {
+        return bytesProcessed;
+    }
+
+    /**
+     * Gets the total time spent in the module.
+     *
+     * @return The time in milliseconds.
+     */
+    public long getTotalTimeMillis() {
+        return totalTimeNanos / 1000000;
+    }
+
+    /**
+     * Gets the mean time of an invocation.
+     *
+     * @return The time in milliseconds.
+     */
+    public double getMeanLatencyMillis() {
+        return (invocationCount == 0) ? 0 : totalTimeNanos / 1000000.0 / invocationCount;
+    }
+
+    /**
+     * Gets the longest time of an invocation.
+     *
+     * @return The time in milliseconds.
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos / 1000000.0;
+    }
+
+    /**
+     * Gets the median time of an invocation.
+     *
+     * @return The time in milliseconds.
+     */
+    public double getMedianLatencyMillis() {
+        return medianLatencyNanos / 1000000.0;
+    }
+
+    /**
+     * Gets the 90th percentile time of an invocation.
+     *
+     * @return The time in milliseconds.
+     */
+    public double getP90LatencyMillis() {
+        return p90LatencyNanos / 1000000.0;
+    }
+
+    /**
+     * Gets the 99th percentile time of an invocation.
+     *
+     * @return The time in milliseconds.
+     */
+    public double getP99LatencyMillis() {
+        return p99LatencyNanos / 1000000.0;
+    }
+
+    /**
+     * Gets the throughput of the module, i.e., the bytes processed per second
+     * of time spent in the module.
+     *
+     * @return The throughput in bytes per second.
+     */
+    public double getThroughputBytesPerSecond() {
+        return (totalTimeNanos == 0) ? 0 : bytesProcessed * 1000000000.0 / totalTimeNanos;
+    }
+
+}
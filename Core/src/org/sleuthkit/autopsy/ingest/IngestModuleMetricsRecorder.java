@@ -0,0 +1,227 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records per-module invocation counts, latencies, bytes processed and error
+ * counts for the ingest modules of a data source ingest job. Recording is
+ * lock-free: each module has a set of striped counters and a log-linear latency
+ * histogram of atomic buckets, so ingest threads running the same module do
+ * not contend on a lock.
+ * <p>
+ * This class is thread-safe.
+ */
+final class IngestModuleMetricsRecorder {
+
+    /*
+     * Latencies below LINEAR_BUCKETS nanoseconds have a bucket each. Above
+     * that, each power of two range is split into SUB_BUCKETS buckets, which
+     * bounds the relative error of a percentile estimate.
+     */
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int FIRST_EXPONENT = 4;
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (63 - FIRST_EXPONENT) * SUB_BUCKETS;
+    private final ConcurrentHashMap<String, ModuleAccumulator> accumulators = new ConcurrentHashMap<>();
+
+    /**
+     * Records an invocation of an ingest module.
+     *
+     * @param moduleDisplayName The display name of the module.
+     * @param elapsedNanos      The time the invocation took.
+     * @param bytes             The size of the file or data source processed.
+     * @param error             Whether or not the invocation returned an error
+     *                          or threw an exception.
+     */
+    void record(String moduleDisplayName, long elapsedNanos, long bytes, boolean error) {
+        ModuleAccumulator accumulator = this.accumulators.get(moduleDisplayName);
+        if (null == accumulator) {
+            accumulator = this.accumulators.computeIfAbsent(moduleDisplayName, (String name) -> new ModuleAccumulator());
+        }
+        accumulator.record(Math.max(0, elapsedNanos), Math.max(0, bytes), error);
+    }
+
+    /**
+     * Gets a snapshot of the metrics of each module that has been invoked,
+     * sorted by descending total time.
+     *
+     * @return The metrics.
+     */
+    List<IngestModuleMetrics> getMetrics() {
+        List<IngestModuleMetrics> metrics = new ArrayList<>();
+        for (Map.Entry<String, ModuleAccumulator> entry : this.accumulators.entrySet()) {
+            metrics.add(entry.getValue().getMetrics(entry.getKey()));
+        }
+        metrics.sort((IngestModuleMetrics a, IngestModuleMetrics b) -> Long.compare(b.getTotalTimeMillis(), a.getTotalTimeMillis()));
+        return metrics;
+    }
+
+    /**
+     * Writes the metrics of each module that has been invoked to a JSON file.
+     *
+     * @param path           The path of the file.
+     * @param jobId          The identifier of the data source ingest job.
+     * @param dataSourceName The name of the data source.
+     * @param jobStartTime   The start time of the job, in milliseconds since
+     *                       the epoch.
+     * @param jobEndTime     The end time of the job, in milliseconds since the
+     *                       epoch.
+     *
+     * @throws IOException if there is a problem writing the file.
+     */
+    void exportToJson(Path path, long jobId, String dataSourceName, long jobStartTime, long jobEndTime) throws IOException {
+        JobRecord job = new JobRecord();
+        job.jobId = jobId;
+        job.dataSource = dataSourceName;
+        job.startTime = jobStartTime;
+        job.endTime = jobEndTime;
+        for (IngestModuleMetrics metrics : this.getMetrics()) {
+            ModuleRecord module = new ModuleRecord();
+            module.module = metrics.getModuleDisplayName();
+            module.invocations = metrics.getInvocationCount();
+            module.errors = metrics.getErrorCount();
+            module.bytesProcessed = metrics.getBytesProcessed();
+            module.totalTimeMillis = metrics.getTotalTimeMillis();
+            module.meanLatencyMillis = metrics.getMeanLatencyMillis();
+            module.medianLatencyMillis = metrics.getMedianLatencyMillis();
+            module.p90LatencyMillis = metrics.getP90LatencyMillis();
+            module.p99LatencyMillis = metrics.getP99LatencyMillis();
+            module.maxLatencyMillis = metrics.getMaxLatencyMillis();
+            module.throughputBytesPerSecond = metrics.getThroughputBytesPerSecond();
+            job.modules.add(module);
+        }
+        Files.createDirectories(path.getParent());
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(new GsonBuilder().setPrettyPrinting().create().toJson(job));
+        }
+    }
+
+    private static int bucketIndex(long nanos) {
+        if (nanos < LINEAR_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) ((nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return LINEAR_BUCKETS + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long bucketMidpoint(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + FIRST_EXPONENT;
+        int subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + subBucket) * width + width / 2;
+    }
+
+    /**
+     * Accumulates the metrics of one module.
+     */
+    private static final class ModuleAccumulator {
+
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+        private final AtomicLongArray latencyHistogram = new AtomicLongArray(BUCKET_COUNT);
+
+        void record(long elapsedNanos, long byteCount, boolean error) {
+            this.invocations.increment();
+            if (error) {
+                this.errors.increment();
+            }
+            this.bytes.add(byteCount);
+            this.totalNanos.add(elapsedNanos);
+            this.maxNanos.accumulate(elapsedNanos);
+            this.latencyHistogram.incrementAndGet(bucketIndex(elapsedNanos));
+        }
+
+        IngestModuleMetrics getMetrics(String moduleDisplayName) {
+            long[] counts = new long[BUCKET_COUNT];
+            long total = 0;
+            for (int i = 0; i < BUCKET_COUNT; ++i) {
+                counts[i] = this.latencyHistogram.get(i);
+                total += counts[i];
+            }
+            long max = this.maxNanos.get();
+            return new IngestModuleMetrics(moduleDisplayName, this.invocations.sum(), this.errors.sum(), this.bytes.sum(), this.totalNanos.sum(),
+                    max, percentile(counts, total, 0.5, max), percentile(counts, total, 0.9, max), percentile(counts, total, 0.99, max));
+        }
+
+        private static long percentile(long[] counts, long total, double fraction, long max) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(fraction * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; ++i) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketMidpoint(i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+    /*
+     * The layout of the JSON export.
+     */
+    private static final class JobRecord {
+
+        long jobId;
+        String dataSource;
+        long startTime;
+        long endTime;
+        List<ModuleRecord> modules = new ArrayList<>();
+    }
+
+    private static final class ModuleRecord {
+
+        String module;
+        long invocations;
+        long errors;
+        long bytesProcessed;
+        long totalTimeMillis;
+        double meanLatencyMillis;
+        double medianLatencyMillis;
+        double p90LatencyMillis;
+        double p99LatencyMillis;
+        double maxLatencyMillis;
+        double throughputBytesPerSecond;
+    }
+
+}
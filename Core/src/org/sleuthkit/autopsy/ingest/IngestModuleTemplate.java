@@ -18,6 +18,8 @@
  */
 package org.sleuthkit.autopsy.ingest;
 
+import java.util.Set;
+
 /**
  * Combines an ingest module factory with ingest module settings and an enabled
  * flag to create a template for creating fully configured ingest modules.
@@ -77,6 +79,10 @@ DataSourceIngestModule createDataSourceIngestModule() {
         return moduleFactory.createDataSourceIngestModule(settings);
     }
 
+    Set<String> getDataSourceIngestModuleDependencies() {
+        return moduleFactory.getDataSourceIngestModuleDependencies();
+    }
+
     boolean isFileIngestModuleTemplate() {
         return moduleFactory.isFileIngestModuleFactory();
     }
@@ -85,6 +91,10 @@ FileIngestModule createFileIngestModule() {
         return moduleFactory.createFileIngestModule(settings);
     }
 
+    IngestModuleFactory.FileIngestModuleWorkload getFileIngestModuleWorkload() {
+        return moduleFactory.getFileIngestModuleWorkload();
+    }
+
     void setEnabled(boolean enabled) {
         this.enabled = enabled;
     }
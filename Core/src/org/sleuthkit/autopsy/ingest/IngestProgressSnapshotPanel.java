@@ -22,6 +22,7 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.swing.JDialog;
@@ -80,6 +81,15 @@ private void customizeComponents() {
         }
 
         threadActivitySnapshotsTable.setFillsViewportHeight(true);
+        refreshThreadCount();
+    }
+
+    private void refreshThreadCount() {
+        IngestManager manager = IngestManager.getInstance();
+        String key = manager.isFileIngestThreadAutoTuningEnabled()
+                ? "IngestProgressSnapshotPanel.threadCountLabel.autoTuned.text" //NON-NLS
+                : "IngestProgressSnapshotPanel.threadCountLabel.text"; //NON-NLS
+        threadCountLabel.setText(NbBundle.getMessage(this.getClass(), key, manager.getNumberOfFileIngestThreads()));
     }
 
     private class IngestThreadActivitySnapshotsTableModel extends AbstractTableModel {
@@ -256,12 +266,29 @@ private class ModuleStats implements Comparable<ModuleStats> {
 
             private final String name;
             private final long duration;
+            private long invocations;
+            private long errors;
+            private long bytes;
+            private long totalNanos;
+            private double p99LatencyMillis;
 
             ModuleStats(String name, long duration) {
                 this.name = name;
                 this.duration = duration;
             }
 
+            /**
+             * Adds the metrics of the module for a running job. Percentiles
+             * cannot be merged, so the largest of the jobs is kept.
+             */
+            private void addMetrics(IngestModuleMetrics metrics) {
+                invocations += metrics.getInvocationCount();
+                errors += metrics.getErrorCount();
+                bytes += metrics.getBytesProcessed();
+                totalNanos += (long) (metrics.getMeanLatencyMillis() * 1000000 * metrics.getInvocationCount());
+                p99LatencyMillis = Math.max(p99LatencyMillis, metrics.getP99LatencyMillis());
+            }
+
             /**
              * @return the name
              */
@@ -290,7 +317,12 @@ public int compareTo(ModuleStats o) {
         }
         private final String[] columnNames = {NbBundle.getMessage(this.getClass(), "ModuleTableModel.colName.module"),
             NbBundle.getMessage(this.getClass(),
-            "ModuleTableModel.colName.duration")};
+            "ModuleTableModel.colName.duration"),
+            NbBundle.getMessage(this.getClass(), "ModuleTableModel.colName.invocations"),
+            NbBundle.getMessage(this.getClass(), "ModuleTableModel.colName.meanLatency"),
+            NbBundle.getMessage(this.getClass(), "ModuleTableModel.colName.p99Latency"),
+            NbBundle.getMessage(this.getClass(), "ModuleTableModel.colName.megabytes"),
+            NbBundle.getMessage(this.getClass(), "ModuleTableModel.colName.errors")};
         private final List<ModuleStats> moduleStats = new ArrayList<>();
         private long totalTime;
 
@@ -302,10 +334,21 @@ private void refresh() {
             Map<String, Long> moduleStatMap = IngestManager.getInstance().getModuleRunTimes();
             moduleStats.clear();
             totalTime = 0;
+            Map<String, ModuleStats> statsByName = new HashMap<>();
             for (String k : moduleStatMap.keySet()) {
-                moduleStats.add(new ModuleStats(k, moduleStatMap.get(k)));
+                ModuleStats stats = new ModuleStats(k, moduleStatMap.get(k));
+                moduleStats.add(stats);
+                statsByName.put(k, stats);
                 totalTime += moduleStatMap.get(k);
             }
+            for (DataSourceIngestJob.Snapshot snapshot : IngestManager.getInstance().getIngestJobSnapshots()) {
+                for (IngestModuleMetrics metrics : snapshot.getModuleMetrics()) {
+                    ModuleStats stats = statsByName.get(metrics.getModuleDisplayName());
+                    if (null != stats) {
+                        stats.addMetrics(metrics);
+                    }
+                }
+            }
             Collections.sort(moduleStats);
             fireTableDataChanged();
         }
@@ -336,6 +379,21 @@ public Object getValueAt(int rowIndex, int columnIndex) {
                 case 1:
                     cellValue = DurationFormatUtils.formatDurationHMS(moduleStat.getDuration()) + " (" + (moduleStat.getDuration() * 100) / totalTime + "%)";
                     break;
+                case 2:
+                    cellValue = moduleStat.invocations;
+                    break;
+                case 3:
+                    cellValue = (moduleStat.invocations == 0) ? 0 : String.format("%.2f", moduleStat.totalNanos / 1000000.0 / moduleStat.invocations);
+                    break;
+                case 4:
+                    cellValue = String.format("%.2f", moduleStat.p99LatencyMillis);
+                    break;
+                case 5:
+                    cellValue = moduleStat.bytes / (1024 * 1024);
+                    break;
+                case 6:
+                    cellValue = moduleStat.errors;
+                    break;
 
                 default:
                     cellValue = null;
@@ -362,6 +420,7 @@ private void initComponents() {
         closeButton = new javax.swing.JButton();
         moduleScrollPane = new javax.swing.JScrollPane();
         moduleTable = new javax.swing.JTable();
+        threadCountLabel = new javax.swing.JLabel();
 
         threadActivitySnapshotsTable.setModel(new javax.swing.table.DefaultTableModel(
             new Object [][] {
@@ -407,6 +466,8 @@ public void actionPerformed(java.awt.event.ActionEvent evt) {
         ));
         moduleScrollPane.setViewportView(moduleTable);
 
+        org.openide.awt.Mnemonics.setLocalizedText(threadCountLabel, org.openide.util.NbBundle.getMessage(IngestProgressSnapshotPanel.class, "IngestProgressSnapshotPanel.threadCountLabel.text")); // NOI18N
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(this);
         this.setLayout(layout);
         layout.setHorizontalGroup(
@@ -416,6 +477,7 @@ public void actionPerformed(java.awt.event.ActionEvent evt) {
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING)
                     .addComponent(snapshotsScrollPane, javax.swing.GroupLayout.DEFAULT_SIZE, 881, Short.MAX_VALUE)
                     .addGroup(layout.createSequentialGroup()
+                        .addComponent(threadCountLabel)
                         .addGap(0, 0, Short.MAX_VALUE)
                         .addComponent(refreshButton)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
@@ -439,7 +501,8 @@ public void actionPerformed(java.awt.event.ActionEvent evt) {
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(refreshButton)
-                    .addComponent(closeButton))
+                    .addComponent(closeButton)
+                    .addComponent(threadCountLabel))
                 .addContainerGap())
         );
 
@@ -455,6 +518,7 @@ private void refreshButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN
         threadActivityTableModel.refresh();
         jobTableModel.refresh();
         moduleTableModel.refresh();
+        refreshThreadCount();
     }//GEN-LAST:event_refreshButtonActionPerformed
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JButton closeButton;
@@ -465,5 +529,6 @@ private void refreshButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN
     private javax.swing.JButton refreshButton;
     private javax.swing.JScrollPane snapshotsScrollPane;
     private javax.swing.JTable threadActivitySnapshotsTable;
+    private javax.swing.JLabel threadCountLabel;
     // End of variables declaration//GEN-END:variables
 }
@@ -21,17 +21,15 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashSet;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import org.sleuthkit.autopsy.core.UserPreferences;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.datamodel.Content;
@@ -59,31 +57,45 @@ final class IngestTasksScheduler {
     private final DataSourceIngestTaskQueue dataSourceTasksDispenser;
 
     /**
-     * Scheduling of file ingest tasks is accomplished by "shuffling" them
-     * through a sequence of internal queues that allows for the interleaving of
-     * tasks from different ingest jobs based on priority. These scheduling
-     * queues are:
+     * Scheduling of file ingest tasks is accomplished by a work stealing
+     * arrangement of concurrent queues that allows for the interleaving of
+     * tasks from different ingest jobs based on priority without a scheduler
+     * wide lock. These scheduling queues are:
      *
-     * 1. Root directory tasks (priority queue)
+     * 1. Root directory tasks (priority queues, one per job)
      *
-     * 2. Directory tasks (FIFO queue)
+     * 2. Directory tasks (priority queues, one per job)
      *
-     * 3. Pending file tasks (LIFO queue).
+     * 3. Pending file tasks (one LIFO deque per file ingest thread, plus a
+     * shared deque for tasks scheduled by threads that are not file ingest
+     * threads, see WorkStealingTaskDeques).
      *
-     * The pending file tasks queue is LIFO to handle large numbers of files
+     * A file ingest thread takes tasks from the front of its own pending file
+     * tasks deque. When its deque is empty, the thread expands the next
+     * directory task into its own deque, querying the case database for the
+     * children of the directory without holding any lock that is shared with
+     * the other file ingest threads. If there are no directories to expand,
+     * the thread steals the oldest task from the back of the deque of another
+     * file ingest thread, and if there are none, waits for more tasks.
+     *
+     * Each job has its own file priority policies (see
+     * FileIngestPriorityPolicy), so the priorities of the tasks of different
+     * jobs are not comparable. The directory tasks of a job are ordered by the
+     * policies of the job, with ties going to the most recently created task,
+     * and the jobs take turns (see RoundRobinPriorityQueue). The files of an
+     * expanded directory are added to the deque in policy order.
+     *
+     * The pending file tasks deques are LIFO to handle large numbers of files
      * extracted from archive files. At least one image has been processed that
      * had a folder full of archive files. The queue grew to have thousands of
      * entries, as each successive archive file was expanded, so now extracted
-     * files get added to the front of the queue so that in such a scenario they
-     * would be processed before the expansion of the next archive file.
-     *
-     * Tasks in the pending file tasks queue are ready to be consumed by the
-     * ingest threads, so the queue is wrapped in a "dispenser" that implements
-     * the IngestTaskQueue interface and is exposed via a getter method.
+     * files get added to the front of the deque of the thread that extracted
+     * them so that in such a scenario they would be processed before the
+     * expansion of the next archive file.
      */
-    private final TreeSet<FileIngestTask> rootDirectoryTasks;
-    private final List<FileIngestTask> directoryTasks;
-    private final BlockingDeque<FileIngestTask> pendingFileTasks;
+    private final RoundRobinPriorityQueue<FileIngestTask> rootDirectoryTasks;
+    private final RoundRobinPriorityQueue<FileIngestTask> directoryTasks;
+    private final WorkStealingTaskDeques<FileIngestTask> pendingFileTasks;
     private final FileIngestTaskQueue fileTasksDispenser;
 
     /**
@@ -91,13 +103,22 @@ final class IngestTasksScheduler {
      * are any tasks in progress for the job. To make this possible, the ingest
      * tasks scheduler needs to keep track not only of the tasks in its queues,
      * but also of the tasks that have been handed out for processing by the
-     * ingest threads. Therefore all ingest tasks are added to this list when
-     * they are created and are not removed when an ingest thread takes an
-     * ingest task. Instead, the ingest thread calls back into the scheduler
-     * when the task is completed, at which time the task will be removed from
-     * this list.
+     * ingest threads. Therefore a per job counter is incremented when a task
+     * is created and is not decremented when an ingest thread takes an ingest
+     * task. Instead, the ingest thread calls back into the scheduler when the
+     * task is completed, at which time the counter is decremented. The counter
+     * for a job is created when the tasks for a stage of the job are scheduled
+     * and discarded when the job finishes; tasks created for a job after that
+     * are not scheduled.
      */
-    private final Set<IngestTask> tasksInProgress;
+    private final ConcurrentHashMap<Long, AtomicLong> tasksInProgress;
+
+    /**
+     * Ingest jobs that are started while bulk directory expansion is enabled
+     * get a bulk directory expander, which caches the metadata of the
+     * directories it finds for the job until they are expanded.
+     */
+    private final ConcurrentHashMap<Long, BulkDirectoryExpander> bulkDirectoryExpanders;
 
     /**
      * Gets the ingest tasks scheduler singleton.
@@ -115,11 +136,12 @@ synchronized static IngestTasksScheduler getInstance() {
     private IngestTasksScheduler() {
         this.pendingDataSourceTasks = new LinkedBlockingQueue<>();
         this.dataSourceTasksDispenser = new DataSourceIngestTaskQueue();
-        this.rootDirectoryTasks = new TreeSet<>(new RootDirectoryTaskComparator());
-        this.directoryTasks = new ArrayList<>();
-        this.pendingFileTasks = new LinkedBlockingDeque<>();
+        this.rootDirectoryTasks = new RoundRobinPriorityQueue<>((FileIngestTask task) -> task.getIngestJob().getId(), new FileIngestTaskPriorityComparator());
+        this.directoryTasks = new RoundRobinPriorityQueue<>((FileIngestTask task) -> task.getIngestJob().getId(), new FileIngestTaskPriorityComparator());
+        this.pendingFileTasks = new WorkStealingTaskDeques<>();
         this.fileTasksDispenser = new FileIngestTaskQueue();
-        this.tasksInProgress = new HashSet<>();
+        this.tasksInProgress = new ConcurrentHashMap<>();
+        this.bulkDirectoryExpanders = new ConcurrentHashMap<>();
     }
 
     /**
@@ -147,19 +169,22 @@ IngestTaskQueue getFileIngestTaskQueue() {
      * job.
      *
      * @param job The job for which the tasks are to be scheduled.
-     *
-     * @throws InterruptedException if the calling thread is blocked due to a
-     *                              full tasks queue and is interrupted.
      */
-    synchronized void scheduleIngestTasks(DataSourceIngestJob job) {
+    void scheduleIngestTasks(DataSourceIngestJob job) {
         if (!job.isCancelled()) {
-            // Scheduling of both a data source ingest task and file ingest tasks 
-            // for a job must be an atomic operation. Otherwise, the data source 
-            // task might be completed before the file tasks are scheduled, 
-            // resulting in a potential false positive when another thread checks 
-            // whether or not all the tasks for the job are completed.
-            this.scheduleDataSourceIngestTask(job);
-            this.scheduleFileIngestTasks(job);
+            // Scheduling of both a data source ingest task and file ingest tasks
+            // for a job must be an atomic operation. Otherwise, the data source
+            // task might be completed before the file tasks are scheduled,
+            // resulting in a potential false positive when another thread checks
+            // whether or not all the tasks for the job are completed. This is
+            // accomplished by counting all of the tasks as in progress before
+            // any of them are made available to the ingest threads.
+            this.jobTasksScheduled(job);
+            DataSourceIngestTask dataSourceTask = new DataSourceIngestTask(job);
+            this.taskCreated(dataSourceTask);
+            List<FileIngestTask> fileTasks = createTopLevelFileTasks(job);
+            this.queueRootDirectoryTasks(fileTasks);
+            this.queueDataSourceIngestTask(dataSourceTask);
         }
     }
 
@@ -168,20 +193,12 @@ synchronized void scheduleIngestTasks(DataSourceIngestJob job) {
      *
      * @param job The job for which the tasks are to be scheduled.
      */
-    synchronized void scheduleDataSourceIngestTask(DataSourceIngestJob job) {
+    void scheduleDataSourceIngestTask(DataSourceIngestJob job) {
         if (!job.isCancelled()) {
+            this.jobTasksScheduled(job);
             DataSourceIngestTask task = new DataSourceIngestTask(job);
-            this.tasksInProgress.add(task);
-            try {
-                this.pendingDataSourceTasks.put(task);
-            } catch (InterruptedException ex) {
-                /**
-                 * The current thread was interrupted while blocked on a full
-                 * queue. Discard the task and reset the interrupted flag.
-                 */
-                this.tasksInProgress.remove(task);
-                Thread.currentThread().interrupt();
-            }
+            this.taskCreated(task);
+            this.queueDataSourceIngestTask(task);
         }
     }
 
@@ -190,19 +207,10 @@ synchronized void scheduleDataSourceIngestTask(DataSourceIngestJob job) {
      *
      * @param job The job for which the tasks are to be scheduled.
      */
-    synchronized void scheduleFileIngestTasks(DataSourceIngestJob job) {
+    void scheduleFileIngestTasks(DataSourceIngestJob job) {
         if (!job.isCancelled()) {
-            // Get the top level files for the data source associated with this job
-            // and add them to the root directories priority queue.  
-            List<AbstractFile> topLevelFiles = getTopLevelFiles(job.getDataSource());
-            for (AbstractFile firstLevelFile : topLevelFiles) {
-                FileIngestTask task = new FileIngestTask(job, firstLevelFile);
-                if (IngestTasksScheduler.shouldEnqueueFileTask(task)) {
-                    this.tasksInProgress.add(task);
-                    this.rootDirectoryTasks.add(task);
-                }
-            }
-            shuffleFileTaskQueues();
+            this.jobTasksScheduled(job);
+            this.queueRootDirectoryTasks(createTopLevelFileTasks(job));
         }
     }
 
@@ -212,12 +220,11 @@ synchronized void scheduleFileIngestTasks(DataSourceIngestJob job) {
      * @param job  The job for which the tasks are to be scheduled.
      * @param file The file to be associated with the task.
      */
-    synchronized void scheduleFileIngestTask(DataSourceIngestJob job, AbstractFile file) {
+    void scheduleFileIngestTask(DataSourceIngestJob job, AbstractFile file) {
         if (!job.isCancelled()) {
             FileIngestTask task = new FileIngestTask(job, file);
-            if (IngestTasksScheduler.shouldEnqueueFileTask(task)) {
-                this.tasksInProgress.add(task);
-                addToPendingFileTasksQueue(task);
+            if (IngestTasksScheduler.shouldEnqueueFileTask(task) && this.taskCreated(task)) {
+                this.pendingFileTasks.push(task);
             }
         }
     }
@@ -228,8 +235,19 @@ synchronized void scheduleFileIngestTask(DataSourceIngestJob job, AbstractFile f
      *
      * @param task The completed task.
      */
-    synchronized void notifyTaskCompleted(IngestTask task) {
-        tasksInProgress.remove(task);
+    void notifyTaskCompleted(IngestTask task) {
+        this.taskRemoved(task);
+    }
+
+    /**
+     * Allows an ingest job to notify this ingest task scheduler that it has
+     * finished, so that the bookkeeping for the job can be discarded.
+     *
+     * @param job The finished job.
+     */
+    void notifyIngestJobFinished(DataSourceIngestJob job) {
+        this.tasksInProgress.remove(job.getId());
+        this.bulkDirectoryExpanders.remove(job.getId());
     }
 
     /**
@@ -240,38 +258,84 @@ synchronized void notifyTaskCompleted(IngestTask task) {
      *
      * @return True or false.
      */
-    synchronized boolean tasksForJobAreCompleted(DataSourceIngestJob job) {
-        for (IngestTask task : tasksInProgress) {
-            if (task.getIngestJob().getId() == job.getId()) {
-                return false;
-            }
-        }
-        return true;
+    boolean tasksForJobAreCompleted(DataSourceIngestJob job) {
+        AtomicLong taskCount = this.tasksInProgress.get(job.getId());
+        return (null == taskCount || taskCount.get() == 0);
     }
 
     /**
-     * Clears the "upstream" task scheduling queues for an ingest job, but does
-     * nothing about tasks that have already been shuffled into the concurrently
-     * accessed blocking queues shared with the ingest threads. Note that tasks
-     * in the "downstream" queues or already taken by the ingest threads will be
-     * flushed out when the ingest threads call back with their task completed
-     * notifications.
+     * Clears the task scheduling queues for an ingest job. Note that tasks
+     * already taken by the ingest threads will be flushed out when the ingest
+     * threads call back with their task completed notifications.
      *
      * @param job The job for which the tasks are to to canceled.
      */
-    synchronized void cancelPendingTasksForIngestJob(DataSourceIngestJob job) {
+    void cancelPendingTasksForIngestJob(DataSourceIngestJob job) {
         /**
-         * This code should not flush the blocking queues that are concurrently
-         * accessed by the ingest threads. This is because the "lock striping"
-         * and "weakly consistent" iterators of these collections make it so
-         * that this code could have a different view of the queues than the
-         * ingest threads. It does clean out the directory level tasks before
-         * they are exploded into file tasks.
+         * The concurrent queues used by this scheduler only report a
+         * successful removal to one thread, so there is no danger of this code
+         * and an ingest thread both accounting for the same task.
          */
         long jobId = job.getId();
-        this.removeTasksForJob(this.rootDirectoryTasks, jobId);
-        this.removeTasksForJob(this.directoryTasks, jobId);
-        this.shuffleFileTaskQueues();
+        this.rootDirectoryTasks.removeAll(jobId, this::taskRemoved);
+        this.directoryTasks.removeAll(jobId, this::taskRemoved);
+        this.pendingFileTasks.removeIf((FileIngestTask task) -> task.getIngestJob().getId() == jobId, this::taskRemoved);
+    }
+
+    /**
+     * Creates file ingest tasks for the top level files of the data source for
+     * an ingest job, counting the tasks as in progress. Also sets up bulk
+     * directory expansion for the job, if it is enabled.
+     *
+     * @param job The job for which the tasks are to be created.
+     *
+     * @return The tasks.
+     */
+    private List<FileIngestTask> createTopLevelFileTasks(DataSourceIngestJob job) {
+        if (UserPreferences.bulkDirectoryExpansionEnabled()) {
+            this.bulkDirectoryExpanders.putIfAbsent(job.getId(), new BulkDirectoryExpander());
+        }
+        List<FileIngestTask> tasks = new ArrayList<>();
+        for (AbstractFile firstLevelFile : getTopLevelFiles(job.getDataSource())) {
+            FileIngestTask task = new FileIngestTask(job, firstLevelFile);
+            if (IngestTasksScheduler.shouldEnqueueFileTask(task)) {
+                this.taskCreated(task);
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Adds file ingest tasks for top level files to the root directories
+     * priority queues and wakes up any idle file ingest threads.
+     *
+     * @param tasks The tasks, already counted as in progress.
+     */
+    private void queueRootDirectoryTasks(List<FileIngestTask> tasks) {
+        if (!tasks.isEmpty()) {
+            this.rootDirectoryTasks.addAll(tasks);
+            this.pendingFileTasks.signalTasksAvailable();
+        }
+    }
+
+    /**
+     * Adds a data source ingest task, already counted as in progress, to the
+     * pending data source tasks queue.
+     *
+     * @param task The task.
+     */
+    private void queueDataSourceIngestTask(DataSourceIngestTask task) {
+        try {
+            this.pendingDataSourceTasks.put(task);
+        } catch (InterruptedException ex) {
+            /**
+             * The current thread was interrupted while blocked on a full queue.
+             * Discard the task and reset the interrupted flag.
+             */
+            this.taskRemoved(task);
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
@@ -316,73 +380,261 @@ private static List<AbstractFile> getTopLevelFiles(Content dataSource) {
     }
 
     /**
-     * "Shuffles" the file task queues to ensure that there is at least one task
-     * in the pending file ingest tasks queue, as long as there are still file
-     * ingest tasks to be performed.
+     * Hands the pending file tasks of the calling file ingest thread over to
+     * the other file ingest threads. Called by a file ingest thread that is
+     * being retired because the file ingest thread pool is being shrunk.
      */
-    synchronized private void shuffleFileTaskQueues() {
-        // This is synchronized because it is called both by synchronized 
-        // methods of this ingest scheduler and an unsynchronized method of its
-        // file tasks "dispenser".
-        while (true) {
-            // Loop until either the pending file tasks queue is NOT empty
-            // or the upstream queues that feed into it ARE empty.
-            if (!this.pendingFileTasks.isEmpty()) {
-                // There are file tasks ready to be consumed, exit.
-                return;
+    void releaseFileIngestThread() {
+        this.pendingFileTasks.releaseWorker();
+    }
+
+    /**
+     * Gets the number of file ingest threads that are waiting for work.
+     *
+     * @return The idle thread count.
+     */
+    int getIdleFileIngestThreadCount() {
+        return this.pendingFileTasks.getIdleWorkerCount();
+    }
+
+    /**
+     * Takes the highest priority directory task of the next ingest job in turn,
+     * or the highest priority root directory task of the next job in turn if
+     * there are no directory tasks, and expands it into the
+     * pending file tasks deque of the calling thread. Subdirectories are added
+     * to the directory tasks queue. No lock is held while the case
+     * database is queried for the children of the directory. If bulk directory
+     * expansion is enabled for the ingest job of the directory task, a batch
+     * of directory tasks for the job is taken and expanded together.
+     *
+     * @param ownPendingTasks The pending file tasks deque of the calling
+     *                        thread.
+     *
+     * @return True if a directory was expanded, false if there are no
+     *         directories to expand.
+     */
+    private boolean expandNextDirectory(Deque<FileIngestTask> ownPendingTasks) {
+        FileIngestTask directoryTask = this.directoryTasks.poll();
+        if (null == directoryTask) {
+            directoryTask = this.rootDirectoryTasks.poll();
+            if (null == directoryTask) {
+                return false;
             }
-            if (this.directoryTasks.isEmpty()) {
-                if (this.rootDirectoryTasks.isEmpty()) {
-                    // There are no root directory tasks to move into the
-                    // directory queue, exit.
-                    return;
-                } else {
-                    // Move the next root directory task into the 
-                    // directories queue. Note that the task was already 
-                    // added to the tasks in progress list when the task was
-                    // created in scheduleFileIngestTasks().
-                    this.directoryTasks.add(this.rootDirectoryTasks.pollFirst());
+        }
+
+        // Don't bother to expand the directory if its job has been cancelled.
+        DataSourceIngestJob job = directoryTask.getIngestJob();
+        if (job.isCancelled()) {
+            this.taskDiscarded(directoryTask);
+            return true;
+        }
+
+        BulkDirectoryExpander expander = this.bulkDirectoryExpanders.get(job.getId());
+        if (null == expander) {
+            this.expandDirectory(directoryTask, ownPendingTasks);
+            return true;
+        }
+
+        List<FileIngestTask> batch = new ArrayList<>();
+        batch.add(directoryTask);
+        while (batch.size() < BulkDirectoryExpander.MAX_DIRECTORIES_PER_BATCH) {
+            FileIngestTask nextTask = this.directoryTasks.poll(job.getId());
+            if (null == nextTask) {
+                break;
+            }
+            batch.add(nextTask);
+        }
+        this.expandDirectories(batch, expander, ownPendingTasks);
+        return true;
+    }
+
+    /**
+     * Expands a directory task into the pending file tasks deque of the
+     * calling thread, querying the case database for the children of the
+     * directory one directory at a time.
+     *
+     * @param directoryTask   The directory task.
+     * @param ownPendingTasks The pending file tasks deque of the calling
+     *                        thread.
+     */
+    private void expandDirectory(FileIngestTask directoryTask, Deque<FileIngestTask> ownPendingTasks) {
+        // If the directory contains subdirectories or files, try to enqueue
+        // tasks for them as well. The new tasks are counted as in progress
+        // before the directory task itself is accounted for, so that the
+        // count of tasks in progress for the job cannot drop to zero here.
+        int newTasks = 0;
+        List<FileIngestTask> fileTasks = new ArrayList<>();
+        final AbstractFile directory = directoryTask.getFile();
+        try {
+            for (Content child : directory.getChildren()) {
+                if (child instanceof AbstractFile) {
+                    AbstractFile file = (AbstractFile) child;
+                    FileIngestTask childTask = new FileIngestTask(directoryTask.getIngestJob(), file);
+                    if (file.hasChildren()) {
+                        // Found a subdirectory, put the task in the directory
+                        // tasks queue.
+                        this.taskCreated(childTask);
+                        this.directoryTasks.add(childTask);
+                        ++newTasks;
+                    } else if (shouldEnqueueFileTask(childTask)) {
+                        // Found a file, put the task directly into the pending
+                        // file tasks deque of this thread.
+                        this.taskCreated(childTask);
+                        fileTasks.add(childTask);
+                        ++newTasks;
+                    }
                 }
             }
+        } catch (TskCoreException ex) {
+            String errorMessage = String.format("An error occurred getting the children of %s", directory.getName()); //NON-NLS
+            logger.log(Level.SEVERE, errorMessage, ex);
+        }
+        addFileTasksInPriorityOrder(fileTasks, ownPendingTasks);
 
-            // Try to add the most recently added directory from the 
-            // directory tasks queue to the pending file tasks queue. 
-            FileIngestTask directoryTask = this.directoryTasks.remove(this.directoryTasks.size() - 1);
-            if (shouldEnqueueFileTask(directoryTask)) {
-                addToPendingFileTasksQueue(directoryTask);
-            } else {
-                this.tasksInProgress.remove(directoryTask);
+        if (shouldEnqueueFileTask(directoryTask)) {
+            ownPendingTasks.addFirst(directoryTask);
+        } else {
+            this.taskDiscarded(directoryTask);
+        }
+
+        if (newTasks > 0) {
+            this.pendingFileTasks.signalTasksAvailable();
+        }
+    }
+
+    /**
+     * Expands a batch of directory tasks for a single ingest job into the
+     * pending file tasks deque of the calling thread, using a fixed number of
+     * case database queries for the whole batch.
+     *
+     * @param batch           The directory tasks.
+     * @param expander        The bulk directory expander for the job.
+     * @param ownPendingTasks The pending file tasks deque of the calling
+     *                        thread.
+     */
+    private void expandDirectories(List<FileIngestTask> batch, BulkDirectoryExpander expander, Deque<FileIngestTask> ownPendingTasks) {
+        List<AbstractFile> directories = new ArrayList<>();
+        for (FileIngestTask directoryTask : batch) {
+            directories.add(directoryTask.getFile());
+        }
+        Map<Long, List<BulkDirectoryExpander.ChildFile>> childrenByParent;
+        try {
+            childrenByParent = expander.getChildren(directories);
+        } catch (TskCoreException ex) {
+            logger.log(Level.SEVERE, "An error occurred getting the children of a batch of directories, expanding them one at a time", ex); //NON-NLS
+            for (FileIngestTask directoryTask : batch) {
+                expander.takeDirectoryMetadata(directoryTask.getFile());
+                this.expandDirectory(directoryTask, ownPendingTasks);
             }
+            return;
+        }
 
-            // If the directory contains subdirectories or files, try to 
-            // enqueue tasks for them as well. 
-            final AbstractFile directory = directoryTask.getFile();
-            try {
-                for (Content child : directory.getChildren()) {
-                    if (child instanceof AbstractFile) {
-                        AbstractFile file = (AbstractFile) child;
-                        FileIngestTask childTask = new FileIngestTask(directoryTask.getIngestJob(), file);
-                        if (file.hasChildren()) {
-                            // Found a subdirectory, put the task in the 
-                            // pending directory tasks queue. Note the 
-                            // addition of the task to the tasks in progress
-                            // list. This is necessary because this is the
-                            // first appearance of this task in the queues.
-                            this.tasksInProgress.add(childTask);
-                            this.directoryTasks.add(childTask);
-                        } else if (shouldEnqueueFileTask(childTask)) {
-                            // Found a file, put the task directly into the
-                            // pending file tasks queue. 
-                            this.tasksInProgress.add(childTask);
-                            addToPendingFileTasksQueue(childTask);
-                        }
-                    }
+        // As in expandDirectory(), all of the new tasks are counted as in
+        // progress before any of the directory tasks are accounted for.
+        int newTasks = 0;
+        List<FileIngestTask> fileTasks = new ArrayList<>();
+        for (FileIngestTask directoryTask : batch) {
+            List<BulkDirectoryExpander.ChildFile> children = childrenByParent.get(directoryTask.getFile().getId());
+            if (null == children) {
+                continue;
+            }
+            for (BulkDirectoryExpander.ChildFile child : children) {
+                FileIngestTask childTask = new FileIngestTask(directoryTask.getIngestJob(), child.getFile());
+                if (child.getMetadata().hasChildren()) {
+                    this.taskCreated(childTask);
+                    this.directoryTasks.add(childTask);
+                    ++newTasks;
+                } else if (shouldEnqueueFileTask(childTask, child.getMetadata())) {
+                    this.taskCreated(childTask);
+                    fileTasks.add(childTask);
+                    ++newTasks;
                 }
-            } catch (TskCoreException ex) {
-                String errorMessage = String.format("An error occurred getting the children of %s", directory.getName()); //NON-NLS
-                logger.log(Level.SEVERE, errorMessage, ex);
             }
         }
+        addFileTasksInPriorityOrder(fileTasks, ownPendingTasks);
+
+        for (FileIngestTask directoryTask : batch) {
+            if (shouldEnqueueFileTask(directoryTask, expander.takeDirectoryMetadata(directoryTask.getFile()))) {
+                ownPendingTasks.addFirst(directoryTask);
+            } else {
+                this.taskDiscarded(directoryTask);
+            }
+        }
+
+        if (newTasks > 0) {
+            this.pendingFileTasks.signalTasksAvailable();
+        }
+    }
+
+    /**
+     * Adds file tasks to the front of the pending file tasks deque of the
+     * calling thread so that the thread takes them in the priority order of
+     * their ingest job's file priority policies.
+     *
+     * @param fileTasks       The tasks.
+     * @param ownPendingTasks The pending file tasks deque of the calling
+     *                        thread.
+     */
+    private static void addFileTasksInPriorityOrder(List<FileIngestTask> fileTasks, Deque<FileIngestTask> ownPendingTasks) {
+        fileTasks.sort(new FileIngestTaskPriorityComparator().reversed());
+        for (FileIngestTask task : fileTasks) {
+            ownPendingTasks.addFirst(task);
+        }
+    }
+
+    /**
+     * Starts counting the tasks in progress for an ingest job, if they are not
+     * counted already, before the tasks for a stage of the job are created.
+     *
+     * @param job The job.
+     */
+    private void jobTasksScheduled(DataSourceIngestJob job) {
+        this.tasksInProgress.putIfAbsent(job.getId(), new AtomicLong(0L));
+    }
+
+    /**
+     * Counts a newly created ingest task as in progress for its ingest job.
+     * Tasks are not counted for a job that has already finished, so that
+     * the bookkeeping for the job is not created again.
+     *
+     * @param task The task.
+     *
+     * @return True if the task was counted, false if its job has finished.
+     */
+    private boolean taskCreated(IngestTask task) {
+        return null != this.tasksInProgress.computeIfPresent(task.getIngestJob().getId(), (Long jobId, AtomicLong taskCount) -> {
+            taskCount.incrementAndGet();
+            return taskCount;
+        });
+    }
+
+    /**
+     * Stops counting an ingest task as in progress for its ingest job.
+     *
+     * @param task The task.
+     *
+     * @return The number of tasks still in progress for the job.
+     */
+    private long taskRemoved(IngestTask task) {
+        AtomicLong taskCount = this.tasksInProgress.get(task.getIngestJob().getId());
+        if (null == taskCount) {
+            return 0;
+        }
+        return taskCount.decrementAndGet();
+    }
+
+    /**
+     * Stops counting an ingest task that was discarded by an ingest thread as
+     * in progress for its ingest job. Because no ingest thread will call back
+     * with a task completed notification for the task, the ingest job is asked
+     * to check for completion of its current stage if this was its last task.
+     *
+     * @param task The task.
+     */
+    private void taskDiscarded(IngestTask task) {
+        if (this.taskRemoved(task) == 0) {
+            task.getIngestJob().checkForStageCompleted();
+        }
     }
 
     /**
@@ -395,6 +647,22 @@ synchronized private void shuffleFileTaskQueues() {
      * @return True or false.
      */
     private static boolean shouldEnqueueFileTask(final FileIngestTask task) {
+        return shouldEnqueueFileTask(task, null);
+    }
+
+    /**
+     * Examines the file associated with a file ingest task to determine whether
+     * or not the file should be processed and therefore whether or not the task
+     * should be enqueued, using metadata for the file obtained by a bulk
+     * directory expansion instead of querying the case database if it is
+     * available.
+     *
+     * @param task     The task to be scrutinized.
+     * @param metadata The metadata for the file, may be null.
+     *
+     * @return True or false.
+     */
+    private static boolean shouldEnqueueFileTask(final FileIngestTask task, final BulkDirectoryExpander.FileMetadata metadata) {
         final AbstractFile file = task.getFile();
 
         // Skip the task if the file is an unallocated space file and the
@@ -417,31 +685,39 @@ private static boolean shouldEnqueueFileTask(final FileIngestTask task) {
             final org.sleuthkit.datamodel.File f = (org.sleuthkit.datamodel.File) file;
 
             // Get the type of the file system, if any, that owns the file.
-            TskData.TSK_FS_TYPE_ENUM fsType = TskData.TSK_FS_TYPE_ENUM.TSK_FS_TYPE_UNSUPP;
-            try {
-                FileSystem fs = f.getFileSystem();
-                if (fs != null) {
-                    fsType = fs.getFsType();
+            int fsType = TskData.TSK_FS_TYPE_ENUM.TSK_FS_TYPE_UNSUPP.getValue();
+            if (null != metadata) {
+                fsType = metadata.getFileSystemType();
+            } else {
+                try {
+                    FileSystem fs = f.getFileSystem();
+                    if (fs != null) {
+                        fsType = fs.getFsType().getValue();
+                    }
+                } catch (TskCoreException ex) {
+                    logger.log(Level.SEVERE, "Error querying file system for " + f, ex); //NON-NLS
                 }
-            } catch (TskCoreException ex) {
-                logger.log(Level.SEVERE, "Error querying file system for " + f, ex); //NON-NLS
             }
 
             // If the file system is not NTFS or FAT, don't skip the file.
-            if ((fsType.getValue() & FAT_NTFS_FLAGS) == 0) {
+            if ((fsType & FAT_NTFS_FLAGS) == 0) {
                 return true;
             }
 
-            // Find out whether the file is in a root directory. 
+            // Find out whether the file is in a root directory.
             boolean isInRootDir = false;
-            try {
-                AbstractFile parent = f.getParentDirectory();
-                isInRootDir = parent.isRoot();
-            } catch (TskCoreException ex) {
-                logger.log(Level.WARNING, "Error querying parent directory for" + f.getName(), ex); //NON-NLS
+            if (null != metadata) {
+                isInRootDir = metadata.parentIsRoot();
+            } else {
+                try {
+                    AbstractFile parent = f.getParentDirectory();
+                    isInRootDir = parent.isRoot();
+                } catch (TskCoreException ex) {
+                    logger.log(Level.WARNING, "Error querying parent directory for" + f.getName(), ex); //NON-NLS
+                }
             }
 
-            // If the file is in the root directory of an NTFS or FAT file 
+            // If the file is in the root directory of an NTFS or FAT file
             // system, check its meta-address and check its name for the '$'
             // character and a ':' character (not a default attribute).
             if (isInRootDir && f.getMetaAddr() < 32) {
@@ -455,43 +731,6 @@ private static boolean shouldEnqueueFileTask(final FileIngestTask task) {
         return true;
     }
 
-    /**
-     * Adds a file ingest task to the blocking pending tasks queue.
-     *
-     * @param task The task to add.
-     */
-    synchronized private void addToPendingFileTasksQueue(FileIngestTask task) {
-        try {
-            this.pendingFileTasks.putFirst(task);
-        } catch (InterruptedException ex) {
-            /**
-             * The current thread was interrupted while blocked on a full queue.
-             * Discard the task and reset the interrupted flag.
-             */
-            this.tasksInProgress.remove(task);
-            Thread.currentThread().interrupt();
-        }
-    }
-
-    /**
-     * Removes all of the ingest tasks associated with an ingest job from a
-     * tasks queue. The task is removed from the the tasks in progress list as
-     * well.
-     *
-     * @param taskQueue The queue from which to remove the tasks.
-     * @param jobId     The id of the job for which the tasks are to be removed.
-     */
-    synchronized private void removeTasksForJob(Collection<? extends IngestTask> taskQueue, long jobId) {
-        Iterator<? extends IngestTask> iterator = taskQueue.iterator();
-        while (iterator.hasNext()) {
-            IngestTask task = iterator.next();
-            if (task.getIngestJob().getId() == jobId) {
-                this.tasksInProgress.remove(task);
-                iterator.remove();
-            }
-        }
-    }
-
     /**
      * Counts the number of ingest tasks in a task queue for a given job.
      *
@@ -520,116 +759,25 @@ private static int countTasksForJob(Collection<? extends IngestTask> queue, long
      *
      * @return
      */
-    synchronized IngestJobTasksSnapshot getTasksSnapshotForJob(long jobId) {
+    IngestJobTasksSnapshot getTasksSnapshotForJob(long jobId) {
         return new IngestJobTasksSnapshot(jobId);
     }
 
     /**
-     * Prioritizes tasks for the root directories file ingest tasks queue (file
-     * system root directories, layout files and virtual directories).
+     * Prioritizes the file ingest tasks of one ingest job for the root
+     * directories and directories queues, using the file priority policies of
+     * the job. Ties go to the most recently created file, which keeps the
+     * traversal of equally ranked directories depth-first.
      */
-    private static class RootDirectoryTaskComparator implements Comparator<FileIngestTask> {
+    private static class FileIngestTaskPriorityComparator implements Comparator<FileIngestTask> {
 
         @Override
         public int compare(FileIngestTask q1, FileIngestTask q2) {
-            AbstractFilePriority.Priority p1 = AbstractFilePriority.getPriority(q1.getFile());
-            AbstractFilePriority.Priority p2 = AbstractFilePriority.getPriority(q2.getFile());
-            if (p1 == p2) {
-                return (int) (q2.getFile().getId() - q1.getFile().getId());
-            } else {
-                return p2.ordinal() - p1.ordinal();
-            }
-        }
-
-        private static class AbstractFilePriority {
-
-            enum Priority {
-
-                LAST, LOW, MEDIUM, HIGH
-            }
-
-            static final List<Pattern> LAST_PRI_PATHS = new ArrayList<>();
-
-            static final List<Pattern> LOW_PRI_PATHS = new ArrayList<>();
-
-            static final List<Pattern> MEDIUM_PRI_PATHS = new ArrayList<>();
-
-            static final List<Pattern> HIGH_PRI_PATHS = new ArrayList<>();
-            /*
-             * prioritize root directory folders based on the assumption that we
-             * are looking for user content. Other types of investigations may
-             * want different priorities.
-             */
-
-            static /*
-             * prioritize root directory folders based on the assumption that we
-             * are looking for user content. Other types of investigations may
-             * want different priorities.
-             */ {
-                // these files have no structure, so they go last
-                //unalloc files are handled as virtual files in getPriority()
-                //LAST_PRI_PATHS.schedule(Pattern.compile("^\\$Unalloc", Pattern.CASE_INSENSITIVE));
-                //LAST_PRI_PATHS.schedule(Pattern.compile("^\\Unalloc", Pattern.CASE_INSENSITIVE));
-                LAST_PRI_PATHS.add(Pattern.compile("^pagefile", Pattern.CASE_INSENSITIVE));
-                LAST_PRI_PATHS.add(Pattern.compile("^hiberfil", Pattern.CASE_INSENSITIVE));
-                // orphan files are often corrupt and windows does not typically have
-                // user content, so put them towards the bottom
-                LOW_PRI_PATHS.add(Pattern.compile("^\\$OrphanFiles", Pattern.CASE_INSENSITIVE));
-                LOW_PRI_PATHS.add(Pattern.compile("^Windows", Pattern.CASE_INSENSITIVE));
-                // all other files go into the medium category too
-                MEDIUM_PRI_PATHS.add(Pattern.compile("^Program Files", Pattern.CASE_INSENSITIVE));
-                // user content is top priority
-                HIGH_PRI_PATHS.add(Pattern.compile("^Users", Pattern.CASE_INSENSITIVE));
-                HIGH_PRI_PATHS.add(Pattern.compile("^Documents and Settings", Pattern.CASE_INSENSITIVE));
-                HIGH_PRI_PATHS.add(Pattern.compile("^home", Pattern.CASE_INSENSITIVE));
-                HIGH_PRI_PATHS.add(Pattern.compile("^ProgramData", Pattern.CASE_INSENSITIVE));
-            }
-
-            /**
-             * Get the enabled priority for a given file.
-             *
-             * @param abstractFile
-             *
-             * @return
-             */
-            static AbstractFilePriority.Priority getPriority(final AbstractFile abstractFile) {
-                if (!abstractFile.getType().equals(TskData.TSK_DB_FILES_TYPE_ENUM.FS)) {
-                    //quickly filter out unstructured content
-                    //non-fs virtual files and dirs, such as representing unalloc space
-                    return AbstractFilePriority.Priority.LAST;
-                }
-                //determine the fs files priority by name
-                final String path = abstractFile.getName();
-                if (path == null) {
-                    return AbstractFilePriority.Priority.MEDIUM;
-                }
-                for (Pattern p : HIGH_PRI_PATHS) {
-                    Matcher m = p.matcher(path);
-                    if (m.find()) {
-                        return AbstractFilePriority.Priority.HIGH;
-                    }
-                }
-                for (Pattern p : MEDIUM_PRI_PATHS) {
-                    Matcher m = p.matcher(path);
-                    if (m.find()) {
-                        return AbstractFilePriority.Priority.MEDIUM;
-                    }
-                }
-                for (Pattern p : LOW_PRI_PATHS) {
-                    Matcher m = p.matcher(path);
-                    if (m.find()) {
-                        return AbstractFilePriority.Priority.LOW;
-                    }
-                }
-                for (Pattern p : LAST_PRI_PATHS) {
-                    Matcher m = p.matcher(path);
-                    if (m.find()) {
-                        return AbstractFilePriority.Priority.LAST;
-                    }
-                }
-                //default is medium
-                return AbstractFilePriority.Priority.MEDIUM;
+            int cmp = FileIngestPriorityPolicies.compare(q1.getPriority(), q2.getPriority());
+            if (cmp != 0) {
+                return cmp;
             }
+            return Long.compare(q2.getFile().getId(), q1.getFile().getId());
         }
     }
 
@@ -659,9 +807,7 @@ private final class FileIngestTaskQueue implements IngestTaskQueue {
          */
         @Override
         public IngestTask getNextTask() throws InterruptedException {
-            FileIngestTask task = IngestTasksScheduler.this.pendingFileTasks.takeFirst();
-            shuffleFileTaskQueues();
-            return task;
+            return IngestTasksScheduler.this.pendingFileTasks.take(IngestTasksScheduler.this::expandNextDirectory);
         }
 
     }
@@ -685,11 +831,12 @@ class IngestJobTasksSnapshot {
          */
         IngestJobTasksSnapshot(long jobId) {
             this.jobId = jobId;
-            this.rootQueueSize = countTasksForJob(IngestTasksScheduler.this.rootDirectoryTasks, jobId);
-            this.dirQueueSize = countTasksForJob(IngestTasksScheduler.this.directoryTasks, jobId);
-            this.fileQueueSize = countTasksForJob(IngestTasksScheduler.this.pendingFileTasks, jobId);
+            this.rootQueueSize = IngestTasksScheduler.this.rootDirectoryTasks.count(jobId);
+            this.dirQueueSize = IngestTasksScheduler.this.directoryTasks.count(jobId);
+            this.fileQueueSize = IngestTasksScheduler.this.pendingFileTasks.count((FileIngestTask task) -> task.getIngestJob().getId() == jobId);
             this.dsQueueSize = countTasksForJob(IngestTasksScheduler.this.pendingDataSourceTasks, jobId);
-            this.runningListSize = countTasksForJob(IngestTasksScheduler.this.tasksInProgress, jobId);
+            AtomicLong taskCount = IngestTasksScheduler.this.tasksInProgress.get(jobId);
+            this.runningListSize = (null != taskCount) ? taskCount.get() : 0;
         }
 
         /**
@@ -0,0 +1,78 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.openide.util.NbBundle;
+import org.sleuthkit.datamodel.AbstractFile;
+
+/**
+ * A file ingest priority policy that prioritizes files by the kind of content
+ * their names suggest: documents and email first, then pictures and archives,
+ * then everything else, with executables and libraries last. The MIME type of
+ * a file is not known until the file type identification module has looked at
+ * it, so the file name extension serves as the hint. Directories keep the
+ * default priority.
+ */
+final class MimeHintPriorityPolicy implements FileIngestPriorityPolicy {
+
+    static final String NAME = "MimeHint"; //NON-NLS
+    private static final long LAST = 0;
+    private static final long DEFAULT = 1;
+    private static final long MEDIUM = 2;
+    private static final long HIGH = 3;
+    private static final Map<String, Long> PRIORITIES_BY_EXTENSION = new HashMap<>();
+
+    static {
+        for (String extension : new String[]{"doc", "docx", "docm", "xls", "xlsx", "xlsm", "ppt", "pptx", "pdf", "rtf", "txt", "odt", "ods", "odp", "csv", //NON-NLS
+            "pst", "ost", "mbox", "eml", "msg", "dbx"}) { //NON-NLS
+            PRIORITIES_BY_EXTENSION.put(extension, HIGH);
+        }
+        for (String extension : new String[]{"jpg", "jpeg", "png", "gif", "bmp", "tif", "tiff", "heic", //NON-NLS
+            "zip", "rar", "7z", "gz", "tar", "sqlite", "db"}) { //NON-NLS
+            PRIORITIES_BY_EXTENSION.put(extension, MEDIUM);
+        }
+        for (String extension : new String[]{"exe", "dll", "sys", "mui", "cab", "msi", "so", "dylib", "class", "jar"}) { //NON-NLS
+            PRIORITIES_BY_EXTENSION.put(extension, LAST);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return NbBundle.getMessage(this.getClass(), "MimeHintPriorityPolicy.displayName");
+    }
+
+    @Override
+    public long getPriority(AbstractFile file) {
+        String extension = file.getNameExtension();
+        if (null == extension || extension.isEmpty()) {
+            return DEFAULT;
+        }
+        Long priority = PRIORITIES_BY_EXTENSION.get(extension.toLowerCase(Locale.ROOT));
+        return (null != priority) ? priority : DEFAULT;
+    }
+
+}
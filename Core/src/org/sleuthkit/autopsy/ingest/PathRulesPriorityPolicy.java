@@ -0,0 +1,128 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.openide.util.NbBundle;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.TskData;
+
+/**
+ * A file ingest priority policy that prioritizes files by their paths, on the
+ * assumption that the investigation is looking for user content. The rules
+ * are applied to the full path of every file, so user documents are reached
+ * first no matter how deep they are in the tree. This is the default policy.
+ */
+final class PathRulesPriorityPolicy implements FileIngestPriorityPolicy {
+
+    static final String NAME = "PathRules"; //NON-NLS
+    private static final long LAST = 0;
+    private static final long LOW = 1;
+    private static final long MEDIUM = 2;
+    private static final long HIGH = 3;
+    private static final long HIGHEST = 4;
+    private static final List<Pattern> HIGHEST_PRI_PATHS = new ArrayList<>();
+    private static final List<Pattern> HIGH_PRI_PATHS = new ArrayList<>();
+    private static final List<Pattern> MEDIUM_PRI_PATHS = new ArrayList<>();
+    private static final List<Pattern> LOW_PRI_PATHS = new ArrayList<>();
+    private static final List<Pattern> LAST_PRI_PATHS = new ArrayList<>();
+
+    static {
+        // the document folders of user profiles are top priority
+        HIGHEST_PRI_PATHS.add(Pattern.compile("^/(Users|Documents and Settings|home)/[^/]+/(Documents|My Documents|Desktop|Downloads|Pictures)(/|$)", Pattern.CASE_INSENSITIVE)); //NON-NLS
+        // the rest of the user content comes next
+        HIGH_PRI_PATHS.add(Pattern.compile("^/Users(/|$)", Pattern.CASE_INSENSITIVE)); //NON-NLS
+        HIGH_PRI_PATHS.add(Pattern.compile("^/Documents and Settings(/|$)", Pattern.CASE_INSENSITIVE)); //NON-NLS
+        HIGH_PRI_PATHS.add(Pattern.compile("^/home(/|$)", Pattern.CASE_INSENSITIVE)); //NON-NLS
+        HIGH_PRI_PATHS.add(Pattern.compile("^/ProgramData(/|$)", Pattern.CASE_INSENSITIVE)); //NON-NLS
+        // all other files go into the medium category too
+        MEDIUM_PRI_PATHS.add(Pattern.compile("^/Program Files", Pattern.CASE_INSENSITIVE)); //NON-NLS
+        // orphan files are often corrupt and windows does not typically have
+        // user content, so put them towards the bottom
+        LOW_PRI_PATHS.add(Pattern.compile("^/\\$OrphanFiles(/|$)", Pattern.CASE_INSENSITIVE)); //NON-NLS
+        LOW_PRI_PATHS.add(Pattern.compile("^/Windows(/|$)", Pattern.CASE_INSENSITIVE)); //NON-NLS
+        // these files have no structure, so they go last
+        LAST_PRI_PATHS.add(Pattern.compile("^/pagefile", Pattern.CASE_INSENSITIVE)); //NON-NLS
+        LAST_PRI_PATHS.add(Pattern.compile("^/hiberfil", Pattern.CASE_INSENSITIVE)); //NON-NLS
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return NbBundle.getMessage(this.getClass(), "PathRulesPriorityPolicy.displayName");
+    }
+
+    @Override
+    public long getPriority(AbstractFile file) {
+        if (!file.getType().equals(TskData.TSK_DB_FILES_TYPE_ENUM.FS)) {
+            // quickly filter out unstructured content, i.e., non-fs virtual
+            // files and dirs, such as representing unalloc space
+            return LAST;
+        }
+        String name = file.getName();
+        if (null == name) {
+            return MEDIUM;
+        }
+        String parentPath = file.getParentPath();
+        String path = (null == parentPath || parentPath.isEmpty()) ? "/" + name : (parentPath.endsWith("/") ? parentPath + name : parentPath + "/" + name);
+        return getPathPriority(path);
+    }
+
+    /**
+     * Gets the priority of a file system file or directory by its path.
+     *
+     * @param path The full path of the file, starting with a slash.
+     *
+     * @return The priority.
+     */
+    static long getPathPriority(String path) {
+        if (matches(HIGHEST_PRI_PATHS, path)) {
+            return HIGHEST;
+        }
+        if (matches(HIGH_PRI_PATHS, path)) {
+            return HIGH;
+        }
+        if (matches(MEDIUM_PRI_PATHS, path)) {
+            return MEDIUM;
+        }
+        if (matches(LOW_PRI_PATHS, path)) {
+            return LOW;
+        }
+        if (matches(LAST_PRI_PATHS, path)) {
+            return LAST;
+        }
+        return MEDIUM;
+    }
+
+    private static boolean matches(List<Pattern> patterns, String path) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(path).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * A queue of tasks that keeps a priority queue per ingest job and takes from
+ * the jobs in turn. The priorities of the tasks of different jobs are never
+ * compared, since each job has its own priority policies, and no job can keep
+ * the tasks of the other jobs waiting by having higher priorities.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <T> The type of the tasks.
+ */
+final class RoundRobinPriorityQueue<T> {
+
+    private final ToLongFunction<? super T> jobIdFunction;
+    private final Comparator<? super T> comparator;
+
+    /*
+     * The queues of the jobs that have tasks, in the order in which the jobs
+     * get their next turn.
+     */
+    private final LinkedHashMap<Long, PriorityQueue<T>> jobQueues = new LinkedHashMap<>();
+
+    /**
+     * Constructs a queue of tasks that takes from ingest jobs in turn.
+     *
+     * @param jobIdFunction Gets the identifier of the ingest job of a task.
+     * @param comparator    Orders the tasks of one ingest job, with the task
+     *                      to take first comparing lowest.
+     */
+    RoundRobinPriorityQueue(ToLongFunction<? super T> jobIdFunction, Comparator<? super T> comparator) {
+        this.jobIdFunction = jobIdFunction;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Adds a task to the queue of its ingest job. A job that had no tasks
+     * gets its turn after the jobs that do.
+     *
+     * @param task The task.
+     */
+    synchronized void add(T task) {
+        this.jobQueues.computeIfAbsent(this.jobIdFunction.applyAsLong(task), (Long jobId) -> new PriorityQueue<>(this.comparator)).add(task);
+    }
+
+    /**
+     * Adds tasks to the queues of their ingest jobs.
+     *
+     * @param tasks The tasks.
+     */
+    synchronized void addAll(Collection<? extends T> tasks) {
+        for (T task : tasks) {
+            this.add(task);
+        }
+    }
+
+    /**
+     * Takes the highest priority task of the ingest job whose turn it is. The
+     * job then goes to the back of the line.
+     *
+     * @return The task, or null if there are no tasks.
+     */
+    synchronized T poll() {
+        Iterator<Map.Entry<Long, PriorityQueue<T>>> iterator = this.jobQueues.entrySet().iterator();
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        Map.Entry<Long, PriorityQueue<T>> next = iterator.next();
+        iterator.remove();
+        T task = next.getValue().poll();
+        if (!next.getValue().isEmpty()) {
+            this.jobQueues.put(next.getKey(), next.getValue());
+        }
+        return task;
+    }
+
+    /**
+     * Takes the highest priority task of a given ingest job, without changing
+     * the turns of the jobs.
+     *
+     * @param jobId The identifier of the job.
+     *
+     * @return The task, or null if the job has no tasks.
+     */
+    synchronized T poll(long jobId) {
+        PriorityQueue<T> queue = this.jobQueues.get(jobId);
+        if (null == queue) {
+            return null;
+        }
+        T task = queue.poll();
+        if (queue.isEmpty()) {
+            this.jobQueues.remove(jobId);
+        }
+        return task;
+    }
+
+    /**
+     * Removes all of the tasks of an ingest job.
+     *
+     * @param jobId     The identifier of the job.
+     * @param onRemoved Called for each task that is removed.
+     */
+    synchronized void removeAll(long jobId, Consumer<? super T> onRemoved) {
+        PriorityQueue<T> queue = this.jobQueues.remove(jobId);
+        if (null != queue) {
+            for (T task : queue) {
+                onRemoved.accept(task);
+            }
+        }
+    }
+
+    /**
+     * Counts the tasks of an ingest job.
+     *
+     * @param jobId The identifier of the job.
+     *
+     * @return The number of tasks.
+     */
+    synchronized int count(long jobId) {
+        PriorityQueue<T> queue = this.jobQueues.get(jobId);
+        return (null == queue) ? 0 : queue.size();
+    }
+
+}
@@ -0,0 +1,406 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.coreutils.MessageNotifyUtil;
+import org.sleuthkit.datamodel.AbstractFile;
+
+
+/**
+ * This class manages a sequence of file level ingest modules for a data source
+ * ingest job as a series of stages, one per module. Each stage has its own
+ * queue of files and its own workers, each of which runs its own instance of
+ * the module. A file moves from stage to stage in module order. The pipeline
+ * holds a bounded number of files, so a slow module applies backpressure to
+ * the file ingest threads instead of stalling the modules behind it. The
+ * number of workers for a stage depends on whether the ingest module factory
+ * declares the module to be CPU bound or IO bound. The stages that run IO
+ * bound modules follow changes to the number of file ingest threads while the
+ * job is running. The workers of the pipelines of all ingest jobs run on one
+ * capped thread pool of the ingest manager.
+ * <p>
+ * When the last stage is done with a file, the pipeline notifies the data
+ * source ingest job that the file ingest task is completed. The notification
+ * is made on a completion thread rather than on a stage worker thread, since
+ * the last completed task can cause the job to shut the pipeline down.
+ * <p>
+ * This class is thread-safe.
+ */
+final class StagedFileIngestPipeline {
+
+    private static final Logger logger = Logger.getLogger(StagedFileIngestPipeline.class.getName());
+    private static final IngestManager ingestManager = IngestManager.getInstance();
+    private static final int QUEUE_CAPACITY_PER_WORKER = 4;
+    private final DataSourceIngestJob job;
+    private final List<Stage> stages = new ArrayList<>();
+    private final StagedTaskRunner<StagedFile> runner;
+    private volatile int ioBoundWorkers;
+    private Date startTime;
+    private volatile boolean running;
+
+    /**
+     * Constructs an object that manages a sequence of file level ingest
+     * modules as a series of stages.
+     *
+     * @param job             The data source ingest job that owns the pipeline.
+     * @param moduleTemplates The ingest module templates that define the
+     *                        pipeline.
+     * @param ioBoundWorkers  The number of workers to use for stages that run
+     *                        IO bound modules.
+     * @param cpuBoundWorkers The number of workers to use for stages that run
+     *                        CPU bound modules.
+     */
+    StagedFileIngestPipeline(DataSourceIngestJob job, List<IngestModuleTemplate> moduleTemplates, int ioBoundWorkers, int cpuBoundWorkers) {
+        this.job = job;
+        this.ioBoundWorkers = Math.max(1, ioBoundWorkers);
+        this.runner = new StagedTaskRunner<>("IM-file-ingest-stage", QUEUE_CAPACITY_PER_WORKER, ingestManager.getStagedFileIngestThreadPool(), (StagedFile file) -> job.isCancelled(), this::fileDone); //NON-NLS
+        for (IngestModuleTemplate template : moduleTemplates) {
+            if (template.isFileIngestModuleTemplate()) {
+                boolean ioBound = (template.getFileIngestModuleWorkload() != IngestModuleFactory.FileIngestModuleWorkload.CPU_BOUND);
+                Stage stage = new Stage(template, this.stages.size(), ioBound, ioBound ? this.ioBoundWorkers : Math.max(1, cpuBoundWorkers));
+                this.stages.add(stage);
+                this.runner.addStage(stage.workers);
+            }
+        }
+    }
+
+    /**
+     * Queries whether or not there are any ingest modules in this pipeline.
+     *
+     * @return True or false.
+     */
+    boolean isEmpty() {
+        return this.stages.isEmpty();
+    }
+
+    /**
+     * Queries whether or not this pipeline is running.
+     *
+     * @return True or false.
+     */
+    boolean isRunning() {
+        return this.running;
+    }
+
+    /**
+     * Returns the start up time of this pipeline.
+     *
+     * @return The file processing start time, may be null if this pipeline has
+     *         not been started yet.
+     */
+    Date getStartTime() {
+        return this.startTime;
+    }
+
+    /**
+     * Starts up all of the ingest module instances in the pipeline, then
+     * starts the stage workers if there were no start up errors.
+     *
+     * @return List of start up errors, possibly empty.
+     */
+    synchronized List<IngestModuleError> startUp() {
+        this.startTime = new Date();
+        this.running = true;
+        List<IngestModuleError> errors = new ArrayList<>();
+        for (Stage stage : this.stages) {
+            errors.addAll(stage.startUpModules());
+        }
+        if (errors.isEmpty()) {
+            for (Stage stage : this.stages) {
+                for (Worker worker : stage.workers) {
+                    worker.activityId = ingestManager.addIngestThreadActivitySnapshot();
+                }
+            }
+            this.runner.start();
+        }
+        return errors;
+    }
+
+    /**
+     * Puts a file into the first stage of the pipeline, blocking if the
+     * pipeline already holds as many files as it can.
+     *
+     * @param task A file level ingest task containing a file to be processed.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while
+     *                              blocked on a full queue.
+     */
+    void process(FileIngestTask task) throws InterruptedException {
+        this.job.getFileContentCache().open(task.getFile());
+        try {
+            this.runner.put(new StagedFile(task));
+        } catch (InterruptedException ex) {
+            this.job.getFileContentCache().close(task.getFile());
+            throw ex;
+        }
+    }
+
+    /**
+     * Grows or shrinks the stages that run IO bound modules to a number of
+     * workers. New workers get module instances of their own, and retired
+     * workers shut their module instances down once they finish the file they
+     * are working on. Called for each file put into the pipeline, so that the
+     * pipeline follows changes to the number of file ingest threads.
+     *
+     * @param numberOfWorkers The number of workers.
+     */
+    void setIoBoundWorkerCount(int numberOfWorkers) {
+        int newIoBoundWorkers = Math.max(1, numberOfWorkers);
+        if (newIoBoundWorkers == this.ioBoundWorkers) {
+            return;
+        }
+        synchronized (this) {
+            if (!this.running || newIoBoundWorkers == this.ioBoundWorkers) {
+                return;
+            }
+            logger.log(Level.INFO, "Resizing IO bound stages of staged file ingest pipeline from {0} to {1} workers", new Object[]{this.ioBoundWorkers, newIoBoundWorkers}); //NON-NLS
+            this.ioBoundWorkers = newIoBoundWorkers;
+            for (Stage stage : this.stages) {
+                if (stage.ioBound) {
+                    stage.resize(newIoBoundWorkers);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the stage workers and shuts down all of the ingest module
+     * instances in the pipeline. All of the file ingest tasks for the job
+     * should be completed before this is called. May be called by the job
+     * when it is notified that the last file ingest task is completed.
+     *
+     * @return A list of shut down errors, possibly empty.
+     */
+    synchronized List<IngestModuleError> shutDown() {
+        List<IngestModuleError> errors = new ArrayList<>();
+        if (this.running == true) { // Don't shut down pipelines that never started
+            this.runner.stop();
+            for (Stage stage : this.stages) {
+                errors.addAll(stage.shutDownModules());
+            }
+        }
+        this.running = false;
+        return errors;
+    }
+
+    /**
+     * Finishes up a file that has left the pipeline, either by going through
+     * the last stage or because the ingest job was cancelled.
+     *
+     * @param file The file and its processing errors.
+     */
+    private void fileDone(StagedFile file) {
+        AbstractFile abstractFile = file.task.getFile();
+        this.job.getFileContentCache().close(abstractFile);
+        abstractFile.close();
+        if (!this.job.isCancelled()) {
+            ingestManager.fireFileIngestDone(abstractFile);
+        }
+        ingestManager.stagedFileIngestTaskCompleted();
+        this.job.stagedFileIngestTaskCompleted(file.task, file.errors);
+    }
+
+    /**
+     * Notifies the user of an ingest module error.
+     *
+     * @param moduleDisplayName The display name of the module.
+     * @param ex                The error.
+     */
+    private static void notifyError(String moduleDisplayName, Throwable ex) {
+        String msg = ex.getMessage();
+        // Jython run-time errors don't seem to have a message, but have details in toString.
+        if (msg == null) {
+            msg = ex.toString();
+        }
+        MessageNotifyUtil.Notify.error(moduleDisplayName + " Error", msg);
+    }
+
+    /**
+     * A file moving through the pipeline, with the processing errors for the
+     * file so far. A file is only worked on by one stage at a time.
+     */
+    private static final class StagedFile {
+
+        private final FileIngestTask task;
+        private final List<IngestModuleError> errors = new ArrayList<>();
+
+        StagedFile(FileIngestTask task) {
+            this.task = task;
+        }
+    }
+
+    /**
+     * A stage of the pipeline: a file level ingest module with a set of
+     * workers, each with its own module instance.
+     */
+    private final class Stage {
+
+        private final IngestModuleTemplate template;
+        private final String displayName;
+        private final int index;
+        private final boolean ioBound;
+        private final List<Worker> workers = new ArrayList<>();
+
+        /**
+         * Constructs a stage of the pipeline.
+         *
+         * @param template    The ingest module template for the module.
+         * @param index       The index of the stage in the pipeline.
+         * @param ioBound     Whether or not the module is IO bound.
+         * @param workerCount The number of workers.
+         */
+        Stage(IngestModuleTemplate template, int index, boolean ioBound, int workerCount) {
+            this.template = template;
+            this.displayName = template.getModuleName();
+            this.index = index;
+            this.ioBound = ioBound;
+            for (int i = 0; i < workerCount; ++i) {
+                this.workers.add(new Worker(this, template.createFileIngestModule()));
+            }
+        }
+
+        /**
+         * Adds or retires workers of this stage while the pipeline is running.
+         * A worker is only added if its module instance starts up without
+         * errors.
+         *
+         * @param workerCount The number of workers.
+         */
+        void resize(int workerCount) {
+            while (this.workers.size() < workerCount) {
+                Worker worker = new Worker(this, this.template.createFileIngestModule());
+                try {
+                    worker.module.startUp(new IngestJobContext(StagedFileIngestPipeline.this.job));
+                } catch (Throwable ex) { // Catch-all exception firewall
+                    logger.log(Level.WARNING, String.format("Error starting up an additional %s module, the stage keeps %d workers", this.displayName, this.workers.size()), ex); //NON-NLS
+                    return;
+                }
+                worker.activityId = ingestManager.addIngestThreadActivitySnapshot();
+                this.workers.add(worker);
+                StagedFileIngestPipeline.this.runner.addWorker(this.index, worker);
+            }
+            while (this.workers.size() > workerCount) {
+                Worker worker = this.workers.remove(this.workers.size() - 1);
+                StagedFileIngestPipeline.this.runner.retireWorker(this.index, worker).thenRun(() -> {
+                    List<IngestModuleError> errors = worker.shutDown();
+                    if (!errors.isEmpty()) {
+                        logger.log(Level.WARNING, "Error shutting down a retired {0} module", this.displayName); //NON-NLS
+                    }
+                });
+            }
+        }
+
+        /**
+         * Starts up the module instances of this stage.
+         *
+         * @return A list of start up errors, possibly empty.
+         */
+        List<IngestModuleError> startUpModules() {
+            List<IngestModuleError> errors = new ArrayList<>();
+            for (Worker worker : this.workers) {
+                try {
+                    worker.module.startUp(new IngestJobContext(StagedFileIngestPipeline.this.job));
+                } catch (Throwable ex) { // Catch-all exception firewall
+                    errors.add(new IngestModuleError(this.displayName, ex));
+                }
+            }
+            return errors;
+        }
+
+        /**
+         * Shuts down the module instances of this stage.
+         *
+         * @return A list of shut down errors, possibly empty.
+         */
+        List<IngestModuleError> shutDownModules() {
+            List<IngestModuleError> errors = new ArrayList<>();
+            for (Worker worker : this.workers) {
+                errors.addAll(worker.shutDown());
+            }
+            return errors;
+        }
+    }
+
+    /**
+     * A worker for a stage of the pipeline. The activity of the worker is
+     * reported in the ingest thread activity snapshots, since the file ingest
+     * thread that put a file into the pipeline is done with it as soon as it
+     * is queued.
+     */
+    private final class Worker implements Consumer<StagedFile> {
+
+        private static final long NO_ACTIVITY_ID = Long.MIN_VALUE;
+        private final Stage stage;
+        private final FileIngestModule module;
+        private volatile long activityId = NO_ACTIVITY_ID;
+
+        Worker(Stage stage, FileIngestModule module) {
+            this.stage = stage;
+            this.module = module;
+        }
+
+        /**
+         * Shuts down the module instance of this worker.
+         *
+         * @return A list of shut down errors, possibly empty.
+         */
+        List<IngestModuleError> shutDown() {
+            List<IngestModuleError> errors = new ArrayList<>();
+            try {
+                this.module.shutDown();
+            } catch (Throwable ex) { // Catch-all exception firewall
+                errors.add(new IngestModuleError(this.stage.displayName, ex));
+                notifyError(this.stage.displayName, ex);
+            }
+            if (NO_ACTIVITY_ID != this.activityId) {
+                ingestManager.removeIngestThreadActivitySnapshot(this.activityId);
+                this.activityId = NO_ACTIVITY_ID;
+            }
+            return errors;
+        }
+
+        @Override
+        public void accept(StagedFile file) {
+            FileIngestTask task = file.task;
+            IngestModuleMetricsRecorder metrics = StagedFileIngestPipeline.this.job.getModuleMetricsRecorder();
+            ingestManager.setIngestThreadActivity(this.activityId, task, this.stage.displayName);
+            long start = System.nanoTime();
+            try {
+                StagedFileIngestPipeline.this.job.setCurrentFileIngestModule(this.stage.displayName, task.getFile().getName());
+                IngestModule.ProcessResult result = this.module.process(task.getFile());
+                long elapsed = System.nanoTime() - start;
+                ingestManager.incrementModuleRunTime(this.stage.displayName, elapsed / 1000000);
+                metrics.record(this.stage.displayName, elapsed, task.getFile().getSize(), result == IngestModule.ProcessResult.ERROR);
+            } catch (Throwable ex) { // Catch-all exception firewall
+                metrics.record(this.stage.displayName, System.nanoTime() - start, task.getFile().getSize(), true);
+                file.errors.add(new IngestModuleError(this.stage.displayName, ex));
+                notifyError(this.stage.displayName, ex);
+            } finally {
+                ingestManager.setIngestThreadIdle(this.activityId);
+            }
+        }
+    }
+
+}
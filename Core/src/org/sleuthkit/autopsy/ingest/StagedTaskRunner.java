@@ -0,0 +1,407 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+
+/**
+ * Runs tasks through a series of stages. Each stage has its own queue of tasks
+ * and its own workers. A task moves from stage to stage in order. The number
+ * of tasks in the runner is bounded, so a slow stage applies backpressure to
+ * the callers putting tasks into the runner once the tasks pile up in front of
+ * it.
+ * <p>
+ * Workers do not have threads of their own. A worker that is handed tasks
+ * runs on a thread borrowed from a worker pool that may be shared with other
+ * runners, and gives the thread back once its stage queue is empty or it has
+ * run a batch of tasks, so that the threads of a capped pool are shared
+ * fairly. A stage never runs more tasks at once than it has workers. Workers
+ * never block on the queues, so stages can not deadlock on a full pool.
+ * <p>
+ * When a task leaves the last stage, it is handed to a completion handler that
+ * runs on a thread of its own. The completion handler may stop the runner, so
+ * stopping never interrupts or waits for the thread that asked for it.
+ * <p>
+ * Workers can be added to and retired from a stage while the runner is
+ * running. A retired worker finishes the task it is working on first.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <T> The type of the tasks.
+ */
+final class StagedTaskRunner<T> {
+
+    private static final Logger logger = Logger.getLogger(StagedTaskRunner.class.getName());
+    private static final long STOP_TIMEOUT_SECS = 60;
+    private static final int MAX_TASKS_PER_RUN = 16;
+    private final String threadNamePrefix;
+    private final int queueCapacityPerWorker;
+    private final Executor workerPool;
+    private final Predicate<T> skipRemainingStages;
+    private final Consumer<T> completionHandler;
+    private final List<Stage> stages = new ArrayList<>();
+    private final List<WorkerHandle> runningWorkers = new ArrayList<>();
+    private final ExecutorService completionExecutor;
+    private volatile Thread completionThread;
+    private Semaphore capacity;
+    private volatile boolean started;
+
+    /**
+     * Constructs an object that runs tasks through a series of stages.
+     *
+     * @param threadNamePrefix       The prefix for the name of the completion
+     *                               thread of the runner.
+     * @param queueCapacityPerWorker The number of tasks the runner holds, per
+     *                               initial worker of a stage.
+     * @param workerPool             The pool of threads the workers run on.
+     * @param skipRemainingStages    Tests whether a task should skip the rest
+     *                               of the stages, e.g., because it has been
+     *                               cancelled.
+     * @param completionHandler      Called for each task that leaves the
+     *                               runner, on the completion thread.
+     */
+    StagedTaskRunner(String threadNamePrefix, int queueCapacityPerWorker, Executor workerPool, Predicate<T> skipRemainingStages, Consumer<T> completionHandler) {
+        this.threadNamePrefix = threadNamePrefix;
+        this.queueCapacityPerWorker = queueCapacityPerWorker;
+        this.workerPool = workerPool;
+        this.skipRemainingStages = skipRemainingStages;
+        this.completionHandler = completionHandler;
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat(threadNamePrefix + "-done-%d").build(); //NON-NLS
+        this.completionExecutor = Executors.newSingleThreadExecutor((Runnable task) -> {
+            Thread thread = threadFactory.newThread(task);
+            this.completionThread = thread;
+            return thread;
+        });
+    }
+
+    /**
+     * Adds a stage to the end of the series of stages. Must be called before
+     * the runner is started.
+     *
+     * @param workers The workers of the stage. The number of tasks the runner
+     *                holds is based on the initial numbers of workers.
+     */
+    synchronized void addStage(List<? extends Consumer<T>> workers) {
+        Stage stage = new Stage(Math.max(1, workers.size()));
+        for (Consumer<T> worker : workers) {
+            WorkerHandle handle = new WorkerHandle(stage, worker);
+            stage.handles.add(handle);
+            stage.idleHandles.add(handle);
+        }
+        if (!this.stages.isEmpty()) {
+            this.stages.get(this.stages.size() - 1).nextStage = stage;
+        }
+        this.stages.add(stage);
+    }
+
+    /**
+     * Starts handing tasks to the workers of all of the stages.
+     */
+    synchronized void start() {
+        int totalCapacity = 0;
+        for (Stage stage : this.stages) {
+            totalCapacity += stage.capacity;
+        }
+        this.capacity = new Semaphore(Math.max(1, totalCapacity));
+        this.started = true;
+        for (Stage stage : this.stages) {
+            this.dispatch(stage);
+        }
+    }
+
+    /**
+     * Adds a worker to a stage. The worker starts taking tasks right away if
+     * the runner is running.
+     *
+     * @param stageIndex The index of the stage.
+     * @param worker     The worker.
+     */
+    synchronized void addWorker(int stageIndex, Consumer<T> worker) {
+        Stage stage = this.stages.get(stageIndex);
+        WorkerHandle handle = new WorkerHandle(stage, worker);
+        stage.handles.add(handle);
+        stage.idleHandles.add(handle);
+        if (this.started) {
+            this.dispatch(stage);
+        }
+    }
+
+    /**
+     * Retires a worker of a stage. The worker finishes the task it is working
+     * on, if any, and then stops taking tasks.
+     *
+     * @param stageIndex The index of the stage.
+     * @param worker     The worker.
+     *
+     * @return A future that is completed when the worker has stopped.
+     */
+    synchronized CompletableFuture<Void> retireWorker(int stageIndex, Consumer<T> worker) {
+        Stage stage = this.stages.get(stageIndex);
+        for (WorkerHandle handle : stage.handles) {
+            if (handle.worker == worker) {
+                stage.handles.remove(handle);
+                handle.retired = true;
+                if (stage.idleHandles.remove(handle)) {
+                    handle.stopped.complete(null);
+                }
+                return handle.stopped;
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Puts a task into the first stage, blocking if the runner already holds
+     * as many tasks as it can.
+     *
+     * @param task The task.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while
+     *                              blocked.
+     */
+    void put(T task) throws InterruptedException {
+        Semaphore runnerCapacity;
+        synchronized (this) {
+            runnerCapacity = this.capacity;
+        }
+        if (null == runnerCapacity) {
+            throw new IllegalStateException("Tasks put into a runner that was never started"); //NON-NLS
+        }
+        runnerCapacity.acquire();
+        this.enqueue(this.stages.get(0), task);
+    }
+
+    /**
+     * Stops the workers of all of the stages and waits for them to finish any
+     * task they are working on. Tasks that are still in the queues are handed
+     * to the completion handler. May be called from the completion handler, in
+     * which case the calling thread is neither interrupted nor waited for.
+     */
+    synchronized void stop() {
+        this.started = false;
+        for (WorkerHandle handle : this.runningWorkers) {
+            if (null != handle.thread) {
+                handle.thread.interrupt();
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(STOP_TIMEOUT_SECS);
+        try {
+            while (!this.runningWorkers.isEmpty()) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    logger.log(Level.SEVERE, "Timed out waiting for {0} workers to stop", this.threadNamePrefix); //NON-NLS
+                    break;
+                }
+                this.wait(remainingMs);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        List<T> abandonedTasks = new ArrayList<>();
+        for (Stage stage : this.stages) {
+            for (T task = stage.queue.poll(); null != task; task = stage.queue.poll()) {
+                abandonedTasks.add(task);
+            }
+            for (WorkerHandle handle : stage.idleHandles) {
+                handle.stopped.complete(null);
+            }
+        }
+        for (T task : abandonedTasks) {
+            this.done(task);
+        }
+        this.completionExecutor.shutdown();
+        if (Thread.currentThread() != this.completionThread) {
+            try {
+                if (!this.completionExecutor.awaitTermination(STOP_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+                    logger.log(Level.SEVERE, "Timed out waiting for {0} completion thread to stop", this.threadNamePrefix); //NON-NLS
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Puts a task into the queue of a stage and hands it to an idle worker of
+     * the stage, if there is one.
+     *
+     * @param stage The stage.
+     * @param task  The task.
+     */
+    private void enqueue(Stage stage, T task) {
+        stage.queue.add(task);
+        synchronized (this) {
+            if (this.started) {
+                this.dispatch(stage);
+            }
+        }
+    }
+
+    /**
+     * Runs idle workers of a stage on the worker pool while there are tasks in
+     * the queue of the stage that no running worker will take.
+     *
+     * @param stage The stage.
+     */
+    private synchronized void dispatch(Stage stage) {
+        while (stage.queue.size() > stage.runningHandles && !stage.idleHandles.isEmpty()) {
+            WorkerHandle handle = stage.idleHandles.poll();
+            stage.runningHandles++;
+            this.runningWorkers.add(handle);
+            try {
+                this.workerPool.execute(handle);
+            } catch (RejectedExecutionException ex) {
+                // The pool has been shut down, which only happens when the
+                // application exits. Stopping the runner completes the tasks.
+                logger.log(Level.SEVERE, "Staged task worker pool rejected a {0} worker", this.threadNamePrefix); //NON-NLS
+                this.workerStopped(handle);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Puts a worker that is done with its run back into the idle workers of
+     * its stage, or stops it if it was retired.
+     *
+     * @param handle The worker.
+     */
+    private synchronized void workerStopped(WorkerHandle handle) {
+        handle.stage.runningHandles--;
+        this.runningWorkers.remove(handle);
+        if (handle.retired) {
+            handle.stopped.complete(null);
+        } else {
+            handle.stage.idleHandles.add(handle);
+            if (this.started) {
+                this.dispatch(handle.stage);
+            }
+        }
+        this.notifyAll();
+    }
+
+    /**
+     * Hands a task that has left the runner to the completion handler.
+     *
+     * @param task The task.
+     */
+    private void done(T task) {
+        try {
+            this.completionExecutor.submit(() -> {
+                this.capacity.release();
+                this.completionHandler.accept(task);
+            });
+        } catch (RejectedExecutionException ex) {
+            // The runner has been stopped, which only happens if something
+            // has gone wrong. Complete the task here so it is not lost.
+            this.capacity.release();
+            this.completionHandler.accept(task);
+        }
+    }
+
+    /**
+     * A stage: a queue of tasks and a set of workers.
+     */
+    private final class Stage {
+
+        private final List<WorkerHandle> handles = new ArrayList<>();
+        private final Deque<WorkerHandle> idleHandles = new ArrayDeque<>();
+        private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+        private final int capacity;
+        private int runningHandles;
+        private Stage nextStage;
+
+        Stage(int initialWorkerCount) {
+            this.capacity = initialWorkerCount * StagedTaskRunner.this.queueCapacityPerWorker;
+        }
+    }
+
+    /**
+     * Runs a worker of a stage on a pool thread until the queue of the stage
+     * is empty, the worker has run a batch of tasks, the worker is retired or
+     * the runner is stopped.
+     */
+    private final class WorkerHandle implements Runnable {
+
+        private final Stage stage;
+        private final Consumer<T> worker;
+        private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+        private volatile boolean retired;
+        private volatile Thread thread;
+
+        WorkerHandle(Stage stage, Consumer<T> worker) {
+            this.stage = stage;
+            this.worker = worker;
+        }
+
+        @Override
+        public void run() {
+            synchronized (StagedTaskRunner.this) {
+                this.thread = Thread.currentThread();
+            }
+            try {
+                this.processTasks();
+            } finally {
+                synchronized (StagedTaskRunner.this) {
+                    this.thread = null;
+                    // Don't leave an interrupt from stop() to the next user
+                    // of the pool thread.
+                    Thread.interrupted();
+                    StagedTaskRunner.this.workerStopped(this);
+                }
+            }
+        }
+
+        private void processTasks() {
+            for (int i = 0; i < MAX_TASKS_PER_RUN && !this.retired && StagedTaskRunner.this.started; ++i) {
+                T task = this.stage.queue.poll();
+                if (null == task) {
+                    break;
+                }
+                if (!StagedTaskRunner.this.skipRemainingStages.test(task)) {
+                    this.worker.accept(task);
+                }
+                if (null != this.stage.nextStage && !StagedTaskRunner.this.skipRemainingStages.test(task)) {
+                    StagedTaskRunner.this.enqueue(this.stage.nextStage, task);
+                } else {
+                    StagedTaskRunner.this.done(task);
+                }
+            }
+        }
+    }
+
+}
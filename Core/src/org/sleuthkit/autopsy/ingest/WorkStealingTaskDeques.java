@@ -0,0 +1,284 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The pending task deques of a work stealing arrangement of worker threads:
+ * one LIFO deque per worker thread, plus a shared deque for tasks added by
+ * threads that are not worker threads.
+ * <p>
+ * A worker thread takes tasks from the front of its own deque, then from the
+ * front of the shared deque. When both are empty, the worker asks a task
+ * source to add more tasks to its own deque, and if there are none, steals
+ * the oldest task from the back of the deque of another worker. Workers that
+ * find no task wait to be signaled that more tasks are available. The lock
+ * and condition used for waiting are only used by idle workers and by
+ * producers when there are idle workers; a generation counter prevents lost
+ * wake ups.
+ *
+ * @param <T> The type of the tasks.
+ */
+final class WorkStealingTaskDeques<T> {
+
+    /**
+     * A source of tasks for a worker whose own deque and the shared deque are
+     * empty.
+     *
+     * @param <T> The type of the tasks.
+     */
+    interface TaskSource<T> {
+
+        /**
+         * Adds tasks to the deque of the calling worker.
+         *
+         * @param ownTasks The deque of the calling worker.
+         *
+         * @return True if the source did any work, in which case the deques
+         *         are checked again, or false if the source has no tasks.
+         */
+        boolean addTasks(Deque<T> ownTasks);
+    }
+
+    private final ConcurrentLinkedDeque<T> sharedTasks = new ConcurrentLinkedDeque<>();
+    private final CopyOnWriteArrayList<ConcurrentLinkedDeque<T>> workerTasks = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<ConcurrentLinkedDeque<T>> currentWorkerTasks = new ThreadLocal<>();
+    private final ReentrantLock idleWorkersLock = new ReentrantLock();
+    private final Condition tasksAvailable = idleWorkersLock.newCondition();
+    private final AtomicInteger idleWorkers = new AtomicInteger(0);
+    private final AtomicLong tasksGeneration = new AtomicLong(0L);
+
+    /**
+     * Adds a task to the front of the deque of the calling thread if it is a
+     * worker, or to the front of the shared deque otherwise, and wakes up any
+     * idle workers.
+     *
+     * @param task The task.
+     */
+    void push(T task) {
+        ConcurrentLinkedDeque<T> ownTasks = this.currentWorkerTasks.get();
+        if (null != ownTasks) {
+            ownTasks.addFirst(task);
+        } else {
+            this.sharedTasks.addFirst(task);
+        }
+        this.signalTasksAvailable();
+    }
+
+    /**
+     * Takes the next task for the calling thread, registering it as a worker
+     * the first time it asks for a task, and blocking until a task is
+     * available.
+     *
+     * @param source The source of tasks for when the deques are empty.
+     *
+     * @return The task.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while
+     *                              blocked.
+     */
+    T take(TaskSource<T> source) throws InterruptedException {
+        ConcurrentLinkedDeque<T> ownTasks = this.getOwnTasks();
+        while (true) {
+            long generation = this.tasksGeneration.get();
+            T task = this.poll(ownTasks, source);
+            if (null != task) {
+                return task;
+            }
+            this.awaitTasks(generation);
+        }
+    }
+
+    /**
+     * Hands the tasks of the calling worker over to the other workers and
+     * unregisters it. Called by a worker that is being retired.
+     */
+    void releaseWorker() {
+        ConcurrentLinkedDeque<T> ownTasks = this.currentWorkerTasks.get();
+        if (null == ownTasks) {
+            return;
+        }
+        this.currentWorkerTasks.remove();
+        this.workerTasks.remove(ownTasks);
+        boolean tasksReleased = false;
+        T task;
+        while ((task = ownTasks.pollLast()) != null) {
+            this.sharedTasks.addFirst(task);
+            tasksReleased = true;
+        }
+        if (tasksReleased) {
+            this.signalTasksAvailable();
+        }
+    }
+
+    /**
+     * Gets the number of workers that are waiting for tasks.
+     *
+     * @return The idle worker count.
+     */
+    int getIdleWorkerCount() {
+        return this.idleWorkers.get();
+    }
+
+    /**
+     * Wakes up any workers that are waiting for tasks. Called by task sources
+     * when they have work that they can add to a worker's deque.
+     */
+    void signalTasksAvailable() {
+        this.tasksGeneration.incrementAndGet();
+        if (this.idleWorkers.get() > 0) {
+            this.idleWorkersLock.lock();
+            try {
+                this.tasksAvailable.signalAll();
+            } finally {
+                this.idleWorkersLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes the tasks that match a filter from all of the deques. The
+     * deques only report a successful removal to one thread, so a removed task
+     * has not been and will not be taken by a worker.
+     *
+     * @param filter    The filter.
+     * @param onRemoved Called for each task that was removed.
+     */
+    void removeIf(Predicate<T> filter, Consumer<T> onRemoved) {
+        removeIf(this.sharedTasks, filter, onRemoved);
+        for (ConcurrentLinkedDeque<T> ownTasks : this.workerTasks) {
+            removeIf(ownTasks, filter, onRemoved);
+        }
+    }
+
+    /**
+     * Counts the tasks that match a filter in all of the deques.
+     *
+     * @param filter The filter.
+     *
+     * @return The count.
+     */
+    long count(Predicate<T> filter) {
+        long count = this.sharedTasks.stream().filter(filter).count();
+        for (ConcurrentLinkedDeque<T> ownTasks : this.workerTasks) {
+            count += ownTasks.stream().filter(filter).count();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the deque owned by the calling worker, creating and registering it
+     * for work stealing the first time the worker asks for a task.
+     *
+     * @return The deque.
+     */
+    private ConcurrentLinkedDeque<T> getOwnTasks() {
+        ConcurrentLinkedDeque<T> ownTasks = this.currentWorkerTasks.get();
+        if (null == ownTasks) {
+            ownTasks = new ConcurrentLinkedDeque<>();
+            this.currentWorkerTasks.set(ownTasks);
+            this.workerTasks.add(ownTasks);
+        }
+        return ownTasks;
+    }
+
+    /**
+     * Finds the next task for the calling worker, without blocking.
+     *
+     * @param ownTasks The deque of the calling worker.
+     * @param source   The source of tasks for when the deques are empty.
+     *
+     * @return A task, or null if there is currently no work to be done.
+     */
+    private T poll(ConcurrentLinkedDeque<T> ownTasks, TaskSource<T> source) {
+        while (true) {
+            T task = ownTasks.pollFirst();
+            if (null != task) {
+                return task;
+            }
+            task = this.sharedTasks.pollFirst();
+            if (null != task) {
+                return task;
+            }
+            if (!source.addTasks(ownTasks)) {
+                break;
+            }
+        }
+        for (ConcurrentLinkedDeque<T> victim : this.workerTasks) {
+            if (victim != ownTasks) {
+                T task = victim.pollLast();
+                if (null != task) {
+                    return task;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Blocks the calling worker until it has been signaled that tasks have
+     * been made available since the given generation.
+     *
+     * @param generation The tasks generation observed before the calling
+     *                   worker last looked for a task.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while
+     *                              blocked.
+     */
+    private void awaitTasks(long generation) throws InterruptedException {
+        this.idleWorkersLock.lockInterruptibly();
+        try {
+            this.idleWorkers.incrementAndGet();
+            try {
+                while (this.tasksGeneration.get() == generation) {
+                    this.tasksAvailable.await();
+                }
+            } finally {
+                this.idleWorkers.decrementAndGet();
+            }
+        } finally {
+            this.idleWorkersLock.unlock();
+        }
+    }
+
+    private static <T> void removeIf(ConcurrentLinkedDeque<T> deque, Predicate<T> filter, Consumer<T> onRemoved) {
+        List<T> matches = new ArrayList<>();
+        for (T task : deque) {
+            if (filter.test(task)) {
+                matches.add(task);
+            }
+        }
+        for (T task : matches) {
+            if (deque.removeFirstOccurrence(task)) {
+                onRemoved.accept(task);
+            }
+        }
+    }
+}
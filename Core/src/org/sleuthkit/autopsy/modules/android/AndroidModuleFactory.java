@@ -18,6 +18,8 @@
  */
 package org.sleuthkit.autopsy.modules.android;
 
+import java.util.Collections;
+import java.util.Set;
 import org.openide.util.lookup.ServiceProvider;
 import org.openide.util.NbBundle;
 import org.sleuthkit.autopsy.coreutils.Version;
@@ -53,6 +55,11 @@ public boolean isDataSourceIngestModuleFactory() {
         return true;
     }
 
+    @Override
+    public Set<String> getDataSourceIngestModuleDependencies() {
+        return Collections.emptySet();
+    }
+
     @Override
     public DataSourceIngestModule createDataSourceIngestModule(IngestModuleIngestJobSettings settings) {
         return new AndroidIngestModule();
@@ -18,6 +18,8 @@
  */
 package org.sleuthkit.autopsy.modules.e01verify;
 
+import java.util.Collections;
+import java.util.Set;
 import org.openide.util.NbBundle;
 import org.openide.util.lookup.ServiceProvider;
 import org.sleuthkit.autopsy.coreutils.Version;
@@ -59,6 +61,11 @@ public boolean isDataSourceIngestModuleFactory() {
         return true;
     }
 
+    @Override
+    public Set<String> getDataSourceIngestModuleDependencies() {
+        return Collections.emptySet();
+    }
+
     @Override
     public DataSourceIngestModule createDataSourceIngestModule(IngestModuleIngestJobSettings ingestOptions) {
         return new E01VerifyIngestModule();
@@ -58,6 +58,11 @@ public boolean isFileIngestModuleFactory() {
         return true;
     }
 
+    @Override
+    public FileIngestModuleWorkload getFileIngestModuleWorkload() {
+        return FileIngestModuleWorkload.CPU_BOUND;
+    }
+
     @Override
     public FileIngestModule createFileIngestModule(IngestModuleIngestJobSettings ingestOptions) {
         return new EmbeddedFileExtractorIngestModule();
@@ -47,7 +47,6 @@
 import org.sleuthkit.autopsy.ingest.ModuleContentEvent;
 import org.sleuthkit.autopsy.modules.filetypeid.FileTypeDetector;
 import org.sleuthkit.datamodel.AbstractFile;
-import org.sleuthkit.datamodel.ReadContentInputStream;
 import org.sleuthkit.datamodel.TskCoreException;
 
 class ImageExtractor {
@@ -209,7 +208,7 @@ private List<ExtractedImage> extractImagesFromDoc(AbstractFile af) {
         List<ExtractedImage> listOfExtractedImages;
         HWPFDocument doc = null;
         try {
-            doc = new HWPFDocument(new ReadContentInputStream(af));
+            doc = new HWPFDocument(context.getFileContent(af).getInputStream());
         } catch (Throwable ex) {
             // instantiating POI containers throw RuntimeExceptions
             logger.log(Level.WARNING, NbBundle.getMessage(this.getClass(), "EmbeddedFileExtractorIngestModule.ImageExtractor.docContainer.init.err", af.getName())); //NON-NLS
@@ -249,7 +248,7 @@ private List<ExtractedImage> extractImagesFromDocx(AbstractFile af) {
         List<ExtractedImage> listOfExtractedImages;
         XWPFDocument docx = null;
         try {
-            docx = new XWPFDocument(new ReadContentInputStream(af));
+            docx = new XWPFDocument(context.getFileContent(af).getInputStream());
         } catch (Throwable ex) {
             // instantiating POI containers throw RuntimeExceptions
             logger.log(Level.WARNING, NbBundle.getMessage(this.getClass(), "EmbeddedFileExtractorIngestModule.ImageExtractor.docxContainer.init.err", af.getName())); //NON-NLS
@@ -290,7 +289,7 @@ private List<ExtractedImage> extractImagesFromPpt(AbstractFile af) {
         List<ExtractedImage> listOfExtractedImages;
         SlideShow ppt = null;
         try {
-            ppt = new SlideShow(new ReadContentInputStream(af));
+            ppt = new SlideShow(context.getFileContent(af).getInputStream());
         } catch (Throwable ex) {
             // instantiating POI containers throw RuntimeExceptions
             logger.log(Level.WARNING, NbBundle.getMessage(this.getClass(), "EmbeddedFileExtractorIngestModule.ImageExtractor.pptContainer.init.err", af.getName())); //NON-NLS
@@ -362,7 +361,7 @@ private List<ExtractedImage> extractImagesFromPptx(AbstractFile af) {
         List<ExtractedImage> listOfExtractedImages;
         XMLSlideShow pptx;
         try {
-            pptx = new XMLSlideShow(new ReadContentInputStream(af));
+            pptx = new XMLSlideShow(context.getFileContent(af).getInputStream());
         } catch (Throwable ex) {
             // instantiating POI containers throw RuntimeExceptions
             logger.log(Level.WARNING, NbBundle.getMessage(this.getClass(), "EmbeddedFileExtractorIngestModule.ImageExtractor.pptxContainer.init.err", af.getName())); //NON-NLS
@@ -411,7 +410,7 @@ private List<ExtractedImage> extractImagesFromXls(AbstractFile af) {
 
         Workbook xls;
         try {
-            xls = new HSSFWorkbook(new ReadContentInputStream(af));
+            xls = new HSSFWorkbook(context.getFileContent(af).getInputStream());
         } catch (Throwable ex) {
             // instantiating POI containers throw RuntimeExceptions
             logger.log(Level.WARNING, NbBundle.getMessage(this.getClass(), "EmbeddedFileExtractorIngestModule.ImageExtractor.xlsContainer.init.err", af.getName()) + af.getName()); //NON-NLS
@@ -456,7 +455,7 @@ private List<ExtractedImage> extractImagesFromXlsx(AbstractFile af) {
         List<ExtractedImage> listOfExtractedImages;
         Workbook xlsx;
         try {
-            xlsx = new XSSFWorkbook(new ReadContentInputStream(af));
+            xlsx = new XSSFWorkbook(context.getFileContent(af).getInputStream());
         } catch (Throwable ex) {
             // instantiating POI containers throw RuntimeExceptions
             logger.log(Level.WARNING, NbBundle.getMessage(this.getClass(), "EmbeddedFileExtractorIngestModule.ImageExtractor.xlsxContainer.init.err", af.getName())); //NON-NLS
@@ -24,46 +24,49 @@
 import net.sf.sevenzipjbinding.SevenZipException;
 import org.openide.util.NbBundle;
 import org.sleuthkit.autopsy.coreutils.Logger;
-import org.sleuthkit.datamodel.ReadContentInputStream;
+import org.sleuthkit.autopsy.ingest.CachedFileContent;
+import org.sleuthkit.datamodel.TskCoreException;
 
 /**
- * Adapter from ReadContentInputStream to net.sf.sevenzipjbinding.IInStream
- * stream interface
+ * Adapter from the content of a file in a file ingest pipeline to
+ * net.sf.sevenzipjbinding.IInStream stream interface, so that archives are read
+ * through the file content cache of the ingest job.
  */
 class SevenZipContentReadStream implements IInStream {
 
-    private ReadContentInputStream wrapped;
-    private long length;
+    private final CachedFileContent wrapped;
+    private final long length;
+    private long position;
 
     private static final Logger logger = Logger.getLogger(SevenZipContentReadStream.class.getName());
 
-    public SevenZipContentReadStream(ReadContentInputStream wrapped) {
+    public SevenZipContentReadStream(CachedFileContent wrapped) {
         this.wrapped = wrapped;
-        this.length = wrapped.getLength();
+        this.length = wrapped.getSize();
     }
 
     @Override
     public long seek(long offset, int origin) throws SevenZipException {
-        long curPosition = wrapped.getCurPosition();
-        long newPosition = curPosition;
+        long newPosition;
         switch (origin) {
             case SEEK_CUR:
-                newPosition = wrapped.seek(curPosition + offset);
+                newPosition = position + offset;
                 break;
             case SEEK_END:
                 //(offset <= 0) offset is set from EOF
-                newPosition = wrapped.seek(length + offset);
+                newPosition = length + offset;
                 break;
             case SEEK_SET:
-                newPosition = wrapped.seek(offset);
+                newPosition = offset;
                 break;
             default:
                 throw new IllegalArgumentException(
                         NbBundle.getMessage(this.getClass(), "SevenZipContentReadStream.seek.exception.invalidOrigin",
                                 origin));
         }
-
-        return newPosition;
+        //like ReadContentInputStream.seek(), stay within the content
+        position = Math.max(0, Math.min(newPosition, length));
+        return position;
 
     }
 
@@ -78,13 +81,14 @@ public int read(byte[] bytes) throws SevenZipException {
         }
 
         try {
-            int readBytes = wrapped.read(bytes);
+            int readBytes = wrapped.read(bytes, position, bytes.length);
             if (readBytes < 1) {
                 return 0;
             }
+            position += readBytes;
             return readBytes;
 
-        } catch (IOException ex) {
+        } catch (TskCoreException ex) {
             String msg = NbBundle.getMessage(this.getClass(), "SevenZipContentReadStream.read.exception.errReadStream");
             logger.log(Level.SEVERE, msg, ex);
             throw new SevenZipException(msg, ex);
@@ -97,6 +101,6 @@ public int read(byte[] bytes) throws SevenZipException {
      * @throws IOException
      */
     public void close() throws IOException {
-        wrapped.close();
+        //the content is released by the file content cache
     }
 }
@@ -61,7 +61,6 @@
 import org.sleuthkit.datamodel.BlackboardArtifact;
 import org.sleuthkit.datamodel.BlackboardAttribute;
 import org.sleuthkit.datamodel.DerivedFile;
-import org.sleuthkit.datamodel.ReadContentInputStream;
 import org.sleuthkit.datamodel.TskCoreException;
 import org.sleuthkit.datamodel.TskData;
 
@@ -341,7 +340,7 @@ void unpack(AbstractFile archiveFile) {
 
         boolean progressStarted = false;
         try {
-            stream = new SevenZipContentReadStream(new ReadContentInputStream(archiveFile));
+            stream = new SevenZipContentReadStream(context.getFileContent(archiveFile));
 
             // for RAR files we need to open them explicitly as RAR. Otherwise, if there is a ZIP archive inside RAR archive
             // it will be opened incorrectly when using 7zip's built-in auto-detect functionality.
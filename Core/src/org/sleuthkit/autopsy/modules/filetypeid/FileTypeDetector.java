@@ -30,6 +30,7 @@
 import org.sleuthkit.autopsy.casemodule.services.Blackboard;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.autopsy.coreutils.MessageNotifyUtil;
+import org.sleuthkit.autopsy.ingest.CachedFileContent;
 import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.datamodel.BlackboardArtifact;
 import org.sleuthkit.datamodel.BlackboardAttribute;
@@ -122,6 +123,26 @@ private boolean isDetectableByTika(String mimeType) {
      * @throws TskCoreException
      */
     public String getFileType(AbstractFile file) throws TskCoreException {
+        return getFileType(file, null);
+    }
+
+    /**
+     * Look up the MIME type of a file that is in a file ingest pipeline using
+     * the blackboard. If it is not already posted, detect the type of the
+     * file, reading it through the file content cache of the ingest job, and
+     * post it to the blackboard if detection succeeds.
+     *
+     * @param content The content of the file from the ingest job context.
+     *
+     * @return The MIME type name if detection was successful, null otherwise.
+     *
+     * @throws TskCoreException
+     */
+    String getFileType(CachedFileContent content) throws TskCoreException {
+        return getFileType(content.getFile(), content);
+    }
+
+    private String getFileType(AbstractFile file, CachedFileContent content) throws TskCoreException {
         String fileType;
         ArrayList<BlackboardAttribute> attributes = file.getGenInfoAttributes(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_FILE_TYPE_SIG);
         for (BlackboardAttribute attribute : attributes) {
@@ -133,7 +154,7 @@ public String getFileType(AbstractFile file) throws TskCoreException {
                 return fileType;
             }
         }
-        return detectAndPostToBlackboard(file);
+        return detectAndPostToBlackboard(file, content);
     }
 
     /**
@@ -148,7 +169,11 @@ public String getFileType(AbstractFile file) throws TskCoreException {
      * @throws TskCoreException
      */
     public String detectAndPostToBlackboard(AbstractFile file) throws TskCoreException {
-        String mimeType = detect(file);
+        return detectAndPostToBlackboard(file, null);
+    }
+
+    private String detectAndPostToBlackboard(AbstractFile file, CachedFileContent content) throws TskCoreException {
+        String mimeType = detect(file, content);
         if (null != mimeType) {
             /**
              * Add the file type attribute to the general info artifact. Note
@@ -173,6 +198,21 @@ public String detectAndPostToBlackboard(AbstractFile file) throws TskCoreExcepti
      * @throws TskCoreException
      */
     public String detect(AbstractFile file) throws TskCoreException {
+        return detect(file, null);
+    }
+
+    /**
+     * Detect the MIME type of a file.
+     *
+     * @param file    The file to test.
+     * @param content The content of the file from the ingest job context, or
+     *                null to read the file directly.
+     *
+     * @return The MIME type name if detection was successful, null otherwise.
+     *
+     * @throws TskCoreException
+     */
+    private String detect(AbstractFile file, CachedFileContent content) throws TskCoreException {
         // consistently mark non-regular files (refer TskData.TSK_FS_META_TYPE_ENUM),
         // 0 sized files, unallocated, and unused blocks (refer TskData.TSK_DB_FILES_TYPE_ENUM)
         // as octet-stream.
@@ -187,7 +227,7 @@ public String detect(AbstractFile file) throws TskCoreException {
         if (null == fileType) {
             try {
                 byte buf[];
-                int len = file.read(buffer, 0, BUFFER_SIZE);
+                int len = (null != content) ? content.read(buffer, 0, BUFFER_SIZE) : file.read(buffer, 0, BUFFER_SIZE);
                 if (len < BUFFER_SIZE) {
                     buf = new byte[len];
                     System.arraycopy(buffer, 0, buf, 0, len);
@@ -43,6 +43,7 @@ public class FileTypeIdIngestModule implements FileIngestModule {
     private static final HashMap<Long, IngestJobTotals> totalsForIngestJobs = new HashMap<>();
     private static final IngestModuleReferenceCounter refCounter = new IngestModuleReferenceCounter();
     private FileTypeDetector fileTypeDetector;
+    private IngestJobContext context;
 
     /**
      * Validate if a given mime type is in the detector's registry.
@@ -78,6 +79,7 @@ public static boolean isMimeTypeDetectable(String mimeType) {
      */
     @Override
     public void startUp(IngestJobContext context) throws IngestModuleException {
+        this.context = context;
         jobId = context.getJobId();
         refCounter.incrementAndGet(jobId);
         try {
@@ -107,7 +109,7 @@ public ProcessResult process(AbstractFile file) {
          */
         try {
             long startTime = System.currentTimeMillis();
-            fileTypeDetector.getFileType(file);
+            fileTypeDetector.getFileType(context.getFileContent(file));
             addToTotals(jobId, (System.currentTimeMillis() - startTime));
             return ProcessResult.OK;
         } catch (Exception e) {
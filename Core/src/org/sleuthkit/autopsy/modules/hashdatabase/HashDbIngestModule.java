@@ -19,10 +19,17 @@
 package org.sleuthkit.autopsy.modules.hashdatabase;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import org.openide.util.NbBundle;
@@ -31,6 +38,7 @@
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.autopsy.coreutils.MessageNotifyUtil;
 import org.sleuthkit.autopsy.ingest.IngestMessage;
+import org.sleuthkit.autopsy.ingest.IngestJobContext;
 import org.sleuthkit.autopsy.ingest.IngestServices;
 import org.sleuthkit.autopsy.ingest.ModuleDataEvent;
 import org.sleuthkit.datamodel.AbstractFile;
@@ -38,15 +46,16 @@
 import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
 import org.sleuthkit.datamodel.BlackboardAttribute;
 import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
-import org.sleuthkit.datamodel.HashUtility;
 import org.sleuthkit.datamodel.SleuthkitCase;
 import org.sleuthkit.datamodel.TskCoreException;
 import org.sleuthkit.datamodel.TskData;
 import org.sleuthkit.datamodel.TskException;
 import org.sleuthkit.autopsy.modules.hashdatabase.HashDbManager.HashDb;
+import org.sleuthkit.autopsy.modules.hashdatabase.MultiDigestCalculator.Algorithm;
 import org.sleuthkit.autopsy.ingest.FileIngestModule;
 import org.sleuthkit.autopsy.ingest.IngestModuleReferenceCounter;
 import org.sleuthkit.datamodel.HashHitInfo;
+import org.sleuthkit.datamodel.HashUtility;
 
 public class HashDbIngestModule implements FileIngestModule {
 
@@ -62,6 +71,9 @@ public class HashDbIngestModule implements FileIngestModule {
     private static final HashMap<Long, IngestJobTotals> totalsForIngestJobs = new HashMap<>();
     private static final IngestModuleReferenceCounter refCounter = new IngestModuleReferenceCounter();
     private Blackboard blackboard;
+    private IngestJobContext context;
+    private MultiDigestCalculator digestCalculator;
+    private final Set<HashDb> hashSetsWithoutSha1Index = new HashSet<>();
 
     private static class IngestJobTotals {
 
@@ -84,8 +96,14 @@ private static synchronized IngestJobTotals getTotalsForIngestJobs(long ingestJo
     }
 
     @Override
-    public void startUp(org.sleuthkit.autopsy.ingest.IngestJobContext context) throws IngestModuleException {
+    public void startUp(IngestJobContext context) throws IngestModuleException {
+        this.context = context;
         jobId = context.getJobId();
+        try {
+            digestCalculator = new MultiDigestCalculator(getEnabledOtherHashes());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IngestModuleException("Hash algorithm not available", ex); //NON-NLS
+        }
         updateEnabledHashSets(hashDbManager.getKnownBadFileHashSets(), knownBadHashSets);
         updateEnabledHashSets(hashDbManager.getKnownFileHashSets(), knownHashSets);
 
@@ -93,6 +111,11 @@ public void startUp(org.sleuthkit.autopsy.ingest.IngestJobContext context) throw
             // initialize job totals
             getTotalsForIngestJobs(jobId);
 
+            // load the in-memory lookup indexes, if enabled
+            List<HashDb> enabledHashSets = new ArrayList<>(knownBadHashSets);
+            enabledHashSets.addAll(knownHashSets);
+            hashDbManager.loadInMemoryIndexes(enabledHashSets);
+
             // if first module for this job then post error msgs if needed
             
             if (knownBadHashSets.isEmpty()) {
@@ -156,7 +179,8 @@ public ProcessResult process(AbstractFile file) {
         }
 
         // bail out if we have no hashes set
-        if ((knownHashSets.isEmpty()) && (knownBadHashSets.isEmpty()) && (!settings.shouldCalculateHashes())) {
+        if ((knownHashSets.isEmpty()) && (knownBadHashSets.isEmpty()) && (!settings.shouldCalculateHashes())
+                && (!settings.shouldCalculateSha1Hashes()) && (!settings.shouldCalculateSha256Hashes())) {
             return ProcessResult.OK;
         }
 
@@ -166,10 +190,23 @@ public ProcessResult process(AbstractFile file) {
         // calc hash value
         String name = file.getName();
         String md5Hash = file.getMd5Hash();
-        if (md5Hash == null || md5Hash.isEmpty()) {
+        boolean needsMd5 = (md5Hash == null || md5Hash.isEmpty());
+        Map<Algorithm, String> otherHashes = getSavedOtherHashes(file);
+        Set<Algorithm> unsavedOtherDigests = getEnabledOtherHashes();
+        unsavedOtherDigests.removeAll(otherHashes.keySet());
+        boolean needsOtherDigests = !unsavedOtherDigests.isEmpty();
+        if (needsMd5 || needsOtherDigests) {
             try {
                 long calcstart = System.currentTimeMillis();
-                md5Hash = HashUtility.calculateMd5(file);
+                if (needsMd5) {
+                    // HashUtility also saves the hash in the case database.
+                    md5Hash = HashUtility.calculateMd5(file);
+                }
+                if (needsOtherDigests) {
+                    Map<Algorithm, String> hashes = calculateOtherHashes(file);
+                    saveOtherHashes(file, hashes, unsavedOtherDigests);
+                    otherHashes.putAll(hashes);
+                }
                 long delta = (System.currentTimeMillis() - calcstart);
                 totals.totalCalctime.addAndGet(delta);
 
@@ -187,6 +224,10 @@ public ProcessResult process(AbstractFile file) {
             }
         }
 
+        // SHA-1 hashes are also looked up, in the hash databases that have a
+        // SHA-1 index. No hash database format supports SHA-256 lookups.
+        String sha1Hash = otherHashes.get(Algorithm.SHA1);
+
         // look up in known bad first
         boolean foundBad = false;
         ProcessResult ret = ProcessResult.OK;
@@ -194,6 +235,9 @@ public ProcessResult process(AbstractFile file) {
             try {
                 long lookupstart = System.currentTimeMillis();
                 HashHitInfo hashInfo = db.lookupMD5(file);
+                if (null == hashInfo && null != sha1Hash) {
+                    hashInfo = lookupSHA1(db, sha1Hash);
+                }
                 if (null != hashInfo) {
                     foundBad = true;
                     totals.totalKnownBadCount.incrementAndGet();
@@ -254,7 +298,7 @@ public ProcessResult process(AbstractFile file) {
             for (HashDb db : knownHashSets) {
                 try {
                     long lookupstart = System.currentTimeMillis();
-                    if (db.lookupMD5Quick(file)) {
+                    if (db.lookupMD5Quick(file) || (null != sha1Hash && lookupSHA1Quick(db, sha1Hash))) {
                         try {
                             skCase.setKnown(file, TskData.FileKnown.KNOWN);
                             break;
@@ -284,6 +328,140 @@ public ProcessResult process(AbstractFile file) {
         return ret;
     }
 
+    /**
+     * Calculates the SHA-1 and SHA-256 hashes of a file enabled in the
+     * settings in a single read of the file. The content is read through the
+     * file content cache of the ingest job so that the read is shared with the
+     * other file ingest modules.
+     *
+     * @param file The file.
+     *
+     * @return The hashes as lower case hex strings, keyed by algorithm.
+     *
+     * @throws IOException if there is a problem reading the file.
+     */
+    private Map<Algorithm, String> calculateOtherHashes(AbstractFile file) throws IOException {
+        try (InputStream in = context.getFileContent(file).getInputStream()) {
+            return digestCalculator.calculate(in);
+        }
+    }
+
+    /**
+     * Gets the SHA-1 and SHA-256 hashes enabled in the settings.
+     *
+     * @return The algorithms of the hashes.
+     */
+    private Set<Algorithm> getEnabledOtherHashes() {
+        Set<Algorithm> enabled = EnumSet.noneOf(Algorithm.class);
+        if (settings.shouldCalculateSha1Hashes()) {
+            enabled.add(Algorithm.SHA1);
+        }
+        if (settings.shouldCalculateSha256Hashes()) {
+            enabled.add(Algorithm.SHA256);
+        }
+        return enabled;
+    }
+
+    /**
+     * Gets the SHA-1 and SHA-256 hashes enabled in the settings that have
+     * already been saved for a file, e.g., by an earlier ingest job.
+     *
+     * @param file The file.
+     *
+     * @return The saved hashes, keyed by algorithm.
+     */
+    private Map<Algorithm, String> getSavedOtherHashes(AbstractFile file) {
+        Map<Algorithm, String> saved = new EnumMap<>(Algorithm.class);
+        if (getEnabledOtherHashes().isEmpty()) {
+            return saved;
+        }
+        try {
+            for (BlackboardAttribute attribute : file.getGenInfoArtifact().getAttributes()) {
+                if (attribute.getAttributeTypeID() == ATTRIBUTE_TYPE.TSK_HASH_SHA1.getTypeID()) {
+                    saved.put(Algorithm.SHA1, attribute.getValueString());
+                } else if (attribute.getAttributeTypeID() == ATTRIBUTE_TYPE.TSK_HASH_SHA2_256.getTypeID()) {
+                    saved.put(Algorithm.SHA256, attribute.getValueString());
+                }
+            }
+        } catch (TskCoreException ex) {
+            logger.log(Level.WARNING, "Error getting saved hashes of file " + file.getName(), ex); //NON-NLS
+        }
+        return saved;
+    }
+
+    /**
+     * Looks up a SHA-1 hash in a hash database. A database that turns out not
+     * to have a SHA-1 index is not searched by SHA-1 again by this module.
+     *
+     * @param db       The hash database.
+     * @param sha1Hash The SHA-1 hash.
+     *
+     * @return The hit, or null if the hash is not in the database or the
+     *         database can not be searched by SHA-1.
+     */
+    private HashHitInfo lookupSHA1(HashDb db, String sha1Hash) {
+        if (hashSetsWithoutSha1Index.contains(db)) {
+            return null;
+        }
+        try {
+            return db.lookupSHA1(sha1Hash);
+        } catch (TskCoreException ex) {
+            hashSetsWithoutSha1Index.add(db);
+            logger.log(Level.INFO, "Hash database " + db.getHashSetName() + " can not be searched by SHA-1", ex); //NON-NLS
+            return null;
+        }
+    }
+
+    /**
+     * Does a basic boolean lookup of a SHA-1 hash in a hash database. A
+     * database that turns out not to have a SHA-1 index is not searched by
+     * SHA-1 again by this module.
+     *
+     * @param db       The hash database.
+     * @param sha1Hash The SHA-1 hash.
+     *
+     * @return True if the hash is in the database.
+     */
+    private boolean lookupSHA1Quick(HashDb db, String sha1Hash) {
+        if (hashSetsWithoutSha1Index.contains(db)) {
+            return false;
+        }
+        try {
+            return db.lookupSHA1Quick(sha1Hash);
+        } catch (TskCoreException ex) {
+            hashSetsWithoutSha1Index.add(db);
+            logger.log(Level.INFO, "Hash database " + db.getHashSetName() + " can not be searched by SHA-1", ex); //NON-NLS
+            return false;
+        }
+    }
+
+    /**
+     * Saves the SHA-1 and SHA-256 hashes of a file as attributes of the
+     * general info artifact of the file, where they are available to other
+     * modules and to keyword search. Hashes that were already saved for the
+     * file are not saved again.
+     *
+     * @param file    The file.
+     * @param hashes  The hashes, keyed by algorithm.
+     * @param unsaved The algorithms of the hashes that are still to be saved.
+     */
+    private void saveOtherHashes(AbstractFile file, Map<Algorithm, String> hashes, Set<Algorithm> unsaved) {
+        try {
+            BlackboardArtifact genInfoArtifact = file.getGenInfoArtifact();
+            String moduleName = HashLookupModuleFactory.getModuleName();
+            String sha1Hash = hashes.get(Algorithm.SHA1);
+            if (null != sha1Hash && unsaved.contains(Algorithm.SHA1)) {
+                genInfoArtifact.addAttribute(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_HASH_SHA1.getTypeID(), moduleName, sha1Hash));
+            }
+            String sha256Hash = hashes.get(Algorithm.SHA256);
+            if (null != sha256Hash && unsaved.contains(Algorithm.SHA256)) {
+                genInfoArtifact.addAttribute(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_HASH_SHA2_256.getTypeID(), moduleName, sha256Hash));
+            }
+        } catch (TskCoreException ex) {
+            logger.log(Level.WARNING, "Error saving hashes of file " + file.getName(), ex); //NON-NLS
+        }
+    }
+
     private void postHashSetHitToBlackboard(AbstractFile abstractFile, String md5Hash, String hashSetName, String comment, boolean showInboxMessage) {
         try {
             String MODULE_NAME = NbBundle.getMessage(HashDbIngestModule.class, "HashDbIngestModule.moduleName");
@@ -394,7 +572,11 @@ private static synchronized void postSummary(long jobId,
 
     @Override
     public void shutDown() {
+        if (null != digestCalculator) {
+            digestCalculator.close();
+        }
         if (refCounter.decrementAndGet(jobId) == 0) {
+            hashDbManager.releaseInMemoryIndexes();
             postSummary(jobId, knownBadHashSets, knownHashSets);
         }
     }
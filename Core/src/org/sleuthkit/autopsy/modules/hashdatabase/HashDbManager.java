@@ -46,6 +46,7 @@
 import org.apache.commons.io.FileUtils;
 import org.netbeans.api.progress.ProgressHandle;
 import org.netbeans.api.progress.ProgressHandleFactory;
+import org.sleuthkit.autopsy.core.UserPreferences;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.datamodel.Content;
@@ -81,6 +82,7 @@ public class HashDbManager implements PropertyChangeListener {
     private List<HashDb> knownBadHashSets = new ArrayList<>();
     private Set<String> hashSetNames = new HashSet<>();
     private Set<String> hashSetPaths = new HashSet<>();
+    private int inMemoryIndexUsers = 0;
     PropertyChangeSupport changeSupport = new PropertyChangeSupport(HashDbManager.class);
     private static final Logger logger = Logger.getLogger(HashDbManager.class.getName());
 
@@ -410,6 +412,80 @@ synchronized void removeHashDatabaseInternal(HashDb hashDb) {
         }
     }
 
+    /**
+     * Loads in-memory lookup indexes for hash databases, if in-memory hash
+     * lookup is enabled. Hash databases that already have an in-memory index
+     * are skipped. A hash database whose index would take the memory used by
+     * in-memory indexes over the budget is not loaded, and lookups in it go
+     * through the index on disk as usual. Each call must be matched by a call
+     * to releaseInMemoryIndexes when the ingest job that needed the indexes is
+     * finished.
+     *
+     * @param hashDbs The hash databases.
+     */
+    synchronized void loadInMemoryIndexes(List<HashDb> hashDbs) {
+        ++inMemoryIndexUsers;
+        if (!UserPreferences.inMemoryHashLookupEnabled()) {
+            return;
+        }
+        long budget = (long) UserPreferences.inMemoryHashLookupMemoryBudgetMegabytes() * 1024 * 1024;
+        long used = getInMemoryIndexMemoryUsage();
+        for (HashDb db : hashDbs) {
+            if (null != db.inMemoryIndex || db.isIndexing()) {
+                continue;
+            }
+            try {
+                String indexPath = db.getIndexPath();
+                if (indexPath.equals("None")) { //NON-NLS
+                    continue;
+                }
+                long estimate = InMemoryHashSetIndex.estimateMemoryUsage(indexPath);
+                if (used + estimate > budget) {
+                    logger.log(Level.INFO, "Not loading in-memory index for {0} hash database, {1} bytes would exceed the budget of {2} bytes", new Object[]{db.getHashSetName(), used + estimate, budget}); //NON-NLS
+                    continue;
+                }
+                InMemoryHashSetIndex index = InMemoryHashSetIndex.load(indexPath);
+                db.inMemoryIndex = index;
+                used += index.getMemoryUsage();
+                logger.log(Level.INFO, "Loaded in-memory index for {0} hash database, {1} hashes in {2} bytes", new Object[]{db.getHashSetName(), index.getHashCount(), index.getMemoryUsage()}); //NON-NLS
+            } catch (TskCoreException | IOException ex) {
+                logger.log(Level.WARNING, "Error loading in-memory index for " + db.getHashSetName() + " hash database, using index on disk", ex); //NON-NLS
+            }
+        }
+        logger.log(Level.INFO, "In-memory hash database indexes are using {0} bytes", used); //NON-NLS
+    }
+
+    /**
+     * Releases the in-memory lookup indexes of the hash databases once no
+     * ingest job needs them any more, so that the memory they use is freed
+     * between ingest jobs.
+     */
+    synchronized void releaseInMemoryIndexes() {
+        if (inMemoryIndexUsers > 0 && --inMemoryIndexUsers > 0) {
+            return;
+        }
+        for (HashDb db : getAllHashSets()) {
+            db.inMemoryIndex = null;
+        }
+    }
+
+    /**
+     * Gets the memory used by the in-memory lookup indexes of the hash
+     * databases.
+     *
+     * @return The size in bytes.
+     */
+    synchronized long getInMemoryIndexMemoryUsage() {
+        long used = 0;
+        for (HashDb db : getAllHashSets()) {
+            InMemoryHashSetIndex index = db.inMemoryIndex;
+            if (null != index) {
+                used += index.getMemoryUsage();
+            }
+        }
+        return used;
+    }
+
     /**
      * Gets all of the hash databases used to classify files as known or known
      * bad.
@@ -784,6 +860,12 @@ public enum Event {
         private boolean sendIngestMessages;
         private KnownFilesType knownFilesType;
         private boolean indexing;
+
+        /**
+         * An optional in-memory copy of the lookup index, loaded at the start
+         * of ingest by the hash database manager.
+         */
+        private volatile InMemoryHashSetIndex inMemoryIndex;
         private final PropertyChangeSupport propertyChangeSupport = new PropertyChangeSupport(this);
 
         private HashDb(int handle, String hashSetName, boolean useForIngest, boolean sendHitMessages, KnownFilesType knownFilesType) {
@@ -879,6 +961,7 @@ public void addHashes(Content content, String comment) throws TskCoreException {
                 AbstractFile file = (AbstractFile) content;
                 if (null != file.getMd5Hash()) {
                     SleuthkitJNI.addToHashDatabase(null, file.getMd5Hash(), null, null, comment, handle);
+                    this.inMemoryIndex = null;
                 }
             }
         }
@@ -892,6 +975,7 @@ public void addHashes(Content content, String comment) throws TskCoreException {
          */
         public void addHashes(List<HashEntry> hashes) throws TskCoreException {
             SleuthkitJNI.addToHashDatabase(hashes, handle);
+            this.inMemoryIndex = null;
         }
 
         /**
@@ -909,7 +993,12 @@ public boolean lookupMD5Quick(Content content) throws TskCoreException {
             if (content instanceof AbstractFile) {
                 AbstractFile file = (AbstractFile) content;
                 if (null != file.getMd5Hash()) {
-                    result = SleuthkitJNI.lookupInHashDatabase(file.getMd5Hash(), handle);
+                    InMemoryHashSetIndex index = this.inMemoryIndex;
+                    if (null != index) {
+                        result = index.contains(file.getMd5Hash());
+                    } else {
+                        result = SleuthkitJNI.lookupInHashDatabase(file.getMd5Hash(), handle);
+                    }
                 }
             }
             return result;
@@ -931,12 +1020,47 @@ public HashHitInfo lookupMD5(Content content) throws TskCoreException {
             if (content instanceof AbstractFile) {
                 AbstractFile file = (AbstractFile) content;
                 if (null != file.getMd5Hash()) {
-                    result = SleuthkitJNI.lookupInHashDatabaseVerbose(file.getMd5Hash(), handle);
+                    // The in-memory index, if any, has no comments, so it is
+                    // only used to rule out misses.
+                    InMemoryHashSetIndex index = this.inMemoryIndex;
+                    if (null == index || index.contains(file.getMd5Hash())) {
+                        result = SleuthkitJNI.lookupInHashDatabaseVerbose(file.getMd5Hash(), handle);
+                    }
                 }
             }
             return result;
         }
 
+        /**
+         * Perform a basic boolean lookup of a SHA-1 hash. Only databases with
+         * a SHA-1 lookup index, e.g., NSRL databases indexed by SHA-1, can be
+         * searched by SHA-1; the others throw an exception.
+         *
+         * @param sha1Hash The SHA-1 hash as a hex string.
+         *
+         * @return True if the hash is in the hash database
+         *
+         * @throws TskCoreException
+         */
+        boolean lookupSHA1Quick(String sha1Hash) throws TskCoreException {
+            return SleuthkitJNI.lookupInHashDatabase(sha1Hash, handle);
+        }
+
+        /**
+         * Lookup a SHA-1 hash in the DB and provide details on the file. Only
+         * databases with a SHA-1 lookup index can be searched by SHA-1; the
+         * others throw an exception.
+         *
+         * @param sha1Hash The SHA-1 hash as a hex string.
+         *
+         * @return null if the hash is not in database.
+         *
+         * @throws TskCoreException
+         */
+        HashHitInfo lookupSHA1(String sha1Hash) throws TskCoreException {
+            return SleuthkitJNI.lookupInHashDatabaseVerbose(sha1Hash, handle);
+        }
+
         boolean hasIndex() throws TskCoreException {
             return SleuthkitJNI.hashDatabaseHasLookupIndex(handle);
         }
@@ -954,6 +1078,7 @@ boolean isIndexing() {
         }
 
         private void close() throws TskCoreException {
+            this.inMemoryIndex = null;
             SleuthkitJNI.closeHashDatabase(handle);
         }
     }
@@ -996,6 +1121,7 @@ protected Object doInBackground() {
         @Override
         protected void done() {
             hashDb.indexing = false;
+            hashDb.inMemoryIndex = null;
             progress.finish();
 
             // see if we got any errors
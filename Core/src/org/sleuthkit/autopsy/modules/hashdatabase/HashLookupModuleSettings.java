@@ -34,6 +34,8 @@ final class HashLookupModuleSettings implements IngestModuleIngestJobSettings {
     private HashSet<String> namesOfEnabledKnownBadHashSets;
     private HashSet<String> namesOfDisabledKnownBadHashSets; // Added in version 1.1
     private boolean shouldCalculateHashes = true;
+    private boolean shouldCalculateSha1Hashes;   // Added in version 1.2
+    private boolean shouldCalculateSha256Hashes; // Added in version 1.2
 
     /**
      * Constructs ingest job settings for the hash lookup module.
@@ -68,7 +70,37 @@ final class HashLookupModuleSettings implements IngestModuleIngestJobSettings {
             List<String> namesOfEnabledKnownBadHashSets,
             List<String> namesOfDisabledKnownHashSets,
             List<String> namesOfDisabledKnownBadHashSets) {
+        this(shouldCalculateHashes, false, false, namesOfEnabledKnownHashSets, namesOfEnabledKnownBadHashSets, namesOfDisabledKnownHashSets, namesOfDisabledKnownBadHashSets);
+    }
+
+    /**
+     * Constructs ingest job settings for the hash lookup module.
+     *
+     * @param shouldCalculateHashes           Whether or not hashes should be
+     *                                        calculated.
+     * @param shouldCalculateSha1Hashes       Whether or not SHA-1 hashes should
+     *                                        be calculated along with MD5.
+     * @param shouldCalculateSha256Hashes     Whether or not SHA-256 hashes
+     *                                        should be calculated along with
+     *                                        MD5.
+     * @param namesOfEnabledKnownHashSets     A list of enabled known hash sets.
+     * @param namesOfEnabledKnownBadHashSets  A list of enabled known bad hash
+     *                                        sets.
+     * @param namesOfDisabledKnownHashSets    A list of disabled known hash
+     *                                        sets.
+     * @param namesOfDisabledKnownBadHashSets A list of disabled known bad hash
+     *                                        sets.
+     */
+    HashLookupModuleSettings(boolean shouldCalculateHashes,
+            boolean shouldCalculateSha1Hashes,
+            boolean shouldCalculateSha256Hashes,
+            List<String> namesOfEnabledKnownHashSets,
+            List<String> namesOfEnabledKnownBadHashSets,
+            List<String> namesOfDisabledKnownHashSets,
+            List<String> namesOfDisabledKnownBadHashSets) {
         this.shouldCalculateHashes = shouldCalculateHashes;
+        this.shouldCalculateSha1Hashes = shouldCalculateSha1Hashes;
+        this.shouldCalculateSha256Hashes = shouldCalculateSha256Hashes;
         this.namesOfEnabledKnownHashSets = new HashSet<>(namesOfEnabledKnownHashSets);
         this.namesOfEnabledKnownBadHashSets = new HashSet<>(namesOfEnabledKnownBadHashSets);
         this.namesOfDisabledKnownHashSets = new HashSet<>(namesOfDisabledKnownHashSets);
@@ -95,6 +127,26 @@ boolean shouldCalculateHashes() {
         return this.shouldCalculateHashes;
     }
 
+    /**
+     * Checks the setting that specifies whether or not SHA-1 hashes are to be
+     * calculated along with MD5 hashes.
+     *
+     * @return True if SHA-1 hashes are to be calculated, false otherwise.
+     */
+    boolean shouldCalculateSha1Hashes() {
+        return this.shouldCalculateSha1Hashes;
+    }
+
+    /**
+     * Checks the setting that specifies whether or not SHA-256 hashes are to
+     * be calculated along with MD5 hashes.
+     *
+     * @return True if SHA-256 hashes are to be calculated, false otherwise.
+     */
+    boolean shouldCalculateSha256Hashes() {
+        return this.shouldCalculateSha256Hashes;
+    }
+
     /**
      * Checks whether or not a hash set is enabled. If there is no setting for
      * the requested hash set, it is deemed to be enabled.
@@ -69,6 +69,8 @@ private void customizeComponents(HashLookupModuleSettings settings) {
         customizeHashSetsTable(jScrollPane1, knownHashTable, knownHashSetsTableModel);
         customizeHashSetsTable(jScrollPane2, knownBadHashTable, knownBadHashSetsTableModel);
         alwaysCalcHashesCheckbox.setSelected(settings.shouldCalculateHashes());
+        calcSha1HashesCheckbox.setSelected(settings.shouldCalculateSha1Hashes());
+        calcSha256HashesCheckbox.setSelected(settings.shouldCalculateSha256Hashes());
         hashDbManager.addPropertyChangeListener(this);
         alwaysCalcHashesCheckbox.setText("<html>" + org.openide.util.NbBundle.getMessage(HashLookupModuleSettingsPanel.class, "HashLookupModuleSettingsPanel.alwaysCalcHashesCheckbox.text") + "</html>"); // NOI18N NON-NLS
     }
@@ -108,6 +110,7 @@ public IngestModuleIngestJobSettings getSettings() {
         getHashSetNames(knownHashSetModels, enabledKnownHashSetNames, disabledKnownHashSetNames);
         getHashSetNames(knownBadHashSetModels, enabledKnownBadHashSetNames, disabledKnownBadHashSetNames);
         return new HashLookupModuleSettings(alwaysCalcHashesCheckbox.isSelected(),
+                calcSha1HashesCheckbox.isSelected(), calcSha256HashesCheckbox.isSelected(),
                 enabledKnownHashSetNames, enabledKnownBadHashSetNames,
                 disabledKnownHashSetNames, disabledKnownBadHashSetNames);
     }
@@ -167,6 +170,8 @@ void updateHashSetModels(List<HashDb> hashDbs, List<HashSetModel> hashSetModels)
     void reset(HashLookupModuleSettings newSettings) {
         initializeHashSetModels(newSettings);
         alwaysCalcHashesCheckbox.setSelected(newSettings.shouldCalculateHashes());
+        calcSha1HashesCheckbox.setSelected(newSettings.shouldCalculateSha1Hashes());
+        calcSha256HashesCheckbox.setSelected(newSettings.shouldCalculateSha256Hashes());
         knownHashSetsTableModel.fireTableDataChanged();
         knownBadHashSetsTableModel.fireTableDataChanged();
     }
@@ -273,6 +278,8 @@ private void initComponents() {
         knownBadHashDbsLabel = new javax.swing.JLabel();
         knownHashDbsLabel = new javax.swing.JLabel();
         alwaysCalcHashesCheckbox = new javax.swing.JCheckBox();
+        calcSha1HashesCheckbox = new javax.swing.JCheckBox();
+        calcSha256HashesCheckbox = new javax.swing.JCheckBox();
         jScrollPane2 = new javax.swing.JScrollPane();
         knownBadHashTable = new javax.swing.JTable();
 
@@ -297,6 +304,12 @@ private void initComponents() {
         alwaysCalcHashesCheckbox.setVerticalAlignment(javax.swing.SwingConstants.TOP);
         alwaysCalcHashesCheckbox.setVerticalTextPosition(javax.swing.SwingConstants.TOP);
 
+        calcSha1HashesCheckbox.setText(org.openide.util.NbBundle.getMessage(HashLookupModuleSettingsPanel.class, "HashLookupModuleSettingsPanel.calcSha1HashesCheckbox.text")); // NOI18N
+        calcSha1HashesCheckbox.setToolTipText(org.openide.util.NbBundle.getMessage(HashLookupModuleSettingsPanel.class, "HashLookupModuleSettingsPanel.calcSha1HashesCheckbox.toolTipText")); // NOI18N
+
+        calcSha256HashesCheckbox.setText(org.openide.util.NbBundle.getMessage(HashLookupModuleSettingsPanel.class, "HashLookupModuleSettingsPanel.calcSha256HashesCheckbox.text")); // NOI18N
+        calcSha256HashesCheckbox.setToolTipText(org.openide.util.NbBundle.getMessage(HashLookupModuleSettingsPanel.class, "HashLookupModuleSettingsPanel.calcSha256HashesCheckbox.toolTipText")); // NOI18N
+
         jScrollPane2.setBorder(javax.swing.BorderFactory.createEtchedBorder());
 
         knownBadHashTable.setBackground(new java.awt.Color(240, 240, 240));
@@ -328,7 +341,9 @@ private void initComponents() {
                         .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                             .addComponent(jScrollPane1, javax.swing.GroupLayout.PREFERRED_SIZE, 0, Short.MAX_VALUE)
                             .addComponent(jScrollPane2, javax.swing.GroupLayout.PREFERRED_SIZE, 0, Short.MAX_VALUE)))
-                    .addComponent(alwaysCalcHashesCheckbox, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
+                    .addComponent(alwaysCalcHashesCheckbox, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(calcSha1HashesCheckbox, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(calcSha256HashesCheckbox, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
                 .addContainerGap())
         );
         layout.setVerticalGroup(
@@ -344,12 +359,18 @@ private void initComponents() {
                 .addComponent(jScrollPane2, javax.swing.GroupLayout.PREFERRED_SIZE, 58, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                 .addComponent(alwaysCalcHashesCheckbox, javax.swing.GroupLayout.PREFERRED_SIZE, 35, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(calcSha1HashesCheckbox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(calcSha256HashesCheckbox)
                 .addContainerGap())
         );
     }// </editor-fold>//GEN-END:initComponents
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JCheckBox alwaysCalcHashesCheckbox;
+    private javax.swing.JCheckBox calcSha1HashesCheckbox;
+    private javax.swing.JCheckBox calcSha256HashesCheckbox;
     private javax.swing.JScrollPane jScrollPane1;
     private javax.swing.JScrollPane jScrollPane2;
     private javax.swing.JLabel knownBadHashDbsLabel;
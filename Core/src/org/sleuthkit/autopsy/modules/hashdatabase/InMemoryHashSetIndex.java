@@ -0,0 +1,308 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.modules.hashdatabase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * An in-memory copy of the MD5 hashes of a hash set, used to answer lookups
+ * without going through JNI to the hash set index on disk. A Bloom filter in
+ * front of a sorted off-heap array of 16-byte digests answers most negative
+ * lookups with a few memory reads; the rest are answered by a binary search of
+ * the array.
+ * <p>
+ * The hashes are read from the lookup index of the hash set, either a sorted
+ * text index (.idx) or a SQLite hash database (.kdb).
+ * <p>
+ * This class is thread-safe once it is constructed.
+ */
+final class InMemoryHashSetIndex {
+
+    private static final int DIGEST_SIZE = 16;
+    private static final int BLOOM_FILTER_BITS_PER_HASH = 10;
+    private static final int BLOOM_FILTER_HASH_FUNCTIONS = 7;
+    private static final int INDEX_LINE_HASH_LENGTH = 32;
+    private static final String KDB_EXTENSION = ".kdb"; //NON-NLS
+    private static final String KDB_COUNT_QUERY = "SELECT COUNT(*) FROM hashes"; //NON-NLS
+    private static final String KDB_HASHES_QUERY = "SELECT md5 FROM hashes ORDER BY md5"; //NON-NLS
+    private final ByteBuffer digests;
+    private final int digestCount;
+    private final long[] bloomFilter;
+    private final long bloomFilterBits;
+
+    /**
+     * Estimates the memory needed for an in-memory index of a hash set.
+     *
+     * @param indexPath The path of the lookup index of the hash set.
+     *
+     * @return The estimated size in bytes.
+     *
+     * @throws IOException if there is a problem reading the index.
+     */
+    static long estimateMemoryUsage(String indexPath) throws IOException {
+        return memoryUsage(estimateHashCount(indexPath));
+    }
+
+    /**
+     * Loads an in-memory index of a hash set.
+     *
+     * @param indexPath The path of the lookup index of the hash set.
+     *
+     * @return The in-memory index.
+     *
+     * @throws IOException if there is a problem reading the index, the index
+     *                     is not sorted, or there is not enough memory for
+     *                     the in-memory index.
+     */
+    static InMemoryHashSetIndex load(String indexPath) throws IOException {
+        long estimatedCount = estimateHashCount(indexPath);
+        if (estimatedCount * DIGEST_SIZE > Integer.MAX_VALUE) {
+            throw new IOException("Hash set too large for an in-memory index: " + indexPath); //NON-NLS
+        }
+        try {
+            HashLoader loader = new HashLoader((int) estimatedCount);
+            if (indexPath.toLowerCase().endsWith(KDB_EXTENSION)) {
+                loadFromKdb(indexPath, loader);
+            } else {
+                loadFromIdx(indexPath, loader);
+            }
+            return new InMemoryHashSetIndex(loader.digests, loader.count);
+        } catch (OutOfMemoryError ex) {
+            /*
+             * The digests are held in direct buffers, which are limited by
+             * -XX:MaxDirectMemorySize rather than by the budget user
+             * preference. The partially loaded buffers are garbage once this
+             * returns.
+             */
+            throw new IOException("Not enough memory for an in-memory index: " + indexPath, ex); //NON-NLS
+        }
+    }
+
+    /**
+     * Constructs an in-memory index of a hash set from a sorted array of
+     * digests.
+     *
+     * @param digests     The digests, sorted as unsigned 128-bit numbers.
+     * @param digestCount The number of digests.
+     */
+    private InMemoryHashSetIndex(ByteBuffer digests, int digestCount) {
+        this.digests = digests;
+        this.digestCount = digestCount;
+        long bits = Math.max(64, (long) digestCount * BLOOM_FILTER_BITS_PER_HASH);
+        this.bloomFilter = new long[(int) ((bits + 63) / 64)];
+        this.bloomFilterBits = (long) this.bloomFilter.length * 64;
+        for (int i = 0; i < digestCount; ++i) {
+            long high = digests.getLong(i * DIGEST_SIZE);
+            long low = digests.getLong(i * DIGEST_SIZE + 8);
+            for (int k = 0; k < BLOOM_FILTER_HASH_FUNCTIONS; ++k) {
+                long bit = bloomFilterBit(high, low, k);
+                this.bloomFilter[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of hashes in this index.
+     *
+     * @return The number of hashes.
+     */
+    int getHashCount() {
+        return this.digestCount;
+    }
+
+    /**
+     * Gets the memory used by this index.
+     *
+     * @return The size in bytes.
+     */
+    long getMemoryUsage() {
+        return (long) this.digests.capacity() + (long) this.bloomFilter.length * 8;
+    }
+
+    /**
+     * Looks up an MD5 hash.
+     *
+     * @param md5Hash The hash as a hex string.
+     *
+     * @return True if the hash is in the hash set, false otherwise.
+     */
+    boolean contains(String md5Hash) {
+        if (null == md5Hash || md5Hash.length() != INDEX_LINE_HASH_LENGTH) {
+            return false;
+        }
+        long high;
+        long low;
+        try {
+            high = Long.parseUnsignedLong(md5Hash.substring(0, 16), 16);
+            low = Long.parseUnsignedLong(md5Hash.substring(16), 16);
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+        for (int k = 0; k < BLOOM_FILTER_HASH_FUNCTIONS; ++k) {
+            long bit = bloomFilterBit(high, low, k);
+            if ((this.bloomFilter[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        int lowIndex = 0;
+        int highIndex = this.digestCount - 1;
+        while (lowIndex <= highIndex) {
+            int mid = (lowIndex + highIndex) >>> 1;
+            int cmp = compare(this.digests.getLong(mid * DIGEST_SIZE), this.digests.getLong(mid * DIGEST_SIZE + 8), high, low);
+            if (cmp < 0) {
+                lowIndex = mid + 1;
+            } else if (cmp > 0) {
+                highIndex = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the k-th Bloom filter bit for a digest by double hashing. MD5
+     * digests are uniformly distributed, so the halves of the digest serve as
+     * the two base hashes.
+     */
+    private long bloomFilterBit(long high, long low, int k) {
+        return Math.floorMod(high + k * low, this.bloomFilterBits);
+    }
+
+    private static int compare(long high1, long low1, long high2, long low2) {
+        int cmp = Long.compareUnsigned(high1, high2);
+        return (cmp != 0) ? cmp : Long.compareUnsigned(low1, low2);
+    }
+
+    private static long memoryUsage(long hashCount) {
+        return hashCount * DIGEST_SIZE + (hashCount * BLOOM_FILTER_BITS_PER_HASH) / 8;
+    }
+
+    /**
+     * Estimates the number of hashes in a hash set lookup index, from the row
+     * count of a .kdb or the size of a .idx.
+     */
+    private static long estimateHashCount(String indexPath) throws IOException {
+        if (indexPath.toLowerCase().endsWith(KDB_EXTENSION)) {
+            try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + indexPath); //NON-NLS
+                    Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery(KDB_COUNT_QUERY)) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            } catch (SQLException ex) {
+                throw new IOException("Error counting hashes in " + indexPath, ex); //NON-NLS
+            }
+        }
+        // Each .idx entry is a 32 character hash, a separator, a 16 digit
+        // offset and a newline.
+        return new File(indexPath).length() / (INDEX_LINE_HASH_LENGTH + 18);
+    }
+
+    private static void loadFromKdb(String indexPath, HashLoader loader) throws IOException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + indexPath); //NON-NLS
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(KDB_HASHES_QUERY)) {
+            while (resultSet.next()) {
+                byte[] md5 = resultSet.getBytes(1);
+                if (null == md5) {
+                    continue;
+                }
+                if (md5.length != DIGEST_SIZE) {
+                    // An unexpected format, a partial index would give false
+                    // negatives.
+                    throw new IOException("Unexpected MD5 format in " + indexPath); //NON-NLS
+                }
+                ByteBuffer wrapped = ByteBuffer.wrap(md5);
+                loader.add(wrapped.getLong(0), wrapped.getLong(8));
+            }
+        } catch (SQLException ex) {
+            throw new IOException("Error reading hashes from " + indexPath, ex); //NON-NLS
+        }
+    }
+
+    private static void loadFromIdx(String indexPath, HashLoader loader) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(new File(indexPath).toPath(), StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Header lines have a longer, all zeros, hash field.
+                int separator = line.indexOf('|');
+                if (separator != INDEX_LINE_HASH_LENGTH) {
+                    continue;
+                }
+                try {
+                    loader.add(Long.parseUnsignedLong(line.substring(0, 16), 16), Long.parseUnsignedLong(line.substring(16, INDEX_LINE_HASH_LENGTH), 16));
+                } catch (NumberFormatException ex) {
+                    throw new IOException("Malformed entry in " + indexPath + ": " + line, ex); //NON-NLS
+                }
+            }
+        }
+    }
+
+    /**
+     * Accumulates sorted digests in a growable off-heap buffer.
+     */
+    private static final class HashLoader {
+
+        private ByteBuffer digests;
+        private int count;
+        private long lastHigh;
+        private long lastLow;
+
+        HashLoader(int expectedCount) {
+            this.digests = ByteBuffer.allocateDirect(Math.max(1, expectedCount) * DIGEST_SIZE);
+        }
+
+        void add(long high, long low) throws IOException {
+            if (this.count > 0) {
+                int cmp = compare(this.lastHigh, this.lastLow, high, low);
+                if (cmp == 0) {
+                    return;
+                }
+                if (cmp > 0) {
+                    throw new IOException("Hash set index is not sorted"); //NON-NLS
+                }
+            }
+            if (this.digests.remaining() < DIGEST_SIZE) {
+                long newCapacity = Math.min((long) Integer.MAX_VALUE / DIGEST_SIZE * DIGEST_SIZE, (long) this.digests.capacity() * 2);
+                if (newCapacity <= this.digests.capacity()) {
+                    throw new IOException("Hash set too large for an in-memory index"); //NON-NLS
+                }
+                ByteBuffer larger = ByteBuffer.allocateDirect((int) newCapacity);
+                this.digests.flip();
+                larger.put(this.digests);
+                this.digests = larger;
+            }
+            this.digests.putLong(high);
+            this.digests.putLong(low);
+            this.lastHigh = high;
+            this.lastLow = low;
+            ++this.count;
+        }
+    }
+
+}
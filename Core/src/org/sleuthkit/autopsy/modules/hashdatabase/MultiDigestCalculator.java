@@ -0,0 +1,208 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.modules.hashdatabase;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Calculates any combination of MD5, SHA-1 and SHA-256 digests of a stream in
+ * a single pass. When more than one digest is requested, each chunk of the
+ * stream is fed to the digests in parallel while the next chunk is being read.
+ * Each calculator has its own digest threads, one per digest, so that callers
+ * on different threads do not queue up behind each other; a calculator should
+ * be closed when it is no longer needed.
+ * <p>
+ * Instances of this class are not thread-safe, but any number of instances may
+ * be used concurrently.
+ */
+final class MultiDigestCalculator implements AutoCloseable {
+
+    /**
+     * The digest algorithms supported by the calculator.
+     */
+    enum Algorithm {
+
+        MD5("MD5"), //NON-NLS
+        SHA1("SHA-1"), //NON-NLS
+        SHA256("SHA-256"); //NON-NLS
+
+        private final String jcaName;
+
+        private Algorithm(String jcaName) {
+            this.jcaName = jcaName;
+        }
+
+        MessageDigest newDigest() throws NoSuchAlgorithmException {
+            return MessageDigest.getInstance(this.jcaName);
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private final Map<Algorithm, MessageDigest> digests = new EnumMap<>(Algorithm.class);
+    private ExecutorService digestExecutor;
+    private byte[] currentBuffer = new byte[BUFFER_SIZE];
+    private byte[] nextBuffer;
+
+    /**
+     * Constructs an object that calculates a set of digests in a single pass.
+     *
+     * @param algorithms The digest algorithms.
+     *
+     * @throws NoSuchAlgorithmException if one of the algorithms is not
+     *                                  available in this JVM.
+     */
+    MultiDigestCalculator(Set<Algorithm> algorithms) throws NoSuchAlgorithmException {
+        for (Algorithm algorithm : algorithms) {
+            this.digests.put(algorithm, algorithm.newDigest());
+        }
+        if (this.digests.size() > 1) {
+            this.nextBuffer = new byte[BUFFER_SIZE];
+            this.digestExecutor = Executors.newFixedThreadPool(this.digests.size(),
+                    new ThreadFactoryBuilder().setNameFormat("hash-digest-%d").setDaemon(true).build()); //NON-NLS
+        }
+    }
+
+    /**
+     * Stops the digest threads of this calculator.
+     */
+    @Override
+    public void close() {
+        if (null != this.digestExecutor) {
+            this.digestExecutor.shutdown();
+            this.digestExecutor = null;
+        }
+    }
+
+    /**
+     * Reads a stream to the end and calculates its digests.
+     *
+     * @param in The stream. The caller is responsible for closing it.
+     *
+     * @return The digests as lower case hex strings, keyed by algorithm.
+     *
+     * @throws IOException if there is a problem reading the stream.
+     */
+    Map<Algorithm, String> calculate(InputStream in) throws IOException {
+        for (MessageDigest digest : this.digests.values()) {
+            digest.reset();
+        }
+        if (this.digests.size() == 1) {
+            MessageDigest digest = this.digests.values().iterator().next();
+            int len;
+            while ((len = fill(in, this.currentBuffer)) > 0) {
+                digest.update(this.currentBuffer, 0, len);
+            }
+        } else if (this.digests.size() > 1) {
+            calculateInParallel(in);
+        }
+        Map<Algorithm, String> results = new EnumMap<>(Algorithm.class);
+        for (Map.Entry<Algorithm, MessageDigest> entry : this.digests.entrySet()) {
+            results.put(entry.getKey(), toHex(entry.getValue().digest()));
+        }
+        return results;
+    }
+
+    /**
+     * Feeds each chunk of a stream to all of the digests in parallel while
+     * reading the next chunk into the other buffer.
+     *
+     * @param in The stream.
+     *
+     * @throws IOException if there is a problem reading the stream.
+     */
+    private void calculateInParallel(InputStream in) throws IOException {
+        List<Future<?>> updates = new ArrayList<>(this.digests.size());
+        int len = fill(in, this.currentBuffer);
+        try {
+            while (len > 0) {
+                final byte[] chunk = this.currentBuffer;
+                final int chunkLength = len;
+                for (MessageDigest digest : this.digests.values()) {
+                    updates.add(this.digestExecutor.submit(() -> digest.update(chunk, 0, chunkLength)));
+                }
+                len = fill(in, this.nextBuffer);
+                for (Future<?> update : updates) {
+                    update.get();
+                }
+                updates.clear();
+                this.currentBuffer = this.nextBuffer;
+                this.nextBuffer = chunk;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        } finally {
+            // Make sure no update is still running against a digest before
+            // the digests are reset for the next stream.
+            for (Future<?> update : updates) {
+                try {
+                    update.get();
+                } catch (InterruptedException | ExecutionException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads from a stream until a buffer is full or the stream ends.
+     *
+     * @param in     The stream.
+     * @param buffer The buffer.
+     *
+     * @return The number of bytes read, zero at the end of the stream.
+     *
+     * @throws IOException if there is a problem reading the stream.
+     */
+    private static int fill(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int len = in.read(buffer, total, buffer.length - total);
+            if (len == -1) {
+                break;
+            }
+            total += len;
+        }
+        return total;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+}
@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.autopsy.timeline;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.awt.HeadlessException;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
@@ -26,11 +27,15 @@
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.MissingResourceException;
 import java.util.TimeZone;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import javafx.application.Platform;
 import javafx.beans.InvalidationListener;
@@ -129,6 +134,18 @@ public static ReadOnlyObjectProperty<TimeZone> getTimeZone() {
 
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
 
+    /**
+     * how long to wait after the case changes before bringing the events db up
+     * to date, so that a burst of changes during ingest is handled by one
+     * incremental update
+     */
+    private static final long LIVE_UPDATE_DELAY_SECONDS = 15;
+
+    private final ScheduledExecutorService liveUpdateExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("timeline-live-update-%d").setDaemon(true).build()); // NON-NLS
+
+    private final AtomicBoolean liveUpdatePending = new AtomicBoolean(false);
+
     private final ReadOnlyListWrapper<Task<?>> tasks = new ReadOnlyListWrapper<>(FXCollections.observableArrayList());
 
     private final ReadOnlyDoubleWrapper taskProgress = new ReadOnlyDoubleWrapper(-1);
@@ -356,6 +373,62 @@ void rebuildTagsTable() {
         promptDialogManager.showProgressDialog(rebuildTags);
     }
 
+    /**
+     * Bring the events db up to date with the case by adding the events of the
+     * files and artifacts added since it was last populated, rather than
+     * rebuilding it from scratch.
+     *
+     * @param showWindow true to show the progress of the update and then show
+     *                   the timeline window, false to update the events shown
+     *                   in the (already open) window in the background
+     */
+    @ThreadConfined(type = ThreadConfined.ThreadType.JFX)
+    private void updateRepo(boolean showWindow) {
+        final CancellationProgressTask<?> updateRepository = eventsRepository.updateRepository();
+        updateRepository.stateProperty().addListener((stateProperty, oldState, newSate) -> {
+            //this will be on JFX thread
+            if (newSate == Worker.State.SUCCEEDED) {
+                newEventsFlag.set(false);
+                if (showWindow) {
+                    SwingUtilities.invokeLater(TimeLineController.this::showWindow);
+                    showFullRange();
+                } else {
+                    filteredEvents.refresh();
+                }
+            }
+        });
+        if (showWindow) {
+            promptDialogManager.showProgressDialog(updateRepository);
+        }
+    }
+
+    /**
+     * Schedule an incremental update of the events db, to add the events of
+     * files and artifacts as they are added to the case. Requests made while an
+     * update is already scheduled are handled by that update. Nothing is done
+     * if the timeline window is not open when the update is due.
+     */
+    @ThreadConfined(type = ThreadConfined.ThreadType.ANY)
+    private void scheduleLiveUpdate() {
+        if (liveUpdatePending.compareAndSet(false, true)) {
+            liveUpdateExecutor.schedule(() -> SwingUtilities.invokeLater(() -> {
+                if (isWindowOpen()) {
+                    Platform.runLater(() -> {
+                        liveUpdatePending.set(false);
+                        if (eventsRepository.isRebuilding()) {
+                            //try again once the running population is done
+                            scheduleLiveUpdate();
+                        } else {
+                            updateRepo(false);
+                        }
+                    });
+                } else {
+                    liveUpdatePending.set(false);
+                }
+            }), LIVE_UPDATE_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
     @ThreadConfined(type = ThreadConfined.ThreadType.AWT)
     private void closeTimelineWindow() {
         if (isWindowOpen()) {
@@ -431,6 +504,11 @@ private boolean checkAndPromptForRebuild() {
         }
 
         ArrayList<String> rebuildReasons = getRebuildReasons();
+        //if the events db is just missing the newest events, add them without asking
+        if (rebuildReasons.equals(Collections.singletonList(Bundle.TimeLineController_rebuildReasons_outOfDate()))) {
+            updateRepo(true);
+            return true;
+        }
         if (rebuildReasons.isEmpty() == false) {
             if (promptDialogManager.confirmRebuild(rebuildReasons)) {
                 rebuildRepo();
@@ -773,6 +851,7 @@ public void propertyChange(PropertyChangeEvent evt) {
             switch (IngestManager.IngestModuleEvent.valueOf(evt.getPropertyName())) {
                 case CONTENT_CHANGED:
                 case DATA_ADDED:
+                    scheduleLiveUpdate();
                     break;
                 case FILE_DONE:
                     Platform.runLater(() -> {
@@ -823,7 +902,7 @@ public void propertyChange(PropertyChangeEvent evt) {
                     });
                     break;
                 case DATA_SOURCE_ADDED:
-                    SwingUtilities.invokeLater(TimeLineController.this::confirmOutOfDateRebuildIfWindowOpen);
+                    scheduleLiveUpdate();
                     break;
 
                 case CURRENT_CASE:
@@ -19,13 +19,16 @@
 package org.sleuthkit.autopsy.timeline.datamodel;
 
 import java.util.Optional;
-import java.util.Set;
 import java.util.SortedSet;
 import org.sleuthkit.autopsy.timeline.datamodel.eventtype.EventType;
 import org.sleuthkit.autopsy.timeline.zooming.DescriptionLoD;
 
 /**
  * A interface for groups of events that share some attributes in common.
+ *
+ * Bundles only hold counts of their events. The ids of the events are read
+ * from the db when they are needed, e.g. when a bundle is selected, as the ids
+ * of the events in the span of the bundle with its type and description.
  */
 public interface EventBundle<ParentType extends EventBundle<?>> {
 
@@ -33,11 +36,22 @@
 
     DescriptionLoD getDescriptionLoD();
 
-    Set<Long> getEventIDs();
+    /**
+     * @return the number of events in this bundle
+     */
+    int getCount();
 
-    Set<Long> getEventIDsWithHashHits();
+    /**
+     * @return the number of events in this bundle that have at least one hash
+     *         set hit
+     */
+    int getHashHitCount();
 
-    Set<Long> getEventIDsWithTags();
+    /**
+     * @return the number of events in this bundle that have at least one tag
+     *         applied to them
+     */
+    int getTaggedCount();
 
     EventType getEventType();
 
@@ -47,9 +61,5 @@
 
     Optional<ParentType> getParentBundle();
 
-    default int getCount() {
-        return getEventIDs().size();
-    }
-
     SortedSet<EventCluster> getClusters();
 }
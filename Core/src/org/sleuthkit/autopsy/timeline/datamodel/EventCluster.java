@@ -18,13 +18,10 @@
  */
 package org.sleuthkit.autopsy.timeline.datamodel;
 
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
-import com.google.common.collect.Sets;
 import java.util.Comparator;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
 import java.util.SortedSet;
 import javax.annotation.concurrent.Immutable;
 import org.joda.time.Interval;
@@ -57,11 +54,10 @@ public static EventCluster merge(EventCluster cluster1, EventCluster cluster2) {
         if (!cluster1.getDescription().equals(cluster2.getDescription())) {
             throw new IllegalArgumentException("event clusters are not compatible: they have different descriptions");
         }
-        Sets.SetView<Long> idsUnion = Sets.union(cluster1.getEventIDs(), cluster2.getEventIDs());
-        Sets.SetView<Long> hashHitsUnion = Sets.union(cluster1.getEventIDsWithHashHits(), cluster2.getEventIDsWithHashHits());
-        Sets.SetView<Long> taggedUnion = Sets.union(cluster1.getEventIDsWithTags(), cluster2.getEventIDsWithTags());
-
-        return new EventCluster(IntervalUtils.span(cluster1.span, cluster2.span), cluster1.getEventType(), idsUnion, hashHitsUnion, taggedUnion, cluster1.getDescription(), cluster1.lod);
+        //the clusters hold disjoint sets of events, so the counts add up
+        return new EventCluster(IntervalUtils.span(cluster1.span, cluster2.span), cluster1.getEventType(),
+                cluster1.count + cluster2.count, cluster1.hashHitCount + cluster2.hashHitCount, cluster1.taggedCount + cluster2.taggedCount,
+                cluster1.getDescription(), cluster1.lod);
     }
 
     final private EventStripe parent;
@@ -87,36 +83,35 @@ public static EventCluster merge(EventCluster cluster1, EventCluster cluster2) {
     private final DescriptionLoD lod;
 
     /**
-     * the set of ids of the clustered events
+     * the number of clustered events
      */
-    final private ImmutableSet<Long> eventIDs;
+    final private int count;
 
     /**
-     * the ids of the subset of clustered events that have at least one tag
-     * applied to them
+     * the number of clustered events that have at least one tag applied to
+     * them
      */
-    private final ImmutableSet<Long> tagged;
+    private final int taggedCount;
 
     /**
-     * the ids of the subset of clustered events that have at least one hash set
-     * hit
+     * the number of clustered events that have at least one hash set hit
      */
-    private final ImmutableSet<Long> hashHits;
+    private final int hashHitCount;
 
-    private EventCluster(Interval spanningInterval, EventType type, Set<Long> eventIDs, Set<Long> hashHits, Set<Long> tagged, String description, DescriptionLoD lod, EventStripe parent) {
+    private EventCluster(Interval spanningInterval, EventType type, int count, int hashHitCount, int taggedCount, String description, DescriptionLoD lod, EventStripe parent) {
 
         this.span = spanningInterval;
         this.type = type;
-        this.hashHits = ImmutableSet.copyOf(hashHits);
-        this.tagged = ImmutableSet.copyOf(tagged);
+        this.hashHitCount = hashHitCount;
+        this.taggedCount = taggedCount;
         this.description = description;
-        this.eventIDs = ImmutableSet.copyOf(eventIDs);
+        this.count = count;
         this.lod = lod;
         this.parent = parent;
     }
 
-    public EventCluster(Interval spanningInterval, EventType type, Set<Long> eventIDs, Set<Long> hashHits, Set<Long> tagged, String description, DescriptionLoD lod) {
-        this(spanningInterval, type, eventIDs, hashHits, tagged, description, lod, null);
+    public EventCluster(Interval spanningInterval, EventType type, int count, int hashHitCount, int taggedCount, String description, DescriptionLoD lod) {
+        this(spanningInterval, type, count, hashHitCount, taggedCount, description, lod, null);
     }
 
     @Override
@@ -139,21 +134,18 @@ public long getEndMillis() {
     }
 
     @Override
-    @SuppressWarnings("ReturnOfCollectionOrArrayField")
-    public ImmutableSet<Long> getEventIDs() {
-        return eventIDs;
+    public int getCount() {
+        return count;
     }
 
     @Override
-    @SuppressWarnings("ReturnOfCollectionOrArrayField")
-    public ImmutableSet<Long> getEventIDsWithHashHits() {
-        return hashHits;
+    public int getHashHitCount() {
+        return hashHitCount;
     }
 
     @Override
-    @SuppressWarnings("ReturnOfCollectionOrArrayField")
-    public ImmutableSet<Long> getEventIDsWithTags() {
-        return tagged;
+    public int getTaggedCount() {
+        return taggedCount;
     }
 
     @Override
@@ -184,7 +176,7 @@ public EventCluster withParent(EventStripe parent) {
         if (Objects.nonNull(this.parent)) {
             throw new IllegalStateException("Event Cluster already has a parent!");
         }
-        return new EventCluster(span, type, eventIDs, hashHits, tagged, description, lod, parent);
+        return new EventCluster(span, type, count, hashHitCount, taggedCount, description, lod, parent);
     }
 
     @Override
@@ -19,7 +19,6 @@
 package org.sleuthkit.autopsy.timeline.datamodel;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import java.util.Comparator;
 import java.util.Optional;
@@ -66,36 +65,35 @@ public static EventStripe merge(EventStripe u, EventStripe v) {
     private final DescriptionLoD lod;
 
     /**
-     * the set of ids of the events
+     * the number of events
      */
-    private final ImmutableSet<Long> eventIDs;
+    private final int count;
 
     /**
-     * the ids of the subset of events that have at least one tag applied to
-     * them
+     * the number of events that have at least one tag applied to them
      */
-    private final ImmutableSet<Long> tagged;
+    private final int taggedCount;
 
     /**
-     * the ids of the subset of events that have at least one hash set hit
+     * the number of events that have at least one hash set hit
      */
-    private final ImmutableSet<Long> hashHits;
+    private final int hashHitCount;
 
     public EventStripe withParent(EventCluster parent) {
-        EventStripe eventStripe = new EventStripe(parent, this.type, this.description, this.lod, clusters, eventIDs, tagged, hashHits);
+        EventStripe eventStripe = new EventStripe(parent, this.type, this.description, this.lod, clusters, count, taggedCount, hashHitCount);
         return eventStripe;
     }
 
-    private EventStripe(EventCluster parent, EventType type, String description, DescriptionLoD lod, SortedSet<EventCluster> clusters, ImmutableSet<Long> eventIDs, ImmutableSet<Long> tagged, ImmutableSet<Long> hashHits) {
+    private EventStripe(EventCluster parent, EventType type, String description, DescriptionLoD lod, SortedSet<EventCluster> clusters, int count, int taggedCount, int hashHitCount) {
         this.parent = parent;
         this.type = type;
         this.description = description;
         this.lod = lod;
         this.clusters = ImmutableSortedSet.copyOf(Comparator.comparing(EventCluster::getStartMillis), clusters);
 
-        this.eventIDs = eventIDs;
-        this.tagged = tagged;
-        this.hashHits = hashHits;
+        this.count = count;
+        this.taggedCount = taggedCount;
+        this.hashHitCount = hashHitCount;
     }
 
     public EventStripe(EventCluster cluster, EventCluster parent) {
@@ -105,9 +103,9 @@ public EventStripe(EventCluster cluster, EventCluster parent) {
         type = cluster.getEventType();
         description = cluster.getDescription();
         lod = cluster.getDescriptionLoD();
-        eventIDs = cluster.getEventIDs();
-        tagged = cluster.getEventIDsWithTags();
-        hashHits = cluster.getEventIDsWithHashHits();
+        count = cluster.getCount();
+        taggedCount = cluster.getTaggedCount();
+        hashHitCount = cluster.getHashHitCount();
         this.parent = parent;
     }
 
@@ -120,18 +118,10 @@ private EventStripe(EventStripe u, EventStripe v) {
         type = u.getEventType();
         description = u.getDescription();
         lod = u.getDescriptionLoD();
-        eventIDs = ImmutableSet.<Long>builder()
-                .addAll(u.getEventIDs())
-                .addAll(v.getEventIDs())
-                .build();
-        tagged = ImmutableSet.<Long>builder()
-                .addAll(u.getEventIDsWithTags())
-                .addAll(v.getEventIDsWithTags())
-                .build();
-        hashHits = ImmutableSet.<Long>builder()
-                .addAll(u.getEventIDsWithHashHits())
-                .addAll(v.getEventIDsWithHashHits())
-                .build();
+        //the stripes hold disjoint sets of clusters, so the counts add up
+        count = u.getCount() + v.getCount();
+        taggedCount = u.getTaggedCount() + v.getTaggedCount();
+        hashHitCount = u.getHashHitCount() + v.getHashHitCount();
         parent = u.getParentBundle().orElse(v.getParentBundle().orElse(null));
     }
 
@@ -156,21 +146,18 @@ public DescriptionLoD getDescriptionLoD() {
     }
 
     @Override
-    @SuppressWarnings("ReturnOfCollectionOrArrayField")
-    public ImmutableSet<Long> getEventIDs() {
-        return eventIDs;
+    public int getCount() {
+        return count;
     }
 
     @Override
-    @SuppressWarnings("ReturnOfCollectionOrArrayField")
-    public ImmutableSet<Long> getEventIDsWithHashHits() {
-        return hashHits;
+    public int getHashHitCount() {
+        return hashHitCount;
     }
 
     @Override
-    @SuppressWarnings("ReturnOfCollectionOrArrayField")
-    public ImmutableSet<Long> getEventIDsWithTags() {
-        return tagged;
+    public int getTaggedCount() {
+        return taggedCount;
     }
 
     @Override
@@ -191,6 +178,6 @@ public ImmutableSortedSet< EventCluster> getClusters() {
 
     @Override
     public String toString() {
-        return "EventStripe{" + "description=" + description + ", eventIDs=" + eventIDs.size() + '}';
+        return "EventStripe{" + "description=" + description + ", count=" + count + '}';
     }
 }
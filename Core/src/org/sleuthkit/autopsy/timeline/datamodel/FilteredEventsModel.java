@@ -25,6 +25,7 @@
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import javafx.beans.Observable;
 import javafx.beans.property.ReadOnlyObjectProperty;
@@ -289,6 +290,29 @@ public Map<EventType, Long> getEventCounts(Interval timeRange) {
         return repo.countEvents(new ZoomParams(timeRange, typeZoom, filter, null));
     }
 
+    /**
+     * return the number of events that pass the requested filter in each of
+     * the given intervals. This is faster than calling getEventCounts(Interval)
+     * for each interval.
+     *
+     * NOTE: this method does not change the requested time range
+     *
+     * @param intervals the intervals to count the events in
+     *
+     * @return a map from event type to event count for each interval, in the
+     *         same order as the intervals
+     */
+    public List<Map<EventType, Long>> getEventCounts(List<Interval> intervals) {
+
+        final RootFilter filter;
+        final EventTypeZoomLevel typeZoom;
+        synchronized (this) {
+            filter = requestedFilter.get();
+            typeZoom = requestedTypeZoom.get();
+        }
+        return repo.countEvents(intervals, typeZoom, filter);
+    }
+
     /**
      * @return the smallest interval spanning all the events from the
      *         repository, ignoring any filters or requested ranges
@@ -341,6 +365,31 @@ public List<EventStripe> getEventStripes() {
         return repo.getEventStripes(new ZoomParams(range, zoom, filter, lod));
     }
 
+    /**
+     * get the event stripes at the requested zoom levels that are within the
+     * requested time range and pass the requested filter, handing them to the
+     * given page handler as they are read.
+     *
+     * @param pageHandler handles each page of stripes, and returns false to
+     *                    stop reading the rest of them. A stripe with the same
+     *                    type and description as one from an earlier page
+     *                    continues it, and should be merged into it with
+     *                    {@link EventStripe#merge}.
+     */
+    public void getEventStripes(Predicate<List<EventStripe>> pageHandler) {
+        final Interval range;
+        final RootFilter filter;
+        final EventTypeZoomLevel zoom;
+        final DescriptionLoD lod;
+        synchronized (this) {
+            range = requestedTimeRange.get();
+            filter = requestedFilter.get();
+            zoom = requestedTypeZoom.get();
+            lod = requestedLOD.get();
+        }
+        repo.getEventStripes(new ZoomParams(range, zoom, filter, lod), pageHandler);
+    }
+
     /**
      * @param aggregation
      *
@@ -18,8 +18,6 @@
  */
 package org.sleuthkit.autopsy.timeline.db;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.SetMultimap;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -32,31 +30,33 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
-import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.joda.time.Chronology;
 import org.joda.time.DateTimeZone;
 import org.joda.time.Interval;
-import org.joda.time.Period;
+import org.joda.time.chrono.ISOChronology;
 import org.sleuthkit.autopsy.casemodule.Case;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.autopsy.coreutils.Version;
 import org.sleuthkit.autopsy.timeline.TimeLineController;
-import org.sleuthkit.autopsy.timeline.datamodel.EventCluster;
 import org.sleuthkit.autopsy.timeline.datamodel.EventStripe;
 import org.sleuthkit.autopsy.timeline.datamodel.TimeLineEvent;
 import org.sleuthkit.autopsy.timeline.datamodel.eventtype.BaseTypes;
@@ -65,10 +65,10 @@
 import static org.sleuthkit.autopsy.timeline.db.SQLHelper.useHashHitTablesHelper;
 import static org.sleuthkit.autopsy.timeline.db.SQLHelper.useTagTablesHelper;
 import org.sleuthkit.autopsy.timeline.filters.RootFilter;
-import org.sleuthkit.autopsy.timeline.filters.TagsFilter;
 import org.sleuthkit.autopsy.timeline.utils.RangeDivisionInfo;
 import org.sleuthkit.autopsy.timeline.zooming.DescriptionLoD;
 import org.sleuthkit.autopsy.timeline.zooming.EventTypeZoomLevel;
+import org.sleuthkit.autopsy.timeline.zooming.TimeUnits;
 import org.sleuthkit.autopsy.timeline.zooming.ZoomParams;
 import org.sleuthkit.datamodel.SleuthkitCase;
 import org.sleuthkit.datamodel.Tag;
@@ -142,31 +142,71 @@ public static EventDB getEventDB(Case autoCase) {
 
     private final String dbPath;
 
-    private PreparedStatement getDBInfoStmt;
-    private PreparedStatement getEventByIDStmt;
-    private PreparedStatement getMaxTimeStmt;
-    private PreparedStatement getMinTimeStmt;
-    private PreparedStatement getDataSourceIDsStmt;
-    private PreparedStatement getHashSetNamesStmt;
     private PreparedStatement insertRowStmt;
+    private PreparedStatement insertRowBatchStmt;
     private PreparedStatement recordDBInfoStmt;
     private PreparedStatement insertHashSetStmt;
     private PreparedStatement insertHashHitStmt;
+    private PreparedStatement insertFileHashHitsStmt;
+    private PreparedStatement markFileHashHitStmt;
+    private PreparedStatement selectKnownStateChangesStmt;
+    private PreparedStatement updateKnownStateStmt;
     private PreparedStatement insertTagStmt;
     private PreparedStatement deleteTagStmt;
     private PreparedStatement selectHashSetStmt;
-    private PreparedStatement countAllEventsStmt;
     private PreparedStatement dropEventsTableStmt;
     private PreparedStatement dropHashSetHitsTableStmt;
     private PreparedStatement dropHashSetsTableStmt;
     private PreparedStatement dropTagsTableStmt;
     private PreparedStatement dropDBInfoTableStmt;
+    private PreparedStatement dropRollupsTableStmt;
+    private PreparedStatement selectRollupZonesStmt;
+    private PreparedStatement updateRollupStmt;
+    private PreparedStatement insertRollupStmt;
     private PreparedStatement selectNonArtifactEventIDsByObjectIDStmt;
     private PreparedStatement selectEventIDsBYObjectAndArtifactIDStmt;
 
     private final Set<PreparedStatement> preparedStatements = new HashSet<>();
 
-    private final Lock DBLock = new ReentrantReadWriteLock(true).writeLock(); //using exclusive lock for all db ops for now
+    /**
+     * serializes the use of the write connection, con. Queries that only read
+     * the db use the read connections instead, and don't take this lock.
+     */
+    private final Lock DBLock = new ReentrantLock(true);
+
+    /**
+     * the maximum number of idle read connections kept open
+     */
+    private static final int MAX_IDLE_READ_CONNECTIONS = 4;
+
+    /**
+     * idle connections used to read the db. Since the db is in WAL mode,
+     * readers see the last committed state of the db and neither block nor are
+     * blocked by the write connection, so the timeline can be navigated while
+     * the db is being populated or tags are being updated.
+     */
+    private final Queue<Connection> readConnections = new ConcurrentLinkedQueue<>();
+
+    /**
+     * the number of events read by getEventStripes() between pages of stripes
+     */
+    private static final int STRIPE_PAGE_SIZE = 500;
+
+    private static final String SELECT_ROLLUP_ZONES_QUERY = "SELECT DISTINCT time_zone FROM event_count_rollups"; // NON-NLS
+
+    /**
+     * the ids of the time zones there are committed event count rollups for,
+     * or null if they have not been read from the db yet. Only the write path
+     * replaces a value, readers only fill in the initial null.
+     */
+    private final AtomicReference<Set<String>> rollupZones = new AtomicReference<>();
+
+    /**
+     * the ids of the time zones there will be event count rollups for when the
+     * open transaction is committed, or null if it has not updated the rollups
+     */
+    @GuardedBy("DBLock")
+    private Set<String> pendingRollupZones;
 
     private EventDB(Case autoCase) throws SQLException, Exception {
         //should this go into module output (or even cache, we should be able to rebuild it)?
@@ -193,19 +233,55 @@ void closeDBCon() {
             }
         }
         con = null;
+        closeReadConnections();
+    }
+
+    private void closeReadConnections() {
+        Connection readConnection;
+        while ((readConnection = readConnections.poll()) != null) {
+            try {
+                readConnection.close();
+            } catch (SQLException ex) {
+                LOGGER.log(Level.WARNING, "Failed to close read connection to events.db", ex); // NON-NLS
+            }
+        }
+    }
+
+    /**
+     * get a connection to read the db with, reusing an idle one if there is
+     * one. The connection must be given back by closing the returned
+     * ReadConnection.
+     *
+     * @return a ReadConnection
+     *
+     * @throws SQLException if a new connection could not be opened
+     */
+    private ReadConnection openReadConnection() throws SQLException {
+        Connection readConnection = readConnections.poll();
+        if (readConnection == null || readConnection.isClosed()) {
+            readConnection = DriverManager.getConnection("jdbc:sqlite:" + dbPath); // NON-NLS
+            try (Statement statement = readConnection.createStatement()) {
+                statement.execute("PRAGMA temp_store = MEMORY"); // NON-NLS
+                statement.execute("PRAGMA cache_size = 10000"); // NON-NLS
+                //all changes go through the write connection
+                statement.execute("PRAGMA query_only = true"); // NON-NLS
+            } catch (SQLException ex) {
+                readConnection.close();
+                throw ex;
+            }
+        }
+        return new ReadConnection(readConnection);
     }
 
     public Interval getSpanningInterval(Collection<Long> eventIDs) {
-        DBLock.lock();
-        try (Statement stmt = con.createStatement();
+        try (ReadConnection reader = openReadConnection();
+                Statement stmt = reader.createStatement();
                 ResultSet rs = stmt.executeQuery("SELECT Min(time), Max(time) FROM events WHERE event_id IN (" + StringUtils.join(eventIDs, ", ") + ")");) { // NON-NLS
             while (rs.next()) {
                 return new Interval(rs.getLong("Min(time)") * 1000, (rs.getLong("Max(time)") + 1) * 1000, DateTimeZone.UTC); // NON-NLS
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Error executing get spanning interval query.", ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return null;
     }
@@ -226,15 +302,14 @@ void commitTransaction(EventTransaction tr) {
      *         error.
      */
     int countAllEvents() {
-        DBLock.lock();
-        try (ResultSet rs = countAllEventsStmt.executeQuery()) { // NON-NLS
+        try (ReadConnection reader = openReadConnection();
+                Statement stmt = reader.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT count(*) AS count FROM events")) { // NON-NLS
             while (rs.next()) {
                 return rs.getInt("count"); // NON-NLS
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Error counting all events", ex);
-        } finally {
-            DBLock.unlock();
         }
         return -1;
     }
@@ -250,14 +325,281 @@ int countAllEvents() {
      */
     Map<EventType, Long> countEventsByType(ZoomParams params) {
         if (params.getTimeRange() != null) {
-            return countEventsByType(params.getTimeRange().getStartMillis() / 1000,
-                    params.getTimeRange().getEndMillis() / 1000,
-                    params.getFilter(), params.getTypeZoomLevel());
+            return countEventsByType(Collections.singletonList(params.getTimeRange()),
+                    params.getFilter(), params.getTypeZoomLevel()).get(0);
         } else {
             return Collections.emptyMap();
         }
     }
 
+    /**
+     * get the count of all events in each of the given intervals that pass
+     * the given filter, organized by the EventType of the given level.
+     * <p>
+     * If the intervals all start and end on (for example) day boundaries in
+     * the current time zone, and the filter only restricts events by type,
+     * data source and known state, the counts are read from the day rollups in
+     * one query. Otherwise each interval is counted in the events table.
+     *
+     * @param intervals the intervals to count events in, in order
+     * @param filter    only events that pass this filter will be counted
+     * @param zoomLevel the level of the event types to organize the counts by
+     *
+     * @return a map from event type to event count for each interval, in the
+     *         same order as the intervals
+     */
+    List<Map<EventType, Long>> countEventsByType(List<Interval> intervals, RootFilter filter, EventTypeZoomLevel zoomLevel) {
+        final DateTimeZone timeZone = TimeLineController.getJodaTimeZone();
+        final String rollupWhere = SQLHelper.getRollupSQLWhere(filter);
+        try (ReadConnection reader = openReadConnection()) {
+            TimeUnits rollupUnit = getRollupUnit(reader, intervals, timeZone);
+            if (rollupWhere != null && rollupUnit != null) {
+                return countEventsByTypeFromRollups(reader, intervals, timeZone, rollupUnit, rollupWhere, zoomLevel);
+            }
+            List<Map<EventType, Long>> counts = new ArrayList<>();
+            for (Interval interval : intervals) {
+                counts.add(countEventsByType(reader, interval.getStartMillis() / 1000, interval.getEndMillis() / 1000, filter, zoomLevel));
+            }
+            return counts;
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "Error getting count of events from db.", ex); // NON-NLS
+            return Collections.nCopies(intervals.size(), Collections.<EventType, Long>emptyMap());
+        }
+    }
+
+    /**
+     * get the coarsest rollup granularity whose buckets the given intervals
+     * are made of, in the given time zone
+     *
+     * @return the granularity, or null if there are no rollups for the time
+     *         zone or the intervals don't start and end on bucket boundaries
+     */
+    private TimeUnits getRollupUnit(ReadConnection reader, List<Interval> intervals, DateTimeZone timeZone) {
+        if (intervals.isEmpty() || getRollupZones(reader).contains(timeZone.getID()) == false) {
+            return null;
+        }
+        return RollupBuckets.getRollupUnit(ISOChronology.getInstance(timeZone), intervals);
+    }
+
+    /**
+     * count the events in the given intervals, which are made of whole rollup
+     * buckets, with one query against the rollups
+     */
+    private List<Map<EventType, Long>> countEventsByTypeFromRollups(ReadConnection reader, List<Interval> intervals, DateTimeZone timeZone, TimeUnits rollupUnit, String rollupWhere, EventTypeZoomLevel zoomLevel) {
+        //the index of each interval, by start time in seconds
+        TreeMap<Long, Integer> intervalIndexes = new TreeMap<>();
+        List<Map<EventType, Long>> counts = new ArrayList<>();
+        long startTime = Long.MAX_VALUE;
+        long endTime = Long.MIN_VALUE;
+        for (Interval interval : intervals) {
+            intervalIndexes.put(interval.getStartMillis() / 1000, counts.size());
+            counts.add(new HashMap<>());
+            startTime = Math.min(startTime, interval.getStartMillis() / 1000);
+            endTime = Math.max(endTime, interval.getEndMillis() / 1000);
+        }
+
+        final boolean useSubTypes = (zoomLevel == EventTypeZoomLevel.SUB_TYPE);
+        final String queryString = "SELECT bucket_start, SUM(count) AS count, " + typeColumnHelper(useSubTypes) // NON-NLS
+                + " FROM event_count_rollups WHERE time_zone = '" + timeZone.getID() + "' AND granularity = '" + rollupUnit.name() + "'" // NON-NLS
+                + " AND bucket_start >= " + startTime + " AND bucket_start < " + endTime + " AND " + rollupWhere // NON-NLS
+                + " GROUP BY bucket_start, " + typeColumnHelper(useSubTypes); // NON-NLS
+        try (Statement stmt = reader.createStatement();
+                ResultSet rs = stmt.executeQuery(queryString);) {
+            while (rs.next()) {
+                Map.Entry<Long, Integer> intervalEntry = intervalIndexes.floorEntry(rs.getLong("bucket_start")); // NON-NLS
+                if (intervalEntry == null) {
+                    continue;
+                }
+                Interval interval = intervals.get(intervalEntry.getValue());
+                if (rs.getLong("bucket_start") >= interval.getEndMillis() / 1000) { // NON-NLS
+                    //in a gap between the intervals
+                    continue;
+                }
+                EventType type = useSubTypes
+                        ? RootEventType.allTypes.get(rs.getInt("sub_type"))
+                        : BaseTypes.values()[rs.getInt("base_type")];
+                counts.get(intervalEntry.getValue()).merge(type, rs.getLong("count"), Long::sum); // NON-NLS
+            }
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "Error getting count of events from rollups.", ex); // NON-NLS
+        }
+        return counts;
+    }
+
+    /**
+     * @param reader the connection to read the time zones with, if they have
+     *               not been read yet
+     *
+     * @return the ids of the time zones there are committed event count
+     *         rollups for
+     */
+    private Set<String> getRollupZones(ReadConnection reader) {
+        Set<String> zones = rollupZones.get();
+        if (zones == null) {
+            try (Statement stmt = reader.createStatement();
+                    ResultSet rs = stmt.executeQuery(SELECT_ROLLUP_ZONES_QUERY)) {
+                zones = readRollupZones(rs);
+                /*
+                 * Only publish the zones if no commit or reinitialization has
+                 * published newer ones since this reader saw null, the zones
+                 * read here may already be stale.
+                 */
+                rollupZones.compareAndSet(null, zones);
+            } catch (SQLException ex) {
+                LOGGER.log(Level.SEVERE, "Error getting time zones of event count rollups.", ex); // NON-NLS
+                return Collections.emptySet();
+            }
+        }
+        return zones;
+    }
+
+    private static Set<String> readRollupZones(ResultSet rs) throws SQLException {
+        Set<String> zones = new HashSet<>();
+        while (rs.next()) {
+            zones.add(rs.getString("time_zone")); // NON-NLS
+        }
+        return Collections.unmodifiableSet(zones);
+    }
+
+    /**
+     * @return the highest event id in the db, or 0 if there are no events
+     */
+    long getLastEventID() {
+        try (ReadConnection reader = openReadConnection();
+                Statement stmt = reader.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT Max(event_id) AS max FROM events")) { // NON-NLS
+            while (rs.next()) {
+                return rs.getLong("max"); // NON-NLS
+            }
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "Failed to get last event id.", ex); // NON-NLS
+        }
+        return 0;
+    }
+
+    /**
+     * Add the events inserted after the given event to the event count
+     * rollups, at every granularity, for the time zones there already are
+     * rollups for and the given ones. Rollups for a time zone that has none
+     * yet are built from all the events.
+     *
+     * @param afterEventID events with this id or lower are already counted
+     * @param timeZones    time zones to make sure there are rollups for
+     * @param transaction  the transaction to update the rollups in
+     */
+    void updateRollups(long afterEventID, Collection<DateTimeZone> timeZones, EventTransaction transaction) {
+        if (transaction.isClosed()) {
+            throw new IllegalArgumentException("can't update database with closed transaction"); // NON-NLS
+        }
+        DBLock.lock();
+        try {
+            Set<String> existingZones = getRollupZonesForUpdate();
+            //the id of the last event already counted for each zone
+            Map<DateTimeZone, Long> zonesToUpdate = new HashMap<>();
+            for (String zoneID : existingZones) {
+                zonesToUpdate.put(DateTimeZone.forID(zoneID), afterEventID);
+            }
+            for (DateTimeZone timeZone : timeZones) {
+                zonesToUpdate.putIfAbsent(timeZone, 0L);
+            }
+            Map<DateTimeZone, Chronology> chronologies = new HashMap<>();
+            zonesToUpdate.keySet().forEach(timeZone -> chronologies.put(timeZone, ISOChronology.getInstance(timeZone)));
+
+            Map<RollupKey, Long> newCounts = new HashMap<>();
+            long firstEventID = Collections.min(zonesToUpdate.values());
+            try (Statement stmt = con.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT event_id, time, datasource_id, sub_type, base_type, known_state FROM events WHERE event_id > " + firstEventID)) { // NON-NLS
+                while (rs.next()) {
+                    long eventID = rs.getLong("event_id"); // NON-NLS
+                    long timeMillis = rs.getLong("time") * 1000; // NON-NLS
+                    Long datasourceID = rs.getObject("datasource_id") == null ? null : rs.getLong("datasource_id"); // NON-NLS
+                    Integer subType = rs.getObject("sub_type") == null ? null : rs.getInt("sub_type"); // NON-NLS
+                    Integer baseType = rs.getObject("base_type") == null ? null : rs.getInt("base_type"); // NON-NLS
+                    Integer knownState = rs.getObject("known_state") == null ? null : rs.getInt("known_state"); // NON-NLS
+                    for (Map.Entry<DateTimeZone, Long> zoneEntry : zonesToUpdate.entrySet()) {
+                        if (eventID <= zoneEntry.getValue()) {
+                            continue;
+                        }
+                        Chronology chronology = chronologies.get(zoneEntry.getKey());
+                        for (TimeUnits unit : RollupBuckets.ROLLUP_UNITS) {
+                            long bucketStart = RollupBuckets.getBucketStart(chronology, unit, timeMillis);
+                            RollupKey key = new RollupKey(zoneEntry.getKey().getID(), unit, bucketStart, datasourceID, subType, baseType, knownState);
+                            newCounts.merge(key, 1L, Long::sum);
+                        }
+                    }
+                }
+            }
+
+            addToRollups(newCounts);
+            //readers only see the new zones once the rollups are committed
+            Set<String> updatedZones = new HashSet<>(existingZones);
+            zonesToUpdate.keySet().forEach(timeZone -> updatedZones.add(timeZone.getID()));
+            pendingRollupZones = Collections.unmodifiableSet(updatedZones);
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "failed to update event count rollups", ex); // NON-NLS
+        } finally {
+            DBLock.unlock();
+        }
+    }
+
+    /**
+     * get the zones there are rollups for, including those added earlier in
+     * the open transaction
+     * <p>
+     * NOTE: does not lock the db, must be called form inside a
+     * DBLock.lock/unlock pair
+     *
+     * @return the ids of the time zones
+     *
+     * @throws SQLException if there was a problem reading the zones
+     */
+    private Set<String> getRollupZonesForUpdate() throws SQLException {
+        if (pendingRollupZones != null) {
+            return pendingRollupZones;
+        }
+        try (ResultSet rs = selectRollupZonesStmt.executeQuery()) {
+            return readRollupZones(rs);
+        }
+    }
+
+    /**
+     * add the given amounts to the counts of the rollups, adding the rollups
+     * that don't exist yet
+     * <p>
+     * NOTE: does not lock the db, must be called form inside a
+     * DBLock.lock/unlock pair
+     *
+     * @param counts the amounts to add, by rollup, negative to remove events
+     *
+     * @throws SQLException if there was a problem updating the rollups
+     */
+    private void addToRollups(Map<RollupKey, Long> counts) throws SQLException {
+        for (Map.Entry<RollupKey, Long> countEntry : counts.entrySet()) {
+            RollupKey key = countEntry.getKey();
+            if (countEntry.getValue() != 0
+                    && setRollupParameters(updateRollupStmt, key, countEntry.getValue()).executeUpdate() == 0) {
+                setRollupParameters(insertRollupStmt, key, countEntry.getValue()).executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * set the parameters of the update or insert rollup statements, which take
+     * them in the same order
+     */
+    private static PreparedStatement setRollupParameters(PreparedStatement stmt, RollupKey key, long count) throws SQLException {
+        stmt.clearParameters();
+        stmt.setLong(1, count);
+        stmt.setString(2, key.timeZoneID);
+        stmt.setString(3, key.unit.name());
+        stmt.setLong(4, key.bucketStart);
+        stmt.setObject(5, key.datasourceID);
+        stmt.setObject(6, key.subType);
+        stmt.setObject(7, key.baseType);
+        stmt.setObject(8, key.knownState);
+        return stmt;
+    }
+
     /**
      * get a count of tagnames applied to the given event ids as a map from
      * tagname displayname to count of tag applications
@@ -268,8 +610,8 @@ Map<EventType, Long> countEventsByType(ZoomParams params) {
      */
     Map<String, Long> getTagCountsByTagName(Set<Long> eventIDsWithTags) {
         HashMap<String, Long> counts = new HashMap<>();
-        DBLock.lock();
-        try (Statement createStatement = con.createStatement();
+        try (ReadConnection reader = openReadConnection();
+                Statement createStatement = reader.createStatement();
                 ResultSet rs = createStatement.executeQuery("SELECT tag_name_display_name, COUNT(DISTINCT tag_id) AS count FROM tags"
                         + " WHERE event_id IN (" + StringUtils.join(eventIDsWithTags, ", ") + ")"
                         + " GROUP BY tag_name_id"
@@ -279,8 +621,6 @@ Map<String, Long> getTagCountsByTagName(Set<Long> eventIDsWithTags) {
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Failed to get tag counts by tag name.", ex);
-        } finally {
-            DBLock.unlock();
         }
         return counts;
     }
@@ -297,6 +637,13 @@ void reInitializeDB() {
             dropHashSetsTableStmt.executeUpdate();
             dropTagsTableStmt.executeUpdate();
             dropDBInfoTableStmt.executeUpdate();
+            dropRollupsTableStmt.executeUpdate();
+            /*
+             * there are no rollups now, publish that so a reader can't put
+             * back zones it read before the drop
+             */
+            rollupZones.set(Collections.emptySet());
+            pendingRollupZones = null;
             initializeDB();
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "could not drop old tables", ex); // NON-NLS
@@ -325,8 +672,8 @@ Interval getBoundingEventsInterval(Interval timeRange, RootFilter filter) {
         long start = timeRange.getStartMillis() / 1000;
         long end = timeRange.getEndMillis() / 1000;
         final String sqlWhere = SQLHelper.getSQLWhere(filter);
-        DBLock.lock();
-        try (Statement stmt = con.createStatement(); //can't use prepared statement because of complex where clause
+        try (ReadConnection reader = openReadConnection();
+                Statement stmt = reader.createStatement(); //can't use prepared statement because of complex where clause
                 ResultSet rs = stmt.executeQuery(" SELECT (SELECT Max(time) FROM events " + useHashHitTablesHelper(filter) + useTagTablesHelper(filter) + " WHERE time <=" + start + " AND " + sqlWhere + ") AS start,"
                         + "(SELECT Min(time)  FROM events" + useHashHitTablesHelper(filter) + useTagTablesHelper(filter) + " WHERE time >= " + end + " AND " + sqlWhere + ") AS end")) { // NON-NLS
             while (rs.next()) {
@@ -341,17 +688,14 @@ Interval getBoundingEventsInterval(Interval timeRange, RootFilter filter) {
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Failed to get MIN time.", ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return null;
     }
 
     TimeLineEvent getEventById(Long eventID) {
         TimeLineEvent result = null;
-        DBLock.lock();
-        try {
-            getEventByIDStmt.clearParameters();
+        try (ReadConnection reader = openReadConnection();
+                PreparedStatement getEventByIDStmt = reader.prepareStatement("SELECT * FROM events WHERE event_id =  ?")) { // NON-NLS
             getEventByIDStmt.setLong(1, eventID);
             try (ResultSet rs = getEventByIDStmt.executeQuery()) {
                 while (rs.next()) {
@@ -361,8 +705,6 @@ TimeLineEvent getEventById(Long eventID) {
             }
         } catch (SQLException sqlEx) {
             LOGGER.log(Level.SEVERE, "exception while querying for event with id = " + eventID, sqlEx); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return result;
     }
@@ -377,9 +719,9 @@ Set<Long> getEventIDs(Long startTime, Long endTime, RootFilter filter) {
         }
         Set<Long> resultIDs = new HashSet<>();
 
-        DBLock.lock();
         final String query = "SELECT events.event_id AS event_id FROM events" + useHashHitTablesHelper(filter) + useTagTablesHelper(filter) + " WHERE time >=  " + startTime + " AND time <" + endTime + " AND " + SQLHelper.getSQLWhere(filter); // NON-NLS
-        try (Statement stmt = con.createStatement();
+        try (ReadConnection reader = openReadConnection();
+                Statement stmt = reader.createStatement();
                 ResultSet rs = stmt.executeQuery(query)) {
             while (rs.next()) {
                 resultIDs.add(rs.getLong("event_id"));
@@ -387,8 +729,6 @@ Set<Long> getEventIDs(Long startTime, Long endTime, RootFilter filter) {
 
         } catch (SQLException sqlEx) {
             LOGGER.log(Level.SEVERE, "failed to execute query for event ids in range", sqlEx); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
 
         return resultIDs;
@@ -413,24 +753,24 @@ boolean hasNewColumns() {
 
     Set<Long> getDataSourceIDs() {
         HashSet<Long> hashSet = new HashSet<>();
-        DBLock.lock();
-        try (ResultSet rs = getDataSourceIDsStmt.executeQuery()) {
+        try (ReadConnection reader = openReadConnection();
+                Statement stmt = reader.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT DISTINCT datasource_id FROM events WHERE datasource_id != 0")) { // NON-NLS
             while (rs.next()) {
                 long datasourceID = rs.getLong("datasource_id");
                 hashSet.add(datasourceID);
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Failed to get MAX time.", ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return hashSet;
     }
 
     Map<Long, String> getHashSetNames() {
         Map<Long, String> hashSets = new HashMap<>();
-        DBLock.lock();
-        try (ResultSet rs = getHashSetNamesStmt.executeQuery();) {
+        try (ReadConnection reader = openReadConnection();
+                Statement stmt = reader.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT hash_set_id, hash_set_name FROM hash_sets");) { // NON-NLS
             while (rs.next()) {
                 long hashSetID = rs.getLong("hash_set_id");
                 String hashSetName = rs.getString("hash_set_name");
@@ -438,8 +778,6 @@ Map<Long, String> getHashSetNames() {
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Failed to get hash sets.", ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return Collections.unmodifiableMap(hashSets);
     }
@@ -459,15 +797,14 @@ void analyze() {
      * @return maximum time in seconds from unix epoch
      */
     Long getMaxTime() {
-        DBLock.lock();
-        try (ResultSet rs = getMaxTimeStmt.executeQuery()) {
+        try (ReadConnection reader = openReadConnection();
+                Statement stmt = reader.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT Max(time) AS max FROM events")) { // NON-NLS
             while (rs.next()) {
                 return rs.getLong("max"); // NON-NLS
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Failed to get MAX time.", ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return -1l;
     }
@@ -476,15 +813,14 @@ Long getMaxTime() {
      * @return maximum time in seconds from unix epoch
      */
     Long getMinTime() {
-        DBLock.lock();
-        try (ResultSet rs = getMinTimeStmt.executeQuery()) {
+        try (ReadConnection reader = openReadConnection();
+                Statement stmt = reader.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT Min(time) AS min FROM events")) { // NON-NLS
             while (rs.next()) {
                 return rs.getLong("min"); // NON-NLS
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Failed to get MIN time.", ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return -1l;
     }
@@ -595,6 +931,22 @@ final synchronized void initializeDB() {
 
             initializeTagsTable();
 
+            try (Statement stmt = con.createStatement()) {
+                String sql = "CREATE TABLE IF NOT EXISTS event_count_rollups " // NON-NLS
+                        + "(time_zone TEXT NOT NULL, " // NON-NLS
+                        + " granularity TEXT NOT NULL, " // NON-NLS
+                        + " bucket_start INTEGER NOT NULL, " // NON-NLS
+                        + " datasource_id INTEGER, " // NON-NLS
+                        + " sub_type INTEGER, " // NON-NLS
+                        + " base_type INTEGER, " // NON-NLS
+                        + " known_state INTEGER, " // NON-NLS
+                        + " count INTEGER NOT NULL)"; // NON-NLS
+                stmt.execute(sql);
+            } catch (SQLException ex) {
+                LOGGER.log(Level.SEVERE, "problem creating event_count_rollups table", ex); // NON-NLS
+            }
+
+            createIndex("event_count_rollups", Arrays.asList("time_zone", "granularity", "bucket_start")); // NON-NLS
             createIndex("events", Arrays.asList("datasource_id"));
             createIndex("events", Arrays.asList("event_id", "hash_hit"));
             createIndex("events", Arrays.asList("event_id", "tagged"));
@@ -609,24 +961,30 @@ final synchronized void initializeDB() {
                 insertRowStmt = prepareStatement(
                         "INSERT INTO events (datasource_id,file_id ,artifact_id, time, sub_type, base_type, full_description, med_description, short_description, known_state, hash_hit, tagged) " // NON-NLS
                         + "VALUES (?,?,?,?,?,?,?,?,?,?,?,?)"); // NON-NLS
-                getHashSetNamesStmt = prepareStatement("SELECT hash_set_id, hash_set_name FROM hash_sets"); // NON-NLS
-                getDataSourceIDsStmt = prepareStatement("SELECT DISTINCT datasource_id FROM events WHERE datasource_id != 0"); // NON-NLS
-                getMaxTimeStmt = prepareStatement("SELECT Max(time) AS max FROM events"); // NON-NLS
-                getMinTimeStmt = prepareStatement("SELECT Min(time) AS min FROM events"); // NON-NLS
-                getEventByIDStmt = prepareStatement("SELECT * FROM events WHERE event_id =  ?"); // NON-NLS
+                insertRowBatchStmt = prepareStatement(
+                        "INSERT INTO events (datasource_id,file_id ,artifact_id, time, sub_type, base_type, full_description, med_description, short_description, known_state, hash_hit, tagged) " // NON-NLS
+                        + "VALUES (?,?,?,?,?,?,?,?,?,?,0,0)"); // NON-NLS
                 recordDBInfoStmt = prepareStatement("INSERT OR REPLACE INTO db_info (key, value) values (?, ?)"); // NON-NLS
-                getDBInfoStmt = prepareStatement("SELECT value FROM db_info WHERE key = ?"); // NON-NLS
                 insertHashSetStmt = prepareStatement("INSERT OR IGNORE INTO hash_sets (hash_set_name)  values (?)");
                 selectHashSetStmt = prepareStatement("SELECT hash_set_id FROM hash_sets WHERE hash_set_name = ?");
                 insertHashHitStmt = prepareStatement("INSERT OR IGNORE INTO hash_set_hits (hash_set_id, event_id) values (?,?)");
+                insertFileHashHitsStmt = prepareStatement("INSERT OR IGNORE INTO hash_set_hits (hash_set_id, event_id) SELECT ?, event_id FROM events WHERE file_id = ?"); // NON-NLS
+                markFileHashHitStmt = prepareStatement("UPDATE events SET hash_hit = 1 WHERE file_id = ?"); // NON-NLS
+                selectKnownStateChangesStmt = prepareStatement("SELECT time, datasource_id, sub_type, base_type, known_state FROM events WHERE file_id = ? AND artifact_id IS NULL AND known_state IS NOT ?"); // NON-NLS
+                updateKnownStateStmt = prepareStatement("UPDATE events SET known_state = ? WHERE file_id = ? AND artifact_id IS NULL AND known_state IS NOT ?"); // NON-NLS
                 insertTagStmt = prepareStatement("INSERT OR IGNORE INTO tags (tag_id, tag_name_id,tag_name_display_name, event_id) values (?,?,?,?)");
                 deleteTagStmt = prepareStatement("DELETE FROM tags WHERE tag_id = ?");
-                countAllEventsStmt = prepareStatement("SELECT count(*) AS count FROM events");
                 dropEventsTableStmt = prepareStatement("DROP TABLE IF EXISTS events");
                 dropHashSetHitsTableStmt = prepareStatement("DROP TABLE IF EXISTS hash_set_hits");
                 dropHashSetsTableStmt = prepareStatement("DROP TABLE IF EXISTS hash_sets");
                 dropTagsTableStmt = prepareStatement("DROP TABLE IF EXISTS tags");
                 dropDBInfoTableStmt = prepareStatement("DROP TABLE IF EXISTS db_ino");
+                dropRollupsTableStmt = prepareStatement("DROP TABLE IF EXISTS event_count_rollups"); // NON-NLS
+                selectRollupZonesStmt = prepareStatement(SELECT_ROLLUP_ZONES_QUERY);
+                updateRollupStmt = prepareStatement("UPDATE event_count_rollups SET count = count + ? " // NON-NLS
+                        + "WHERE time_zone = ? AND granularity = ? AND bucket_start = ? AND datasource_id IS ? AND sub_type IS ? AND base_type IS ? AND known_state IS ?"); // NON-NLS
+                insertRollupStmt = prepareStatement("INSERT INTO event_count_rollups (count, time_zone, granularity, bucket_start, datasource_id, sub_type, base_type, known_state) " // NON-NLS
+                        + "VALUES (?,?,?,?,?,?,?,?)"); // NON-NLS
                 selectNonArtifactEventIDsByObjectIDStmt = prepareStatement("SELECT event_id FROM events WHERE file_id == ? AND artifact_id IS NULL");
                 selectEventIDsBYObjectAndArtifactIDStmt = prepareStatement("SELECT event_id FROM events WHERE file_id == ? AND artifact_id = ?");
             } catch (SQLException sQLException) {
@@ -766,23 +1124,12 @@ void insertEvent(long time, EventType type, long datasourceID, long objID,
                 while (generatedKeys.next()) {
                     long eventID = generatedKeys.getLong("last_insert_rowid()");
                     for (String name : hashSetNames) {
-
-                        // "insert or ignore into hash_sets (hash_set_name)  values (?)"
-                        insertHashSetStmt.setString(1, name);
-                        insertHashSetStmt.executeUpdate();
-
-                        //TODO: use nested select to get hash_set_id rather than seperate statement/query ?
-                        //"select hash_set_id from hash_sets where hash_set_name = ?"
-                        selectHashSetStmt.setString(1, name);
-                        try (ResultSet rs = selectHashSetStmt.executeQuery()) {
-                            while (rs.next()) {
-                                int hashsetID = rs.getInt("hash_set_id");
-                                //"insert or ignore into hash_set_hits (hash_set_id, obj_id) values (?,?)";
-                                insertHashHitStmt.setInt(1, hashsetID);
-                                insertHashHitStmt.setLong(2, eventID);
-                                insertHashHitStmt.executeUpdate();
-                                break;
-                            }
+                        Integer hashsetID = getHashSetID(name);
+                        if (hashsetID != null) {
+                            //"insert or ignore into hash_set_hits (hash_set_id, obj_id) values (?,?)";
+                            insertHashHitStmt.setInt(1, hashsetID);
+                            insertHashHitStmt.setLong(2, eventID);
+                            insertHashHitStmt.executeUpdate();
                         }
                     }
                     for (Tag tag : tags) {
@@ -800,6 +1147,195 @@ void insertEvent(long time, EventType type, long datasourceID, long objID,
         }
     }
 
+    /**
+     * get the id of the hash set with the given name, adding it if it is not in
+     * the db yet
+     * <p>
+     * NOTE: does not lock the db, must be called form inside a
+     * DBLock.lock/unlock pair
+     *
+     * @param name the name of the hash set
+     *
+     * @return the id of the hash set, or null if it could not be added
+     *
+     * @throws SQLException if there was a problem executing the queries
+     */
+    private Integer getHashSetID(String name) throws SQLException {
+        // "insert or ignore into hash_sets (hash_set_name)  values (?)"
+        insertHashSetStmt.setString(1, name);
+        insertHashSetStmt.executeUpdate();
+
+        //TODO: use nested select to get hash_set_id rather than seperate statement/query ?
+        //"select hash_set_id from hash_sets where hash_set_name = ?"
+        selectHashSetStmt.setString(1, name);
+        try (ResultSet rs = selectHashSetStmt.executeQuery()) {
+            return rs.next() ? rs.getInt("hash_set_id") : null;
+        }
+    }
+
+    /**
+     * mark all the events of the given file as hash set hits, and record the
+     * hit, for hits found after the events were inserted
+     *
+     * @param objectID    the obj_id of the file with the hit
+     * @param hashSetName the name of the hash set the file is in
+     * @param transaction the transaction to update the events in
+     */
+    void addHashSetHit(long objectID, String hashSetName, EventTransaction transaction) {
+        if (transaction.isClosed()) {
+            throw new IllegalArgumentException("can't update database with closed transaction"); // NON-NLS
+        }
+        DBLock.lock();
+        try {
+            Integer hashsetID = getHashSetID(hashSetName);
+            if (hashsetID != null) {
+                //"UPDATE events SET hash_hit = 1 WHERE file_id = ?"
+                markFileHashHitStmt.setLong(1, objectID);
+                markFileHashHitStmt.executeUpdate();
+                //"INSERT OR IGNORE INTO hash_set_hits (hash_set_id, event_id) SELECT ?, event_id FROM events WHERE file_id = ?"
+                insertFileHashHitsStmt.setInt(1, hashsetID);
+                insertFileHashHitsStmt.setLong(2, objectID);
+                insertFileHashHitsStmt.executeUpdate();
+            }
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "failed to add hash set hit to events", ex); // NON-NLS
+        } finally {
+            DBLock.unlock();
+        }
+    }
+
+    /**
+     * set the known state of the file system events of the given files, for
+     * files the hash lookup found after their events were inserted, and move
+     * the events to the rollups of their new known state, since the rollups
+     * are counted by known state.
+     * <p>
+     * The events of the files must already be counted in the rollups, i.e.,
+     * have ids no higher than the afterEventID of the next call to
+     * updateRollups().
+     *
+     * @param knownStates the known states, by obj_id of the file
+     * @param transaction the transaction to update the events in
+     */
+    void updateKnownStates(Map<Long, TskData.FileKnown> knownStates, EventTransaction transaction) {
+        if (transaction.isClosed()) {
+            throw new IllegalArgumentException("can't update database with closed transaction"); // NON-NLS
+        }
+        DBLock.lock();
+        try {
+            Map<DateTimeZone, Chronology> chronologies = new HashMap<>();
+            getRollupZonesForUpdate().forEach(zoneID -> chronologies.put(DateTimeZone.forID(zoneID), ISOChronology.getInstance(DateTimeZone.forID(zoneID))));
+            Map<RollupKey, Long> countChanges = new HashMap<>();
+            for (Map.Entry<Long, TskData.FileKnown> entry : knownStates.entrySet()) {
+                int newKnownState = entry.getValue().getFileKnownValue();
+                //"SELECT time, datasource_id, sub_type, base_type, known_state FROM events WHERE file_id = ? AND artifact_id IS NULL AND known_state IS NOT ?"
+                selectKnownStateChangesStmt.setLong(1, entry.getKey());
+                selectKnownStateChangesStmt.setInt(2, newKnownState);
+                try (ResultSet rs = selectKnownStateChangesStmt.executeQuery()) {
+                    while (rs.next()) {
+                        long timeMillis = rs.getLong("time") * 1000; // NON-NLS
+                        Long datasourceID = rs.getObject("datasource_id") == null ? null : rs.getLong("datasource_id"); // NON-NLS
+                        Integer subType = rs.getObject("sub_type") == null ? null : rs.getInt("sub_type"); // NON-NLS
+                        Integer baseType = rs.getObject("base_type") == null ? null : rs.getInt("base_type"); // NON-NLS
+                        Integer oldKnownState = rs.getObject("known_state") == null ? null : rs.getInt("known_state"); // NON-NLS
+                        for (Map.Entry<DateTimeZone, Chronology> zoneEntry : chronologies.entrySet()) {
+                            for (TimeUnits unit : RollupBuckets.ROLLUP_UNITS) {
+                                long bucketStart = RollupBuckets.getBucketStart(zoneEntry.getValue(), unit, timeMillis);
+                                String zoneID = zoneEntry.getKey().getID();
+                                countChanges.merge(new RollupKey(zoneID, unit, bucketStart, datasourceID, subType, baseType, oldKnownState), -1L, Long::sum);
+                                countChanges.merge(new RollupKey(zoneID, unit, bucketStart, datasourceID, subType, baseType, newKnownState), 1L, Long::sum);
+                            }
+                        }
+                    }
+                }
+            }
+            addToRollups(countChanges);
+
+            //"UPDATE events SET known_state = ? WHERE file_id = ? AND artifact_id IS NULL AND known_state IS NOT ?"
+            for (Map.Entry<Long, TskData.FileKnown> entry : knownStates.entrySet()) {
+                updateKnownStateStmt.setByte(1, entry.getValue().getFileKnownValue());
+                updateKnownStateStmt.setLong(2, entry.getKey());
+                updateKnownStateStmt.setByte(3, entry.getValue().getFileKnownValue());
+                updateKnownStateStmt.addBatch();
+            }
+            updateKnownStateStmt.executeBatch();
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "failed to update known states of events", ex); // NON-NLS
+        } finally {
+            DBLock.unlock();
+        }
+    }
+
+    /**
+     * queue an event that has no hash hits and no tags to be inserted by the
+     * next call to executeInsertBatch(), rather than inserting it right away.
+     * Inserting many events in one batch is much faster than inserting them one
+     * at a time.
+     *
+     * @param transaction the transaction the batch will be executed in
+     */
+    void addEventToInsertBatch(long time, EventType type, long datasourceID, long objID,
+            Long artifactID, String fullDescription, String medDescription,
+            String shortDescription, TskData.FileKnown known, EventTransaction transaction) {
+
+        if (transaction.isClosed()) {
+            throw new IllegalArgumentException("can't update database with closed transaction"); // NON-NLS
+        }
+        int typeNum = RootEventType.allTypes.indexOf(type);
+        int superTypeNum = type.getSuperType().ordinal();
+
+        DBLock.lock();
+        try {
+            //"INSERT INTO events (datasource_id,file_id ,artifact_id, time, sub_type, base_type, full_description, med_description, short_description, known_state, hashHit, tagged) " 
+            insertRowBatchStmt.clearParameters();
+            insertRowBatchStmt.setLong(1, datasourceID);
+            insertRowBatchStmt.setLong(2, objID);
+            if (artifactID != null) {
+                insertRowBatchStmt.setLong(3, artifactID);
+            } else {
+                insertRowBatchStmt.setNull(3, Types.NULL);
+            }
+            insertRowBatchStmt.setLong(4, time);
+
+            if (typeNum != -1) {
+                insertRowBatchStmt.setInt(5, typeNum);
+            } else {
+                insertRowBatchStmt.setNull(5, Types.INTEGER);
+            }
+
+            insertRowBatchStmt.setInt(6, superTypeNum);
+            insertRowBatchStmt.setString(7, fullDescription);
+            insertRowBatchStmt.setString(8, medDescription);
+            insertRowBatchStmt.setString(9, shortDescription);
+
+            insertRowBatchStmt.setByte(10, known == null ? TskData.FileKnown.UNKNOWN.getFileKnownValue() : known.getFileKnownValue());
+            insertRowBatchStmt.addBatch();
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "failed to add event to insert batch", ex); // NON-NLS
+        } finally {
+            DBLock.unlock();
+        }
+    }
+
+    /**
+     * insert all the events queued by addEventToInsertBatch()
+     *
+     * @param transaction the transaction to insert the events in
+     */
+    void executeInsertBatch(EventTransaction transaction) {
+        if (transaction.isClosed()) {
+            throw new IllegalArgumentException("can't update database with closed transaction"); // NON-NLS
+        }
+        DBLock.lock();
+        try {
+            insertRowBatchStmt.executeBatch();
+        } catch (SQLException ex) {
+            LOGGER.log(Level.SEVERE, "failed to insert batch of events", ex); // NON-NLS
+        } finally {
+            DBLock.unlock();
+        }
+    }
+
     /**
      * mark any events with the given object and artifact ids as tagged, and
      * record the tag it self.
@@ -975,8 +1511,8 @@ private void configureDB() throws SQLException {
             statement.execute("PRAGMA cache_size = 50000"); // NON-NLS
             //we never delete anything so...
             statement.execute("PRAGMA auto_vacuum = 0"); // NON-NLS
-            //allow to query while in transaction - no need read locks
-            statement.execute("PRAGMA read_uncommitted = True;"); // NON-NLS
+            //let the read connections query the last committed state of the db while a transaction is open
+            statement.execute("PRAGMA journal_mode = WAL"); // NON-NLS
         } finally {
             DBLock.unlock();
         }
@@ -1020,7 +1556,7 @@ private TimeLineEvent constructTimeLineEvent(ResultSet rs) throws SQLException {
      * @return a map organizing the counts in a hierarchy from date > eventtype>
      *         count
      */
-    private Map<EventType, Long> countEventsByType(Long startTime, Long endTime, RootFilter filter, EventTypeZoomLevel zoomLevel) {
+    private Map<EventType, Long> countEventsByType(ReadConnection reader, Long startTime, Long endTime, RootFilter filter, EventTypeZoomLevel zoomLevel) {
         if (Objects.equals(startTime, endTime)) {
             endTime++;
         }
@@ -1035,8 +1571,7 @@ private Map<EventType, Long> countEventsByType(Long startTime, Long endTime, Roo
                 + " FROM events" + useHashHitTablesHelper(filter) + useTagTablesHelper(filter) + " WHERE time >= " + startTime + " AND time < " + endTime + " AND " + SQLHelper.getSQLWhere(filter) // NON-NLS
                 + " GROUP BY " + typeColumnHelper(useSubTypes); // NON-NLS
 
-        DBLock.lock();
-        try (Statement stmt = con.createStatement();
+        try (Statement stmt = reader.createStatement();
                 ResultSet rs = stmt.executeQuery(queryString);) {
             while (rs.next()) {
                 EventType type = useSubTypes
@@ -1048,8 +1583,6 @@ private Map<EventType, Long> countEventsByType(Long startTime, Long endTime, Roo
 
         } catch (Exception ex) {
             LOGGER.log(Level.SEVERE, "Error getting count of events from db.", ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
         }
         return typeMap;
     }
@@ -1066,6 +1599,31 @@ private Map<EventType, Long> countEventsByType(Long startTime, Long endTime, Roo
      *         and description zoom levels
      */
     List<EventStripe> getEventStripes(ZoomParams params) {
+        return getEventStripes(params, page -> true);
+    }
+
+    /**
+     * get the {@link EventStripe}s for the given zoom paramaters, handing them
+     * to the given page handler as they are read instead of after all of them
+     * have been read.
+     *
+     * The events are read in time order, straight from the index on the time
+     * column so that the first page does not wait for all the events to be
+     * grouped and sorted, and each page holds the stripes of the clusters that
+     * were completed since the last page. Only the counts of the events are
+     * kept in the stripes, the ids of their events are read when needed. A stripe with the
+     * same type and description as one from an earlier page continues it, and
+     * should be merged into it with {@link EventStripe#merge}.
+     *
+     * @param params      the {@link ZoomParams} that determine the zooming,
+     *                    filtering and clustering.
+     * @param pageHandler handles each page of stripes, and returns false to
+     *                    stop reading the rest of them
+     *
+     * @return all the stripes, merged by type and description, or null if the
+     *         page handler stopped the reading
+     */
+    List<EventStripe> getEventStripes(ZoomParams params, Predicate<List<EventStripe>> pageHandler) {
         //unpack params
         Interval timeRange = params.getTimeRange();
         RootFilter filter = params.getFilter();
@@ -1082,22 +1640,15 @@ List<EventStripe> getEventStripes(ZoomParams params) {
         RangeDivisionInfo rangeInfo = RangeDivisionInfo.getRangeDivisionInfo(timeRange);
 
         //build dynamic parts of query
-        String strfTimeFormat = SQLHelper.getStrfTimeFormat(rangeInfo.getPeriodSize());
         String descriptionColumn = SQLHelper.getDescriptionColumn(descriptionLOD);
         final boolean useSubTypes = typeZoomLevel.equals(EventTypeZoomLevel.SUB_TYPE);
-        String timeZone = TimeLineController.getTimeZone().get().equals(TimeZone.getDefault()) ? ", 'localtime'" : "";  // NON-NLS
         String typeColumn = typeColumnHelper(useSubTypes);
 
         //compose query string, the new-lines are only for nicer formatting if printing the entire query
-        String query = "SELECT strftime('" + strfTimeFormat + "',time , 'unixepoch'" + timeZone + ") AS interval," // NON-NLS
-                + "\n group_concat(events.event_id) as event_ids,"
-                + "\n group_concat(CASE WHEN hash_hit = 1 THEN events.event_id ELSE NULL END) as hash_hits,"
-                + "\n group_concat(CASE WHEN tagged = 1 THEN events.event_id ELSE NULL END) as taggeds,"
-                + "\n min(time), max(time),  " + typeColumn + ", " + descriptionColumn // NON-NLS
+        String query = "SELECT events.event_id AS event_id, time, " + typeColumn + ", " + descriptionColumn + ", hash_hit, tagged" // NON-NLS
                 + "\n FROM events" + useHashHitTablesHelper(filter) + useTagTablesHelper(filter) // NON-NLS
                 + "\n WHERE time >= " + start + " AND time < " + end + " AND " + SQLHelper.getSQLWhere(filter) // NON-NLS
-                + "\n GROUP BY interval, " + typeColumn + " , " + descriptionColumn // NON-NLS
-                + "\n ORDER BY min(time)"; // NON-NLS
+                + "\n ORDER BY time, events.event_id"; // NON-NLS
 
         switch (Version.getBuildType()) {
             case DEVELOPMENT:
@@ -1107,113 +1658,37 @@ List<EventStripe> getEventStripes(ZoomParams params) {
             default:
         }
 
-        // perform query and map results to AggregateEvent objects
-        List<EventCluster> events = new ArrayList<>();
+        // perform query and cluster the events into stripes as they are read
+        StripeMerger stripeMerger = new StripeMerger(rangeInfo.getPeriodSize().getPeriod(), descriptionLOD, TimeLineController.getJodaTimeZone());
 
-        DBLock.lock();
-        try (Statement createStatement = con.createStatement();
+        try (ReadConnection reader = openReadConnection();
+                Statement createStatement = reader.createStatement();
                 ResultSet rs = createStatement.executeQuery(query)) {
+            int rows = 0;
+            long lastEventID = -1;
             while (rs.next()) {
-                events.add(eventClusterHelper(rs, useSubTypes, descriptionLOD, filter.getTagsFilter()));
+                //the joins with the hash set hit and tag tables repeat events
+                long eventID = rs.getLong("event_id"); // NON-NLS
+                if (eventID == lastEventID) {
+                    continue;
+                }
+                lastEventID = eventID;
+                EventType type = useSubTypes ? RootEventType.allTypes.get(rs.getInt("sub_type")) : BaseTypes.values()[rs.getInt("base_type")]; // NON-NLS
+                stripeMerger.add(type, rs.getString(descriptionColumn), rs.getLong("time") * 1000, // NON-NLS
+                        rs.getInt("hash_hit") != 0, rs.getInt("tagged") != 0); // NON-NLS
+                if (++rows % STRIPE_PAGE_SIZE == 0 && pageHandler.test(stripeMerger.takeNewStripes()) == false) {
+                    return null;
+                }
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "Failed to get events with query: " + query, ex); // NON-NLS
-        } finally {
-            DBLock.unlock();
-        }
-
-        return mergeClustersToStripes(rangeInfo.getPeriodSize().getPeriod(), events);
-    }
-
-    /**
-     * map a single row in a ResultSet to an EventCluster
-     *
-     * @param rs             the result set whose current row should be mapped
-     * @param useSubTypes    use the sub_type column if true, else use the
-     *                       base_type column
-     * @param descriptionLOD the description level of detail for this event
-     *
-     * @return an AggregateEvent corresponding to the current row in the given
-     *         result set
-     *
-     * @throws SQLException
-     */
-    private EventCluster eventClusterHelper(ResultSet rs, boolean useSubTypes, DescriptionLoD descriptionLOD, TagsFilter filter) throws SQLException {
-        Interval interval = new Interval(rs.getLong("min(time)") * 1000, rs.getLong("max(time)") * 1000, TimeLineController.getJodaTimeZone());// NON-NLS
-        String eventIDsString = rs.getString("event_ids");// NON-NLS
-        Set<Long> eventIDs = SQLHelper.unGroupConcat(eventIDsString, Long::valueOf);
-        String description = rs.getString(SQLHelper.getDescriptionColumn(descriptionLOD));
-        EventType type = useSubTypes ? RootEventType.allTypes.get(rs.getInt("sub_type")) : BaseTypes.values()[rs.getInt("base_type")];// NON-NLS
-
-        Set<Long> hashHits = SQLHelper.unGroupConcat(rs.getString("hash_hits"), Long::valueOf);
-        Set<Long> tagged = SQLHelper.unGroupConcat(rs.getString("taggeds"), Long::valueOf);
-
-        return new EventCluster(interval, type, eventIDs, hashHits, tagged,
-                description, descriptionLOD);
-    }
-
-    /**
-     * merge the events in the given list if they are within the same period
-     * General algorithm is as follows:
-     *
-     * 1) sort them into a map from (type, description)-> List<aggevent>
-     * 2) for each key in map, merge the events and accumulate them in a list to
-     * return
-     *
-     * @param timeUnitLength
-     * @param preMergedEvents
-     *
-     * @return
-     */
-    static private List<EventStripe> mergeClustersToStripes(Period timeUnitLength, List<EventCluster> preMergedEvents) {
-
-        //effectively map from type to (map from description to events)
-        Map<EventType, SetMultimap< String, EventCluster>> typeMap = new HashMap<>();
-
-        for (EventCluster aggregateEvent : preMergedEvents) {
-            typeMap.computeIfAbsent(aggregateEvent.getEventType(), eventType -> HashMultimap.create())
-                    .put(aggregateEvent.getDescription(), aggregateEvent);
-        }
-        //result list to return
-        ArrayList<EventCluster> aggEvents = new ArrayList<>();
-
-        //For each (type, description) key, merge agg events
-        for (SetMultimap<String, EventCluster> descrMap : typeMap.values()) {
-            //for each description ...
-            for (String descr : descrMap.keySet()) {
-                //run through the sorted events, merging together adjacent events
-                Iterator<EventCluster> iterator = descrMap.get(descr).stream()
-                        .sorted(Comparator.comparing(event -> event.getSpan().getStartMillis()))
-                        .iterator();
-                EventCluster current = iterator.next();
-                while (iterator.hasNext()) {
-                    EventCluster next = iterator.next();
-                    Interval gap = current.getSpan().gap(next.getSpan());
-
-                    //if they overlap or gap is less one quarter timeUnitLength
-                    //TODO: 1/4 factor is arbitrary. review! -jm
-                    if (gap == null || gap.toDuration().getMillis() <= timeUnitLength.toDurationFrom(gap.getStart()).getMillis() / 4) {
-                        //merge them
-                        current = EventCluster.merge(current, next);
-                    } else {
-                        //done merging into current, set next as new current
-                        aggEvents.add(current);
-                        current = next;
-                    }
-                }
-                aggEvents.add(current);
-            }
         }
 
-        //merge clusters to stripes
-        Map<ImmutablePair<EventType, String>, EventStripe> stripeDescMap = new HashMap<>();
-
-        for (EventCluster eventCluster : aggEvents) {
-            stripeDescMap.merge(ImmutablePair.of(eventCluster.getEventType(), eventCluster.getDescription()),
-                    new EventStripe(eventCluster, null), EventStripe::merge);
+        List<EventStripe> lastPage = stripeMerger.finish();
+        if (lastPage.isEmpty() == false) {
+            pageHandler.test(lastPage);
         }
-
-        return stripeDescMap.values().stream().sorted(Comparator.comparing(EventStripe::getStartMillis)).collect(Collectors.toList());
+        return stripeMerger.getStripes();
     }
 
     private static String typeColumnHelper(final boolean useSubTypes) {
@@ -1221,8 +1696,8 @@ private static String typeColumnHelper(final boolean useSubTypes) {
     }
 
     private long getDBInfo(DBInfoKey key, long defaultValue) {
-        DBLock.lock();
-        try {
+        try (ReadConnection reader = openReadConnection();
+                PreparedStatement getDBInfoStmt = reader.prepareStatement("SELECT value FROM db_info WHERE key = ?")) { // NON-NLS
             getDBInfoStmt.setString(1, key.toString());
 
             try (ResultSet rs = getDBInfoStmt.executeQuery()) {
@@ -1233,8 +1708,6 @@ private long getDBInfo(DBInfoKey key, long defaultValue) {
                 return result;
             } catch (SQLException ex) {
                 LOGGER.log(Level.SEVERE, "failed to read key: " + key + " from db_info", ex); // NON-NLS
-            } finally {
-                DBLock.unlock();
             }
         } catch (SQLException ex) {
             LOGGER.log(Level.SEVERE, "failed to set key: " + key + " on getDBInfoStmt ", ex); // NON-NLS
@@ -1263,6 +1736,88 @@ private void recordDBInfo(DBInfoKey key, long value) {
         }
     }
 
+    /**
+     * a read connection borrowed from the pool, which is given back when this
+     * is closed
+     */
+    private final class ReadConnection implements AutoCloseable {
+
+        private final Connection connection;
+
+        private ReadConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        Statement createStatement() throws SQLException {
+            return connection.createStatement();
+        }
+
+        PreparedStatement prepareStatement(String queryString) throws SQLException {
+            return connection.prepareStatement(queryString);
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (con == null || readConnections.size() >= MAX_IDLE_READ_CONNECTIONS) {
+                    //the db is closed or there are enough idle connections
+                    connection.close();
+                } else {
+                    readConnections.offer(connection);
+                }
+            } catch (SQLException ex) {
+                LOGGER.log(Level.WARNING, "Failed to close read connection to events.db", ex); // NON-NLS
+            }
+        }
+    }
+
+    /**
+     * the columns that identify a row of the event count rollups
+     */
+    private static final class RollupKey {
+
+        private final String timeZoneID;
+        private final TimeUnits unit;
+        private final long bucketStart;
+        private final Long datasourceID;
+        private final Integer subType;
+        private final Integer baseType;
+        private final Integer knownState;
+
+        private RollupKey(String timeZoneID, TimeUnits unit, long bucketStart, Long datasourceID, Integer subType, Integer baseType, Integer knownState) {
+            this.timeZoneID = timeZoneID;
+            this.unit = unit;
+            this.bucketStart = bucketStart;
+            this.datasourceID = datasourceID;
+            this.subType = subType;
+            this.baseType = baseType;
+            this.knownState = knownState;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(timeZoneID, unit, bucketStart, datasourceID, subType, baseType, knownState);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final RollupKey other = (RollupKey) obj;
+            return bucketStart == other.bucketStart
+                    && unit == other.unit
+                    && Objects.equals(timeZoneID, other.timeZoneID)
+                    && Objects.equals(datasourceID, other.datasourceID)
+                    && Objects.equals(subType, other.subType)
+                    && Objects.equals(baseType, other.baseType)
+                    && Objects.equals(knownState, other.knownState);
+        }
+    }
+
     /**
      * inner class that can reference access database connection
      */
@@ -1308,6 +1863,10 @@ private void commit() {
             if (!closed) {
                 try {
                     con.commit();
+                    if (pendingRollupZones != null) {
+                        //the new rollups are visible to the readers now
+                        rollupZones.set(pendingRollupZones);
+                    }
                     // make sure we close before we update, bc they'll need locks
                     close();
 
@@ -1326,7 +1885,7 @@ private void close() {
                     LOGGER.log(Level.SEVERE, "Error setting auto-commit to true.", ex); // NON-NLS
                 } finally {
                     closed = true;
-
+                    pendingRollupZones = null;
                     DBLock.unlock();
                 }
             }
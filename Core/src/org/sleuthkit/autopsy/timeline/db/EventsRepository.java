@@ -22,19 +22,19 @@
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import static java.util.Objects.isNull;
 import java.util.Set;
+import java.util.TimeZone;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 import javafx.application.Platform;
@@ -46,6 +46,7 @@
 import javafx.collections.ObservableMap;
 import javax.swing.JOptionPane;
 import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTimeZone;
 import org.joda.time.Interval;
 import org.netbeans.api.progress.ProgressHandle;
 import org.netbeans.api.progress.ProgressHandleFactory;
@@ -62,11 +63,11 @@
 import org.sleuthkit.autopsy.timeline.datamodel.TimeLineEvent;
 import org.sleuthkit.autopsy.timeline.datamodel.eventtype.ArtifactEventType;
 import org.sleuthkit.autopsy.timeline.datamodel.eventtype.EventType;
-import org.sleuthkit.autopsy.timeline.datamodel.eventtype.FileSystemTypes;
 import org.sleuthkit.autopsy.timeline.datamodel.eventtype.RootEventType;
 import org.sleuthkit.autopsy.timeline.filters.RootFilter;
 import org.sleuthkit.autopsy.timeline.filters.TagNameFilter;
 import org.sleuthkit.autopsy.timeline.filters.TagsFilter;
+import org.sleuthkit.autopsy.timeline.zooming.EventTypeZoomLevel;
 import org.sleuthkit.autopsy.timeline.zooming.ZoomParams;
 import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.datamodel.BlackboardArtifact;
@@ -223,10 +224,63 @@ synchronized public List<EventStripe> getEventStripes(ZoomParams params) {
         }
     }
 
+    /**
+     * get the event stripes for the given zoom params, handing them to the
+     * given page handler as they are read from the db. If the stripes are
+     * cached, they are all handed over as one page. Stripes are only cached
+     * once all of them have been read.
+     *
+     * NOTE: not synchronized, so the rest of the repository can be used while
+     * the stripes are read
+     *
+     * @param params      the zoom params of the stripes to get
+     * @param pageHandler handles each page of stripes, and returns false to
+     *                    stop reading the rest of them. A stripe with the same
+     *                    type and description as one from an earlier page
+     *                    continues it.
+     */
+    public void getEventStripes(ZoomParams params, Predicate<List<EventStripe>> pageHandler) {
+        List<EventStripe> stripes = eventStripeCache.getIfPresent(params);
+        if (stripes != null) {
+            pageHandler.test(stripes);
+        } else {
+            stripes = eventDB.getEventStripes(params, pageHandler);
+            if (stripes != null) {
+                eventStripeCache.put(params, stripes);
+            }
+        }
+    }
+
     synchronized public Map<EventType, Long> countEvents(ZoomParams params) {
         return eventCountsCache.getUnchecked(params);
     }
 
+    /**
+     * get the counts of the events in each of the given intervals, with one
+     * query if they are not all cached already
+     *
+     * @param intervals the intervals to count events in
+     * @param typeZoom  the level of the event types to organize the counts by
+     * @param filter    only events that pass this filter will be counted
+     *
+     * @return a map from event type to event count for each interval, in the
+     *         same order as the intervals
+     */
+    synchronized public List<Map<EventType, Long>> countEvents(List<Interval> intervals, EventTypeZoomLevel typeZoom, RootFilter filter) {
+        List<ZoomParams> params = intervals.stream()
+                .map(interval -> new ZoomParams(interval, typeZoom, filter, null))
+                .collect(Collectors.toList());
+        Map<ZoomParams, Map<EventType, Long>> cachedCounts = eventCountsCache.getAllPresent(params);
+        if (cachedCounts.size() == params.size()) {
+            return params.stream().map(cachedCounts::get).collect(Collectors.toList());
+        }
+        List<Map<EventType, Long>> counts = eventDB.countEventsByType(intervals, filter, typeZoom);
+        for (int i = 0; i < params.size(); i++) {
+            eventCountsCache.put(params.get(i), counts.get(i));
+        }
+        return counts;
+    }
+
     private void invalidateCaches() {
         minCache.invalidateAll();
         maxCache.invalidateAll();
@@ -349,7 +403,7 @@ public boolean areFiltersEquivalent(RootFilter f1, RootFilter f2) {
 
     @ThreadConfined(type = ThreadConfined.ThreadType.JFX)
     public boolean isRebuilding() {
-        return dbWorker.isRunning();
+        return dbWorker != null && dbWorker.isRunning();
     }
 
     @ThreadConfined(type = ThreadConfined.ThreadType.JFX)
@@ -362,6 +416,21 @@ public CancellationProgressTask<Void> rebuildTags() {
         return rebuildRepository(DBPopulationMode.TAGS_ONLY);
     }
 
+    /**
+     * Bring the db up to date with the case without starting over: add events
+     * for the files and artifacts that were added to the case since the db was
+     * last populated, and refresh the tags.
+     * <p>
+     * Like the other population modes this cancels any population task that is
+     * already running, so callers should check isRebuilding() first.
+     *
+     * @return the task that updates the db
+     */
+    @ThreadConfined(type = ThreadConfined.ThreadType.JFX)
+    public CancellationProgressTask<Void> updateRepository() {
+        return rebuildRepository(DBPopulationMode.INCREMENTAL);
+    }
+
     /**
      *
      * @param mode the value of mode
@@ -380,7 +449,8 @@ private CancellationProgressTask<Void> rebuildRepository(final DBPopulationMode
     private enum DBPopulationMode {
 
         FULL,
-        TAGS_ONLY;
+        TAGS_ONLY,
+        INCREMENTAL;
     }
 
     /**
@@ -465,9 +535,12 @@ void restartProgressHandle(String title, String message, Double workDone, double
         @NbBundle.Messages({"progressWindow.msg.refreshingFileTags=Refreshing file tags",
             "progressWindow.msg.refreshingResultTags=Refreshing result tags",
             "progressWindow.msg.gatheringData=Gathering event data",
-            "progressWindow.msg.commitingDb=Committing events database"})
+            "progressWindow.msg.commitingDb=Committing events database",
+            "progressWindow.msg.updatingEventCounts=Summarizing event counts"})
         protected Void call() throws Exception {
             EventDB.EventTransaction trans = null;
+            //events with higher ids than this are added by this task
+            long lastEventID = 0;
 
             //save paramaters for recording later
             long lastObjId = skCase.getLastObjectId();
@@ -478,17 +551,37 @@ protected Void call() throws Exception {
                 //drop old db, and add back MAC and artifact events
                 LOGGER.log(Level.INFO, "Beginning population of timeline db."); // NON-NLS
                 restartProgressHandle(Bundle.progressWindow_msg_gatheringData(), "", -1D, 1, true);
-                //reset database //TODO: can we do more incremental updates? -jm
+                //reset database
                 eventDB.reInitializeDB();
-                //grab ids of all files
-                List<Long> fileIDs = skCase.findAllFileIdsWhere("name != '.' AND name != '..'");
-                final int numFiles = fileIDs.size();
 
                 trans = eventDB.beginTransaction();
-                insertMACTimeEvents(numFiles, fileIDs, trans);
+                insertMACTimeEvents(-1, lastObjId, trans);
                 insertArtifactDerivedEvents(trans);
             }
 
+            if (dbPopulationMode == DBPopulationMode.INCREMENTAL) {
+                //add events only for the objects and artifacts that are newer than the last population
+                final long previousLastObjID = getLastObjID();
+                final long previousLastArtfID = getLastArtfactID();
+                LOGGER.log(Level.INFO, "Beginning incremental population of timeline db from object {0} and artifact {1}.", new Object[]{previousLastObjID, previousLastArtfID}); // NON-NLS
+                restartProgressHandle(Bundle.progressWindow_msg_gatheringData(), "", -1D, 1, true);
+                /*
+                 * objects and artifacts added after the ids were read at the
+                 * start of this task are left for the next population, so none
+                 * of them gets its events inserted twice.
+                 */
+                lastEventID = eventDB.getLastEventID();
+                trans = eventDB.beginTransaction();
+                insertMACTimeEvents(previousLastObjID, lastObjId, trans);
+                insertArtifactDerivedEvents(previousLastArtfID, lastArtfID, trans);
+                //files that already had events may have been looked up in hash sets since
+                updateHashHitsAndKnownStates(previousLastObjID, previousLastArtfID, lastArtfID, trans);
+                //events that already existed may have been tagged while TL was not listening
+                eventDB.reInitializeTags();
+                //keep flagging the db as populated during ingest until it is fully rebuilt
+                injestRunning |= getWasIngestRunning();
+            }
+
             //tags
             if (dbPopulationMode == DBPopulationMode.TAGS_ONLY) {
                 trans = eventDB.beginTransaction();
@@ -508,10 +601,24 @@ protected Void call() throws Exception {
             restartProgressHandle(Bundle.progressWindow_msg_refreshingResultTags(), "", 0D, currentWorkTotal, true);
             insertArtifactTags(currentWorkTotal, artifactTags, trans);
 
+            if (dbPopulationMode != DBPopulationMode.TAGS_ONLY
+                    && (dbPopulationMode == DBPopulationMode.FULL || isCancelRequested() == false)) {
+                //keep the count rollups consistent with the events that will be committed
+                LOGGER.log(Level.INFO, "updating event count rollups"); // NON-NLS
+                restartProgressHandle(Bundle.progressWindow_msg_updatingEventCounts(), "", -1D, 1, false);
+                eventDB.updateRollups(lastEventID, Arrays.asList(DateTimeZone.UTC,
+                        DateTimeZone.forTimeZone(TimeZone.getDefault()), TimeLineController.getJodaTimeZone()), trans);
+            }
+
             LOGGER.log(Level.INFO, "committing db"); // NON-NLS
             Platform.runLater(() -> cancellable.set(false));
             restartProgressHandle(Bundle.progressWindow_msg_commitingDb(), "", -1D, 1, false);
-            eventDB.commitTransaction(trans);
+            if (dbPopulationMode == DBPopulationMode.INCREMENTAL && isCancelRequested()) {
+                //a partial update can't be resumed without inserting some events twice
+                eventDB.rollBackTransaction(trans);
+            } else {
+                eventDB.commitTransaction(trans);
+            }
             if (isCancelRequested() == false) {
                 recordDBPopulationState(lastObjId, lastArtfID, injestRunning);
             }
@@ -563,67 +670,76 @@ private void insertArtifactDerivedEvents(EventDB.EventTransaction trans) {
             }
         }
 
-        @NbBundle.Messages("progressWindow.msg.populateMacEventsFiles=Populating MAC time events for files")
-        private void insertMACTimeEvents(final int numFiles, List<Long> fileIDs, EventDB.EventTransaction trans) {
-            restartProgressHandle(Bundle.progressWindow_msg_populateMacEventsFiles(), "", 0D, numFiles, true);
-            for (int i = 0; i < numFiles; i++) {
+        /**
+         * insert the events derived from the artifacts with ids in the given
+         * range
+         *
+         * @param afterArtfID artifacts with this id or lower are skipped
+         * @param upToArtfID  artifacts with ids above this are skipped
+         * @param trans       the db transaction to use
+         */
+        private void insertArtifactDerivedEvents(long afterArtfID, long upToArtfID, EventDB.EventTransaction trans) {
+            for (EventType type : RootEventType.allTypes) {
                 if (isCancelRequested()) {
                     break;
                 }
-                long fID = fileIDs.get(i);
-                try {
-                    AbstractFile f = skCase.getAbstractFileById(fID);
-
-                    if (isNull(f)) {
-                        LOGGER.log(Level.WARNING, "Failed to get data for file : {0}", fID); // NON-NLS
-                    } else {
-                        insertEventsForFile(f, trans);
-                        updateProgress(i, numFiles);
-                        updateMessage(f.getName());
+                if (type instanceof ArtifactEventType) {
+                    ArtifactEventType artifactEventType = (ArtifactEventType) type;
+                    try {
+                        populateEventType(artifactEventType, skCase.getMatchingArtifacts("WHERE artifact_type_id = " + artifactEventType.getArtifactType().getTypeID() // NON-NLS
+                                + " AND artifact_id > " + afterArtfID + " AND artifact_id <= " + upToArtfID), trans); // NON-NLS
+                    } catch (TskCoreException ex) {
+                        LOGGER.log(Level.SEVERE, "There was a problem getting new events with sub type " + type.toString() + ".", ex); // NON-NLS
                     }
-                } catch (TskCoreException tskCoreException) {
-                    LOGGER.log(Level.SEVERE, "Failed to insert MAC time events for file : " + fID, tskCoreException); // NON-NLS
                 }
             }
         }
 
-        private void insertEventsForFile(AbstractFile f, EventDB.EventTransaction trans) throws TskCoreException {
-            //gather time stamps into map
-            EnumMap<FileSystemTypes, Long> timeMap = new EnumMap<>(FileSystemTypes.class);
-            timeMap.put(FileSystemTypes.FILE_CREATED, f.getCrtime());
-            timeMap.put(FileSystemTypes.FILE_ACCESSED, f.getAtime());
-            timeMap.put(FileSystemTypes.FILE_CHANGED, f.getCtime());
-            timeMap.put(FileSystemTypes.FILE_MODIFIED, f.getMtime());
-
-            /*
-             * if there are no legitimate ( greater tan zero ) time stamps ( eg,
-             * logical/local files) skip the rest of the event generation: this
-             * should result in droping logical files, since they do not have
-             * legitimate time stamps.
-             */
-            if (Collections.max(timeMap.values()) > 0) {
-                final String uniquePath = f.getUniquePath();
-                final String parentPath = f.getParentPath();
-                long datasourceID = f.getDataSource().getId();
-                String datasourceName = StringUtils.substringBeforeLast(uniquePath, parentPath);
-
-                String rootFolder = StringUtils.substringBefore(StringUtils.substringAfter(parentPath, "/"), "/");
-                String shortDesc = datasourceName + "/" + StringUtils.defaultString(rootFolder);
-                shortDesc = shortDesc.endsWith("/") ? shortDesc : shortDesc + "/";
-                String medDesc = datasourceName + parentPath;
+        /**
+         * update the hash set hits and known states of the events of the files
+         * that were in the db before this population
+         *
+         * @param upToObjID   the last object id of the previous population
+         * @param afterArtfID the last artifact id of the previous population
+         * @param upToArtfID  the last artifact id of this population
+         * @param trans       the db transaction to use
+         */
+        @NbBundle.Messages("progressWindow.msg.updatingHashHits=Updating hash set hits and known states")
+        private void updateHashHitsAndKnownStates(long upToObjID, long afterArtfID, long upToArtfID, EventDB.EventTransaction trans) {
+            if (isCancelRequested()) {
+                return;
+            }
+            restartProgressHandle(Bundle.progressWindow_msg_updatingHashHits(), "", -1D, 1, true);
+            try {
+                new MACTimeEventExtractor(eventDB, skCase, tagsManager, this::isCancelRequested)
+                        .updateHashHitsAndKnownStates(upToObjID, afterArtfID, upToArtfID, trans);
+            } catch (TskCoreException ex) {
+                LOGGER.log(Level.SEVERE, "Failed to update hash set hits and known states of events.", ex); // NON-NLS
+            }
+        }
 
-                final TskData.FileKnown known = f.getKnown();
-                Set<String> hashSets = f.getHashSetNames();
-                List<ContentTag> tags = tagsManager.getContentTagsByContent(f);
-
-                for (Map.Entry<FileSystemTypes, Long> timeEntry : timeMap.entrySet()) {
-                    if (timeEntry.getValue() > 0) {
-                        // if the time is legitimate ( greater than zero ) insert it
-                        eventDB.insertEvent(timeEntry.getValue(), timeEntry.getKey(),
-                                datasourceID, f.getId(), null, uniquePath, medDesc,
-                                shortDesc, known, hashSets, tags, trans);
-                    }
+        /**
+         * insert the MAC time events of the files with object ids in the given
+         * range
+         *
+         * @param afterObjID files with this object id or lower are skipped
+         * @param upToObjID  files with object ids above this are skipped
+         * @param trans      the db transaction to use
+         */
+        @NbBundle.Messages("progressWindow.msg.populateMacEventsFiles=Populating MAC time events for files")
+        private void insertMACTimeEvents(long afterObjID, long upToObjID, EventDB.EventTransaction trans) throws InterruptedException {
+            MACTimeEventExtractor extractor = new MACTimeEventExtractor(eventDB, skCase, tagsManager, this::isCancelRequested);
+            try {
+                final long numFiles = extractor.countFiles(afterObjID, upToObjID);
+                restartProgressHandle(Bundle.progressWindow_msg_populateMacEventsFiles(), "", 0D, numFiles, true);
+                if (numFiles > 0) {
+                    extractor.insertEvents(afterObjID, upToObjID, (fileName, numFilesDone) -> {
+                        updateProgress(numFilesDone, numFiles);
+                        updateMessage(fileName);
+                    }, trans);
                 }
+            } catch (TskCoreException tskCoreException) {
+                LOGGER.log(Level.SEVERE, "Failed to insert MAC time events.", tskCoreException); // NON-NLS
             }
         }
 
@@ -654,23 +770,36 @@ protected void done() {
         private void populateEventType(final ArtifactEventType type, EventDB.EventTransaction trans) {
             try {
                 //get all the blackboard artifacts corresponding to the given event sub_type
-                final ArrayList<BlackboardArtifact> blackboardArtifacts = skCase.getBlackboardArtifacts(type.getArtifactType());
-                final int numArtifacts = blackboardArtifacts.size();
-                restartProgressHandle(Bundle.progressWindow_populatingXevents(type.getDisplayName()), "", 0D, numArtifacts, true);
-                for (int i = 0; i < numArtifacts; i++) {
-                    try {
-                        //for each artifact, extract the relevant information for the descriptions
-                        insertEventForArtifact(type, blackboardArtifacts.get(i), trans);
-                        updateProgress(i, numArtifacts);
-                    } catch (TskCoreException ex) {
-                        LOGGER.log(Level.SEVERE, "There was a problem inserting event for artifact: " + blackboardArtifacts.get(i).getArtifactID(), ex); // NON-NLS
-                    }
-                }
+                populateEventType(type, skCase.getBlackboardArtifacts(type.getArtifactType()), trans);
             } catch (TskCoreException ex) {
                 LOGGER.log(Level.SEVERE, "There was a problem getting events with sub type " + type.toString() + ".", ex); // NON-NLS
             }
         }
 
+        /**
+         * populate the events of one subtype derived from the given artifacts
+         *
+         * @param type                the subtype to populate
+         * @param blackboardArtifacts the artifacts of the subtype
+         * @param trans               the db transaction to use
+         */
+        private void populateEventType(final ArtifactEventType type, List<BlackboardArtifact> blackboardArtifacts, EventDB.EventTransaction trans) {
+            final int numArtifacts = blackboardArtifacts.size();
+            restartProgressHandle(Bundle.progressWindow_populatingXevents(type.getDisplayName()), "", 0D, numArtifacts, true);
+            for (int i = 0; i < numArtifacts; i++) {
+                if (isCancelRequested()) {
+                    break;
+                }
+                try {
+                    //for each artifact, extract the relevant information for the descriptions
+                    insertEventForArtifact(type, blackboardArtifacts.get(i), trans);
+                    updateProgress(i, numArtifacts);
+                } catch (TskCoreException ex) {
+                    LOGGER.log(Level.SEVERE, "There was a problem inserting event for artifact: " + blackboardArtifacts.get(i).getArtifactID(), ex); // NON-NLS
+                }
+            }
+        }
+
         private void insertEventForArtifact(final ArtifactEventType type, BlackboardArtifact bbart, EventDB.EventTransaction trans) throws TskCoreException {
             ArtifactEventType.AttributeEventDescription eventDescription = ArtifactEventType.buildEventDescription(type, bbart);
 
@@ -0,0 +1,462 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.timeline.db;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import org.apache.commons.lang3.StringUtils;
+import org.sleuthkit.autopsy.casemodule.services.TagsManager;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.timeline.datamodel.eventtype.FileSystemTypes;
+import org.sleuthkit.datamodel.BlackboardArtifact;
+import org.sleuthkit.datamodel.BlackboardAttribute;
+import org.sleuthkit.datamodel.Content;
+import org.sleuthkit.datamodel.ContentTag;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbQuery;
+import org.sleuthkit.datamodel.TskCoreException;
+import org.sleuthkit.datamodel.TskData;
+
+/**
+ * Extracts the MAC time events of files in bulk, without loading each file as
+ * an AbstractFile.
+ * <p>
+ * Worker threads read the file rows from the case db a page (a range of object
+ * ids) at a time, and build the events of the files in the page. The data
+ * source and unique path of the files are derived from those of their parent,
+ * which are looked up once per parent, and the hash set hits and content tags
+ * are read up front for the whole case. The thread that calls insertEvents()
+ * is the only writer to the events db: it inserts the pages as the workers
+ * produce them, in batches.
+ */
+class MACTimeEventExtractor {
+
+    private static final Logger LOGGER = Logger.getLogger(MACTimeEventExtractor.class.getName());
+
+    /**
+     * the width of the range of object ids read in one page
+     */
+    private static final long PAGE_SIZE = 10000;
+
+    private static final int NUM_WORKERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static final String HAS_TIME_STAMP = "(tsk_files.crtime > 0 OR tsk_files.atime > 0 OR tsk_files.ctime > 0 OR tsk_files.mtime > 0)"; // NON-NLS
+
+    private final EventDB eventDB;
+    private final SleuthkitCase skCase;
+    private final TagsManager tagsManager;
+    private final BooleanSupplier cancelled;
+
+    /**
+     * the data source id and unique path of the parents of the files, by
+     * object id of the parent
+     */
+    private final Map<Long, ParentInfo> parents = new ConcurrentHashMap<>();
+
+    /**
+     * the names of the hash sets with hits for each file, by object id
+     */
+    private Map<Long, Set<String>> hashSetNames;
+
+    /**
+     * the tags applied to each file, by object id
+     */
+    private Map<Long, List<ContentTag>> contentTags;
+
+    /**
+     * Receives the progress of the extraction.
+     */
+    interface ProgressListener {
+
+        /**
+         * @param message      a message to show, such as the name of the last
+         *                     file processed
+         * @param numFilesDone the number of files processed so far
+         */
+        void progress(String message, long numFilesDone);
+    }
+
+    /**
+     * @param eventDB     the events db to insert the events in
+     * @param skCase      the case to extract events from
+     * @param tagsManager the tags manager of the case
+     * @param cancelled   returns true when the extraction should stop early
+     */
+    MACTimeEventExtractor(EventDB eventDB, SleuthkitCase skCase, TagsManager tagsManager, BooleanSupplier cancelled) {
+        this.eventDB = eventDB;
+        this.skCase = skCase;
+        this.tagsManager = tagsManager;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Count the files with object ids in the given range that have at least
+     * one time stamp, and so will have events.
+     *
+     * @param afterObjID files with this object id or lower are not counted
+     * @param upToObjID  files with object ids above this are not counted
+     *
+     * @return the number of files
+     *
+     * @throws TskCoreException if there is a problem querying the case db
+     */
+    long countFiles(long afterObjID, long upToObjID) throws TskCoreException {
+        String query = "SELECT COUNT(*) AS count FROM tsk_files WHERE " + getFilesWhere(afterObjID, upToObjID); // NON-NLS
+        try (CaseDbQuery dbQuery = skCase.executeQuery(query)) {
+            ResultSet resultSet = dbQuery.getResultSet();
+            return resultSet.next() ? resultSet.getLong("count") : 0; // NON-NLS
+        } catch (SQLException ex) {
+            throw new TskCoreException("Error counting files with MAC times", ex); // NON-NLS
+        }
+    }
+
+    /**
+     * Insert the MAC time events of the files with object ids in the given
+     * range. Use countFiles() to find out how many files that is.
+     *
+     * @param afterObjID  files with this object id or lower are skipped
+     * @param upToObjID   files with object ids above this are skipped
+     * @param progress    receives the progress of the extraction
+     * @param transaction the events db transaction to insert the events in
+     *
+     * @throws TskCoreException     if there is a problem reading the hash set
+     *                              hits or tags of the case
+     * @throws InterruptedException if the thread is interrupted while waiting
+     *                              for the workers
+     */
+    void insertEvents(long afterObjID, long upToObjID, ProgressListener progress, EventDB.EventTransaction transaction) throws TskCoreException, InterruptedException {
+        hashSetNames = getHashSetNamesByFile();
+        contentTags = getContentTagsByFile();
+
+        final AtomicLong nextPageStart = new AtomicLong(afterObjID + 1);
+        final BlockingQueue<List<FileEvents>> pages = new ArrayBlockingQueue<>(NUM_WORKERS * 2);
+        final ExecutorService workers = Executors.newFixedThreadPool(NUM_WORKERS,
+                new ThreadFactoryBuilder().setNameFormat("timeline-mac-event-extractor-%d").build()); // NON-NLS
+        List<Future<?>> workerFutures = new ArrayList<>();
+        try {
+            for (int i = 0; i < NUM_WORKERS; i++) {
+                workerFutures.add(workers.submit(() -> {
+                    long pageStart;
+                    while (cancelled.getAsBoolean() == false
+                            && (pageStart = nextPageStart.getAndAdd(PAGE_SIZE)) <= upToObjID) {
+                        List<FileEvents> page = readPage(pageStart, Math.min(pageStart + PAGE_SIZE - 1, upToObjID));
+                        if (page.isEmpty() == false) {
+                            pages.put(page);
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            long numFilesDone = 0;
+            while (cancelled.getAsBoolean() == false) {
+                List<FileEvents> page = pages.poll(1, TimeUnit.SECONDS);
+                if (page == null) {
+                    if (workerFutures.stream().allMatch(Future::isDone) && pages.isEmpty()) {
+                        break;
+                    }
+                } else {
+                    insertPage(page, transaction);
+                    numFilesDone += page.size();
+                    progress.progress(page.get(page.size() - 1).name, numFilesDone);
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        for (Future<?> future : workerFutures) {
+            try {
+                if (future.isCancelled() == false && future.isDone()) {
+                    future.get();
+                }
+            } catch (ExecutionException ex) {
+                LOGGER.log(Level.SEVERE, "Failed to extract MAC time events for some files.", ex.getCause()); // NON-NLS
+            }
+        }
+    }
+
+    /**
+     * Update the hash set hits and known states of the events of files that
+     * were already in the events db, since the hash lookup can flag a file
+     * after its events were inserted.
+     *
+     * @param upToObjID   the events of files with object ids above this are
+     *                    not updated
+     * @param afterArtfID hash set hit artifacts with this id or lower were
+     *                    already recorded
+     * @param upToArtfID  hash set hit artifacts with ids above this are left
+     *                    for the next update
+     * @param transaction the events db transaction to update the events in
+     *
+     * @throws TskCoreException if there is a problem querying the case db
+     */
+    void updateHashHitsAndKnownStates(long upToObjID, long afterArtfID, long upToArtfID, EventDB.EventTransaction transaction) throws TskCoreException {
+        String hitsQuery = "SELECT blackboard_artifacts.obj_id AS obj_id, blackboard_attributes.value_text AS value_text" // NON-NLS
+                + " FROM blackboard_artifacts JOIN blackboard_attributes ON blackboard_artifacts.artifact_id = blackboard_attributes.artifact_id" // NON-NLS
+                + " WHERE blackboard_artifacts.artifact_type_id = " + BlackboardArtifact.ARTIFACT_TYPE.TSK_HASHSET_HIT.getTypeID() // NON-NLS
+                + " AND blackboard_attributes.attribute_type_id = " + BlackboardAttribute.ATTRIBUTE_TYPE.TSK_SET_NAME.getTypeID() // NON-NLS
+                + " AND blackboard_artifacts.artifact_id > " + afterArtfID + " AND blackboard_artifacts.artifact_id <= " + upToArtfID // NON-NLS
+                + " AND blackboard_artifacts.obj_id <= " + upToObjID; // NON-NLS
+        try (CaseDbQuery dbQuery = skCase.executeQuery(hitsQuery)) {
+            ResultSet resultSet = dbQuery.getResultSet();
+            while (resultSet.next() && cancelled.getAsBoolean() == false) {
+                eventDB.addHashSetHit(resultSet.getLong("obj_id"), resultSet.getString("value_text"), transaction); // NON-NLS
+            }
+        } catch (SQLException ex) {
+            throw new TskCoreException("Error getting new hash set hits", ex); // NON-NLS
+        }
+
+        //only the files the hash lookup found are read, the rest stay unknown
+        String knownQuery = "SELECT obj_id, known FROM tsk_files WHERE obj_id <= " + upToObjID // NON-NLS
+                + " AND known != " + TskData.FileKnown.UNKNOWN.getFileKnownValue(); // NON-NLS
+        Map<Long, TskData.FileKnown> knownStates = new HashMap<>();
+        try (CaseDbQuery dbQuery = skCase.executeQuery(knownQuery)) {
+            ResultSet resultSet = dbQuery.getResultSet();
+            while (resultSet.next() && cancelled.getAsBoolean() == false) {
+                knownStates.put(resultSet.getLong("obj_id"), TskData.FileKnown.valueOf(resultSet.getByte("known"))); // NON-NLS
+                if (knownStates.size() >= PAGE_SIZE) {
+                    eventDB.updateKnownStates(knownStates, transaction);
+                    knownStates.clear();
+                }
+            }
+        } catch (SQLException ex) {
+            throw new TskCoreException("Error getting known states of files", ex); // NON-NLS
+        }
+        eventDB.updateKnownStates(knownStates, transaction);
+    }
+
+    private static String getFilesWhere(long afterObjID, long upToObjID) {
+        return "tsk_files.obj_id > " + afterObjID + " AND tsk_files.obj_id <= " + upToObjID // NON-NLS
+                + " AND tsk_files.name != '.' AND tsk_files.name != '..' AND " + HAS_TIME_STAMP; // NON-NLS
+    }
+
+    /**
+     * read the files with object ids in the given range, and build their
+     * events
+     *
+     * @param firstObjID the lowest object id of the page
+     * @param lastObjID  the highest object id of the page
+     *
+     * @return the events of the files in the page, by file
+     */
+    private List<FileEvents> readPage(long firstObjID, long lastObjID) {
+        List<FileEvents> page = new ArrayList<>();
+        List<Long> parentIDs = new ArrayList<>();
+        String query = "SELECT tsk_files.obj_id AS obj_id, tsk_objects.par_obj_id AS par_obj_id, tsk_files.name AS name, " // NON-NLS
+                + " tsk_files.parent_path AS parent_path, tsk_files.known AS known, " // NON-NLS
+                + " tsk_files.crtime AS crtime, tsk_files.atime AS atime, tsk_files.ctime AS ctime, tsk_files.mtime AS mtime" // NON-NLS
+                + " FROM tsk_files JOIN tsk_objects ON tsk_files.obj_id = tsk_objects.obj_id" // NON-NLS
+                + " WHERE " + getFilesWhere(firstObjID - 1, lastObjID); // NON-NLS
+        //read the whole page before looking up the parents, so the query doesn't stay open
+        try (CaseDbQuery dbQuery = skCase.executeQuery(query)) {
+            ResultSet resultSet = dbQuery.getResultSet();
+            while (resultSet.next()) {
+                FileEvents file = new FileEvents(resultSet.getLong("obj_id"), // NON-NLS
+                        StringUtils.defaultString(resultSet.getString("name")), // NON-NLS
+                        StringUtils.defaultString(resultSet.getString("parent_path")), // NON-NLS
+                        TskData.FileKnown.valueOf(resultSet.getByte("known"))); // NON-NLS
+                file.timeMap.put(FileSystemTypes.FILE_CREATED, resultSet.getLong("crtime")); // NON-NLS
+                file.timeMap.put(FileSystemTypes.FILE_ACCESSED, resultSet.getLong("atime")); // NON-NLS
+                file.timeMap.put(FileSystemTypes.FILE_CHANGED, resultSet.getLong("ctime")); // NON-NLS
+                file.timeMap.put(FileSystemTypes.FILE_MODIFIED, resultSet.getLong("mtime")); // NON-NLS
+                page.add(file);
+                parentIDs.add(resultSet.getLong("par_obj_id")); // NON-NLS
+            }
+        } catch (TskCoreException | SQLException ex) {
+            LOGGER.log(Level.SEVERE, "Failed to read files with object ids from " + firstObjID + " to " + lastObjID, ex); // NON-NLS
+            return Collections.emptyList();
+        }
+
+        List<FileEvents> filesWithParents = new ArrayList<>(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            FileEvents file = page.get(i);
+            ParentInfo parent = getParentInfo(parentIDs.get(i));
+            if (parent == null) {
+                LOGGER.log(Level.WARNING, "Failed to get data for file : {0}", file.objID); // NON-NLS
+                continue;
+            }
+            file.datasourceID = parent.datasourceID;
+            //the same as AbstractContent.getUniquePath()
+            file.uniquePath = file.name.isEmpty() ? parent.uniquePath : parent.uniquePath + "/" + file.name;
+            filesWithParents.add(file);
+        }
+        return filesWithParents;
+    }
+
+    /**
+     * get the data source id and unique path of the parent with the given id,
+     * from the case db the first time
+     *
+     * @param parentID the object id of the parent
+     *
+     * @return the parent info, or null if it could not be looked up
+     */
+    private ParentInfo getParentInfo(long parentID) {
+        ParentInfo parentInfo = parents.get(parentID);
+        if (parentInfo == null) {
+            try {
+                Content parent = skCase.getContentById(parentID);
+                if (parent == null) {
+                    return null;
+                }
+                parentInfo = new ParentInfo(parent.getDataSource().getId(), parent.getUniquePath());
+                parents.put(parentID, parentInfo);
+            } catch (TskCoreException ex) {
+                LOGGER.log(Level.SEVERE, "Failed to look up parent object : " + parentID, ex); // NON-NLS
+                return null;
+            }
+        }
+        return parentInfo;
+    }
+
+    /**
+     * insert the events of a page of files, with the files that have no hash
+     * set hits or tags in one batch
+     *
+     * @param page        the files
+     * @param transaction the events db transaction to insert the events in
+     */
+    private void insertPage(List<FileEvents> page, EventDB.EventTransaction transaction) {
+        for (FileEvents file : page) {
+            final String parentPath = file.parentPath;
+            String datasourceName = StringUtils.substringBeforeLast(file.uniquePath, parentPath);
+
+            String rootFolder = StringUtils.substringBefore(StringUtils.substringAfter(parentPath, "/"), "/");
+            String shortDesc = datasourceName + "/" + StringUtils.defaultString(rootFolder);
+            shortDesc = shortDesc.endsWith("/") ? shortDesc : shortDesc + "/";
+            String medDesc = datasourceName + parentPath;
+
+            Set<String> hashSets = hashSetNames.getOrDefault(file.objID, Collections.emptySet());
+            List<ContentTag> tags = contentTags.getOrDefault(file.objID, Collections.emptyList());
+
+            for (Map.Entry<FileSystemTypes, Long> timeEntry : file.timeMap.entrySet()) {
+                if (timeEntry.getValue() > 0) {
+                    // if the time is legitimate ( greater than zero ) insert it
+                    if (hashSets.isEmpty() && tags.isEmpty()) {
+                        eventDB.addEventToInsertBatch(timeEntry.getValue(), timeEntry.getKey(),
+                                file.datasourceID, file.objID, null, file.uniquePath, medDesc,
+                                shortDesc, file.known, transaction);
+                    } else {
+                        eventDB.insertEvent(timeEntry.getValue(), timeEntry.getKey(),
+                                file.datasourceID, file.objID, null, file.uniquePath, medDesc,
+                                shortDesc, file.known, hashSets, tags, transaction);
+                    }
+                }
+            }
+        }
+        eventDB.executeInsertBatch(transaction);
+    }
+
+    /**
+     * read the names of the hash sets each file has hits in, with one query
+     * for the whole case
+     *
+     * @return the hash set names, by object id of the file
+     *
+     * @throws TskCoreException if there is a problem querying the case db
+     */
+    private Map<Long, Set<String>> getHashSetNamesByFile() throws TskCoreException {
+        Map<Long, Set<String>> hashSetNamesByFile = new HashMap<>();
+        String query = "SELECT blackboard_artifacts.obj_id AS obj_id, blackboard_attributes.value_text AS value_text" // NON-NLS
+                + " FROM blackboard_artifacts JOIN blackboard_attributes ON blackboard_artifacts.artifact_id = blackboard_attributes.artifact_id" // NON-NLS
+                + " WHERE blackboard_artifacts.artifact_type_id = " + BlackboardArtifact.ARTIFACT_TYPE.TSK_HASHSET_HIT.getTypeID() // NON-NLS
+                + " AND blackboard_attributes.attribute_type_id = " + BlackboardAttribute.ATTRIBUTE_TYPE.TSK_SET_NAME.getTypeID(); // NON-NLS
+        try (CaseDbQuery dbQuery = skCase.executeQuery(query)) {
+            ResultSet resultSet = dbQuery.getResultSet();
+            while (resultSet.next()) {
+                hashSetNamesByFile.computeIfAbsent(resultSet.getLong("obj_id"), objID -> new HashSet<>()) // NON-NLS
+                        .add(resultSet.getString("value_text")); // NON-NLS
+            }
+        } catch (SQLException ex) {
+            throw new TskCoreException("Error getting hash set hits", ex); // NON-NLS
+        }
+        return hashSetNamesByFile;
+    }
+
+    /**
+     * read the tags applied to files, for the whole case at once
+     *
+     * @return the tags, by object id of the tagged file
+     *
+     * @throws TskCoreException if there is a problem querying the case db
+     */
+    private Map<Long, List<ContentTag>> getContentTagsByFile() throws TskCoreException {
+        Map<Long, List<ContentTag>> contentTagsByFile = new HashMap<>();
+        for (ContentTag tag : tagsManager.getAllContentTags()) {
+            contentTagsByFile.computeIfAbsent(tag.getContent().getId(), objID -> new ArrayList<>()).add(tag);
+        }
+        return contentTagsByFile;
+    }
+
+    /**
+     * the data source id and unique path of a parent of files
+     */
+    private static final class ParentInfo {
+
+        private final long datasourceID;
+        private final String uniquePath;
+
+        private ParentInfo(long datasourceID, String uniquePath) {
+            this.datasourceID = datasourceID;
+            this.uniquePath = uniquePath;
+        }
+    }
+
+    /**
+     * a file read from the case db, with the time stamps of its events
+     */
+    private static final class FileEvents {
+
+        private final long objID;
+        private final String name;
+        private final String parentPath;
+        private final TskData.FileKnown known;
+        private final EnumMap<FileSystemTypes, Long> timeMap = new EnumMap<>(FileSystemTypes.class);
+        private long datasourceID;
+        private String uniquePath;
+
+        private FileEvents(long objID, String name, String parentPath, TskData.FileKnown known) {
+            this.objID = objID;
+            this.name = name;
+            this.parentPath = parentPath;
+            this.known = known;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.timeline.db;
+
+import java.util.Arrays;
+import java.util.List;
+import org.joda.time.Chronology;
+import org.joda.time.DateTimeField;
+import org.joda.time.Interval;
+import org.sleuthkit.autopsy.timeline.zooming.TimeUnits;
+
+/**
+ * Static helper methods for the time buckets of the event count rollups.
+ */
+class RollupBuckets {
+
+    /**
+     * the granularities of the event count rollups, from coarsest to finest
+     */
+    static final List<TimeUnits> ROLLUP_UNITS = Arrays.asList(TimeUnits.YEARS, TimeUnits.MONTHS, TimeUnits.DAYS, TimeUnits.HOURS);
+
+    private RollupBuckets() {
+    }
+
+    /**
+     * get the start of the rollup bucket of the given granularity that the
+     * given time is in
+     *
+     * @param chronology the chronology of the time zone of the rollups
+     * @param unit       one of the ROLLUP_UNITS
+     * @param timeMillis the time, in milliseconds since the epoch
+     *
+     * @return the start of the bucket, in seconds since the epoch
+     */
+    static long getBucketStart(Chronology chronology, TimeUnits unit, long timeMillis) {
+        return getRollupField(chronology, unit).roundFloor(timeMillis) / 1000;
+    }
+
+    /**
+     * get the coarsest rollup granularity whose buckets the given intervals
+     * are made of
+     *
+     * @param chronology the chronology of the time zone of the rollups
+     * @param intervals  the intervals
+     *
+     * @return the granularity, or null if there are no intervals, an interval
+     *         is empty, or the intervals don't start and end on bucket
+     *         boundaries
+     */
+    static TimeUnits getRollupUnit(Chronology chronology, List<Interval> intervals) {
+        if (intervals.isEmpty()) {
+            return null;
+        }
+        for (TimeUnits unit : ROLLUP_UNITS) {
+            DateTimeField field = getRollupField(chronology, unit);
+            if (intervals.stream().allMatch(interval -> interval.getStartMillis() < interval.getEndMillis()
+                    && field.roundFloor(interval.getStartMillis()) == interval.getStartMillis()
+                    && field.roundFloor(interval.getEndMillis()) == interval.getEndMillis())) {
+                return unit;
+            }
+        }
+        return null;
+    }
+
+    private static DateTimeField getRollupField(Chronology chronology, TimeUnits unit) {
+        switch (unit) {
+            case YEARS:
+                return chronology.year();
+            case MONTHS:
+                return chronology.monthOfYear();
+            case DAYS:
+                return chronology.dayOfMonth();
+            case HOURS:
+            default:
+                return chronology.hourOfDay();
+        }
+    }
+}
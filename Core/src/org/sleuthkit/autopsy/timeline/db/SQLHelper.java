@@ -106,6 +106,31 @@ static String getSQLWhere(RootFilter filter) {
         return getSQLWhere((IntersectionFilter) filter);
     }
 
+    /**
+     * get a where clause for the given filter that can be applied to the event
+     * count rollups, which only record the type, data source and known state
+     * of the events.
+     *
+     * @param filter the filter
+     *
+     * @return the where clause, or null if the filter restricts the events by
+     *         anything else, such as tags, hash hits, or description
+     */
+    static String getRollupSQLWhere(RootFilter filter) {
+        for (Filter subFilter : filter.getSubFilters()) {
+            if (subFilter.isSelected() == false
+                    || subFilter instanceof HideKnownFilter
+                    || subFilter instanceof DataSourcesFilter
+                    || subFilter instanceof TypeFilter) {
+                continue;
+            }
+            if ("1".equals(getSQLWhere(subFilter)) == false) {
+                return null;
+            }
+        }
+        return getSQLWhere(filter);
+    }
+
     /**
      * NOTE: I don't like this if-else instance of chain, but I can't decide
      * what to do instead -jm
@@ -0,0 +1,208 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.timeline.db;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Instant;
+import org.joda.time.Interval;
+import org.joda.time.Period;
+import org.sleuthkit.autopsy.timeline.datamodel.EventCluster;
+import org.sleuthkit.autopsy.timeline.datamodel.EventStripe;
+import org.sleuthkit.autopsy.timeline.datamodel.eventtype.EventType;
+import org.sleuthkit.autopsy.timeline.zooming.DescriptionLoD;
+
+/**
+ * clusters the events read by EventDB.getEventStripes(), in time order, and
+ * merges the clusters into stripes. General algorithm is as follows:
+ *
+ * 1) for each (type, description) keep the last cluster, and add the next
+ * event with the same (type, description) to it if it is less than a quarter
+ * period after the end of the cluster
+ * 2) once a cluster can't grow anymore, either because the next event with
+ * its (type, description) is too far after it or because the scan has moved
+ * more than a quarter period past its end, merge it into the stripe for its
+ * (type, description)
+ *
+ * Only the counts of the events are kept, the ids of the events of a stripe
+ * are read from the db when they are needed.
+ */
+final class StripeMerger {
+
+    private final Period timeUnitLength;
+    private final DescriptionLoD lod;
+    private final DateTimeZone timeZone;
+
+    /**
+     * the time of the last event added
+     */
+    private long scanMillis = Long.MIN_VALUE;
+
+    /**
+     * the last cluster of each (type, description), which may still grow
+     */
+    private final Map<ImmutablePair<EventType, String>, OpenCluster> openClusters = new HashMap<>();
+
+    /**
+     * the stripes of the clusters completed since the last page
+     */
+    private final Map<ImmutablePair<EventType, String>, EventStripe> newStripes = new LinkedHashMap<>();
+
+    /**
+     * the stripes of all the clusters in the pages taken so far
+     */
+    private final Map<ImmutablePair<EventType, String>, EventStripe> stripes = new HashMap<>();
+
+    /**
+     * @param timeUnitLength the period the events are clustered by. Events
+     *                       that are less than a quarter of it apart are
+     *                       put in the same cluster.
+     * @param lod            the description level of detail of the events
+     * @param timeZone       the time zone of the cluster intervals
+     */
+    StripeMerger(Period timeUnitLength, DescriptionLoD lod, DateTimeZone timeZone) {
+        this.timeUnitLength = timeUnitLength;
+        this.lod = lod;
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * add the next event. Events must be added in order of their times.
+     *
+     * @param type        the type of the event
+     * @param description the description of the event at the level of detail
+     *                    of this merger
+     * @param timeMillis  the time of the event
+     * @param hashHit     true if the event has a hash set hit
+     * @param tagged      true if the event has at least one tag
+     */
+    void add(EventType type, String description, long timeMillis, boolean hashHit, boolean tagged) {
+        scanMillis = timeMillis;
+        ImmutablePair<EventType, String> key = ImmutablePair.of(type, description);
+        OpenCluster current = openClusters.get(key);
+        if (current != null && isPastQuarterPeriod(current, timeMillis)) {
+            //done growing current, the event starts a new cluster
+            complete(key, current);
+            current = null;
+        }
+        if (current == null) {
+            current = new OpenCluster(type, description, timeMillis);
+            openClusters.put(key, current);
+        }
+        current.add(timeMillis, hashHit, tagged);
+    }
+
+    /**
+     * @return true if the given time is more than a quarter period after the
+     *         end of the given cluster
+     */
+    private boolean isPastQuarterPeriod(OpenCluster cluster, long timeMillis) {
+        //TODO: 1/4 factor is arbitrary. review! -jm
+        return timeMillis - cluster.endMillis > timeUnitLength.toDurationFrom(new Instant(cluster.endMillis)).getMillis() / 4;
+    }
+
+    private void complete(ImmutablePair<EventType, String> key, OpenCluster cluster) {
+        EventCluster eventCluster = new EventCluster(new Interval(cluster.startMillis, cluster.endMillis, timeZone), cluster.type,
+                cluster.count, cluster.hashHitCount, cluster.taggedCount, cluster.description, lod);
+        newStripes.merge(key, new EventStripe(eventCluster, null), EventStripe::merge);
+    }
+
+    /**
+     * @return the stripes of the clusters completed since the last call,
+     *         sorted by start time. The clusters the scan has moved more than a
+     *         quarter period past are completed first, since no later event can
+     *         be added to them.
+     */
+    List<EventStripe> takeNewStripes() {
+        for (Iterator<Map.Entry<ImmutablePair<EventType, String>, OpenCluster>> iterator = openClusters.entrySet().iterator(); iterator.hasNext();) {
+            Map.Entry<ImmutablePair<EventType, String>, OpenCluster> entry = iterator.next();
+            if (isPastQuarterPeriod(entry.getValue(), scanMillis)) {
+                complete(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+        }
+        newStripes.forEach((key, stripe) -> stripes.merge(key, stripe, EventStripe::merge));
+        List<EventStripe> page = sortByStart(newStripes.values());
+        newStripes.clear();
+        return page;
+    }
+
+    /**
+     * complete all the remaining clusters
+     *
+     * @return the stripes of the clusters completed since the last call to
+     *         takeNewStripes(), sorted by start time
+     */
+    List<EventStripe> finish() {
+        openClusters.forEach(this::complete);
+        openClusters.clear();
+        return takeNewStripes();
+    }
+
+    /**
+     * @return all the stripes taken so far, sorted by start time
+     */
+    List<EventStripe> getStripes() {
+        return sortByStart(stripes.values());
+    }
+
+    private static List<EventStripe> sortByStart(Collection<EventStripe> stripes) {
+        return stripes.stream().sorted(Comparator.comparing(EventStripe::getStartMillis)).collect(Collectors.toList());
+    }
+
+    /**
+     * the counts and span of a cluster that may still grow
+     */
+    private static final class OpenCluster {
+
+        private final EventType type;
+        private final String description;
+        private final long startMillis;
+        private long endMillis;
+        private int count;
+        private int hashHitCount;
+        private int taggedCount;
+
+        private OpenCluster(EventType type, String description, long startMillis) {
+            this.type = type;
+            this.description = description;
+            this.startMillis = startMillis;
+            this.endMillis = startMillis;
+        }
+
+        private void add(long timeMillis, boolean hashHit, boolean tagged) {
+            endMillis = timeMillis;
+            count++;
+            if (hashHit) {
+                hashHitCount++;
+            }
+            if (tagged) {
+                taggedCount++;
+            }
+        }
+    }
+}
@@ -261,14 +261,16 @@ protected Boolean call() throws Exception {
             int chartMax = 0;
             int numIntervals = intervals.size();
             /*
-             * for each interval query database for event counts and add to
-             * chart.
+             * query database for the event counts of all the intervals at once,
+             * so they can be read from the count rollups in one query, then add
+             * them to the chart interval by interval.
              *
-             * Doing this in chunks might seem inefficient but it lets us reuse
-             * more cached results as the user navigates to overlapping viewws
+             * The counts are still cached per interval so we can reuse more
+             * cached results as the user navigates to overlapping viewws
              *
              * //TODO: implement similar chunked caching in DetailsView -jm
              */
+            List<Map<EventType, Long>> eventCountsByInterval = filteredEvents.getEventCounts(intervals);
             for (int i = 0; i < numIntervals; i++) {
                 if (isCancelled()) {
                     return null;
@@ -277,8 +279,7 @@ protected Boolean call() throws Exception {
                 final Interval interval = intervals.get(i);
                 int maxPerInterval = 0;
 
-                //query for current interval
-                Map<EventType, Long> eventCounts = filteredEvents.getEventCounts(interval);
+                Map<EventType, Long> eventCounts = eventCountsByInterval.get(i);
 
                 //for each type add data to graph
                 for (final EventType eventType : eventCounts.keySet()) {
@@ -19,7 +19,11 @@
 package org.sleuthkit.autopsy.timeline.ui.detailview;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
 import javafx.application.Platform;
 import javafx.beans.InvalidationListener;
 import javafx.beans.Observable;
@@ -59,6 +63,7 @@
 import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.controlsfx.control.action.Action;
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
@@ -69,6 +74,7 @@
 import org.sleuthkit.autopsy.timeline.datamodel.EventBundle;
 import org.sleuthkit.autopsy.timeline.datamodel.EventStripe;
 import org.sleuthkit.autopsy.timeline.datamodel.FilteredEventsModel;
+import org.sleuthkit.autopsy.timeline.datamodel.eventtype.EventType;
 import org.sleuthkit.autopsy.timeline.ui.AbstractVisualizationPane;
 import org.sleuthkit.autopsy.timeline.zooming.DescriptionLoD;
 
@@ -105,11 +111,11 @@ public ObservableList<EventStripe> getEventStripes() {
 
     @Override
     protected void resetData() {
-        for (XYChart.Series<DateTime, EventStripe> s : dataSeries) {
-            s.getData().forEach(chart::removeDataItem);
-            s.getData().clear();
-        }
         Platform.runLater(() -> {
+            //the series are only changed on the JFX thread, so read them there too
+            for (XYChart.Series<DateTime, EventStripe> s : dataSeries) {
+                new ArrayList<>(s.getData()).forEach(dataItem -> chart.removeDataItem(s, dataItem));
+            }
             vertScrollBar.setValue(0);
         });
 
@@ -395,6 +401,17 @@ public Action newHideDescriptionAction(String description, DescriptionLoD descri
         "DetailViewPane.loggedTask.prompt=You are about to show details for {0} events.  This might be very slow or even crash Autopsy.\n\nDo you want to continue?"})
     private class DetailsUpdateTask extends VisualizationUpdateTask<Interval> {
 
+        /**
+         * the number of stripes that can be shown without asking the user
+         * first
+         */
+        private static final int MAX_STRIPES_WITHOUT_PROMPT = 2000;
+
+        /**
+         * the data item of each stripe added so far, by type and description
+         */
+        private final Map<ImmutablePair<EventType, String>, XYChart.Data<DateTime, EventStripe>> dataItems = new HashMap<>();
+
         DetailsUpdateTask() {
             super(Bundle.DetailViewPane_loggedTask_name(), true);
         }
@@ -409,43 +426,93 @@ protected Boolean call() throws Exception {
             resetChart(getTimeRange());
 
             updateMessage(Bundle.DetailViewPane_loggedTask_queryDb());
-            List<EventStripe> eventStripes = filteredEvents.getEventStripes();
-            if (eventStripes.size() > 2000) {
-                Task<ButtonType> task = new Task<ButtonType>() {
-
-                    @Override
-                    protected ButtonType call() throws Exception {
-                        ButtonType ContinueButtonType = new ButtonType("Continue", ButtonBar.ButtonData.OK_DONE);
-                        ButtonType back = new ButtonType("Back (Cancel)", ButtonBar.ButtonData.CANCEL_CLOSE);
-
-                        Alert alert = new Alert(Alert.AlertType.WARNING, Bundle.DetailViewPane_loggedTask_prompt(eventStripes.size()), ContinueButtonType, back);
-                        alert.setHeaderText("");
-                        alert.initModality(Modality.APPLICATION_MODAL);
-                        alert.initOwner(getScene().getWindow());
-                        ButtonType orElse = alert.showAndWait().orElse(back);
-                        if (orElse == back) {
-                            DetailsUpdateTask.this.cancel();
-                        }
-                        return orElse;
-                    }
-                };
-                Platform.runLater(task);
-                ButtonType get = task.get();
+            //the stripes are shown page by page as they are read, instead of after all of them are read
+            filteredEvents.getEventStripes(this::addStripes);
+            if (isCancelled()) {
+                return null;
+            }
+            return dataItems.isEmpty() == false;
+        }
+
+        /**
+         * add a page of stripes to the chart, merging the stripes that
+         * continue stripes from earlier pages into them
+         *
+         * @param page the stripes to add
+         *
+         * @return false if the task was cancelled, true to keep loading
+         *         stripes
+         */
+        private boolean addStripes(List<EventStripe> page) {
+            if (isCancelled()) {
+                return false;
+            }
+            //stripes that continue stripes from earlier pages replace them, so they don't add to the count
+            final int size = dataItems.size() + (int) page.stream()
+                    .filter(stripe -> dataItems.containsKey(ImmutablePair.of(stripe.getEventType(), stripe.getDescription())) == false)
+                    .count();
+            if (dataItems.size() <= MAX_STRIPES_WITHOUT_PROMPT && size > MAX_STRIPES_WITHOUT_PROMPT
+                    && confirmLargeLoad(size) == false) {
+                return false;
             }
             updateMessage(Bundle.DetailViewPane_loggedTask_updateUI());
-            final int size = eventStripes.size();
-            for (int i = 0; i < size; i++) {
+            for (EventStripe stripe : page) {
                 if (isCancelled()) {
-                    return null;
+                    return false;
+                }
+                final ImmutablePair<EventType, String> key = ImmutablePair.of(stripe.getEventType(), stripe.getDescription());
+                final XYChart.Data<DateTime, EventStripe> oldDataItem = dataItems.get(key);
+                if (oldDataItem != null) {
+                    //replace the stripe from the earlier page with the merged stripe
+                    chart.removeDataItem(getSeries(stripe.getEventType()), oldDataItem);
+                    stripe = EventStripe.merge(oldDataItem.getYValue(), stripe);
                 }
-                updateProgress(i, size);
-                final EventStripe cluster = eventStripes.get(i);
-                final XYChart.Data<DateTime, EventStripe> dataItem = new XYChart.Data<>(new DateTime(cluster.getStartMillis()), cluster);
-                getSeries(cluster.getEventType()).getData().add(dataItem);
-                chart.addDataItem(dataItem);
+                final XYChart.Data<DateTime, EventStripe> dataItem = new XYChart.Data<>(new DateTime(stripe.getStartMillis()), stripe);
+                chart.addDataItem(getSeries(stripe.getEventType()), dataItem);
+                dataItems.put(key, dataItem);
             }
+            if (dataItems.isEmpty() == false) {
+                //clear masker pane, so the loaded stripes can be used while the rest load
+                Platform.runLater(() -> setCenter(chart));
+            }
+            return true;
+        }
 
-            return eventStripes.isEmpty() == false;
+        /**
+         * ask the user whether to continue showing a large number of stripes,
+         * and cancel this task if they don't
+         *
+         * @param size the number of stripes
+         *
+         * @return true to continue, false if the task was cancelled
+         */
+        private boolean confirmLargeLoad(int size) {
+            Task<ButtonType> task = new Task<ButtonType>() {
+
+                @Override
+                protected ButtonType call() throws Exception {
+                    ButtonType ContinueButtonType = new ButtonType("Continue", ButtonBar.ButtonData.OK_DONE);
+                    ButtonType back = new ButtonType("Back (Cancel)", ButtonBar.ButtonData.CANCEL_CLOSE);
+
+                    Alert alert = new Alert(Alert.AlertType.WARNING, Bundle.DetailViewPane_loggedTask_prompt(size), ContinueButtonType, back);
+                    alert.setHeaderText("");
+                    alert.initModality(Modality.APPLICATION_MODAL);
+                    alert.initOwner(getScene().getWindow());
+                    ButtonType orElse = alert.showAndWait().orElse(back);
+                    if (orElse == back) {
+                        DetailsUpdateTask.this.cancel();
+                    }
+                    return orElse;
+                }
+            };
+            Platform.runLater(task);
+            try {
+                task.get();
+            } catch (InterruptedException | ExecutionException ex) {
+                LOGGER.log(Level.SEVERE, "Failed to prompt to continue loading event stripes.", ex); // NON-NLS
+                cancel();
+            }
+            return isCancelled() == false;
         }
 
         @Override
@@ -19,6 +19,7 @@
 package org.sleuthkit.autopsy.timeline.ui.detailview;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -67,6 +68,7 @@
 import org.controlsfx.control.action.Action;
 import org.controlsfx.control.action.ActionUtils;
 import org.joda.time.DateTime;
+import org.joda.time.Interval;
 import org.openide.util.NbBundle;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.autopsy.coreutils.ThreadConfined;
@@ -75,6 +77,9 @@
 import org.sleuthkit.autopsy.timeline.datamodel.FilteredEventsModel;
 import org.sleuthkit.autopsy.timeline.datamodel.TimeLineEvent;
 import org.sleuthkit.autopsy.timeline.datamodel.eventtype.EventType;
+import org.sleuthkit.autopsy.timeline.filters.DescriptionFilter;
+import org.sleuthkit.autopsy.timeline.filters.RootFilter;
+import org.sleuthkit.autopsy.timeline.filters.TypeFilter;
 import org.sleuthkit.autopsy.timeline.ui.AbstractVisualizationPane;
 import static org.sleuthkit.autopsy.timeline.ui.detailview.EventBundleNodeBase.show;
 import org.sleuthkit.autopsy.timeline.zooming.DescriptionLoD;
@@ -145,10 +150,10 @@ public EventBundleNodeBase(EventDetailsChart chart, BundleType eventBundle, Pare
         defaultBackground = new Background(new BackgroundFill(evtColor.deriveColor(0, 1, 1, .1), CORNER_RADII_3, Insets.EMPTY));
         highlightedBackground = new Background(new BackgroundFill(evtColor.deriveColor(0, 1.1, 1.1, .3), CORNER_RADII_3, Insets.EMPTY));
         SELECTION_BORDER = new Border(new BorderStroke(evtColor.darker().desaturate(), BorderStrokeStyle.SOLID, CORNER_RADII_3, new BorderWidths(2)));
-        if (eventBundle.getEventIDsWithHashHits().isEmpty()) {
+        if (eventBundle.getHashHitCount() == 0) {
             show(hashIV, false);
         }
-        if (eventBundle.getEventIDsWithTags().isEmpty()) {
+        if (eventBundle.getTaggedCount() == 0) {
             show(tagIV, false);
         }
 
@@ -230,6 +235,7 @@ final double getLayoutXCompensation() {
     @ThreadConfined(type = ThreadConfined.ThreadType.JFX)
     private void installTooltip() {
         if (tooltip.getText().equalsIgnoreCase("loading...")) {
+            final RootFilter bundleFilter = getBundleFilter();
             final Task<String> tooltTipTask = new Task<String>() {
                 {
                     updateTitle("loading tooltip");
@@ -237,14 +243,22 @@ private void installTooltip() {
 
                 @Override
                 protected String call() throws Exception {
+                    //the bundle only has counts, so read its events if there are any hits or tags to list
+                    Set<TimeLineEvent> events = Collections.emptySet();
+                    if (eventBundle.getHashHitCount() > 0 || eventBundle.getTaggedCount() > 0) {
+                        events = eventsModel.getEventsById(getEventIDs(bundleFilter));
+                    }
+
                     HashMap<String, Long> hashSetCounts = new HashMap<>();
-                    if (eventBundle.getEventIDsWithHashHits().isEmpty() == false) {
+                    if (eventBundle.getHashHitCount() > 0) {
                         try {
                             //TODO:push this to DB
-                            for (TimeLineEvent tle : eventsModel.getEventsById(eventBundle.getEventIDsWithHashHits())) {
-                                Set<String> hashSetNames = sleuthkitCase.getAbstractFileById(tle.getFileID()).getHashSetNames();
-                                for (String hashSetName : hashSetNames) {
-                                    hashSetCounts.merge(hashSetName, 1L, Long::sum);
+                            for (TimeLineEvent tle : events) {
+                                if (tle.isHashHit()) {
+                                    Set<String> hashSetNames = sleuthkitCase.getAbstractFileById(tle.getFileID()).getHashSetNames();
+                                    for (String hashSetName : hashSetNames) {
+                                        hashSetCounts.merge(hashSetName, 1L, Long::sum);
+                                    }
                                 }
                             }
                         } catch (TskCoreException ex) {
@@ -256,14 +270,17 @@ protected String call() throws Exception {
                             .collect(Collectors.joining("\n"));
 
                     Map<String, Long> tagCounts = new HashMap<>();
-                    if (eventBundle.getEventIDsWithTags().isEmpty() == false) {
-                        tagCounts.putAll(eventsModel.getTagCountsByTagName(eventBundle.getEventIDsWithTags()));
+                    if (eventBundle.getTaggedCount() > 0) {
+                        tagCounts.putAll(eventsModel.getTagCountsByTagName(events.stream()
+                                .filter(TimeLineEvent::isTagged)
+                                .map(TimeLineEvent::getEventID)
+                                .collect(Collectors.toSet())));
                     }
                     String tagCountsString = tagCounts.entrySet().stream()
                             .map((Map.Entry<String, Long> t) -> t.getKey() + " : " + t.getValue())
                             .collect(Collectors.joining("\n"));
 
-                    return Bundle.EventBundleNodeBase_tooltip_text(getEventIDs().size(), getEventType(), getDescription(),
+                    return Bundle.EventBundleNodeBase_tooltip_text(eventBundle.getCount(), getEventType(), getDescription(),
                             TimeLineController.getZonedFormatter().print(getStartMillis()),
                             TimeLineController.getZonedFormatter().print(getEndMillis() + 1000))
                             + (hashSetCountsString.isEmpty() ? "" : "\n\nHash Set Hits\n" + hashSetCountsString)
@@ -336,8 +353,32 @@ final long getEndMillis() {
         return getEventBundle().getEndMillis();
     }
 
-    final Set<Long> getEventIDs() {
-        return getEventBundle().getEventIDs();
+    /**
+     * make a new filter intersecting the global filter with description and
+     * type filters to restrict the events to those of this node's bundle
+     */
+    @ThreadConfined(type = ThreadConfined.ThreadType.JFX)
+    RootFilter getBundleFilter() {
+        RootFilter bundleFilter = eventsModel.filterProperty().get().copyOf();
+        bundleFilter.getSubFilters().addAll(
+                new DescriptionFilter(getEventBundle().getDescriptionLoD(), getDescription(), DescriptionFilter.FilterMode.INCLUDE),
+                new TypeFilter(getEventType()));
+        return bundleFilter;
+    }
+
+    /**
+     * read the ids of the events of this node's bundle from the db. The
+     * bundles only hold counts of their events, so this should not be called
+     * on the JFX thread.
+     *
+     * @param bundleFilter the filter returned by getBundleFilter()
+     *
+     * @return the ids of the events in the span of the bundle that pass the
+     *         given filter
+     */
+    final Set<Long> getEventIDs(RootFilter bundleFilter) {
+        //extend the end by a second, since the query interval is open at the end
+        return eventsModel.getEventIDs(new Interval(getStartMillis(), getEndMillis() + 1000), bundleFilter);
     }
 
     @Override
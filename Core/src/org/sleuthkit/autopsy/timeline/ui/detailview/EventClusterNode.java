@@ -51,9 +51,7 @@
 import org.sleuthkit.autopsy.coreutils.ThreadConfined;
 import org.sleuthkit.autopsy.timeline.datamodel.EventCluster;
 import org.sleuthkit.autopsy.timeline.datamodel.EventStripe;
-import org.sleuthkit.autopsy.timeline.filters.DescriptionFilter;
 import org.sleuthkit.autopsy.timeline.filters.RootFilter;
-import org.sleuthkit.autopsy.timeline.filters.TypeFilter;
 import static org.sleuthkit.autopsy.timeline.ui.detailview.EventBundleNodeBase.configureLoDButton;
 import static org.sleuthkit.autopsy.timeline.ui.detailview.EventBundleNodeBase.show;
 import org.sleuthkit.autopsy.timeline.zooming.DescriptionLoD;
@@ -159,7 +157,7 @@ private synchronized void loadSubBundles(DescriptionLoD.RelativeDetail relativeD
          * because it is treated as an open interval but we want to include
          * events at exactly the time of the last event in this cluster
          */
-        final RootFilter subClusterFilter = getSubClusterFilter();
+        final RootFilter subClusterFilter = getBundleFilter();
         final Interval subClusterSpan = new Interval(getStartMillis(), getEndMillis() + 1000);
         final EventTypeZoomLevel eventTypeZoomLevel = eventsModel.eventTypeZoomProperty().get();
         final ZoomParams zoomParams = new ZoomParams(subClusterSpan, eventTypeZoomLevel, subClusterFilter, getDescriptionLoD());
@@ -236,19 +234,6 @@ protected void layoutChildren() {
         super.layoutChildren();
     }
 
-    /**
-     * make a new filter intersecting the global filter with description and
-     * type filters to restrict sub-clusters
-     *
-     */
-    RootFilter getSubClusterFilter() {
-        RootFilter subClusterFilter = eventsModel.filterProperty().get().copyOf();
-        subClusterFilter.getSubFilters().addAll(
-                new DescriptionFilter(getEventBundle().getDescriptionLoD(), getDescription(), DescriptionFilter.FilterMode.INCLUDE),
-                new TypeFilter(getEventType()));
-        return subClusterFilter;
-    }
-
     @Override
     Collection<? extends Action> getActions() {
         return Arrays.asList(new ExpandClusterAction(),
@@ -20,10 +20,12 @@
 
 import com.google.common.collect.Range;
 import com.google.common.collect.TreeRangeMap;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.Set;
@@ -63,6 +65,7 @@
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
 import org.openide.util.NbBundle;
+import org.sleuthkit.autopsy.coreutils.LoggedTask;
 import org.sleuthkit.autopsy.coreutils.ThreadConfined;
 import org.sleuthkit.autopsy.timeline.TimeLineController;
 import org.sleuthkit.autopsy.timeline.datamodel.EventCluster;
@@ -70,6 +73,7 @@
 import org.sleuthkit.autopsy.timeline.datamodel.FilteredEventsModel;
 import org.sleuthkit.autopsy.timeline.filters.AbstractFilter;
 import org.sleuthkit.autopsy.timeline.filters.DescriptionFilter;
+import org.sleuthkit.autopsy.timeline.filters.RootFilter;
 import org.sleuthkit.autopsy.timeline.ui.AbstractVisualizationPane;
 import org.sleuthkit.autopsy.timeline.ui.IntervalSelector;
 import org.sleuthkit.autopsy.timeline.ui.TimeLineChart;
@@ -88,9 +92,9 @@
  * node to contain each band if we need a place for per band controls.
  *
  * NOTE: It was too hard to control the threading of this chart via the
- * complicated default listeners. Instead clients should use null {@link #addDataItem(javafx.scene.chart.XYChart.Data)
- * } and {@link #removeDataItem(javafx.scene.chart.XYChart.Data) } to add and
- * remove data.
+ * complicated default listeners. Instead clients should use null {@link #addDataItem(javafx.scene.chart.XYChart.Series, javafx.scene.chart.XYChart.Data)
+ * } and {@link #removeDataItem(javafx.scene.chart.XYChart.Series, javafx.scene.chart.XYChart.Data) }
+ * to add and remove data, which also update the series on the JFX thread.
  *
  * //TODO: refactor the projected lines to a separate class. -jm
  */
@@ -382,18 +386,20 @@ protected void dataItemChanged(Data<DateTime, EventStripe> item) {
     }
 
     /**
-     * add a dataitem to this chart
+     * add a dataitem to this chart and the given series
      *
      * @see note in main section of class JavaDoc
      *
+     * @param series the series of the event type of the data item
      * @param data
      */
-    void addDataItem(Data<DateTime, EventStripe> data) {
+    void addDataItem(Series<DateTime, EventStripe> series, Data<DateTime, EventStripe> data) {
         final EventStripe eventStripe = data.getYValue();
 
         EventStripeNode stripeNode = new EventStripeNode(EventDetailsChart.this, eventStripe, null);
 
         Platform.runLater(() -> {
+            series.getData().add(data);
             eventStripes.add(eventStripe);
             stripeNodes.add(stripeNode);
             nodeGroup.getChildren().add(stripeNode);
@@ -402,14 +408,16 @@ void addDataItem(Data<DateTime, EventStripe> data) {
     }
 
     /**
-     * remove a data item from this chart
+     * remove a data item from this chart and the given series
      *
      * @see note in main section of class JavaDoc
      *
+     * @param series the series of the event type of the data item
      * @param data
      */
-    void removeDataItem(Data<DateTime, EventStripe> data) {
+    void removeDataItem(Series<DateTime, EventStripe> series, Data<DateTime, EventStripe> data) {
         Platform.runLater(() -> {
+            series.getData().remove(data);
             EventStripeNode removedNode = (EventStripeNode) data.getNode();
             eventStripes.removeAll(new StripeFlattener().apply(removedNode).collect(Collectors.toList()));
             stripeNodes.removeAll(removedNode);
@@ -690,6 +698,11 @@ private class SelectionChangeHandler implements ListChangeListener<EventBundleNo
 
         private final Axis<DateTime> dateAxis;
 
+        /**
+         * the task reading the ids of the events of the selected nodes, if any
+         */
+        private LoggedTask<List<Long>> loadSelectedIDsTask;
+
         SelectionChangeHandler() {
             dateAxis = getXAxis();
         }
@@ -719,9 +732,41 @@ public void onChanged(ListChangeListener.Change<? extends EventBundleNodeBase<?,
                     }
                 });
             }
-            EventDetailsChart.this.controller.selectEventIDs(selectedNodes.stream()
-                    .flatMap(detailNode -> detailNode.getEventIDs().stream())
-                    .collect(Collectors.toList()));
+            selectEventsOfSelectedNodes();
+        }
+
+        /**
+         * select the events of the selected nodes. The bundles of the nodes
+         * only hold counts of their events, so the ids are read from the db in
+         * the background, and a newer selection cancels the reading of an
+         * older one.
+         */
+        @ThreadConfined(type = ThreadConfined.ThreadType.JFX)
+        private void selectEventsOfSelectedNodes() {
+            if (loadSelectedIDsTask != null) {
+                loadSelectedIDsTask.cancel(true);
+            }
+            final List<EventBundleNodeBase<?, ?, ?>> nodes = new ArrayList<>(selectedNodes);
+            final List<RootFilter> bundleFilters = nodes.stream()
+                    .map(EventBundleNodeBase::getBundleFilter)
+                    .collect(Collectors.toList());
+            loadSelectedIDsTask = new LoggedTask<List<Long>>("Load Selected Event IDs", true) { // NON-NLS
+                @Override
+                protected List<Long> call() throws Exception {
+                    List<Long> eventIDs = new ArrayList<>();
+                    for (int i = 0; i < nodes.size() && isCancelled() == false; i++) {
+                        eventIDs.addAll(nodes.get(i).getEventIDs(bundleFilters.get(i)));
+                    }
+                    return eventIDs;
+                }
+
+                @Override
+                protected void succeeded() {
+                    super.succeeded();
+                    EventDetailsChart.this.controller.selectEventIDs(getValue());
+                }
+            };
+            EventDetailsChart.this.controller.monitorTask(loadSelectedIDsTask);
         }
     }
 
@@ -0,0 +1,74 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Tests the comparison of file ingest priorities and the path rules priority
+ * policy.
+ */
+public class FileIngestPriorityPoliciesTest {
+
+    private static int compare(long[] p1, long[] p2) {
+        return Integer.signum(FileIngestPriorityPolicies.compare(p1, p2));
+    }
+
+    @Test
+    public void higherPrioritiesComeFirst() {
+        assertEquals(-1, compare(new long[]{4}, new long[]{1}));
+        assertEquals(1, compare(new long[]{-100}, new long[]{-10}));
+        assertEquals(0, compare(new long[]{2}, new long[]{2}));
+    }
+
+    @Test
+    public void laterPoliciesBreakTheTiesOfEarlierPolicies() {
+        assertEquals(-1, compare(new long[]{3, 7}, new long[]{3, 5}));
+        assertEquals(1, compare(new long[]{2, 7}, new long[]{3, 5}));
+        assertEquals(0, compare(new long[]{3, 5}, new long[]{3, 5}));
+    }
+
+    @Test
+    public void extremePrioritiesDoNotOverflow() {
+        assertEquals(-1, compare(new long[]{Long.MAX_VALUE}, new long[]{Long.MIN_VALUE}));
+        assertEquals(1, compare(new long[]{Long.MIN_VALUE}, new long[]{Long.MAX_VALUE}));
+    }
+
+    @Test
+    public void pathRulesRankUserDocumentsHighestAndPageFilesLast() {
+        long documents = PathRulesPriorityPolicy.getPathPriority("/Users/alice/Documents/report.docx");
+        long userContent = PathRulesPriorityPolicy.getPathPriority("/Users/alice/AppData");
+        long programFiles = PathRulesPriorityPolicy.getPathPriority("/Program Files/app");
+        long windows = PathRulesPriorityPolicy.getPathPriority("/Windows/System32");
+        long pageFile = PathRulesPriorityPolicy.getPathPriority("/pagefile.sys");
+        assertEquals(-1, compare(new long[]{documents}, new long[]{userContent}));
+        assertEquals(-1, compare(new long[]{userContent}, new long[]{programFiles}));
+        assertEquals(-1, compare(new long[]{programFiles}, new long[]{windows}));
+        assertEquals(-1, compare(new long[]{windows}, new long[]{pageFile}));
+    }
+
+    @Test
+    public void pathRulesMatchWholePathComponents() {
+        long other = PathRulesPriorityPolicy.getPathPriority("/Data/files");
+        assertEquals(other, PathRulesPriorityPolicy.getPathPriority("/Usersettings"));
+        assertEquals(other, PathRulesPriorityPolicy.getPathPriority("/Windows.old"));
+        assertEquals(PathRulesPriorityPolicy.getPathPriority("/Users/alice/Documents"), PathRulesPriorityPolicy.getPathPriority("/home/bob/Desktop"));
+    }
+}
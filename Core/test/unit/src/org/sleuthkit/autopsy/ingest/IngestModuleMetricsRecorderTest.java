@@ -0,0 +1,177 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests the latency histogram and counters of the ingest module metrics
+ * recorder.
+ */
+public class IngestModuleMetricsRecorderTest {
+
+    /*
+     * The documented bound on the relative error of a percentile estimate.
+     */
+    private static final double MAX_RELATIVE_ERROR = 0.125;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private static IngestModuleMetrics metricsOf(IngestModuleMetricsRecorder recorder, String moduleDisplayName) {
+        for (IngestModuleMetrics metrics : recorder.getMetrics()) {
+            if (metrics.getModuleDisplayName().equals(moduleDisplayName)) {
+                return metrics;
+            }
+        }
+        throw new AssertionError("No metrics for " + moduleDisplayName);
+    }
+
+    private static void assertWithinError(long expectedNanos, double actualMillis) {
+        double actualNanos = actualMillis * NANOS_PER_MILLI;
+        assertTrue("expected about " + expectedNanos + " ns, was " + actualNanos + " ns",
+                Math.abs(actualNanos - expectedNanos) <= expectedNanos * MAX_RELATIVE_ERROR);
+    }
+
+    /**
+     * Gets the exact percentile of a sorted list of latencies, using the same
+     * nearest-rank definition as the recorder.
+     */
+    private static long exactPercentile(List<Long> sortedLatencies, double fraction) {
+        int rank = (int) Math.ceil(fraction * sortedLatencies.size());
+        return sortedLatencies.get(rank - 1);
+    }
+
+    @Test
+    public void percentilesOfUniformLatenciesAreWithinTheErrorBound() {
+        IngestModuleMetricsRecorder recorder = new IngestModuleMetricsRecorder();
+        for (long micros = 1; micros <= 1000; ++micros) {
+            recorder.record("module", micros * 1000, 0, false);
+        }
+        IngestModuleMetrics metrics = metricsOf(recorder, "module");
+        assertWithinError(500000, metrics.getMedianLatencyMillis());
+        assertWithinError(900000, metrics.getP90LatencyMillis());
+        assertWithinError(990000, metrics.getP99LatencyMillis());
+        assertEquals(1.0, metrics.getMaxLatencyMillis(), 0.0);
+    }
+
+    @Test
+    public void percentilesOfSkewedLatenciesAreWithinTheErrorBound() {
+        IngestModuleMetricsRecorder recorder = new IngestModuleMetricsRecorder();
+        Random random = new Random(42);
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < 10000; ++i) {
+            // Mostly fast invocations with a long tail, spanning several
+            // orders of magnitude.
+            long nanos = (long) (1000 * Math.exp(random.nextDouble() * 12));
+            latencies.add(nanos);
+            recorder.record("module", nanos, 0, false);
+        }
+        Collections.sort(latencies);
+        IngestModuleMetrics metrics = metricsOf(recorder, "module");
+        assertWithinError(exactPercentile(latencies, 0.5), metrics.getMedianLatencyMillis());
+        assertWithinError(exactPercentile(latencies, 0.9), metrics.getP90LatencyMillis());
+        assertWithinError(exactPercentile(latencies, 0.99), metrics.getP99LatencyMillis());
+        assertEquals(latencies.get(latencies.size() - 1) / NANOS_PER_MILLI, metrics.getMaxLatencyMillis(), 0.0);
+    }
+
+    @Test
+    public void smallLatenciesAreExact() {
+        IngestModuleMetricsRecorder recorder = new IngestModuleMetricsRecorder();
+        for (int i = 0; i < 10; ++i) {
+            recorder.record("module", 3, 0, false);
+        }
+        recorder.record("module", 15, 0, false);
+        IngestModuleMetrics metrics = metricsOf(recorder, "module");
+        assertEquals(3 / NANOS_PER_MILLI, metrics.getMedianLatencyMillis(), 0.0);
+        assertEquals(3 / NANOS_PER_MILLI, metrics.getP90LatencyMillis(), 0.0);
+        assertEquals(15 / NANOS_PER_MILLI, metrics.getP99LatencyMillis(), 0.0);
+    }
+
+    @Test
+    public void percentilesNeverExceedTheMaximum() {
+        IngestModuleMetricsRecorder recorder = new IngestModuleMetricsRecorder();
+        // The low end of a bucket, whose midpoint is above it.
+        recorder.record("module", 1024, 0, false);
+        IngestModuleMetrics metrics = metricsOf(recorder, "module");
+        assertEquals(1024 / NANOS_PER_MILLI, metrics.getMaxLatencyMillis(), 0.0);
+        assertEquals(1024 / NANOS_PER_MILLI, metrics.getMedianLatencyMillis(), 0.0);
+        assertEquals(1024 / NANOS_PER_MILLI, metrics.getP99LatencyMillis(), 0.0);
+    }
+
+    @Test
+    public void veryLongAndNegativeLatenciesAreRecorded() {
+        IngestModuleMetricsRecorder recorder = new IngestModuleMetricsRecorder();
+        recorder.record("module", Long.MAX_VALUE, 0, false);
+        recorder.record("module", -5, -5, false);
+        IngestModuleMetrics metrics = metricsOf(recorder, "module");
+        assertEquals(2, metrics.getInvocationCount());
+        assertEquals(0, metrics.getBytesProcessed());
+        assertEquals(Long.MAX_VALUE / NANOS_PER_MILLI, metrics.getMaxLatencyMillis(), 0.0);
+        assertEquals(0.0, metrics.getMedianLatencyMillis(), 0.0);
+    }
+
+    @Test
+    public void countersAreKeptPerModuleAndSortedByTotalTime() {
+        IngestModuleMetricsRecorder recorder = new IngestModuleMetricsRecorder();
+        recorder.record("fast", 1000000, 100, false);
+        recorder.record("fast", 1000000, 300, true);
+        recorder.record("slow", 50000000, 1000, false);
+        List<IngestModuleMetrics> metrics = recorder.getMetrics();
+        assertEquals(2, metrics.size());
+        assertEquals("slow", metrics.get(0).getModuleDisplayName());
+        assertEquals("fast", metrics.get(1).getModuleDisplayName());
+
+        IngestModuleMetrics fast = metrics.get(1);
+        assertEquals(2, fast.getInvocationCount());
+        assertEquals(1, fast.getErrorCount());
+        assertEquals(400, fast.getBytesProcessed());
+        assertEquals(2, fast.getTotalTimeMillis());
+        assertEquals(1.0, fast.getMeanLatencyMillis(), 1e-9);
+        assertEquals(200000.0, fast.getThroughputBytesPerSecond(), 1e-6);
+    }
+
+    @Test
+    public void concurrentRecordingLosesNoInvocations() throws Exception {
+        final int numThreads = 4;
+        final int invocationsPerThread = 25000;
+        IngestModuleMetricsRecorder recorder = new IngestModuleMetricsRecorder();
+        ExecutorService threads = Executors.newFixedThreadPool(numThreads);
+        for (int t = 0; t < numThreads; ++t) {
+            threads.execute(() -> {
+                for (int i = 0; i < invocationsPerThread; ++i) {
+                    recorder.record("module", 1000, 1, false);
+                }
+            });
+        }
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(30, TimeUnit.SECONDS));
+        IngestModuleMetrics metrics = metricsOf(recorder, "module");
+        assertEquals(numThreads * invocationsPerThread, metrics.getInvocationCount());
+        assertEquals(numThreads * invocationsPerThread, metrics.getBytesProcessed());
+        assertWithinError(1000, metrics.getMedianLatencyMillis());
+    }
+}
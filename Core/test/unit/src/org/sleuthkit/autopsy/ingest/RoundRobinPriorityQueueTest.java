@@ -0,0 +1,119 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the per job priority queues used to schedule directory tasks.
+ */
+public class RoundRobinPriorityQueueTest {
+
+    /**
+     * A task of an ingest job with a priority under the policies of the job.
+     */
+    private static final class Task {
+
+        private final long jobId;
+        private final String name;
+        private final long[] priority;
+
+        Task(long jobId, String name, long... priority) {
+            this.jobId = jobId;
+            this.name = name;
+            this.priority = priority;
+        }
+    }
+
+    private RoundRobinPriorityQueue<Task> queue;
+
+    @Before
+    public void setUp() {
+        queue = new RoundRobinPriorityQueue<>((Task task) -> task.jobId, (Task t1, Task t2) -> FileIngestPriorityPolicies.compare(t1.priority, t2.priority));
+    }
+
+    private List<String> pollAll() {
+        List<String> names = new ArrayList<>();
+        for (Task task = queue.poll(); null != task; task = queue.poll()) {
+            names.add(task.name);
+        }
+        return names;
+    }
+
+    @Test
+    public void tasksOfAJobAreTakenInPriorityOrder() {
+        queue.addAll(Arrays.asList(new Task(1, "low", 1), new Task(1, "highest", 4), new Task(1, "medium", 2)));
+        assertEquals(Arrays.asList("highest", "medium", "low"), pollAll());
+    }
+
+    @Test
+    public void jobsTakeTurnsWhateverTheirPriorities() {
+        // The first job uses a policy with much larger priority values than
+        // the second, e.g. modification times versus path rules, so its tasks
+        // would always come first if the priorities were compared.
+        queue.add(new Task(1, "a1", 1400000000L));
+        queue.add(new Task(1, "a2", 1300000000L));
+        queue.add(new Task(1, "a3", 1200000000L));
+        queue.add(new Task(2, "b1", 4));
+        queue.add(new Task(2, "b2", 3));
+        assertEquals(Arrays.asList("a1", "b1", "a2", "b2", "a3"), pollAll());
+    }
+
+    @Test
+    public void jobThatRunsOutOfTasksGoesToTheBackOfTheLine() {
+        queue.add(new Task(1, "a1", 1));
+        queue.add(new Task(2, "b1", 1));
+        assertEquals("a1", queue.poll().name);
+        queue.add(new Task(1, "a2", 1));
+        queue.add(new Task(3, "c1", 1));
+        assertEquals(Arrays.asList("b1", "a2", "c1"), pollAll());
+    }
+
+    @Test
+    public void pollingAJobDoesNotChangeTheTurns() {
+        queue.add(new Task(1, "a1", 2));
+        queue.add(new Task(1, "a2", 1));
+        queue.add(new Task(2, "b1", 1));
+        assertEquals("a1", queue.poll(1).name);
+        assertNull(queue.poll(3));
+        assertEquals(Arrays.asList("a2", "b1"), pollAll());
+        assertNull(queue.poll(1));
+    }
+
+    @Test
+    public void removeAllRemovesOnlyTheTasksOfTheJob() {
+        queue.add(new Task(1, "a1", 1));
+        queue.add(new Task(1, "a2", 2));
+        queue.add(new Task(2, "b1", 1));
+        List<String> removed = new ArrayList<>();
+        queue.removeAll(1, (Task task) -> removed.add(task.name));
+        Collections.sort(removed);
+        assertEquals(Arrays.asList("a1", "a2"), removed);
+        assertEquals(0, queue.count(1));
+        assertEquals(1, queue.count(2));
+        assertEquals(Collections.singletonList("b1"), pollAll());
+    }
+}
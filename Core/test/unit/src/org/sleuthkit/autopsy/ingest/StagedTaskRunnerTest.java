@@ -0,0 +1,295 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests the staged task runner used by the staged file ingest pipeline.
+ */
+public class StagedTaskRunnerTest {
+
+    private static final int NUM_TASKS = 500;
+    private static final ExecutorService POOL = Executors.newCachedThreadPool();
+
+    /**
+     * A task that records the stages it went through.
+     */
+    private static final class Task {
+
+        private final int id;
+        private final List<String> stages = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean cancelled;
+
+        Task(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * A stage worker that records the threads it ran on.
+     */
+    private static final class RecordingWorker implements Consumer<Task> {
+
+        private final String stageName;
+        private final Set<Thread> threads;
+
+        RecordingWorker(String stageName, Set<Thread> threads) {
+            this.stageName = stageName;
+            this.threads = threads;
+        }
+
+        @Override
+        public void accept(Task task) {
+            this.threads.add(Thread.currentThread());
+            task.stages.add(this.stageName);
+        }
+    }
+
+    private static List<RecordingWorker> workers(String stageName, int count, Set<Thread> threads) {
+        List<RecordingWorker> workers = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            workers.add(new RecordingWorker(stageName, threads));
+        }
+        return workers;
+    }
+
+    @Test
+    public void everyTaskGoesThroughEveryStageInOrderAndIsCompletedOnce() throws Exception {
+        Set<Thread> workerThreads = ConcurrentHashMap.newKeySet();
+        Set<Thread> completionThreads = ConcurrentHashMap.newKeySet();
+        ConcurrentHashMap<Integer, Integer> completions = new ConcurrentHashMap<>();
+        CountDownLatch allDone = new CountDownLatch(NUM_TASKS);
+        List<Task> tasks = new ArrayList<>();
+        StagedTaskRunner<Task> runner = new StagedTaskRunner<>("test-stage", 2, POOL, (Task task) -> false, (Task task) -> {
+            completionThreads.add(Thread.currentThread());
+            completions.merge(task.id, 1, Integer::sum);
+            allDone.countDown();
+        });
+        runner.addStage(workers("first", 3, workerThreads));
+        runner.addStage(workers("second", 1, workerThreads));
+        runner.addStage(workers("third", 2, workerThreads));
+        runner.start();
+        for (int i = 0; i < NUM_TASKS; ++i) {
+            Task task = new Task(i);
+            tasks.add(task);
+            runner.put(task);
+        }
+        assertTrue(allDone.await(30, TimeUnit.SECONDS));
+        runner.stop();
+
+        assertEquals(NUM_TASKS, completions.size());
+        for (Integer count : completions.values()) {
+            assertEquals(1, count.intValue());
+        }
+        for (Task task : tasks) {
+            assertEquals(Arrays.asList("first", "second", "third"), task.stages);
+        }
+        assertEquals(1, completionThreads.size());
+        for (Thread thread : completionThreads) {
+            assertFalse(workerThreads.contains(thread));
+        }
+    }
+
+    @Test
+    public void stopFromCompletionHandlerDoesNotInterruptTheCaller() throws Exception {
+        AtomicInteger completed = new AtomicInteger();
+        AtomicReference<StagedTaskRunner<Task>> runnerRef = new AtomicReference<>();
+        AtomicBoolean interruptedAfterStop = new AtomicBoolean(true);
+        AtomicReference<Throwable> errorAfterStop = new AtomicReference<>();
+        CountDownLatch stopped = new CountDownLatch(1);
+        Set<Thread> workerThreads = ConcurrentHashMap.newKeySet();
+        StagedTaskRunner<Task> runner = new StagedTaskRunner<>("test-stage", 2, POOL, (Task task) -> false, (Task task) -> {
+            if (completed.incrementAndGet() == NUM_TASKS) {
+                // The last task to complete shuts the runner down and then
+                // carries on with blocking work, as an ingest job does when
+                // it starts its second stage.
+                runnerRef.get().stop();
+                interruptedAfterStop.set(Thread.currentThread().isInterrupted());
+                try {
+                    BlockingQueue<Task> nextStageQueue = new ArrayBlockingQueue<>(1);
+                    nextStageQueue.put(task);
+                    Thread.sleep(10);
+                } catch (InterruptedException ex) {
+                    errorAfterStop.set(ex);
+                }
+                stopped.countDown();
+            }
+        });
+        runnerRef.set(runner);
+        runner.addStage(workers("first", 2, workerThreads));
+        runner.addStage(workers("second", 2, workerThreads));
+        runner.start();
+        for (int i = 0; i < NUM_TASKS; ++i) {
+            runner.put(new Task(i));
+        }
+
+        assertTrue(stopped.await(30, TimeUnit.SECONDS));
+        assertFalse(interruptedAfterStop.get());
+        assertNull(errorAfterStop.get());
+        assertEquals(NUM_TASKS, completed.get());
+        assertFalse(workerThreads.isEmpty());
+    }
+
+    @Test
+    public void cancelledTasksSkipTheRemainingStages() throws Exception {
+        CountDownLatch allDone = new CountDownLatch(NUM_TASKS);
+        Set<Thread> workerThreads = ConcurrentHashMap.newKeySet();
+        List<Task> tasks = new ArrayList<>();
+        StagedTaskRunner<Task> runner = new StagedTaskRunner<>("test-stage", 2, POOL, (Task task) -> task.cancelled, (Task task) -> allDone.countDown());
+        runner.addStage(Collections.singletonList((Task task) -> {
+            task.stages.add("first");
+            task.cancelled = (task.id % 2 == 0);
+        }));
+        runner.addStage(workers("second", 1, workerThreads));
+        runner.start();
+        for (int i = 0; i < NUM_TASKS; ++i) {
+            Task task = new Task(i);
+            tasks.add(task);
+            runner.put(task);
+        }
+        assertTrue(allDone.await(30, TimeUnit.SECONDS));
+        runner.stop();
+
+        for (Task task : tasks) {
+            if (task.cancelled) {
+                assertEquals(Collections.singletonList("first"), task.stages);
+            } else {
+                assertEquals(Arrays.asList("first", "second"), task.stages);
+            }
+        }
+    }
+
+    @Test
+    public void stopCompletesTasksThatAreStillQueued() throws Exception {
+        CountDownLatch blockFirstStage = new CountDownLatch(1);
+        CountDownLatch firstTaskStarted = new CountDownLatch(1);
+        ConcurrentHashMap<Integer, Integer> completions = new ConcurrentHashMap<>();
+        StagedTaskRunner<Task> runner = new StagedTaskRunner<>("test-stage", 4, POOL, (Task task) -> false, (Task task) -> completions.merge(task.id, 1, Integer::sum));
+        runner.addStage(Collections.singletonList((Task task) -> {
+            firstTaskStarted.countDown();
+            try {
+                blockFirstStage.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        runner.start();
+        for (int i = 0; i < 3; ++i) {
+            runner.put(new Task(i));
+        }
+        assertTrue(firstTaskStarted.await(10, TimeUnit.SECONDS));
+        runner.stop();
+
+        assertEquals(3, completions.size());
+        for (Integer count : completions.values()) {
+            assertEquals(1, count.intValue());
+        }
+        assertNotNull(completions.get(0));
+    }
+
+    @Test
+    public void runnersShareACappedPoolWithoutDeadlock() throws Exception {
+        final int poolSize = 2;
+        ExecutorService cappedPool = Executors.newFixedThreadPool(poolSize);
+        Set<Thread> workerThreads = ConcurrentHashMap.newKeySet();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch allDone = new CountDownLatch(2 * NUM_TASKS);
+        List<StagedTaskRunner<Task>> runners = new ArrayList<>();
+        try {
+            for (int r = 0; r < 2; ++r) {
+                StagedTaskRunner<Task> runner = new StagedTaskRunner<>("test-stage", 1, cappedPool, (Task task) -> false, (Task task) -> allDone.countDown());
+                for (int stage = 0; stage < 3; ++stage) {
+                    List<Consumer<Task>> stageWorkers = new ArrayList<>();
+                    for (int w = 0; w < 3; ++w) {
+                        stageWorkers.add((Task task) -> {
+                            workerThreads.add(Thread.currentThread());
+                            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                            running.decrementAndGet();
+                        });
+                    }
+                    runner.addStage(stageWorkers);
+                }
+                runner.start();
+                runners.add(runner);
+            }
+            for (int i = 0; i < NUM_TASKS; ++i) {
+                for (StagedTaskRunner<Task> runner : runners) {
+                    runner.put(new Task(i));
+                }
+            }
+            assertTrue(allDone.await(30, TimeUnit.SECONDS));
+            for (StagedTaskRunner<Task> runner : runners) {
+                runner.stop();
+            }
+        } finally {
+            cappedPool.shutdownNow();
+        }
+        assertTrue(workerThreads.size() <= poolSize);
+        assertTrue(maxRunning.get() <= poolSize);
+    }
+
+    @Test
+    public void addedWorkersTakeTasksAndRetiredWorkersStop() throws Exception {
+        Set<Thread> workerThreads = ConcurrentHashMap.newKeySet();
+        CountDownLatch allDone = new CountDownLatch(NUM_TASKS);
+        List<Task> tasks = new ArrayList<>();
+        StagedTaskRunner<Task> runner = new StagedTaskRunner<>("test-stage", 2, POOL, (Task task) -> false, (Task task) -> allDone.countDown());
+        RecordingWorker initial = new RecordingWorker("initial", workerThreads);
+        runner.addStage(Collections.singletonList(initial));
+        runner.start();
+
+        runner.addWorker(0, new RecordingWorker("added", workerThreads));
+        runner.addWorker(0, new RecordingWorker("added", workerThreads));
+        runner.retireWorker(0, initial).get(10, TimeUnit.SECONDS);
+        for (int i = 0; i < NUM_TASKS; ++i) {
+            Task task = new Task(i);
+            tasks.add(task);
+            runner.put(task);
+        }
+        assertTrue(allDone.await(30, TimeUnit.SECONDS));
+        runner.stop();
+
+        for (Task task : tasks) {
+            assertEquals(Collections.singletonList("added"), task.stages);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the work stealing task deques used to schedule file ingest tasks.
+ */
+public class WorkStealingTaskDequesTest {
+
+    private static final WorkStealingTaskDeques.TaskSource<String> NO_TASKS = (Deque<String> ownTasks) -> false;
+    private WorkStealingTaskDeques<String> deques;
+    private ExecutorService workers;
+
+    @Before
+    public void setUp() {
+        deques = new WorkStealingTaskDeques<>();
+        workers = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        workers.shutdownNow();
+    }
+
+    @Test
+    public void workerTakesItsOwnTasksLastInFirstOut() throws Exception {
+        Future<List<String>> taken = workers.submit(() -> {
+            deques.push("first"); // from a thread that is not yet a worker
+            List<String> tasks = new ArrayList<>();
+            tasks.add(deques.take(NO_TASKS));
+            deques.push("a");
+            deques.push("b");
+            deques.push("c");
+            for (int i = 0; i < 3; ++i) {
+                tasks.add(deques.take(NO_TASKS));
+            }
+            return tasks;
+        });
+        assertEquals(Arrays.asList("first", "c", "b", "a"), taken.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void taskSourceIsOnlyAskedWhenTheDequesAreEmpty() throws Exception {
+        AtomicInteger sourceCalls = new AtomicInteger();
+        WorkStealingTaskDeques.TaskSource<String> source = (Deque<String> ownTasks) -> {
+            if (sourceCalls.incrementAndGet() == 1) {
+                ownTasks.addFirst("from source");
+                return true;
+            }
+            return false;
+        };
+        deques.push("shared");
+        Future<List<String>> taken = workers.submit(() -> {
+            List<String> tasks = new ArrayList<>();
+            tasks.add(deques.take(source));
+            tasks.add(deques.take(source));
+            return tasks;
+        });
+        assertEquals(Arrays.asList("shared", "from source"), taken.get(10, TimeUnit.SECONDS));
+        assertEquals(1, sourceCalls.get());
+    }
+
+    @Test
+    public void idleWorkerStealsOldestTaskOfAnotherWorker() throws Exception {
+        CountDownLatch victimLoaded = new CountDownLatch(1);
+        CountDownLatch thiefDone = new CountDownLatch(1);
+        Future<String> victim = workers.submit(() -> {
+            // Register as a worker by taking a task, then fill the own deque.
+            deques.push("registration");
+            deques.take(NO_TASKS);
+            deques.push("oldest");
+            deques.push("middle");
+            deques.push("newest");
+            victimLoaded.countDown();
+            thiefDone.await(10, TimeUnit.SECONDS);
+            return deques.take(NO_TASKS);
+        });
+        assertTrue(victimLoaded.await(10, TimeUnit.SECONDS));
+        Future<String> thief = workers.submit(() -> deques.take(NO_TASKS));
+        assertEquals("oldest", thief.get(10, TimeUnit.SECONDS));
+        thiefDone.countDown();
+        assertEquals("newest", victim.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void blockedWorkerIsWokenByPush() throws Exception {
+        Future<String> taken = workers.submit(() -> deques.take(NO_TASKS));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (deques.getIdleWorkerCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, deques.getIdleWorkerCount());
+        deques.push("task");
+        assertEquals("task", taken.get(10, TimeUnit.SECONDS));
+        assertEquals(0, deques.getIdleWorkerCount());
+    }
+
+    @Test
+    public void releasedWorkerHandsItsTasksToTheOtherWorkers() throws Exception {
+        workers.submit(() -> {
+            deques.push("registration");
+            deques.take(NO_TASKS);
+            deques.push("a");
+            deques.push("b");
+            deques.releaseWorker();
+            return null;
+        }).get(10, TimeUnit.SECONDS);
+        assertEquals(2, deques.count((String task) -> true));
+        Future<List<String>> taken = workers.submit(() -> {
+            List<String> tasks = new ArrayList<>();
+            tasks.add(deques.take(NO_TASKS));
+            tasks.add(deques.take(NO_TASKS));
+            return tasks;
+        });
+        // The released tasks keep their order.
+        assertEquals(Arrays.asList("b", "a"), taken.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void removeIfRemovesMatchingTasksFromAllDeques() throws Exception {
+        workers.submit(() -> {
+            deques.push("registration");
+            deques.take(NO_TASKS);
+            deques.push("job1-worker");
+            deques.push("job2-worker");
+            return null;
+        }).get(10, TimeUnit.SECONDS);
+        deques.push("job1-shared");
+        deques.push("job2-shared");
+        List<String> removed = new ArrayList<>();
+        deques.removeIf((String task) -> task.startsWith("job1"), removed::add);
+        Collections.sort(removed);
+        assertEquals(Arrays.asList("job1-shared", "job1-worker"), removed);
+        assertEquals(0, deques.count((String task) -> task.startsWith("job1")));
+        assertEquals(2, deques.count((String task) -> task.startsWith("job2")));
+    }
+
+    @Test
+    public void everyTaskIsTakenExactlyOnceByConcurrentWorkers() throws Exception {
+        final int numWorkers = 4;
+        final int numTasks = 10000;
+        for (int i = 0; i < numTasks; ++i) {
+            deques.push(Integer.toString(i));
+        }
+        ConcurrentHashMap<String, Integer> takenCounts = new ConcurrentHashMap<>();
+        AtomicInteger remaining = new AtomicInteger(numTasks);
+        CountDownLatch allTaken = new CountDownLatch(1);
+        for (int w = 0; w < numWorkers; ++w) {
+            workers.submit(() -> {
+                while (true) {
+                    String task = deques.take(NO_TASKS);
+                    takenCounts.merge(task, 1, Integer::sum);
+                    // Workers also produce tasks that have to be stolen.
+                    if (!task.startsWith("child") && Integer.parseInt(task) % 10 == 0) {
+                        remaining.incrementAndGet();
+                        deques.push("child" + task);
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        allTaken.countDown();
+                    }
+                }
+            });
+        }
+        assertTrue(allTaken.await(30, TimeUnit.SECONDS));
+        assertEquals(numTasks + numTasks / 10, takenCounts.size());
+        for (Integer count : takenCounts.values()) {
+            assertEquals(1, count.intValue());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.timeline.db;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.joda.time.Chronology;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.joda.time.chrono.ISOChronology;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+import org.sleuthkit.autopsy.timeline.zooming.TimeUnits;
+
+/**
+ * Tests the bucket math of the event count rollups.
+ */
+public class RollupBucketsTest {
+
+    private static final DateTimeZone NEW_YORK = DateTimeZone.forID("America/New_York");
+    private static final DateTimeZone KOLKATA = DateTimeZone.forID("Asia/Kolkata");
+
+    private static long bucketStart(DateTimeZone zone, TimeUnits unit, DateTime time) {
+        return RollupBuckets.getBucketStart(ISOChronology.getInstance(zone), unit, time.getMillis());
+    }
+
+    private static long seconds(DateTime time) {
+        return time.getMillis() / 1000;
+    }
+
+    @Test
+    public void bucketsStartAtTheStartOfTheirUnit() {
+        DateTime time = new DateTime(2015, 7, 14, 13, 45, 12, 345, DateTimeZone.UTC);
+        assertEquals(seconds(new DateTime(2015, 1, 1, 0, 0, DateTimeZone.UTC)), bucketStart(DateTimeZone.UTC, TimeUnits.YEARS, time));
+        assertEquals(seconds(new DateTime(2015, 7, 1, 0, 0, DateTimeZone.UTC)), bucketStart(DateTimeZone.UTC, TimeUnits.MONTHS, time));
+        assertEquals(seconds(new DateTime(2015, 7, 14, 0, 0, DateTimeZone.UTC)), bucketStart(DateTimeZone.UTC, TimeUnits.DAYS, time));
+        assertEquals(seconds(new DateTime(2015, 7, 14, 13, 0, DateTimeZone.UTC)), bucketStart(DateTimeZone.UTC, TimeUnits.HOURS, time));
+    }
+
+    @Test
+    public void bucketStartIsItsOwnBucketStart() {
+        DateTime start = new DateTime(2016, 2, 1, 0, 0, DateTimeZone.UTC);
+        assertEquals(seconds(start), bucketStart(DateTimeZone.UTC, TimeUnits.MONTHS, start));
+        assertEquals(seconds(new DateTime(2016, 1, 1, 0, 0, DateTimeZone.UTC)), bucketStart(DateTimeZone.UTC, TimeUnits.MONTHS, start.minusMillis(1)));
+    }
+
+    @Test
+    public void timesBeforeTheEpochRoundDown() {
+        DateTime time = new DateTime(1969, 12, 31, 23, 59, 59, 999, DateTimeZone.UTC);
+        assertEquals(seconds(new DateTime(1969, 1, 1, 0, 0, DateTimeZone.UTC)), bucketStart(DateTimeZone.UTC, TimeUnits.YEARS, time));
+        assertEquals(seconds(new DateTime(1969, 12, 31, 23, 0, DateTimeZone.UTC)), bucketStart(DateTimeZone.UTC, TimeUnits.HOURS, time));
+    }
+
+    @Test
+    public void bucketsFollowTheLocalCalendarOfTheTimeZone() {
+        // 02:30 UTC on Jan 1 is still Dec 31 in New York, and 08:00 in Kolkata
+        DateTime time = new DateTime(2016, 1, 1, 2, 30, DateTimeZone.UTC);
+        assertEquals(seconds(new DateTime(2015, 1, 1, 0, 0, NEW_YORK)), bucketStart(NEW_YORK, TimeUnits.YEARS, time));
+        assertEquals(seconds(new DateTime(2015, 12, 31, 0, 0, NEW_YORK)), bucketStart(NEW_YORK, TimeUnits.DAYS, time));
+        // hour buckets of a zone with a half hour offset start on the half hour in UTC
+        assertEquals(seconds(new DateTime(2016, 1, 1, 8, 0, KOLKATA)), bucketStart(KOLKATA, TimeUnits.HOURS, time));
+        assertEquals(seconds(new DateTime(2016, 1, 1, 2, 30, DateTimeZone.UTC)), bucketStart(KOLKATA, TimeUnits.HOURS, time));
+    }
+
+    @Test
+    public void daylightSavingTimeChangesDoNotShiftBuckets() {
+        // New York falls back from 02:00 EDT to 01:00 EST on Nov 1 2015, so
+        // the two 01:xx hours are separate buckets and the day is 25 hours
+        DateTime firstOneAM = new DateTime(2015, 11, 1, 5, 30, DateTimeZone.UTC);
+        DateTime secondOneAM = new DateTime(2015, 11, 1, 6, 30, DateTimeZone.UTC);
+        assertEquals(seconds(firstOneAM) - 30 * 60, bucketStart(NEW_YORK, TimeUnits.HOURS, firstOneAM));
+        assertEquals(seconds(secondOneAM) - 30 * 60, bucketStart(NEW_YORK, TimeUnits.HOURS, secondOneAM));
+        long dayStart = seconds(new DateTime(2015, 11, 1, 0, 0, NEW_YORK));
+        assertEquals(dayStart, bucketStart(NEW_YORK, TimeUnits.DAYS, firstOneAM));
+        assertEquals(dayStart, bucketStart(NEW_YORK, TimeUnits.DAYS, secondOneAM));
+        assertEquals(dayStart, bucketStart(NEW_YORK, TimeUnits.DAYS, new DateTime(2015, 11, 1, 23, 59, NEW_YORK)));
+    }
+
+    private static TimeUnits rollupUnit(DateTimeZone zone, Interval... intervals) {
+        return RollupBuckets.getRollupUnit(ISOChronology.getInstance(zone), Arrays.asList(intervals));
+    }
+
+    private static Interval interval(DateTime start, DateTime end) {
+        return new Interval(start, end);
+    }
+
+    @Test
+    public void coarsestAlignedUnitIsChosen() {
+        DateTime year = new DateTime(2014, 1, 1, 0, 0, DateTimeZone.UTC);
+        assertEquals(TimeUnits.YEARS, rollupUnit(DateTimeZone.UTC, interval(year, year.plusYears(1)), interval(year.plusYears(1), year.plusYears(3))));
+        assertEquals(TimeUnits.MONTHS, rollupUnit(DateTimeZone.UTC, interval(year.plusMonths(1), year.plusMonths(2))));
+        assertEquals(TimeUnits.DAYS, rollupUnit(DateTimeZone.UTC, interval(year.plusDays(1), year.plusDays(2))));
+        assertEquals(TimeUnits.HOURS, rollupUnit(DateTimeZone.UTC, interval(year.plusHours(1), year.plusHours(2))));
+    }
+
+    @Test
+    public void theLeastAlignedIntervalDecidesTheUnit() {
+        DateTime year = new DateTime(2014, 1, 1, 0, 0, DateTimeZone.UTC);
+        assertEquals(TimeUnits.DAYS, rollupUnit(DateTimeZone.UTC, interval(year, year.plusYears(1)), interval(year.plusYears(1), year.plusYears(1).plusDays(3))));
+        assertEquals(TimeUnits.HOURS, rollupUnit(DateTimeZone.UTC, interval(year, year.plusMonths(1)), interval(year.plusMonths(1), year.plusMonths(1).plusHours(5))));
+    }
+
+    @Test
+    public void unalignedOrEmptyIntervalsHaveNoUnit() {
+        DateTime day = new DateTime(2014, 3, 5, 0, 0, DateTimeZone.UTC);
+        assertNull(rollupUnit(DateTimeZone.UTC, interval(day, day.plusMinutes(90))));
+        assertNull(rollupUnit(DateTimeZone.UTC, interval(day.plusSeconds(1), day.plusDays(1))));
+        assertNull(rollupUnit(DateTimeZone.UTC, interval(day, day)));
+        assertNull(RollupBuckets.getRollupUnit(ISOChronology.getInstance(DateTimeZone.UTC), Collections.<Interval>emptyList()));
+    }
+
+    @Test
+    public void alignmentIsCheckedInTheTimeZoneOfTheRollups() {
+        Chronology newYork = ISOChronology.getInstance(NEW_YORK);
+        DateTime utcDay = new DateTime(2014, 3, 5, 0, 0, DateTimeZone.UTC);
+        // a UTC day is not made of New York days, but is made of New York hours
+        assertEquals(TimeUnits.HOURS, RollupBuckets.getRollupUnit(newYork, Arrays.asList(interval(utcDay, utcDay.plusDays(1)))));
+        DateTime newYorkDay = new DateTime(2014, 3, 5, 0, 0, NEW_YORK);
+        assertEquals(TimeUnits.DAYS, RollupBuckets.getRollupUnit(newYork, Arrays.asList(interval(newYorkDay, newYorkDay.plusDays(1)))));
+        // nor is a New York day made of the hours of a zone with a half hour offset from it
+        assertNull(rollupUnit(KOLKATA, interval(newYorkDay, newYorkDay.plusDays(1))));
+        // the 23 hour day when daylight saving time starts is still a day
+        DateTime springForward = new DateTime(2015, 3, 8, 0, 0, NEW_YORK);
+        assertEquals(TimeUnits.DAYS, rollupUnit(NEW_YORK, interval(springForward, springForward.plusDays(1))));
+    }
+}
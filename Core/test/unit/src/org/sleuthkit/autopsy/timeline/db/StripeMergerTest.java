@@ -0,0 +1,208 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.timeline.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.sleuthkit.autopsy.timeline.datamodel.EventCluster;
+import org.sleuthkit.autopsy.timeline.datamodel.EventStripe;
+import org.sleuthkit.autopsy.timeline.zooming.DescriptionLoD;
+import org.sleuthkit.autopsy.timeline.zooming.TimeUnits;
+
+/**
+ * Tests the clustering of the events read for the details view and the
+ * merging of the clusters into stripes, page by page.
+ */
+public class StripeMergerTest {
+
+    private static final DateTime START = new DateTime(2015, 6, 1, 0, 0, DateTimeZone.UTC);
+
+    /**
+     * @return a merger that clusters events by hour, i.e., puts events less
+     *         than 15 minutes apart in the same cluster
+     */
+    private static StripeMerger hourMerger() {
+        return new StripeMerger(TimeUnits.HOURS.getPeriod(), DescriptionLoD.FULL, DateTimeZone.UTC);
+    }
+
+    /**
+     * Adds an event with the given description at the given minute after
+     * START.
+     *
+     * The event type is left null: the merger only uses it together with the
+     * description to tell stripes apart, and the real event types load their
+     * icons when they are first used.
+     */
+    private static void add(StripeMerger merger, String description, int minute) {
+        add(merger, description, minute, false, false);
+    }
+
+    private static void add(StripeMerger merger, String description, int minute, boolean hashHit, boolean tagged) {
+        merger.add(null, description, START.plusMinutes(minute).getMillis(), hashHit, tagged);
+    }
+
+    private static List<Long> startMinutes(EventStripe stripe) {
+        List<Long> startMinutes = new ArrayList<>();
+        for (EventCluster cluster : stripe.getClusters()) {
+            startMinutes.add((cluster.getStartMillis() - START.getMillis()) / 60000);
+        }
+        return startMinutes;
+    }
+
+    @Test
+    public void closeEventsAreOneCluster() {
+        StripeMerger merger = hourMerger();
+        add(merger, "a", 0);
+        add(merger, "a", 0);
+        add(merger, "a", 10);
+        add(merger, "a", 25); // exactly a quarter hour later
+        List<EventStripe> stripes = merger.finish();
+        assertEquals(1, stripes.size());
+        EventStripe stripe = stripes.get(0);
+        assertEquals(1, stripe.getClusters().size());
+        assertEquals(4, stripe.getCount());
+        assertEquals(START.getMillis(), stripe.getStartMillis());
+        assertEquals(START.plusMinutes(25).getMillis(), stripe.getEndMillis());
+    }
+
+    @Test
+    public void distantEventsAreSeparateClustersOfOneStripe() {
+        StripeMerger merger = hourMerger();
+        add(merger, "a", 0);
+        add(merger, "a", 10);
+        add(merger, "a", 26); // a quarter hour and a minute later
+        add(merger, "a", 200);
+        List<EventStripe> stripes = merger.finish();
+        assertEquals(1, stripes.size());
+        assertEquals(Arrays.asList(0L, 26L, 200L), startMinutes(stripes.get(0)));
+        assertEquals(4, stripes.get(0).getCount());
+    }
+
+    @Test
+    public void hashHitsAndTagsAreCounted() {
+        StripeMerger merger = hourMerger();
+        add(merger, "a", 0, true, false);
+        add(merger, "a", 1, true, true);
+        add(merger, "a", 2);
+        add(merger, "a", 100, false, true);
+        EventStripe stripe = merger.finish().get(0);
+        assertEquals(4, stripe.getCount());
+        assertEquals(2, stripe.getHashHitCount());
+        assertEquals(2, stripe.getTaggedCount());
+        assertEquals(2, stripe.getClusters().first().getHashHitCount());
+        assertEquals(1, stripe.getClusters().first().getTaggedCount());
+        assertEquals(1, stripe.getClusters().last().getTaggedCount());
+    }
+
+    @Test
+    public void differentDescriptionsAreSeparateStripesSortedByStart() {
+        StripeMerger merger = hourMerger();
+        add(merger, "b", 0);
+        add(merger, "a", 5);
+        add(merger, "b", 12);
+        List<EventStripe> stripes = merger.finish();
+        assertEquals(2, stripes.size());
+        assertEquals("b", stripes.get(0).getDescription());
+        assertEquals(2, stripes.get(0).getCount());
+        assertEquals("a", stripes.get(1).getDescription());
+        assertEquals(1, stripes.get(1).getCount());
+        assertEquals(stripes, merger.getStripes());
+    }
+
+    @Test
+    public void pagesOnlyHaveTheClustersThatCanNotGrowAnymore() {
+        StripeMerger merger = hourMerger();
+        add(merger, "a", 0);
+        add(merger, "b", 90);
+        add(merger, "a", 100);
+        // the scan is more than a quarter hour past the first cluster of "a",
+        // while the cluster of "b" and the second of "a" may still grow
+        List<EventStripe> firstPage = merger.takeNewStripes();
+        assertEquals(1, firstPage.size());
+        assertEquals(Arrays.asList(0L), startMinutes(firstPage.get(0)));
+        assertTrue(merger.takeNewStripes().isEmpty());
+
+        add(merger, "a", 112);
+        List<EventStripe> lastPage = merger.finish();
+        assertEquals(2, lastPage.size());
+        assertEquals("b", lastPage.get(0).getDescription());
+        assertEquals(2, lastPage.get(1).getCount());
+    }
+
+    @Test
+    public void clustersAreCompletedOnceTheScanIsAQuarterPeriodPastThem() {
+        StripeMerger merger = hourMerger();
+        add(merger, "a", 0);
+        add(merger, "b", 10);
+        // no later event of "a", but the scan is not yet a quarter hour past it
+        add(merger, "b", 15);
+        assertTrue(merger.takeNewStripes().isEmpty());
+        // now it is, so the cluster of "a" is complete, while "b" is not
+        add(merger, "b", 16);
+        List<EventStripe> page = merger.takeNewStripes();
+        assertEquals(1, page.size());
+        assertEquals("a", page.get(0).getDescription());
+        assertEquals(1, page.get(0).getCount());
+
+        List<EventStripe> lastPage = merger.finish();
+        assertEquals(1, lastPage.size());
+        assertEquals("b", lastPage.get(0).getDescription());
+        assertEquals(3, lastPage.get(0).getCount());
+    }
+
+    @Test
+    public void stripesContinuedOnLaterPagesAreMergedWithTheEarlierPages() {
+        StripeMerger merger = hourMerger();
+        List<EventStripe> pages = new ArrayList<>();
+        add(merger, "a", 0);
+        add(merger, "a", 100);
+        pages.addAll(merger.takeNewStripes());
+        add(merger, "a", 200);
+        pages.addAll(merger.takeNewStripes());
+        pages.addAll(merger.finish());
+        // each page has a part of the one stripe
+        assertEquals(3, pages.size());
+
+        List<EventStripe> stripes = merger.getStripes();
+        assertEquals(1, stripes.size());
+        assertEquals(3, stripes.get(0).getCount());
+        assertEquals(3, stripes.get(0).getClusters().size());
+        // the merged stripe is what merging the pages gives
+        EventStripe merged = pages.get(0);
+        for (EventStripe page : pages.subList(1, pages.size())) {
+            merged = EventStripe.merge(merged, page);
+        }
+        assertEquals(merged.getCount(), stripes.get(0).getCount());
+        assertEquals(Arrays.asList(0L, 100L, 200L), startMinutes(stripes.get(0)));
+    }
+
+    @Test
+    public void noEventsMakeNoStripes() {
+        StripeMerger merger = hourMerger();
+        assertTrue(merger.takeNewStripes().isEmpty());
+        assertTrue(merger.finish().isEmpty());
+        assertTrue(merger.getStripes().isEmpty());
+    }
+}
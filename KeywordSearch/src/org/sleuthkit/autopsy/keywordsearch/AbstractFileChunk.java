@@ -18,8 +18,6 @@
  */
 package org.sleuthkit.autopsy.keywordsearch;
 
-import java.nio.charset.Charset;
-
 import org.openide.util.NbBundle;
 import org.sleuthkit.autopsy.keywordsearch.Ingester.IngesterException;
 
@@ -54,10 +52,9 @@ String getIdString() {
         return Server.getChunkIdString(this.parent.getSourceFile().getId(), this.chunkID);
     }
 
-    void index(Ingester ingester, byte[] content, long contentSize, Charset indexCharset) throws IngesterException {
-        ByteContentStream bcs = new ByteContentStream(content, contentSize, parent.getSourceFile(), indexCharset);
+    void index(Ingester ingester, String text) throws IngesterException {
         try {
-            ingester.ingest(this, bcs, content.length);
+            ingester.ingest(this, text);
         } catch (Exception ingEx) {
             throw new IngesterException(NbBundle.getMessage(this.getClass(), "AbstractFileChunk.index.exception.msg",
                     parent.getSourceFile().getId(), chunkID), ingEx);
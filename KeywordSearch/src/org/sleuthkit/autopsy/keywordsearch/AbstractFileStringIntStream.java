@@ -26,7 +26,7 @@
 import org.sleuthkit.autopsy.coreutils.StringExtract;
 import org.sleuthkit.autopsy.coreutils.StringExtract.StringExtractResult;
 import org.sleuthkit.autopsy.coreutils.StringExtract.StringExtractUnicodeTable.SCRIPT;
-import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.autopsy.ingest.CachedFileContent;
 import org.sleuthkit.datamodel.TskCoreException;
 
 /**
@@ -39,7 +39,7 @@ class AbstractFileStringIntStream extends InputStream {
 
     private static final Logger logger = Logger.getLogger(AbstractFileStringIntStream.class.getName());
     private static final int FILE_BUF_SIZE = 1024 * 1024;
-    private AbstractFile content;
+    private CachedFileContent content;
     private final byte[] oneCharBuf = new byte[1];
     private final StringExtract stringExtractor;
     private final byte[] fileReadBuff = new byte[FILE_BUF_SIZE];
@@ -67,7 +67,7 @@ class AbstractFileStringIntStream extends InputStream {
      * @param extractUTF16 whether to extract utf16 encoding
      * @param outCharset   encoding to use in the output byte stream
      */
-    public AbstractFileStringIntStream(AbstractFile content, List<SCRIPT> scripts, boolean extractUTF8,
+    public AbstractFileStringIntStream(CachedFileContent content, List<SCRIPT> scripts, boolean extractUTF8,
             boolean extractUTF16, Charset outCharset) {
         this.content = content;
         this.stringExtractor = new StringExtract();
@@ -142,7 +142,7 @@ public int read(byte[] b, int off, int len) throws IOException {
                     //fill up entire fileReadBuff fresh
                     toRead = Math.min(FILE_BUF_SIZE, fileSize - fileReadOffset);
                     //}
-                    int read = content.read(fileReadBuff, fileReadOffset, toRead);
+                    int read = content.read(fileReadBuff, fileReadOffset, (int) toRead);
                     if (read == -1 || read == 0) {
                         fileEOF = true;
                     } else {
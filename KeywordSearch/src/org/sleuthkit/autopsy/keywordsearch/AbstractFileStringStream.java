@@ -23,7 +23,7 @@
 import java.nio.charset.Charset;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.autopsy.coreutils.StringExtract;
-import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.autopsy.ingest.CachedFileContent;
 import org.sleuthkit.datamodel.TskException;
 
 /**
@@ -41,7 +41,7 @@
 class AbstractFileStringStream extends InputStream {
 
     //args
-    private AbstractFile content;
+    private CachedFileContent content;
     private Charset outputCharset;
     //internal data
     private static final Logger logger = Logger.getLogger(AbstractFileStringStream.class.getName());
@@ -73,7 +73,7 @@ class AbstractFileStringStream extends InputStream {
      *                               potentially splitting a string. If false,
      *                               the string will be preserved for next read.
      */
-    public AbstractFileStringStream(AbstractFile content, Charset outputCharset, boolean preserveOnBuffBoundary) {
+    public AbstractFileStringStream(CachedFileContent content, Charset outputCharset, boolean preserveOnBuffBoundary) {
         this.content = content;
         this.outputCharset = outputCharset;
         //this.preserveOnBuffBoundary = preserveOnBuffBoundary;
@@ -88,7 +88,7 @@ public AbstractFileStringStream(AbstractFile content, Charset outputCharset, boo
      * @param outCharset target charset to encode into bytes and index as, e.g.
      *                   UTF-8
      */
-    public AbstractFileStringStream(AbstractFile content, Charset outCharset) {
+    public AbstractFileStringStream(CachedFileContent content, Charset outCharset) {
         this(content, outCharset, false);
     }
 
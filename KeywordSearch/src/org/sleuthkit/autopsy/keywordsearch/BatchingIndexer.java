@@ -0,0 +1,303 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import org.apache.solr.common.SolrInputDocument;
+import org.sleuthkit.autopsy.coreutils.Logger;
+
+/**
+ * Buffers Solr documents and sends them to the index in batches from
+ * background sender threads, so that the threads adding documents do not wait
+ * on a round trip to Solr per document.
+ * <p>
+ * A batch is sent when it reaches a document count or size limit, or when its
+ * oldest document has waited long enough. The memory used by buffered and in
+ * flight documents is bounded: adding a document blocks while the limit is
+ * reached. If Solr rejects a batch, its documents are resent one at a time so
+ * that a failure can be reported for the file each rejected document came
+ * from.
+ * <p>
+ * If the schema of the core supports it, each document is given an ingest
+ * sequence number as it is added. Sequence numbers increase across batches,
+ * sessions and cases, and a flush reports the highest number sent, so that
+ * searches can be limited to the documents added since an earlier search.
+ * <p>
+ * This class is thread-safe.
+ */
+final class BatchingIndexer {
+
+    private static final Logger logger = Logger.getLogger(BatchingIndexer.class.getName());
+    private static final int MAX_BATCH_DOCUMENTS = 100;
+    private static final long MAX_BATCH_BYTES = 8L * 1024 * 1024;
+    private static final long MAX_BATCH_AGE_MS = 2000;
+    private static final long MAX_BUFFERED_BYTES = 64L * 1024 * 1024;
+    private static final int NUMBER_OF_SENDER_THREADS = 2;
+
+    /**
+     * Interface for receiving notifications of documents that could not be
+     * added to the index.
+     */
+    interface FailureListener {
+
+        /**
+         * Called when a document could not be added to the index.
+         *
+         * @param sourceObjectId The object id of the file or artifact the
+         *                       document was created for.
+         * @param documentId     The id of the document.
+         * @param ex             The cause of the failure.
+         */
+        void documentFailed(long sourceObjectId, String documentId, KeywordSearchModuleException ex);
+    }
+
+    private final Server solrServer;
+    private final FailureListener failureListener;
+    private final ExecutorService senders;
+    private final ScheduledExecutorService batchAgeChecker;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition bufferSpaceAvailable = lock.newCondition();
+    private final Condition allBatchesSent = lock.newCondition();
+    private List<PendingDocument> currentBatch = new ArrayList<>(); // Guarded by lock
+    private long currentBatchBytes; // Guarded by lock
+    private long currentBatchStartTime; // Guarded by lock
+    private long bufferedBytes; // Guarded by lock
+    private int batchesInFlight; // Guarded by lock
+    // Starting from the clock keeps the sequence increasing when a case is
+    // reopened in a later session.
+    private long lastSequenceNumber = System.currentTimeMillis() * 1000; // Guarded by lock
+
+    /**
+     * Constructs an object that buffers Solr documents and sends them to the
+     * index in batches.
+     *
+     * @param solrServer      The Solr server.
+     * @param failureListener The listener to notify of documents that could
+     *                        not be added to the index.
+     */
+    BatchingIndexer(Server solrServer, FailureListener failureListener) {
+        this.solrServer = solrServer;
+        this.failureListener = failureListener;
+        AtomicInteger senderCount = new AtomicInteger(0);
+        this.senders = Executors.newFixedThreadPool(NUMBER_OF_SENDER_THREADS, (Runnable task) -> {
+            Thread thread = new Thread(task, "KWS-index-sender-" + senderCount.getAndIncrement()); //NON-NLS
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchAgeChecker = Executors.newSingleThreadScheduledExecutor((Runnable task) -> {
+            Thread thread = new Thread(task, "KWS-index-batch-timer"); //NON-NLS
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchAgeChecker.scheduleWithFixedDelay(this::sendBatchIfOld, MAX_BATCH_AGE_MS, MAX_BATCH_AGE_MS / 4, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a document to the current batch, blocking while the memory limit
+     * for buffered documents is reached.
+     *
+     * @param document       The document.
+     * @param sourceObjectId The object id of the file or artifact the document
+     *                       was created for.
+     * @param estimatedBytes The estimated size of the document.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     *                              for buffer space.
+     */
+    void add(SolrInputDocument document, long sourceObjectId, long estimatedBytes) throws InterruptedException {
+        boolean assignSequenceNumber = solrServer.isIngestSequenceSupported();
+        lock.lock();
+        try {
+            // A document larger than the limit is let through when nothing
+            // else is buffered, rather than blocking forever.
+            while (bufferedBytes > 0 && bufferedBytes + estimatedBytes > MAX_BUFFERED_BYTES) {
+                bufferSpaceAvailable.await();
+            }
+            if (currentBatch.isEmpty()) {
+                currentBatchStartTime = System.currentTimeMillis();
+            }
+            // The number is assigned under the lock, so that every document
+            // numbered up to the value reported by a flush has been sent when
+            // the flush returns.
+            if (assignSequenceNumber) {
+                document.setField(Server.Schema.INGEST_SEQUENCE.toString(), ++lastSequenceNumber);
+            }
+            currentBatch.add(new PendingDocument(document, sourceObjectId));
+            currentBatchBytes += estimatedBytes;
+            bufferedBytes += estimatedBytes;
+            if (currentBatch.size() >= MAX_BATCH_DOCUMENTS || currentBatchBytes >= MAX_BATCH_BYTES) {
+                sendCurrentBatch();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the highest ingest sequence number assigned to a document so far.
+     *
+     * @return The sequence number.
+     */
+    long getLastSequenceNumber() {
+        lock.lock();
+        try {
+            return lastSequenceNumber;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends the current batch and waits until every document added so far
+     * has been sent to the index.
+     *
+     * @return The highest ingest sequence number assigned to a document sent.
+     *
+     * @throws InterruptedException if the thread is interrupted while
+     *                              waiting.
+     */
+    long flush() throws InterruptedException {
+        lock.lock();
+        try {
+            long flushedSequenceNumber = lastSequenceNumber;
+            sendCurrentBatch();
+            while (batchesInFlight > 0) {
+                allBatchesSent.await();
+            }
+            return flushedSequenceNumber;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands the current batch to a sender thread. The caller must hold the
+     * lock.
+     */
+    private void sendCurrentBatch() {
+        if (currentBatch.isEmpty()) {
+            return;
+        }
+        final List<PendingDocument> batch = currentBatch;
+        final long batchBytes = currentBatchBytes;
+        currentBatch = new ArrayList<>();
+        currentBatchBytes = 0;
+        ++batchesInFlight;
+        senders.submit(() -> {
+            try {
+                send(batch);
+            } finally {
+                batchSent(batchBytes);
+            }
+        });
+    }
+
+    private void sendBatchIfOld() {
+        lock.lock();
+        try {
+            if (!currentBatch.isEmpty() && System.currentTimeMillis() - currentBatchStartTime >= MAX_BATCH_AGE_MS) {
+                sendCurrentBatch();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void batchSent(long batchBytes) {
+        lock.lock();
+        try {
+            bufferedBytes -= batchBytes;
+            --batchesInFlight;
+            bufferSpaceAvailable.signalAll();
+            if (batchesInFlight == 0) {
+                allBatchesSent.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends a batch of documents to the index. If the batch is rejected, its
+     * documents are resent one at a time to find the ones that fail.
+     *
+     * @param batch The batch.
+     */
+    private void send(List<PendingDocument> batch) {
+        List<SolrInputDocument> documents = new ArrayList<>(batch.size());
+        for (PendingDocument pending : batch) {
+            documents.add(pending.document);
+        }
+        try {
+            solrServer.addDocuments(documents);
+            return;
+        } catch (KeywordSearchModuleException ex) {
+            if (batch.size() == 1) {
+                reportFailure(batch.get(0), ex);
+                return;
+            }
+            logger.log(Level.WARNING, "Failed to add a batch of " + batch.size() + " documents to the index, adding them one at a time", ex); //NON-NLS
+        } catch (RuntimeException ex) {
+            logger.log(Level.SEVERE, "Unexpected error adding a batch of documents to the index", ex); //NON-NLS
+        }
+        for (PendingDocument pending : batch) {
+            try {
+                solrServer.addDocument(pending.document);
+            } catch (KeywordSearchModuleException ex) {
+                reportFailure(pending, ex);
+            } catch (RuntimeException ex) {
+                reportFailure(pending, new KeywordSearchModuleException(ex.getMessage(), ex));
+            }
+        }
+    }
+
+    private void reportFailure(PendingDocument pending, KeywordSearchModuleException ex) {
+        String documentId = String.valueOf(pending.document.getFieldValue(Server.Schema.ID.toString()));
+        logger.log(Level.WARNING, "Failed to add document " + documentId + " to the index", ex); //NON-NLS
+        try {
+            failureListener.documentFailed(pending.sourceObjectId, documentId, ex);
+        } catch (RuntimeException listenerEx) {
+            logger.log(Level.SEVERE, "Indexing failure listener threw an exception", listenerEx); //NON-NLS
+        }
+    }
+
+    /**
+     * A buffered document and the object it was created for.
+     */
+    private static final class PendingDocument {
+
+        private final SolrInputDocument document;
+        private final long sourceObjectId;
+
+        PendingDocument(SolrInputDocument document, long sourceObjectId) {
+            this.document = document;
+            this.sourceObjectId = sourceObjectId;
+        }
+    }
+
+}
@@ -0,0 +1,543 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An on-disk store of the text extracted from files, kept in the case
+ * directory, so that the text can be indexed again and shown in the content
+ * viewers without parsing the files again.
+ * <p>
+ * The chunks of text of a file are compressed and stored in one file per
+ * object, named after the object id. The text of a file is written to a
+ * temporary file and only becomes visible when all of its chunks have been
+ * written, so the store never holds a partial text. Recently read chunks are
+ * kept in a bounded in-memory LRU cache, since the content viewers page back
+ * and forth between the chunks of a file.
+ * <p>
+ * Each chunk is stored as a record of its chunk id, its length in bytes before
+ * and after compression, and the compressed UTF-8 bytes of its text. When the
+ * text of an object is finished, an index of the offsets of its records is
+ * appended to the file, so that a chunk is read with a few positional reads
+ * instead of a scan of the file. The files are not memory mapped, since a
+ * mapped file can not be replaced on Windows until the map is garbage
+ * collected.
+ * <p>
+ * The text is read by the indexer, when files are indexed again, and by the
+ * extracted text content viewer. None of the report modules read the text of
+ * files, a report module that needs it should get it from this store rather
+ * than extracting it again.
+ * <p>
+ * The text of an object must be written by one thread at a time. Otherwise,
+ * this class is thread-safe.
+ */
+final class ExtractedTextStore {
+
+    private static final String TEXT_FILE_EXTENSION = ".txt.z"; //NON-NLS
+    private static final String TEMP_FILE_EXTENSION = ".tmp"; //NON-NLS
+    private static final int RECORD_HEADER_BYTES = 12;
+    private static final int INDEX_ENTRY_BYTES = 12;
+    private static final int INDEX_TRAILER_BYTES = 8;
+    private static final int INDEX_MAGIC = 0x54584931; // "TXI1"
+    private static final long MAX_CACHED_CHARS = 16L * 1024 * 1024;
+    private final Path directory;
+    private final Map<String, String> cachedChunks = new LinkedHashMap<>(16, 0.75f, true); // Guarded by this
+    private long cachedChars; // Guarded by this
+
+    /**
+     * Constructs a store of extracted text.
+     *
+     * @param directory The directory of the store. It is created when the
+     *                  first text is written.
+     */
+    ExtractedTextStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Starts writing the text of an object, discarding any text of an earlier
+     * extraction that was not finished.
+     *
+     * @param objectId The object id.
+     *
+     * @throws IOException if there is a problem deleting the earlier text.
+     */
+    void startText(long objectId) throws IOException {
+        Files.deleteIfExists(getTempPath(objectId));
+    }
+
+    /**
+     * Appends a chunk to the text of an object that is being written.
+     *
+     * @param objectId The object id.
+     * @param chunkId  The chunk id.
+     * @param text     The text of the chunk.
+     *
+     * @throws IOException if there is a problem writing the chunk.
+     */
+    void putChunk(long objectId, int chunkId, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] compressed;
+        int compressedLength;
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            compressed = new byte[bytes.length / 2 + 64];
+            compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        Path tempPath = getTempPath(objectId);
+        Files.createDirectories(tempPath.getParent());
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        header.putInt(chunkId).putInt(bytes.length).putInt(compressedLength).flip();
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            writeFully(channel, header);
+            writeFully(channel, ByteBuffer.wrap(compressed, 0, compressedLength));
+        }
+    }
+
+    /**
+     * Makes the text of an object that has been written visible, replacing
+     * any earlier text of the object.
+     *
+     * @param objectId The object id.
+     *
+     * @throws IOException if there is a problem moving the text into place.
+     */
+    void finishText(long objectId) throws IOException {
+        Path tempPath = getTempPath(objectId);
+        if (!Files.exists(tempPath)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            writeIndex(channel, scanRecords(channel, channel.size()));
+        }
+        synchronized (this) {
+            evictChunks(objectId);
+        }
+        Files.move(tempPath, getTextPath(objectId), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Discards the text of an object that is being written.
+     *
+     * @param objectId The object id.
+     */
+    void discardText(long objectId) {
+        try {
+            Files.deleteIfExists(getTempPath(objectId));
+        } catch (IOException ignored) {
+            // A leftover file is deleted when the text is written again.
+        }
+    }
+
+    /**
+     * Determines whether or not the store has the text of an object.
+     *
+     * @param objectId The object id.
+     *
+     * @return True or false.
+     */
+    boolean hasText(long objectId) {
+        return Files.exists(getTextPath(objectId));
+    }
+
+    /**
+     * Opens the text of an object to read all of its chunks in order, without
+     * keeping them in the in-memory cache.
+     *
+     * @param objectId The object id.
+     *
+     * @return A reader for the chunks, or null if the store has no text for
+     *         the object.
+     *
+     * @throws IOException if there is a problem reading the text.
+     */
+    ChunkReader openText(long objectId) throws IOException {
+        Path textPath = getTextPath(objectId);
+        if (!Files.exists(textPath)) {
+            return null;
+        }
+        FileChannel channel = FileChannel.open(textPath, StandardOpenOption.READ);
+        try {
+            return new ChunkReader(channel, readIndex(channel).recordsEnd);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Gets a chunk of the text of an object, keeping it in the in-memory
+     * cache.
+     *
+     * @param objectId The object id.
+     * @param chunkId  The chunk id.
+     *
+     * @return The text of the chunk, or null if the store does not have it.
+     *
+     * @throws IOException if there is a problem reading the text.
+     */
+    String getChunk(long objectId, int chunkId) throws IOException {
+        return getChunk(objectId, chunkId, true);
+    }
+
+    /**
+     * Gets a chunk of the text of an object.
+     *
+     * @param objectId     The object id.
+     * @param chunkId      The chunk id.
+     * @param keepInMemory Whether or not to keep the chunk in the in-memory
+     *                     cache. Callers reading all of the text of many
+     *                     objects once should not, so as not to evict the
+     *                     chunks the content viewers are using.
+     *
+     * @return The text of the chunk, or null if the store does not have it.
+     *
+     * @throws IOException if there is a problem reading the text.
+     */
+    String getChunk(long objectId, int chunkId, boolean keepInMemory) throws IOException {
+        String key = Server.getChunkIdString(objectId, chunkId);
+        synchronized (this) {
+            String text = cachedChunks.get(key);
+            if (null != text) {
+                return text;
+            }
+        }
+
+        Path textPath = getTextPath(objectId);
+        if (!Files.exists(textPath)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(textPath, StandardOpenOption.READ)) {
+            ChunkIndex index = readIndex(channel);
+            Long offset = index.offsets.get(chunkId);
+            if (null == offset) {
+                return null;
+            }
+            String text = readRecord(channel, offset, index.recordsEnd).text;
+            if (keepInMemory) {
+                cacheChunk(key, text);
+            }
+            return text;
+        }
+    }
+
+    private synchronized void cacheChunk(String key, String text) {
+        if (text.length() > MAX_CACHED_CHARS) {
+            return;
+        }
+        String previous = cachedChunks.put(key, text);
+        if (null != previous) {
+            cachedChars -= previous.length();
+        }
+        cachedChars += text.length();
+        while (cachedChars > MAX_CACHED_CHARS) {
+            Map.Entry<String, String> eldest = cachedChunks.entrySet().iterator().next();
+            cachedChars -= eldest.getValue().length();
+            cachedChunks.remove(eldest.getKey());
+        }
+    }
+
+    /**
+     * Removes the chunks of an object from the in-memory cache. The caller
+     * must hold the lock of this object.
+     *
+     * @param objectId The object id.
+     */
+    private void evictChunks(long objectId) {
+        String prefix = Server.getChunkIdString(objectId, 0);
+        prefix = prefix.substring(0, prefix.length() - 1);
+        for (Iterator<Map.Entry<String, String>> it = cachedChunks.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, String> entry = it.next();
+            if (entry.getKey().startsWith(prefix)) {
+                cachedChars -= entry.getValue().length();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Reads the chunks of the text of an object in order. The reader must be
+     * closed when done.
+     */
+    static final class ChunkReader implements Closeable {
+
+        private final FileChannel channel;
+        private final long recordsEnd;
+        private long position;
+
+        private ChunkReader(FileChannel channel, long recordsEnd) {
+            this.channel = channel;
+            this.recordsEnd = recordsEnd;
+        }
+
+        /**
+         * Reads the next chunk.
+         *
+         * @return The text of the chunk, or null if there are no more chunks.
+         *
+         * @throws IOException if there is a problem reading the chunk.
+         */
+        String readNextChunk() throws IOException {
+            if (recordsEnd - position < RECORD_HEADER_BYTES) {
+                return null;
+            }
+            Record record = readRecord(channel, position, recordsEnd);
+            position = record.end;
+            return record.text;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * The offsets of the records of the text of an object, by chunk id.
+     */
+    private static final class ChunkIndex {
+
+        private final Map<Integer, Long> offsets;
+        private final long recordsEnd;
+
+        private ChunkIndex(Map<Integer, Long> offsets, long recordsEnd) {
+            this.offsets = offsets;
+            this.recordsEnd = recordsEnd;
+        }
+    }
+
+    /**
+     * The text of a record and the offset of the record after it.
+     */
+    private static final class Record {
+
+        private final String text;
+        private final long end;
+
+        private Record(String text, long end) {
+            this.text = text;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Reads the record at an offset of a text file.
+     *
+     * @param channel    The channel of the file.
+     * @param offset     The offset of the record.
+     * @param recordsEnd The offset of the end of the records.
+     *
+     * @return The record.
+     *
+     * @throws IOException if there is a problem reading the record.
+     */
+    private static Record readRecord(FileChannel channel, long offset, long recordsEnd) throws IOException {
+        ByteBuffer header = readFully(channel, offset, RECORD_HEADER_BYTES);
+        header.getInt();
+        int length = header.getInt();
+        int compressedLength = header.getInt();
+        long dataOffset = offset + RECORD_HEADER_BYTES;
+        if (compressedLength < 0 || compressedLength > recordsEnd - dataOffset || length < 0) {
+            throw new IOException("Corrupt extracted text record"); //NON-NLS
+        }
+        ByteBuffer compressed = readFully(channel, dataOffset, compressedLength);
+        return new Record(inflate(compressed.array(), length), dataOffset + compressedLength);
+    }
+
+    /**
+     * Finds the offsets of the records of a text file by reading their
+     * headers.
+     *
+     * @param channel    The channel of the file.
+     * @param recordsEnd The offset of the end of the records.
+     *
+     * @return The offsets of the records, by chunk id.
+     *
+     * @throws IOException if there is a problem reading the headers.
+     */
+    private static Map<Integer, Long> scanRecords(FileChannel channel, long recordsEnd) throws IOException {
+        Map<Integer, Long> offsets = new LinkedHashMap<>();
+        long offset = 0;
+        while (recordsEnd - offset >= RECORD_HEADER_BYTES) {
+            ByteBuffer header = readFully(channel, offset, RECORD_HEADER_BYTES);
+            int chunkId = header.getInt();
+            header.getInt();
+            int compressedLength = header.getInt();
+            if (compressedLength < 0 || compressedLength > recordsEnd - offset - RECORD_HEADER_BYTES) {
+                throw new IOException("Corrupt extracted text record"); //NON-NLS
+            }
+            offsets.putIfAbsent(chunkId, offset);
+            offset += RECORD_HEADER_BYTES + compressedLength;
+        }
+        return offsets;
+    }
+
+    /**
+     * Appends the index of the records of a text file to the file, as entries
+     * of a chunk id and an offset followed by the number of entries and a
+     * magic number.
+     *
+     * @param channel The channel of the file, positioned at its end.
+     * @param offsets The offsets of the records, by chunk id.
+     *
+     * @throws IOException if there is a problem writing the index.
+     */
+    private static void writeIndex(FileChannel channel, Map<Integer, Long> offsets) throws IOException {
+        ByteBuffer index = ByteBuffer.allocate(offsets.size() * INDEX_ENTRY_BYTES + INDEX_TRAILER_BYTES);
+        for (Map.Entry<Integer, Long> entry : offsets.entrySet()) {
+            index.putInt(entry.getKey()).putLong(entry.getValue());
+        }
+        index.putInt(offsets.size()).putInt(INDEX_MAGIC).flip();
+        channel.position(channel.size());
+        writeFully(channel, index);
+    }
+
+    /**
+     * Reads the index of the records of a text file. The records of a file
+     * without an index are scanned instead.
+     *
+     * @param channel The channel of the file.
+     *
+     * @return The index.
+     *
+     * @throws IOException if there is a problem reading the index.
+     */
+    private static ChunkIndex readIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size >= INDEX_TRAILER_BYTES) {
+            ByteBuffer trailer = readFully(channel, size - INDEX_TRAILER_BYTES, INDEX_TRAILER_BYTES);
+            int entries = trailer.getInt();
+            long indexBytes = (long) entries * INDEX_ENTRY_BYTES + INDEX_TRAILER_BYTES;
+            if (trailer.getInt() == INDEX_MAGIC && entries >= 0 && indexBytes <= size) {
+                long recordsEnd = size - indexBytes;
+                ByteBuffer index = readFully(channel, recordsEnd, entries * INDEX_ENTRY_BYTES);
+                Map<Integer, Long> offsets = new HashMap<>();
+                for (int i = 0; i < entries; ++i) {
+                    offsets.put(index.getInt(), index.getLong());
+                }
+                return new ChunkIndex(offsets, recordsEnd);
+            }
+        }
+        return new ChunkIndex(scanRecords(channel, size), size);
+    }
+
+    /**
+     * Reads bytes at an offset of a file, without changing the position of
+     * the channel.
+     *
+     * @param channel The channel of the file.
+     * @param offset  The offset.
+     * @param length  The number of bytes to read.
+     *
+     * @return A buffer with the bytes, ready to be read.
+     *
+     * @throws IOException if there is a problem reading the bytes, or the file
+     *                     ends first.
+     */
+    private static ByteBuffer readFully(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset + buffer.position());
+            if (read == -1) {
+                throw new IOException("Corrupt extracted text record"); //NON-NLS
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String inflate(byte[] compressed, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] bytes = new byte[length];
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int n = inflater.inflate(bytes, inflated, length - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != length) {
+                throw new IOException("Corrupt extracted text record"); //NON-NLS
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupt extracted text record", ex); //NON-NLS
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private Path getTextPath(long objectId) {
+        return getObjectDirectory(objectId).resolve(objectId + TEXT_FILE_EXTENSION);
+    }
+
+    private Path getTempPath(long objectId) {
+        return getObjectDirectory(objectId).resolve(objectId + TEXT_FILE_EXTENSION + TEMP_FILE_EXTENSION);
+    }
+
+    /**
+     * Gets the subdirectory for the text files of an object. The files are
+     * spread over subdirectories to keep directories small.
+     *
+     * @param objectId The object id.
+     *
+     * @return The path of the subdirectory.
+     */
+    private Path getObjectDirectory(long objectId) {
+        return directory.resolve(String.format("%02x", objectId & 0xFF)); //NON-NLS
+    }
+
+}
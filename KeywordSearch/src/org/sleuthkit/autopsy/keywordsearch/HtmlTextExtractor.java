@@ -21,7 +21,6 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
-import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -30,7 +29,6 @@
 import org.sleuthkit.autopsy.coreutils.StringExtract.StringExtractUnicodeTable.SCRIPT;
 import org.sleuthkit.autopsy.keywordsearch.Ingester.IngesterException;
 import org.sleuthkit.datamodel.AbstractFile;
-import org.sleuthkit.datamodel.ReadContentInputStream;
 
 /**
  * Extractor of text from HTML supported AbstractFile content. Extracted text is
@@ -41,13 +39,7 @@ class HtmlTextExtractor implements TextExtractor {
 
     private static final Logger logger = Logger.getLogger(HtmlTextExtractor.class.getName());
     private static Ingester ingester;
-    static final Charset outCharset = Server.DEFAULT_INDEXED_TEXT_CHARSET;
-    static final int MAX_EXTR_TEXT_CHARS = 512 * 1024;
-    private static final int SINGLE_READ_CHARS = 1024;
-    private static final int EXTRA_CHARS = 128; //for whitespace    
     private static final int MAX_SIZE = 50000000;
-    //private static final String UTF16BOM = "\uFEFF"; disabled prepending of BOM
-    private final char[] textChunkBuf = new char[MAX_EXTR_TEXT_CHARS];
     private KeywordSearchIngestModule module;
     private AbstractFile sourceFile;
     private int numChunks = 0;
@@ -105,7 +97,7 @@ public boolean index(AbstractFile sourceFile) throws IngesterException {
         boolean success = false;
         Reader reader = null;
 
-        final InputStream stream = new ReadContentInputStream(sourceFile);
+        final InputStream stream = module.getFileContent(sourceFile).getInputStream();
 
         try {
             // Parse the stream with Jericho
@@ -120,65 +112,16 @@ public boolean index(AbstractFile sourceFile) throws IngesterException {
             }
 
             success = true;
-            long readSize;
-            long totalRead = 0;
-            boolean eof = false;
-            //we read max 1024 chars at time, this seems to max what this Reader would return
-            while (!eof && (readSize = reader.read(textChunkBuf, 0, SINGLE_READ_CHARS)) != -1) {
-                totalRead += readSize;
-
-                //consume more bytes to fill entire chunk (leave EXTRA_CHARS to end the word)
-                while ((totalRead < MAX_EXTR_TEXT_CHARS - SINGLE_READ_CHARS - EXTRA_CHARS)
-                        && (readSize = reader.read(textChunkBuf, (int) totalRead, SINGLE_READ_CHARS)) != -1) {
-                    totalRead += readSize;
-                }
-                if (readSize == -1) {
-                    //this is the last chunk
-                    eof = true;
-                } else {
-                    //try to read until whitespace to not break words
-                    while ((totalRead < MAX_EXTR_TEXT_CHARS - 1)
-                            && !Character.isWhitespace(textChunkBuf[(int) totalRead - 1])
-                            && (readSize = reader.read(textChunkBuf, (int) totalRead, 1)) != -1) {
-                        totalRead += readSize;
-                    }
-                    if (readSize == -1) {
-                        //this is the last chunk
-                        eof = true;
-                    }
-                }
-
-                //logger.log(Level.INFO, "TOTAL READ SIZE: " + totalRead + " file: " + sourceFile.getName());
-                //encode to bytes to index as byte stream
-                String extracted;
-
-                //add BOM and trim the 0 bytes
-                //set initial size to chars read + bom - try to prevent from resizing
-                StringBuilder sb = new StringBuilder((int) totalRead + 1000);
-                //inject BOM here (saves byte buffer realloc later), will be converted to specific encoding BOM
-                //sb.append(UTF16BOM); disabled BOM, not needing as bypassing Tika
-                if (totalRead < MAX_EXTR_TEXT_CHARS) {
-                    sb.append(textChunkBuf, 0, (int) totalRead);
-                } else {
-                    sb.append(textChunkBuf);
-                }
-
-                //reset for next chunk
-                totalRead = 0;
-                extracted = sb.toString();
-
-                //converts BOM automatically to charSet encoding
-                byte[] encodedBytes = extracted.getBytes(outCharset);
-                AbstractFileChunk chunk = new AbstractFileChunk(this, this.numChunks + 1);
-                try {
-                    chunk.index(ingester, encodedBytes, encodedBytes.length, outCharset);
-                    ++this.numChunks;
-                } catch (Ingester.IngesterException ingEx) {
-                    success = false;
-                    logger.log(Level.WARNING, "Ingester had a problem with extracted HTML from file '" //NON-NLS
-                            + sourceFile.getName() + "' (id: " + sourceFile.getId() + ").", ingEx); //NON-NLS
-                    throw ingEx; //need to rethrow/return to signal error and move on
-                }
+            TextChunker chunker = new TextChunker(ingester, this, true);
+            try {
+                chunker.index(reader, null);
+            } catch (Ingester.IngesterException ingEx) {
+                success = false;
+                logger.log(Level.WARNING, "Ingester had a problem with extracted HTML from file '" //NON-NLS
+                        + sourceFile.getName() + "' (id: " + sourceFile.getId() + ").", ingEx); //NON-NLS
+                throw ingEx; //need to rethrow/return to signal error and move on
+            } finally {
+                numChunks = chunker.getNumChunks();
             }
         } catch (IOException ex) {
             logger.log(Level.WARNING, "Unable to read content stream from " + sourceFile.getId() + ": " + sourceFile.getName(), ex); //NON-NLS
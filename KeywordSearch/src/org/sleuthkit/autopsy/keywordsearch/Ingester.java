@@ -23,8 +23,12 @@
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.common.util.ContentStream;
@@ -51,14 +55,21 @@ class Ingester {
 
     private static final Logger logger = Logger.getLogger(Ingester.class.getName());
     private volatile boolean uncommitedIngests = false;
+    private final AtomicLong committedIngestSequence = new AtomicLong(-1);
     private final Server solrServer = KeywordSearch.getServer();
     private final GetContentFieldsV getContentFieldsV = new GetContentFieldsV();
+    private final List<BatchingIndexer.FailureListener> failureListeners = new CopyOnWriteArrayList<>();
+    private final List<DocumentListener> documentListeners = new CopyOnWriteArrayList<>();
+    private final BatchingIndexer batchingIndexer = new BatchingIndexer(solrServer, this::documentFailed);
     private static Ingester instance;
 
     //for ingesting chunk as SolrInputDocument (non-content-streaming, by-pass tika)
     //TODO use a streaming way to add content to /update handler
     private static final int MAX_DOC_CHUNK_SIZE = 1024 * 1024;
     private static final String docContentEncoding = "UTF-8"; //NON-NLS
+    // Allowance for the non-content fields when estimating the in-memory
+    // size of a document
+    private static final long DOC_SIZE_OVERHEAD = 1024;
 
     private Ingester() {
     }
@@ -81,6 +92,71 @@ protected void finalize() throws Throwable {
         }
     }
 
+    /**
+     * Adds a listener to be notified of documents that could not be added to
+     * the index. Documents are sent to Solr in batches from background
+     * threads, so a failure to add a document may be discovered after the
+     * ingest call for it has returned.
+     *
+     * @param listener The listener.
+     */
+    void addFailureListener(BatchingIndexer.FailureListener listener) {
+        failureListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with addFailureListener().
+     *
+     * @param listener The listener.
+     */
+    void removeFailureListener(BatchingIndexer.FailureListener listener) {
+        failureListeners.remove(listener);
+    }
+
+    /**
+     * Interface for receiving the text of the documents added to the index,
+     * as they are added.
+     */
+    interface DocumentListener {
+
+        /**
+         * Called when a document has been added to the batch of documents to
+         * send to the index, on the thread that added it.
+         *
+         * @param fields  The fields of the document.
+         * @param content The text of the content field of the document.
+         */
+        void documentAdded(Map<String, String> fields, String content);
+    }
+
+    /**
+     * Adds a listener to be notified of the documents added to the index.
+     *
+     * @param listener The listener.
+     */
+    void addDocumentListener(DocumentListener listener) {
+        documentListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with addDocumentListener().
+     *
+     * @param listener The listener.
+     */
+    void removeDocumentListener(DocumentListener listener) {
+        documentListeners.remove(listener);
+    }
+
+    private void documentFailed(long sourceObjectId, String documentId, KeywordSearchModuleException ex) {
+        RegexHitIndex regexHitIndex = solrServer.getRegexHitIndex();
+        if (null != regexHitIndex) {
+            regexHitIndex.discard(documentId);
+        }
+        for (BatchingIndexer.FailureListener listener : failureListeners) {
+            listener.documentFailed(sourceObjectId, documentId, ex);
+        }
+    }
+
     /**
      * Sends a stream to Solr to have its content extracted and added to the
      * index. commit() should be called once you're done ingesting files.
@@ -116,26 +192,25 @@ void ingest(TextExtractor fe) throws IngesterException {
     }
 
     /**
-     * Sends a AbstractFileChunk to Solr and its extracted content stream to be
-     * added to the index. commit() should be called once you're done ingesting
-     * files. AbstractFileChunk represents a file chunk and its chunk content.
+     * Sends a AbstractFileChunk to Solr with its extracted text to be added to
+     * the index. commit() should be called once you're done ingesting files.
+     * AbstractFileChunk represents a file chunk and its chunk content.
      *
      * @param fec  AbstractFileChunk to ingest
-     * @param size approx. size of the stream in bytes, used for timeout
-     *             estimation
+     * @param text The text of the chunk.
      *
      * @throws IngesterException if there was an error processing a specific
      *                           file, but the Solr server is probably fine.
      */
-    void ingest(AbstractFileChunk fec, ByteContentStream bcs, int size) throws IngesterException {
-        AbstractContent sourceContent = bcs.getSourceContent();
-        Map<String, String> params = getContentFields(sourceContent);
+    void ingest(AbstractFileChunk fec, String text) throws IngesterException {
+        AbstractFile sourceFile = fec.getParent().getSourceFile();
+        Map<String, String> params = getContentFields(sourceFile);
 
         //overwrite id with the chunk id
         params.put(Server.Schema.ID.toString(),
-                Server.getChunkIdString(sourceContent.getId(), fec.getChunkId()));
+                Server.getChunkIdString(sourceFile.getId(), fec.getChunkId()));
 
-        ingest(bcs, params, size);
+        addDocument(sourceFile.getName(), params, text);
     }
 
     /**
@@ -255,25 +330,11 @@ private Map<String, String> getCommonFields(AbstractFile af) {
      * @throws org.sleuthkit.autopsy.keywordsearch.Ingester.IngesterException
      */
     void ingest(ContentStream cs, Map<String, String> fields, final long size) throws IngesterException {
-
-        if (fields.get(Server.Schema.IMAGE_ID.toString()) == null) {
-            //skip the file, image id unknown
-            String msg = NbBundle.getMessage(this.getClass(),
-                    "Ingester.ingest.exception.unknownImgId.msg", cs.getName());
-            logger.log(Level.SEVERE, msg);
-            throw new IngesterException(msg);
-        }
-
-        final byte[] docChunkContentBuf = new byte[MAX_DOC_CHUNK_SIZE];
-        SolrInputDocument updateDoc = new SolrInputDocument();
-
-        for (String key : fields.keySet()) {
-            updateDoc.addField(key, fields.get(key));
-        }
-
+        String content = "";
         //using size here, but we are no longer ingesting entire files
         //size is normally a chunk size, up to 1MB
         if (size > 0) {
+            final byte[] docChunkContentBuf = new byte[MAX_DOC_CHUNK_SIZE];
             // TODO (RC): Use try with resources, adjust exception messages
             InputStream is = null;
             int read = 0;
@@ -294,31 +355,110 @@ void ingest(ContentStream cs, Map<String, String> fields, final long size) throw
                 }
             }
 
-            if (read != 0) {
-                String s = "";
+            if (read > 0) {
                 try {
-                    s = new String(docChunkContentBuf, 0, read, docContentEncoding);
+                    content = new String(docChunkContentBuf, 0, read, docContentEncoding);
                 } catch (UnsupportedEncodingException ex) {
                     logger.log(Level.SEVERE, "Unsupported encoding", ex); //NON-NLS
                 }
-                updateDoc.addField(Server.Schema.CONTENT.toString(), s);
-            } else {
-                updateDoc.addField(Server.Schema.CONTENT.toString(), "");
             }
+        }
+        //else no content, such as case when 0th chunk indexed
+
+        addDocument(cs.getName(), fields, content);
+    }
+
+    /**
+     * Builds a Solr document from a field map and content text and adds it to
+     * the batch of documents to send to the index.
+     *
+     * @param name    The name of the file or artifact, for error messages.
+     * @param fields  The fields of the document.
+     * @param content The text for the content field, possibly empty.
+     *
+     * @throws IngesterException if the document could not be added.
+     */
+    private void addDocument(String name, Map<String, String> fields, String content) throws IngesterException {
+        if (fields.get(Server.Schema.IMAGE_ID.toString()) == null) {
+            //skip the file, image id unknown
+            String msg = NbBundle.getMessage(this.getClass(),
+                    "Ingester.ingest.exception.unknownImgId.msg", name);
+            logger.log(Level.SEVERE, msg);
+            throw new IngesterException(msg);
+        }
+
+        SolrInputDocument updateDoc = new SolrInputDocument();
+        for (String key : fields.keySet()) {
+            updateDoc.addField(key, fields.get(key));
+        }
+        updateDoc.addField(Server.Schema.CONTENT.toString(), content);
+        long estimatedDocSize = DOC_SIZE_OVERHEAD + 2L * content.length();
+
+        // Match the registered regular expressions against the text while it
+        // is at hand, so that regex searches can use the recorded hits.
+        RegexHitIndex regexHitIndex = solrServer.isIngestSequenceSupported() ? solrServer.getRegexHitIndex() : null;
+        if (null == regexHitIndex) {
+            addToBatch(name, updateDoc, fields, estimatedDocSize);
         } else {
-            //no content, such as case when 0th chunk indexed
-            updateDoc.addField(Server.Schema.CONTENT.toString(), "");
+            addToBatchMatchingRegexes(regexHitIndex, name, updateDoc, fields, content, estimatedDocSize);
         }
 
+        for (DocumentListener listener : documentListeners) {
+            listener.documentAdded(fields, content);
+        }
+    }
+
+    private void addToBatchMatchingRegexes(RegexHitIndex regexHitIndex, String name, SolrInputDocument updateDoc, Map<String, String> fields, String content, long estimatedDocSize) throws IngesterException {
+        try (RegexHitIndex.DocumentMatches matches = regexHitIndex.match(content, fields.get(Server.Schema.FILE_NAME.toString()))) {
+            // The hits are recorded before the document is handed to the
+            // batch, so that they are dropped if sending it fails.
+            try {
+                matches.record(fields.get(Server.Schema.ID.toString()),
+                        Long.parseLong(fields.get(Server.Schema.IMAGE_ID.toString())));
+            } catch (NumberFormatException ex) {
+                logger.log(Level.WARNING, "Unexpected data source id for " + name + ", regex hits not recorded", ex); //NON-NLS
+            }
+            addToBatch(name, updateDoc, fields, estimatedDocSize);
+            Object sequence = updateDoc.getFieldValue(Server.Schema.INGEST_SEQUENCE.toString());
+            if (sequence instanceof Long) {
+                matches.added((Long) sequence);
+            }
+        }
+    }
+
+    private void addToBatch(String name, SolrInputDocument updateDoc, Map<String, String> fields, long estimatedDocSize) throws IngesterException {
+        // The document is sent to Solr in a batch by a background thread;
+        // failures are reported to the failure listeners.
         try {
-            //TODO consider timeout thread, or vary socket timeout based on size of indexed content
-            solrServer.addDocument(updateDoc);
+            batchingIndexer.add(updateDoc, getSourceObjectId(fields), estimatedDocSize);
             uncommitedIngests = true;
-        } catch (KeywordSearchModuleException ex) {
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
             throw new IngesterException(
-                    NbBundle.getMessage(this.getClass(), "Ingester.ingest.exception.err.msg", cs.getName()), ex);
+                    NbBundle.getMessage(this.getClass(), "Ingester.ingest.exception.err.msg", name), ex);
         }
+    }
 
+    /**
+     * Gets the object id of the file or artifact a document is for from the
+     * document id, which is the object id for a whole file or the object id
+     * and a chunk number for a chunk.
+     *
+     * @param fields The fields of the document.
+     *
+     * @return The object id, or -1 if the id field is missing or malformed.
+     */
+    private static long getSourceObjectId(Map<String, String> fields) {
+        String docId = fields.get(Server.Schema.ID.toString());
+        if (null == docId) {
+            return -1;
+        }
+        int separator = docId.indexOf(Server.ID_CHUNK_SEP);
+        try {
+            return Long.parseLong((separator == -1) ? docId : docId.substring(0, separator));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
     }
 
     /**
@@ -349,14 +489,68 @@ static int getTimeout(long size) {
      * searches)
      */
     void commit() {
+        long flushedSequence = flush();
         try {
             solrServer.commit();
+            committedIngestSequence.accumulateAndGet(flushedSequence, Math::max);
             uncommitedIngests = false;
+            // Only the hits of the documents now in the index are kept.
+            RegexHitIndex regexHitIndex = solrServer.getRegexHitIndex();
+            if (null != regexHitIndex) {
+                regexHitIndex.commit(flushedSequence);
+            }
         } catch (NoOpenCoreException | SolrServerException ex) {
             logger.log(Level.WARNING, "Error commiting index", ex); //NON-NLS
         }
     }
 
+    /**
+     * Registers regular expressions to be matched against the documents added
+     * to the index from now on, so that searches for them can use the hits
+     * found while indexing. Does nothing if the current core does not support
+     * ingest sequence numbers.
+     *
+     * @param regexes The expressions.
+     */
+    void registerRegexes(Collection<String> regexes) {
+        RegexHitIndex regexHitIndex = solrServer.getRegexHitIndex();
+        if (null != regexHitIndex && solrServer.isIngestSequenceSupported() && !regexes.isEmpty()) {
+            regexHitIndex.register(regexes, batchingIndexer::getLastSequenceNumber);
+        }
+    }
+
+    /**
+     * Gets the highest ingest sequence number of the documents that have been
+     * committed. Every document added with a sequence number up to this value
+     * is searchable.
+     *
+     * @return The sequence number, or -1 if nothing has been committed or the
+     *         current core does not support ingest sequence numbers.
+     */
+    long getCommittedIngestSequence() {
+        if (!solrServer.isIngestSequenceSupported()) {
+            return -1;
+        }
+        return committedIngestSequence.get();
+    }
+
+    /**
+     * Sends any buffered documents to Solr and waits for them to be added to
+     * the index.
+     *
+     * @return The highest ingest sequence number of the documents sent, or -1
+     *         if interrupted.
+     */
+    long flush() {
+        try {
+            return batchingIndexer.flush();
+        } catch (InterruptedException ex) {
+            logger.log(Level.WARNING, "Interrupted while sending buffered documents to the index", ex); //NON-NLS
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
     /**
      * ContentStream to read() the data from a FsContent object
      */
@@ -0,0 +1,509 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Finds literal keywords in text with an Aho-Corasick automaton, in a single
+ * pass over the text however many keywords there are.
+ * <p>
+ * Matching approximates the phrase queries used to search for literal
+ * keywords in the text field of the index: it is case insensitive, matches
+ * whole words only, and ignores the punctuation and white space between
+ * words. The text and the keywords are split into words with the word
+ * boundary rules of Unicode Standard Annex #29, as the StandardTokenizer of
+ * the text field does, so that, for example, a keyword does not match a part
+ * of a host name such as www.example.com or of an identifier such as foo_bar,
+ * which the tokenizer keeps as one word. Ideographic and Hiragana characters
+ * are words of their own. Keywords without any letters or digits cannot be
+ * matched.
+ * <p>
+ * Instances are immutable and can be used by several threads at once.
+ */
+final class KeywordMatcher {
+
+    private static final char SEPARATOR = ' ';
+    // &laquo;, the tag the highlighter puts around the hits in snippets
+    private static final char HIGHLIGHT_MARK = '\u00AB';
+    private final List<Keyword> keywords = new ArrayList<>();
+    private final List<Integer> patternLengths = new ArrayList<>();
+    private final Node root = new Node();
+    private final int maxPatternLength;
+
+    /**
+     * A match of a keyword in a text.
+     */
+    static final class Match {
+
+        private final int start;
+        private final int end;
+
+        private Match(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Gets the index of the first character of the match.
+         *
+         * @return The index.
+         */
+        int getStart() {
+            return start;
+        }
+
+        /**
+         * Gets the index after the last character of the match.
+         *
+         * @return The index.
+         */
+        int getEnd() {
+            return end;
+        }
+    }
+
+    /**
+     * Compiles literal keywords into a matcher. Keywords that are regular
+     * expressions or have no letters or digits are left out.
+     *
+     * @param keywords The keywords.
+     */
+    KeywordMatcher(Collection<Keyword> keywords) {
+        int longest = 0;
+        for (Keyword keyword : keywords) {
+            if (!keyword.isLiteral() || this.keywords.contains(keyword)) {
+                continue;
+            }
+            String pattern = normalize(keyword.getQuery());
+            if (pattern.trim().isEmpty()) {
+                continue;
+            }
+            Node node = root;
+            for (int i = 0; i < pattern.length(); ++i) {
+                node = node.addChild(pattern.charAt(i));
+            }
+            node.outputs = appendOutput(node.outputs, this.keywords.size());
+            this.keywords.add(keyword);
+            patternLengths.add(pattern.length());
+            longest = Math.max(longest, pattern.length());
+        }
+        maxPatternLength = longest;
+        buildFailureLinks();
+    }
+
+    /**
+     * Determines whether or not a keyword is found by this matcher.
+     *
+     * @param keyword The keyword.
+     *
+     * @return True or false.
+     */
+    boolean canMatch(Keyword keyword) {
+        return keywords.contains(keyword);
+    }
+
+    /**
+     * Gets the keywords found by this matcher.
+     *
+     * @return The keywords.
+     */
+    List<Keyword> getKeywords() {
+        return new ArrayList<>(keywords);
+    }
+
+    /**
+     * Finds the first match of each keyword in a text.
+     *
+     * @param text The text.
+     *
+     * @return The first match of each keyword found, by keyword.
+     */
+    Map<Keyword, Match> findFirstMatches(String text) {
+        Map<Keyword, Match> matches = new LinkedHashMap<>();
+        if (keywords.isEmpty()) {
+            return matches;
+        }
+        // The original index of each of the last characters fed to the
+        // automaton, to map a match back to the text
+        final int[] sourceIndexes = new int[maxPatternLength + 1];
+        long fed = 0;
+        // The text is fed to the automaton normalized the way the patterns
+        // are: its words, between separators.
+        Node state = feed(root, SEPARATOR, -1, fed++, sourceIndexes, matches);
+        int start = nextWordStart(text, 0);
+        while (start >= 0 && matches.size() < keywords.size()) {
+            int end = wordEnd(text, start);
+            for (int i = start; i < end;) {
+                int codePoint = text.codePointAt(i);
+                char[] chars = Character.toChars(Character.toLowerCase(codePoint));
+                for (int j = 0; j < chars.length; ++j) {
+                    state = feed(state, chars[j], Math.min(i + j, end - 1), fed++, sourceIndexes, matches);
+                }
+                i += Character.charCount(codePoint);
+            }
+            state = feed(state, SEPARATOR, end, fed++, sourceIndexes, matches);
+            start = nextWordStart(text, end);
+        }
+        return matches;
+    }
+
+    private Node feed(Node state, char ch, int sourceIndex, long position, int[] sourceIndexes, Map<Keyword, Match> matches) {
+        sourceIndexes[(int) (position % sourceIndexes.length)] = sourceIndex;
+        Node next = state.getChild(ch);
+        while (null == next && state != root) {
+            state = state.failure;
+            next = state.getChild(ch);
+        }
+        if (null == next) {
+            return root;
+        }
+        for (int keywordIndex : next.outputs) {
+            Keyword keyword = keywords.get(keywordIndex);
+            if (!matches.containsKey(keyword)) {
+                // The pattern starts and ends with a separator; the match is
+                // the characters in between.
+                int patternLength = patternLengths.get(keywordIndex);
+                int start = sourceIndexes[(int) ((position - patternLength + 2) % sourceIndexes.length)];
+                int end = sourceIndexes[(int) ((position - 1) % sourceIndexes.length)] + 1;
+                matches.put(keyword, new Match(start, Math.max(start, end)));
+            }
+        }
+        return next;
+    }
+
+    private void buildFailureLinks() {
+        Queue<Node> queue = new ArrayDeque<>();
+        for (Node child : root.children) {
+            child.failure = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.remove();
+            for (int i = 0; i < node.labels.length; ++i) {
+                char label = node.labels[i];
+                Node child = node.children[i];
+                Node failure = node.failure;
+                while (null == failure.getChild(label) && failure != root) {
+                    failure = failure.failure;
+                }
+                Node target = failure.getChild(label);
+                child.failure = (null == target || target == child) ? root : target;
+                for (int output : child.failure.outputs) {
+                    child.outputs = appendOutput(child.outputs, output);
+                }
+                queue.add(child);
+            }
+        }
+    }
+
+    private int[] appendOutput(int[] outputs, int keywordIndex) {
+        int[] newOutputs = Arrays.copyOf(outputs, outputs.length + 1);
+        newOutputs[outputs.length] = keywordIndex;
+        return newOutputs;
+    }
+
+    /**
+     * Normalizes a keyword into the pattern fed to the automaton: its lower
+     * case words separated by single separators, with a separator at each end.
+     *
+     * @param keyword The keyword.
+     *
+     * @return The pattern.
+     */
+    private static String normalize(String keyword) {
+        StringBuilder pattern = new StringBuilder(keyword.length() + 2);
+        pattern.append(SEPARATOR);
+        int start = nextWordStart(keyword, 0);
+        while (start >= 0) {
+            int end = wordEnd(keyword, start);
+            for (int i = start; i < end;) {
+                int codePoint = keyword.codePointAt(i);
+                pattern.appendCodePoint(Character.toLowerCase(codePoint));
+                i += Character.charCount(codePoint);
+            }
+            pattern.append(SEPARATOR);
+            start = nextWordStart(keyword, end);
+        }
+        return pattern.toString();
+    }
+
+    /*
+     * The word break property values of UAX #29 that matter for finding the
+     * words the StandardTokenizer indexes.
+     */
+    private enum WordBreak {
+        LETTER, NUMERIC, KATAKANA, IDEOGRAPHIC, HIRAGANA, EXTEND_NUM_LET,
+        MID_LETTER, MID_NUM, MID_NUM_LET, EXTEND, OTHER
+    }
+
+    private static WordBreak getWordBreak(int codePoint) {
+        switch (codePoint) {
+            case ':':
+            case '\u00B7':
+            case '\u0387':
+            case '\u05F4':
+            case '\u2027':
+            case '\uFE13':
+            case '\uFE55':
+            case '\uFF1A':
+                return WordBreak.MID_LETTER;
+            case ',':
+            case ';':
+            case '\u037E':
+            case '\u0589':
+            case '\u060C':
+            case '\u060D':
+            case '\u066C':
+            case '\u07F8':
+            case '\u2044':
+            case '\uFE10':
+            case '\uFE14':
+            case '\uFE50':
+            case '\uFE54':
+            case '\uFF0C':
+            case '\uFF1B':
+                return WordBreak.MID_NUM;
+            case '.':
+            case '\'':
+            case '\u2018':
+            case '\u2019':
+            case '\u2024':
+            case '\uFE52':
+            case '\uFF07':
+            case '\uFF0E':
+                return WordBreak.MID_NUM_LET;
+            case '\u3031':
+            case '\u3032':
+            case '\u3033':
+            case '\u3034':
+            case '\u3035':
+            case '\u309B':
+            case '\u309C':
+            case '\u30A0':
+            case '\u30FC':
+            case '\uFF70':
+                return WordBreak.KATAKANA;
+            default:
+                break;
+        }
+        switch (Character.getType(codePoint)) {
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+            case Character.FORMAT:
+                return WordBreak.EXTEND;
+            case Character.CONNECTOR_PUNCTUATION:
+                return WordBreak.EXTEND_NUM_LET;
+            case Character.DECIMAL_DIGIT_NUMBER:
+                return WordBreak.NUMERIC;
+            default:
+                break;
+        }
+        if (Character.isIdeographic(codePoint)) {
+            return WordBreak.IDEOGRAPHIC;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        if (script == Character.UnicodeScript.HIRAGANA) {
+            return WordBreak.HIRAGANA;
+        } else if (script == Character.UnicodeScript.KATAKANA) {
+            return WordBreak.KATAKANA;
+        } else if (Character.isLetter(codePoint)) {
+            return WordBreak.LETTER;
+        }
+        return WordBreak.OTHER;
+    }
+
+    private static boolean isWordCharacter(WordBreak wordBreak) {
+        return wordBreak == WordBreak.LETTER || wordBreak == WordBreak.NUMERIC || wordBreak == WordBreak.KATAKANA
+                || wordBreak == WordBreak.IDEOGRAPHIC || wordBreak == WordBreak.HIRAGANA;
+    }
+
+    /**
+     * Finds the start of the next word of a text.
+     *
+     * @param text The text.
+     * @param from The index to start looking at.
+     *
+     * @return The index of the first character of the word, or -1 if there
+     *         are no more words.
+     */
+    private static int nextWordStart(String text, int from) {
+        int i = from;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            WordBreak wordBreak = getWordBreak(codePoint);
+            if (isWordCharacter(wordBreak)) {
+                return i;
+            }
+            if (wordBreak == WordBreak.EXTEND_NUM_LET) {
+                // A run of connectors starts a word if a letter, digit or
+                // Katakana follows it (WB13b)
+                int j = i;
+                WordBreak next = wordBreak;
+                while (j < text.length() && (next == WordBreak.EXTEND_NUM_LET || next == WordBreak.EXTEND)) {
+                    j += Character.charCount(text.codePointAt(j));
+                    next = j < text.length() ? getWordBreak(text.codePointAt(j)) : WordBreak.OTHER;
+                }
+                if (next == WordBreak.LETTER || next == WordBreak.NUMERIC || next == WordBreak.KATAKANA) {
+                    return i;
+                }
+                i = j;
+                continue;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the end of a word of a text with the word boundary rules of UAX
+     * #29.
+     *
+     * @param text  The text.
+     * @param start The index of the first character of the word.
+     *
+     * @return The index after the last character of the word.
+     */
+    private static int wordEnd(String text, int start) {
+        int i = start;
+        WordBreak previous = getWordBreak(text.codePointAt(i));
+        i += Character.charCount(text.codePointAt(i));
+        boolean single = previous == WordBreak.IDEOGRAPHIC || previous == WordBreak.HIRAGANA;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            WordBreak current = getWordBreak(codePoint);
+            if (current == WordBreak.EXTEND) {
+                // Marks and format characters stay with what precedes them (WB4)
+                i += Character.charCount(codePoint);
+                continue;
+            }
+            if (single) {
+                break;
+            }
+            if (joins(previous, current)) {
+                previous = current;
+                i += Character.charCount(codePoint);
+                continue;
+            }
+            // A punctuation character between two letters or two digits
+            // (WB6, WB7, WB11, WB12)
+            int next = skipExtend(text, i + Character.charCount(codePoint));
+            WordBreak following = next < text.length() ? getWordBreak(text.codePointAt(next)) : WordBreak.OTHER;
+            boolean betweenLetters = previous == WordBreak.LETTER && following == WordBreak.LETTER
+                    && (current == WordBreak.MID_LETTER || current == WordBreak.MID_NUM_LET);
+            boolean betweenDigits = previous == WordBreak.NUMERIC && following == WordBreak.NUMERIC
+                    && (current == WordBreak.MID_NUM || current == WordBreak.MID_NUM_LET);
+            if (!betweenLetters && !betweenDigits) {
+                break;
+            }
+            i = next;
+        }
+        return i;
+    }
+
+    /**
+     * Determines whether there is no word boundary between two adjacent
+     * characters (WB5, WB8 to WB10, WB13 to WB13b).
+     */
+    private static boolean joins(WordBreak previous, WordBreak current) {
+        switch (current) {
+            case LETTER:
+            case NUMERIC:
+                return previous == WordBreak.LETTER || previous == WordBreak.NUMERIC || previous == WordBreak.EXTEND_NUM_LET;
+            case KATAKANA:
+                return previous == WordBreak.KATAKANA || previous == WordBreak.EXTEND_NUM_LET;
+            case EXTEND_NUM_LET:
+                return previous == WordBreak.LETTER || previous == WordBreak.NUMERIC || previous == WordBreak.KATAKANA
+                        || previous == WordBreak.EXTEND_NUM_LET;
+            default:
+                return false;
+        }
+    }
+
+    private static int skipExtend(String text, int from) {
+        int i = from;
+        while (i < text.length() && getWordBreak(text.codePointAt(i)) == WordBreak.EXTEND) {
+            i += Character.charCount(text.codePointAt(i));
+        }
+        return i;
+    }
+
+    /**
+     * Gets a snippet of the text around a match, with the match marked the way
+     * the highlighter marks the snippets of search results.
+     *
+     * @param text  The text.
+     * @param match The match.
+     *
+     * @return The snippet.
+     */
+    static String getSnippet(String text, Match match) {
+        int context = Math.max(0, (LuceneQuery.SNIPPET_LENGTH - (match.getEnd() - match.getStart())) / 2);
+        int from = Math.max(0, match.getStart() - context);
+        int to = Math.min(text.length(), match.getEnd() + context);
+        StringBuilder snippet = new StringBuilder();
+        snippet.append(text, from, match.getStart())
+                .append(HIGHLIGHT_MARK).append(text, match.getStart(), match.getEnd()).append(HIGHLIGHT_MARK)
+                .append(text, match.getEnd(), to);
+        return snippet.toString().replaceAll("\\s+", " ").trim(); //NON-NLS
+    }
+
+    /**
+     * A state of the automaton.
+     */
+    private static final class Node {
+
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private Node failure;
+        private int[] outputs = new int[0];
+
+        private Node getChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return (index >= 0) ? children[index] : null;
+        }
+
+        private Node addChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newLabels[insertAt] = label;
+            newChildren[insertAt] = new Node();
+            System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            labels = newLabels;
+            children = newChildren;
+            return newChildren[insertAt];
+        }
+    }
+}
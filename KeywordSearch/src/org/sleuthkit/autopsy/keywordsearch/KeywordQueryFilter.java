@@ -25,16 +25,20 @@
 /**
  *
  * Filter to restrict query only specific files, chunks, images Single filter
- * supports multiple ids per file/chunk/image, that act as OR filter
+ * supports multiple ids per file/chunk/image, that act as OR filter. An ingest
+ * sequence filter restricts the query to the documents added within a range of
+ * ingest sequence numbers instead.
  */
 class KeywordQueryFilter {
 
     public static enum FilterType {
 
-        FILE, CHUNK, DATA_SOURCE
+        FILE, CHUNK, DATA_SOURCE, INGEST_SEQUENCE
     };
     private Set<Long> idFilters;
     private FilterType filterType;
+    private long sequenceFrom;
+    private long sequenceTo;
 
     public KeywordQueryFilter(FilterType filterType, long id) {
         this.filterType = filterType;
@@ -47,6 +51,20 @@ public KeywordQueryFilter(FilterType filterType, Set<Long> ids) {
         this.idFilters = ids;
     }
 
+    /**
+     * Constructs a filter that restricts a query to the documents with an
+     * ingest sequence number in a range.
+     *
+     * @param sequenceFrom The lower bound, exclusive.
+     * @param sequenceTo   The upper bound, inclusive.
+     */
+    KeywordQueryFilter(long sequenceFrom, long sequenceTo) {
+        this.filterType = FilterType.INGEST_SEQUENCE;
+        this.idFilters = new HashSet<Long>();
+        this.sequenceFrom = sequenceFrom;
+        this.sequenceTo = sequenceTo;
+    }
+
     public Set<Long> getIdFilters() {
         return idFilters;
     }
@@ -55,8 +73,33 @@ public FilterType getFilterType() {
         return filterType;
     }
 
+    /**
+     * Determines whether or not the filter accepts a regex hit recorded while
+     * indexing, the way the query filter it stands for accepts the document
+     * of the hit.
+     *
+     * @param hit The hit.
+     *
+     * @return True or false.
+     */
+    boolean accepts(RegexHitIndex.Hit hit) {
+        switch (filterType) {
+            case INGEST_SEQUENCE:
+                return hit.getIngestSequence() > sequenceFrom && hit.getIngestSequence() <= sequenceTo;
+            case DATA_SOURCE:
+                return idFilters.contains(hit.getDataSourceId());
+            case CHUNK:
+                return hit.getChunkId() != 0 && idFilters.contains(hit.getObjectId());
+            default:
+                return hit.getChunkId() == 0 && idFilters.contains(hit.getObjectId());
+        }
+    }
+
     @Override
     public String toString() {
+        if (filterType == FilterType.INGEST_SEQUENCE) {
+            return Server.Schema.INGEST_SEQUENCE.toString() + ":{" + sequenceFrom + " TO " + sequenceTo + "]"; //NON-NLS
+        }
         StringBuilder sb = new StringBuilder();
         String id = null;
 
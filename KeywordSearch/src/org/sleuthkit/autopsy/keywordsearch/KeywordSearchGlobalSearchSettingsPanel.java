@@ -44,8 +44,12 @@ class KeywordSearchGlobalSearchSettingsPanel extends javax.swing.JPanel implemen
     private void activateWidgets() {
         skipNSRLCheckBox.setSelected(KeywordSearchSettings.getSkipKnown());
         showSnippetsCB.setSelected(KeywordSearchSettings.getShowSnippets());
+        tuningProfileComboBox.setSelectedItem(KeywordSearchSettings.getSolrTuningProfile());
+        findHitsWhileIndexingCB.setSelected(KeywordSearchSettings.getFindHitsWhileIndexing());
+        queryThreadsSpinner.setValue(KeywordSearchSettings.getQueryThreads());
         boolean enable = !IngestManager.getInstance().isIngestRunning();
         skipNSRLCheckBox.setEnabled(enable);
+        findHitsWhileIndexingCB.setEnabled(enable);
         setTimeSettingEnabled(enable);
 
         final UpdateFrequency curFreq = KeywordSearchSettings.getUpdateFrequency();
@@ -99,6 +103,11 @@ private void initComponents() {
         timeRadioButton4 = new javax.swing.JRadioButton();
         showSnippetsCB = new javax.swing.JCheckBox();
         timeRadioButton5 = new javax.swing.JRadioButton();
+        findHitsWhileIndexingCB = new javax.swing.JCheckBox();
+        tuningProfileLabel = new javax.swing.JLabel();
+        tuningProfileComboBox = new javax.swing.JComboBox<>();
+        queryThreadsLabel = new javax.swing.JLabel();
+        queryThreadsSpinner = new javax.swing.JSpinner();
 
         skipNSRLCheckBox.setText(org.openide.util.NbBundle.getMessage(KeywordSearchGlobalSearchSettingsPanel.class, "KeywordSearchGlobalSearchSettingsPanel.skipNSRLCheckBox.text")); // NOI18N
         skipNSRLCheckBox.setToolTipText(org.openide.util.NbBundle.getMessage(KeywordSearchGlobalSearchSettingsPanel.class, "KeywordSearchGlobalSearchSettingsPanel.skipNSRLCheckBox.toolTipText")); // NOI18N
@@ -140,6 +149,19 @@ public void actionPerformed(java.awt.event.ActionEvent evt) {
             }
         });
 
+        findHitsWhileIndexingCB.setText(org.openide.util.NbBundle.getMessage(KeywordSearchGlobalSearchSettingsPanel.class, "KeywordSearchGlobalSearchSettingsPanel.findHitsWhileIndexingCB.text")); // NOI18N
+        findHitsWhileIndexingCB.setToolTipText(org.openide.util.NbBundle.getMessage(KeywordSearchGlobalSearchSettingsPanel.class, "KeywordSearchGlobalSearchSettingsPanel.findHitsWhileIndexingCB.toolTipText")); // NOI18N
+
+        tuningProfileLabel.setText(org.openide.util.NbBundle.getMessage(KeywordSearchGlobalSearchSettingsPanel.class, "KeywordSearchGlobalSearchSettingsPanel.tuningProfileLabel.text")); // NOI18N
+        tuningProfileLabel.setToolTipText(org.openide.util.NbBundle.getMessage(KeywordSearchGlobalSearchSettingsPanel.class, "KeywordSearchGlobalSearchSettingsPanel.tuningProfileLabel.toolTipText")); // NOI18N
+
+        tuningProfileComboBox.setToolTipText(org.openide.util.NbBundle.getMessage(KeywordSearchGlobalSearchSettingsPanel.class, "KeywordSearchGlobalSearchSettingsPanel.tuningProfileComboBox.toolTipText")); // NOI18N
+
+        queryThreadsLabel.setText(org.openide.util.NbBundle.getMessage(KeywordSearchGlobalSearchSettingsPanel.class, "KeywordSearchGlobalSearchSettingsPanel.queryThreadsLabel.text")); // NOI18N
+        queryThreadsLabel.setToolTipText(org.openide.util.NbBundle.getMessage(KeywordSearchGlobalSearchSettingsPanel.class, "KeywordSearchGlobalSearchSettingsPanel.queryThreadsLabel.toolTipText")); // NOI18N
+
+        queryThreadsSpinner.setToolTipText(org.openide.util.NbBundle.getMessage(KeywordSearchGlobalSearchSettingsPanel.class, "KeywordSearchGlobalSearchSettingsPanel.queryThreadsSpinner.toolTipText")); // NOI18N
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(this);
         this.setLayout(layout);
         layout.setHorizontalGroup(
@@ -160,6 +182,15 @@ public void actionPerformed(java.awt.event.ActionEvent evt) {
                         .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                             .addComponent(skipNSRLCheckBox)
                             .addComponent(showSnippetsCB)
+                            .addComponent(findHitsWhileIndexingCB)
+                            .addGroup(layout.createSequentialGroup()
+                                .addComponent(tuningProfileLabel)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(tuningProfileComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                            .addGroup(layout.createSequentialGroup()
+                                .addComponent(queryThreadsLabel)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(queryThreadsSpinner, javax.swing.GroupLayout.PREFERRED_SIZE, 50, javax.swing.GroupLayout.PREFERRED_SIZE))
                             .addComponent(filesIndexedLabel)
                             .addGroup(layout.createSequentialGroup()
                                 .addGap(141, 141, 141)
@@ -191,6 +222,16 @@ public void actionPerformed(java.awt.event.ActionEvent evt) {
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(showSnippetsCB)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(findHitsWhileIndexingCB)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(tuningProfileLabel)
+                    .addComponent(tuningProfileComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(queryThreadsLabel)
+                    .addComponent(queryThreadsSpinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(frequencyLabel)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(timeRadioButton1)
@@ -227,9 +268,12 @@ private void timeRadioButton5ActionPerformed(java.awt.event.ActionEvent evt) {//
     private javax.swing.JLabel chunksValLabel;
     private javax.swing.JLabel filesIndexedLabel;
     private javax.swing.JLabel filesIndexedValue;
+    private javax.swing.JCheckBox findHitsWhileIndexingCB;
     private javax.swing.JLabel frequencyLabel;
     private javax.swing.JLabel informationLabel;
     private javax.swing.JSeparator informationSeparator;
+    private javax.swing.JLabel queryThreadsLabel;
+    private javax.swing.JSpinner queryThreadsSpinner;
     private javax.swing.JLabel settingsLabel;
     private javax.swing.JSeparator settingsSeparator;
     private javax.swing.JCheckBox showSnippetsCB;
@@ -240,6 +284,8 @@ private void timeRadioButton5ActionPerformed(java.awt.event.ActionEvent evt) {//
     private javax.swing.JRadioButton timeRadioButton3;
     private javax.swing.JRadioButton timeRadioButton4;
     private javax.swing.JRadioButton timeRadioButton5;
+    private javax.swing.JComboBox<SolrTuningProfile> tuningProfileComboBox;
+    private javax.swing.JLabel tuningProfileLabel;
     // End of variables declaration//GEN-END:variables
 
     @Override
@@ -247,6 +293,9 @@ public void store() {
         KeywordSearchSettings.setSkipKnown(skipNSRLCheckBox.isSelected());
         KeywordSearchSettings.setUpdateFrequency(getSelectedTimeValue());
         KeywordSearchSettings.setShowSnippets(showSnippetsCB.isSelected());
+        KeywordSearchSettings.setSolrTuningProfile((SolrTuningProfile) tuningProfileComboBox.getSelectedItem());
+        KeywordSearchSettings.setFindHitsWhileIndexing(findHitsWhileIndexingCB.isSelected());
+        KeywordSearchSettings.setQueryThreads((Integer) queryThreadsSpinner.getValue());
     }
 
     @Override
@@ -286,6 +335,10 @@ private void customizeComponents() {
         timeGroup.add(timeRadioButton4);
         timeGroup.add(timeRadioButton5);
 
+        tuningProfileComboBox.setModel(new javax.swing.DefaultComboBoxModel<>(SolrTuningProfile.values()));
+        queryThreadsSpinner.setModel(new javax.swing.SpinnerNumberModel(KeywordSearchSettings.DEFAULT_QUERY_THREADS,
+                KeywordSearchSettings.MIN_QUERY_THREADS, KeywordSearchSettings.MAX_QUERY_THREADS, 1));
+
         this.skipNSRLCheckBox.setSelected(KeywordSearchSettings.getSkipKnown());
 
         try {
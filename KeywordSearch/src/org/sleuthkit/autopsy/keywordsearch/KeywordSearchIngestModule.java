@@ -20,8 +20,10 @@
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import org.openide.util.NbBundle;
@@ -30,6 +32,7 @@
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.autopsy.coreutils.MessageNotifyUtil;
 import org.sleuthkit.autopsy.coreutils.StringExtract.StringExtractUnicodeTable.SCRIPT;
+import org.sleuthkit.autopsy.ingest.CachedFileContent;
 import org.sleuthkit.autopsy.ingest.FileIngestModule;
 import org.sleuthkit.autopsy.ingest.IngestJobContext;
 import org.sleuthkit.autopsy.ingest.IngestMessage;
@@ -103,6 +106,11 @@ private enum IngestStatus {
         SKIPPED_ERROR_IO    ///< File was skipped because of IO issues reading it
     };
     private static final Map<Long, Map<Long, IngestStatus>> ingestStatus = new HashMap<>(); //guarded by itself
+    // Documents are sent to Solr in batches in the background, so failures to
+    // add them to the index are collected per job and applied to the ingest
+    // status of the files when the job is summarized.
+    private static final Map<Long, Set<Long>> indexingFailures = new HashMap<>(); //guarded by ingestStatus
+    private static final Map<Long, BatchingIndexer.FailureListener> indexingFailureListeners = new HashMap<>(); //guarded by ingestStatus
 
     private static void putIngestStatus(long ingestJobId, long fileId, IngestStatus status) {
         synchronized (ingestStatus) {
@@ -117,6 +125,54 @@ private static void putIngestStatus(long ingestJobId, long fileId, IngestStatus
         }
     }
 
+    private static void putIndexingFailure(long ingestJobId, long fileId) {
+        synchronized (ingestStatus) {
+            Set<Long> failuresForJob = indexingFailures.get(ingestJobId);
+            if (failuresForJob == null) {
+                failuresForJob = new HashSet<>();
+                indexingFailures.put(ingestJobId, failuresForJob);
+            }
+            failuresForJob.add(fileId);
+        }
+    }
+
+    /**
+     * Starts collecting the indexing failures reported by the ingester for an
+     * ingest job. Failures are reported for all files being indexed, so only
+     * those for files with an ingest status for the job are applied.
+     *
+     * @param ingester    The ingester.
+     * @param ingestJobId The ingest job id.
+     */
+    private static void startCollectingIndexingFailures(Ingester ingester, final long ingestJobId) {
+        BatchingIndexer.FailureListener listener = (long sourceObjectId, String documentId, KeywordSearchModuleException ex) -> {
+            putIndexingFailure(ingestJobId, sourceObjectId);
+        };
+        synchronized (ingestStatus) {
+            indexingFailureListeners.put(ingestJobId, listener);
+        }
+        ingester.addFailureListener(listener);
+    }
+
+    /**
+     * Stops collecting indexing failures for an ingest job and discards the
+     * ingest status of the job.
+     *
+     * @param ingester    The ingester.
+     * @param ingestJobId The ingest job id.
+     */
+    private static void removeJobStatus(Ingester ingester, long ingestJobId) {
+        BatchingIndexer.FailureListener listener;
+        synchronized (ingestStatus) {
+            ingestStatus.remove(ingestJobId);
+            indexingFailures.remove(ingestJobId);
+            listener = indexingFailureListeners.remove(ingestJobId);
+        }
+        if (null != listener) {
+            ingester.removeFailureListener(listener);
+        }
+    }
+
     KeywordSearchIngestModule(KeywordSearchJobSettings settings) {
         this.settings = settings;
         instanceNum = instanceCount.getAndIncrement();
@@ -150,6 +206,7 @@ public void startUp(IngestJobContext context) throws IngestModuleException {
         // increment the module reference count
         // if first instance of this module for this job then check the server and existence of keywords
         if (refCounter.incrementAndGet(jobId) == 1) {
+            startCollectingIndexingFailures(ingester, jobId);
             if (Case.getCurrentCase().getCaseType() == Case.CaseType.MULTI_USER_CASE) {
                 // for multi-user cases need to verify connection to remore SOLR server
                 KeywordSearchService kwsService = new SolrSearchService();
@@ -231,6 +288,8 @@ public void startUp(IngestJobContext context) throws IngestModuleException {
 
         textExtractors = new ArrayList<>();
         //order matters, more specific extractors first
+        //text saved by an earlier parse of the file is indexed without parsing it again
+        textExtractors.add(new StoredTextExtractor());
         textExtractors.add(new HtmlTextExtractor(this));
         textExtractors.add(new TikaTextExtractor(this));
 
@@ -238,6 +297,18 @@ public void startUp(IngestJobContext context) throws IngestModuleException {
         initialized = true;
     }
 
+    /**
+     * Gets the content of a file for the text extractors, read through the
+     * file content cache of the ingest job.
+     *
+     * @param file The file.
+     *
+     * @return The content of the file.
+     */
+    CachedFileContent getFileContent(AbstractFile file) {
+        return context.getFileContent(file);
+    }
+
     @Override
     public ProcessResult process(AbstractFile abstractFile) {
         if (initialized == false) //error initializing indexing/Solr
@@ -293,10 +364,11 @@ public void shutDown() {
 
         // We only need to post the summary msg from the last module per job
         if (refCounter.decrementAndGet(jobId) == 0) {
+            // Wait for any documents still buffered by the ingester, so that
+            // every indexing failure for the job has been reported.
+            ingester.flush();
             postIndexSummary();
-            synchronized (ingestStatus) {
-                ingestStatus.remove(jobId);
-            }
+            removeJobStatus(ingester, jobId);
         }
 
         //log number of files / chunks in index
@@ -321,6 +393,10 @@ private void stop() {
 
         SearchRunner.getInstance().stopJob(jobId);
 
+        if (refCounter.decrementAndGet(jobId) == 0) {
+            removeJobStatus(ingester, jobId);
+        }
+
         cleanup();
     }
 
@@ -351,6 +427,14 @@ private void postIndexSummary() {
             if (ingestStatusForJob == null) {
                 return;
             }
+            Set<Long> failuresForJob = indexingFailures.get(jobId);
+            if (failuresForJob != null) {
+                for (Long fileId : failuresForJob) {
+                    if (ingestStatusForJob.containsKey(fileId)) {
+                        ingestStatusForJob.put(fileId, IngestStatus.SKIPPED_ERROR_INDEXING);
+                    }
+                }
+            }
             for (IngestStatus s : ingestStatusForJob.values()) {
                 switch (s) {
                     case TEXT_INGESTED:
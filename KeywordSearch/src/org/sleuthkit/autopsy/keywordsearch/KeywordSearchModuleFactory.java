@@ -112,6 +112,11 @@ public boolean isFileIngestModuleFactory() {
         return true;
     }
 
+    @Override
+    public FileIngestModuleWorkload getFileIngestModuleWorkload() {
+        return FileIngestModuleWorkload.CPU_BOUND;
+    }
+
     @Override
     public FileIngestModule createFileIngestModule(IngestModuleIngestJobSettings settings) {
         assert settings instanceof KeywordSearchJobSettings;
@@ -40,6 +40,13 @@ class KeywordSearchSettings {
     static final String PROPERTIES_SCRIPTS = NbBundle.getMessage(KeywordSearchSettings.class, "KeywordSearchSettings.propertiesScripts.text", MODULE_NAME);
     static final String SHOW_SNIPPETS = "showSnippets"; //NON-NLS
     static final boolean DEFAULT_SHOW_SNIPPETS = true;
+    static final String QUERY_THREADS = "QueryThreads"; //NON-NLS
+    static final int MIN_QUERY_THREADS = 1;
+    static final int MAX_QUERY_THREADS = 16;
+    static final int DEFAULT_QUERY_THREADS = Math.max(MIN_QUERY_THREADS, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    static final String SOLR_TUNING_PROFILE = "SolrTuningProfile"; //NON-NLS
+    static final String FIND_HITS_WHILE_INDEXING = "FindHitsWhileIndexing"; //NON-NLS
+    static final boolean DEFAULT_FIND_HITS_WHILE_INDEXING = false;
     private static boolean skipKnown = true;
     private static final Logger logger = Logger.getLogger(KeywordSearchSettings.class.getName());
     private static UpdateFrequency UpdateFreq = UpdateFrequency.DEFAULT;
@@ -141,6 +148,85 @@ static boolean getShowSnippets() {
         }
     }
 
+    /**
+     * Sets the number of keyword queries run at the same time by a periodic
+     * keyword search.
+     *
+     * @param numberOfThreads The number of query threads.
+     */
+    static void setQueryThreads(int numberOfThreads) {
+        ModuleSettings.setConfigSetting(PROPERTIES_OPTIONS, QUERY_THREADS, Integer.toString(numberOfThreads));
+    }
+
+    /**
+     * Gets the number of keyword queries run at the same time by a periodic
+     * keyword search.
+     *
+     * @return The number of query threads, within the allowed range.
+     */
+    static int getQueryThreads() {
+        if (ModuleSettings.settingExists(PROPERTIES_OPTIONS, QUERY_THREADS)) {
+            try {
+                int numberOfThreads = Integer.parseInt(ModuleSettings.getConfigSetting(PROPERTIES_OPTIONS, QUERY_THREADS));
+                return Math.max(MIN_QUERY_THREADS, Math.min(MAX_QUERY_THREADS, numberOfThreads));
+            } catch (NumberFormatException ex) {
+                logger.log(Level.WARNING, "Could not parse property for QueryThreads, returning default value.", ex); //NON-NLS
+            }
+        }
+        return DEFAULT_QUERY_THREADS;
+    }
+
+    /**
+     * Sets the indexing profile of the local Solr server. The profile is
+     * applied the next time the server is started.
+     *
+     * @param profile The profile.
+     */
+    static void setSolrTuningProfile(SolrTuningProfile profile) {
+        ModuleSettings.setConfigSetting(PROPERTIES_OPTIONS, SOLR_TUNING_PROFILE, profile.name());
+    }
+
+    /**
+     * Gets the indexing profile of the local Solr server.
+     *
+     * @return The profile, AUTOMATIC if none is set.
+     */
+    static SolrTuningProfile getSolrTuningProfile() {
+        if (ModuleSettings.settingExists(PROPERTIES_OPTIONS, SOLR_TUNING_PROFILE)) {
+            try {
+                return SolrTuningProfile.valueOf(ModuleSettings.getConfigSetting(PROPERTIES_OPTIONS, SOLR_TUNING_PROFILE));
+            } catch (IllegalArgumentException ex) {
+                logger.log(Level.WARNING, "Could not parse property for SolrTuningProfile, returning default value.", ex); //NON-NLS
+            }
+        }
+        return SolrTuningProfile.AUTOMATIC;
+    }
+
+    /**
+     * Sets whether or not the literal keywords of the lists used by an ingest
+     * job are found in the text of the files as it is indexed, instead of by
+     * periodic searches of the index.
+     *
+     * @param findHitsWhileIndexing True or false.
+     */
+    static void setFindHitsWhileIndexing(boolean findHitsWhileIndexing) {
+        ModuleSettings.setConfigSetting(PROPERTIES_OPTIONS, FIND_HITS_WHILE_INDEXING, (findHitsWhileIndexing ? "true" : "false")); //NON-NLS
+    }
+
+    /**
+     * Gets whether or not the literal keywords of the lists used by an ingest
+     * job are found in the text of the files as it is indexed.
+     *
+     * @return True or false.
+     */
+    static boolean getFindHitsWhileIndexing() {
+        if (ModuleSettings.settingExists(PROPERTIES_OPTIONS, FIND_HITS_WHILE_INDEXING)) {
+            return ModuleSettings.getConfigSetting(PROPERTIES_OPTIONS, FIND_HITS_WHILE_INDEXING).equals("true"); //NON-NLS
+        } else {
+            return DEFAULT_FIND_HITS_WHILE_INDEXING;
+        }
+    }
+
     /**
      * gets the currently set scripts to use
      *
@@ -0,0 +1,181 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest.METHOD;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.sleuthkit.autopsy.coreutils.Logger;
+
+/**
+ * Finds which of a set of literal keywords have hits, using a few batched Solr
+ * requests instead of a request per keyword. Each request ORs a batch of
+ * keywords together and has a facet query per keyword, so one round trip gives
+ * the number of matching documents for every keyword in the batch. A batch with
+ * no hits at all costs a single cheap request.
+ * <p>
+ * The keywords with hits still need a LuceneQuery of their own to get their
+ * hits and snippets; this only avoids running those queries for the keywords,
+ * usually the large majority of a watch list, that have no hits.
+ */
+final class LiteralKeywordBatchQuery {
+
+    private static final Logger logger = Logger.getLogger(LiteralKeywordBatchQuery.class.getName());
+    // Well below the default Solr limit of 1024 boolean clauses per query
+    private static final int MAX_KEYWORDS_PER_REQUEST = 256;
+    private final Map<Keyword, String> queryStrings = new LinkedHashMap<>();
+    private final List<KeywordQueryFilter> filters = new ArrayList<>();
+
+    /**
+     * Adds a literal keyword to search for.
+     *
+     * @param keywordList The list the keyword belongs to.
+     * @param keyword     The keyword.
+     */
+    void addKeyword(KeywordList keywordList, Keyword keyword) {
+        // Build the query string the same way as for a single keyword search,
+        // so that the facet counts match the hits of that search.
+        LuceneQuery query = new LuceneQuery(keywordList, keyword);
+        query.escape();
+        queryStrings.put(keyword, query.getSolrQueryString());
+    }
+
+    /**
+     * Adds a filter to apply to the searches. Multiple filters are ANDed
+     * together.
+     *
+     * @param filter The filter.
+     */
+    void addFilter(KeywordQueryFilter filter) {
+        filters.add(filter);
+    }
+
+    /**
+     * Finds the keywords that have at least one hit. If a batch request fails,
+     * all of the keywords of the batch are assumed to have hits, so that their
+     * own searches are not skipped.
+     *
+     * @return The keywords with hits.
+     *
+     * @throws NoOpenCoreException if there is no open core.
+     */
+    Set<Keyword> findKeywordsWithHits() throws NoOpenCoreException {
+        Set<Keyword> keywordsWithHits = new HashSet<>();
+        for (List<Keyword> batch : groupIntoBatches(queryStrings.keySet(), MAX_KEYWORDS_PER_REQUEST)) {
+            keywordsWithHits.addAll(findKeywordsWithHits(batch));
+        }
+        return keywordsWithHits;
+    }
+
+    private Set<Keyword> findKeywordsWithHits(List<Keyword> batch) throws NoOpenCoreException {
+        SolrQuery q = new SolrQuery();
+        List<String> batchQueryStrings = new ArrayList<>();
+        for (Keyword keyword : batch) {
+            String queryString = queryStrings.get(keyword);
+            batchQueryStrings.add(queryString);
+            q.addFacetQuery(queryString);
+        }
+        q.setQuery(buildOrQuery(batchQueryStrings));
+        q.setRows(0);
+        q.setFacet(true);
+        for (KeywordQueryFilter filter : filters) {
+            q.addFilterQuery(filter.toString());
+        }
+
+        try {
+            QueryResponse response = KeywordSearch.getServer().query(q, METHOD.POST);
+            return getKeywordsWithHits(batch, queryStrings, response.getResults().getNumFound(), response.getFacetQuery());
+        } catch (KeywordSearchModuleException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Error executing batched keyword query for " + batch.size() + " keywords, searching for each keyword instead", ex); //NON-NLS
+            return new HashSet<>(batch);
+        }
+    }
+
+    /**
+     * Groups keywords into batches of at most a given size, keeping their
+     * order.
+     *
+     * @param keywords            The keywords.
+     * @param maxKeywordsPerBatch The maximum number of keywords in a batch.
+     *
+     * @return The batches.
+     */
+    static List<List<Keyword>> groupIntoBatches(Collection<Keyword> keywords, int maxKeywordsPerBatch) {
+        List<List<Keyword>> batches = new ArrayList<>();
+        List<Keyword> batch = new ArrayList<>();
+        for (Keyword keyword : keywords) {
+            batch.add(keyword);
+            if (batch.size() == maxKeywordsPerBatch) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * ORs the query strings of a batch of keywords together.
+     *
+     * @param queryStrings The query strings.
+     *
+     * @return The query string of the batch.
+     */
+    static String buildOrQuery(List<String> queryStrings) {
+        return String.join(" OR ", queryStrings); //NON-NLS
+    }
+
+    /**
+     * Finds the keywords of a batch that have hits from the response to the
+     * batch request. A keyword without a facet count in the response is
+     * assumed to have hits, so that its own search is not skipped.
+     *
+     * @param batch        The keywords of the batch.
+     * @param queryStrings The query strings of the keywords, which are also
+     *                     the keys of the facet counts.
+     * @param numFound     The number of documents that matched the batch.
+     * @param facetCounts  The facet counts of the response, may be null.
+     *
+     * @return The keywords with hits.
+     */
+    static Set<Keyword> getKeywordsWithHits(List<Keyword> batch, Map<Keyword, String> queryStrings, long numFound, Map<String, Integer> facetCounts) {
+        Set<Keyword> keywordsWithHits = new HashSet<>();
+        if (numFound == 0) {
+            return keywordsWithHits;
+        }
+        for (Keyword keyword : batch) {
+            Integer count = (null != facetCounts) ? facetCounts.get(queryStrings.get(keyword)) : null;
+            if (null == count || count > 0) {
+                keywordsWithHits.add(keyword);
+            }
+        }
+        return keywordsWithHits;
+    }
+
+}
@@ -263,15 +263,7 @@ private List<KeywordHit> performLuceneQuery(boolean snippets) throws NoOpenCoreE
     private SolrQuery createAndConfigureSolrQuery(boolean snippets) {
         SolrQuery q = new SolrQuery();
         q.setShowDebugInfo(DEBUG); //debug
-        //set query, force quotes/grouping around all literal queries
-        final String groupedQuery = KeywordSearchUtil.quoteQuery(keywordStringEscaped);
-        String theQueryStr = groupedQuery;
-        if (field != null) {
-            //use the optional field
-            StringBuilder sb = new StringBuilder();
-            sb.append(field).append(":").append(groupedQuery);
-            theQueryStr = sb.toString();
-        }
+        final String theQueryStr = getSolrQueryString();
         q.setQuery(theQueryStr);
         q.setRows(MAX_RESULTS);
 
@@ -305,6 +297,23 @@ private SolrQuery createAndConfigureSolrQuery(boolean snippets) {
         return q;
     }
 
+    /**
+     * Gets the Solr query string for the keyword, without the filters.
+     *
+     * @return The query string.
+     */
+    String getSolrQueryString() {
+        //force quotes/grouping around all literal queries
+        final String groupedQuery = KeywordSearchUtil.quoteQuery(keywordStringEscaped);
+        if (field != null) {
+            //use the optional field
+            StringBuilder sb = new StringBuilder();
+            sb.append(field).append(":").append(groupedQuery);
+            return sb.toString();
+        }
+        return groupedQuery;
+    }
+
     /**
      * Create the minimum set of documents. Ignores chunk IDs. Only one hit per
      * file in results.
@@ -167,6 +167,40 @@ Collection<BlackboardArtifact> writeAllHitsToBlackBoard(ProgressHandle progress,
         return newArtifacts;
     }
 
+    /**
+     * Writes keyword hits found while their text was being indexed to the
+     * blackboard, with the snippets of the hits. The index is not queried for
+     * snippets, since the documents of the hits may not be searchable yet.
+     * Makes one artifact per keyword per object.
+     *
+     * @param notifyInbox Whether or not write a message to the ingest messages
+     *                    inbox.
+     *
+     * @return The artifacts that were created.
+     */
+    Collection<BlackboardArtifact> writeHitsWithSnippetsToBlackBoard(boolean notifyInbox) {
+        final Collection<BlackboardArtifact> newArtifacts = new ArrayList<>();
+        for (final Keyword keyword : getKeywords()) {
+            for (KeywordHit hit : getOneHitPerObject(keyword)) {
+                KeywordCachedArtifact writeResult = keywordSearchQuery.writeSingleFileHitsToBlackBoard(keyword.getQuery(), hit, hit.getSnippet(), keywordList.getName());
+                if (writeResult != null) {
+                    newArtifacts.add(writeResult.getArtifact());
+                    if (notifyInbox) {
+                        writeSingleFileInboxMessage(writeResult, hit.getContent());
+                    }
+                } else {
+                    logger.log(Level.WARNING, "BB artifact for keyword hit not written, file: {0}, hit: {1}", new Object[]{hit.getContent(), keyword.toString()}); //NON-NLS
+                }
+            }
+        }
+
+        if (!newArtifacts.isEmpty()) {
+            IngestServices.getInstance().fireModuleDataEvent(new ModuleDataEvent(KeywordSearchModuleFactory.getModuleName(), BlackboardArtifact.ARTIFACT_TYPE.TSK_KEYWORD_HIT, newArtifacts));
+        }
+
+        return newArtifacts;
+    }
+
     /**
      * Gets the first hit of the keyword.
      *
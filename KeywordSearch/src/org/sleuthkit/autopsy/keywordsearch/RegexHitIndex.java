@@ -0,0 +1,803 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.sleuthkit.autopsy.coreutils.Logger;
+
+/**
+ * Hits of regular expression keywords found while documents are added to the
+ * index, so that regex searches do not need to enumerate the terms dictionary
+ * of the index.
+ * <p>
+ * Every registered expression is matched, case insensitively, against the
+ * whitespace separated tokens of each document added to the index after it
+ * was registered. These are the terms the terms component matches the
+ * expression against in the content_ws field. An expression covers the
+ * documents with an ingest sequence number from the first one assigned after
+ * it was registered; a search can use the recorded hits only if every
+ * document it searches is covered.
+ * <p>
+ * The hits of a document are only recorded once the document has been
+ * committed, and are dropped if the document could not be added to the index.
+ * An expression with too many hits, or with the most hits when all of the
+ * expressions together have too many, is no longer matched, and searches for
+ * it use the terms component again.
+ * <p>
+ * Registrations and hits are appended to a log in the module output directory
+ * of the case and loaded when the case is opened again. The log is rewritten
+ * without the hits that are no longer kept when it is loaded and when it has
+ * grown well past them. If the case was not closed cleanly, or was closed
+ * with hits of uncommitted documents, hits of committed documents may be
+ * missing from the log, so it is started over and the expressions need to be
+ * registered again.
+ * <p>
+ * This class is thread-safe.
+ */
+final class RegexHitIndex {
+
+    private static final Logger logger = Logger.getLogger(RegexHitIndex.class.getName());
+    private static final String LOG_FILE_NAME = "regexhits.log"; //NON-NLS
+    private static final String COMPACTED_LOG_FILE_NAME = "regexhits.log.tmp"; //NON-NLS
+    private static final int LOG_VERSION = 1;
+    private static final byte PATTERN_RECORD = 'P';
+    private static final byte HIT_RECORD = 'H';
+    private static final byte OVERFLOW_RECORD = 'O';
+    private static final byte CLOSED_RECORD = 'C';
+    // Same limits as the whitespace tokenizer and the token count filter of
+    // the content_ws field type
+    private static final int MAX_TOKEN_CHARS = 255;
+    private static final int MAX_TOKENS_PER_TEXT = 200000;
+    // An expression with more hits than this is searched with the terms
+    // component again, and so is the expression with the most hits while all
+    // of them together have more than MAX_HITS, so that the hits do not fill
+    // the heap.
+    private static final int MAX_HITS_PER_PATTERN = 100000;
+    private static final int MAX_HITS = 1000000;
+    // The log is compacted once it has more hit records than this and twice
+    // as many as there are hits kept.
+    private static final long MIN_HIT_RECORDS_TO_COMPACT = 100000;
+    private final Path logPath;
+    // Held for reading from matching a document until it has its sequence
+    // number, so that registering an expression can tell from which sequence
+    // number on every document is matched against it.
+    private final ReadWriteLock registrationLock = new ReentrantReadWriteLock();
+    private final Map<String, RegisteredPattern> patternsByRegex = new HashMap<>(); // Guarded by this
+    private final List<RegisteredPattern> patterns = new ArrayList<>(); // Guarded by this
+    private volatile List<RegisteredPattern> activePatterns = new ArrayList<>();
+    // The hits of the documents that have not been committed yet
+    private final List<PendingHits> pendingHits = new ArrayList<>(); // Guarded by this
+    private int totalHitCount; // Guarded by this
+    private long logHitRecordCount; // Guarded by this
+    private DataOutputStream log; // Guarded by this
+
+    /**
+     * Opens the regex hit index of a case, loading the hits recorded when the
+     * case was open before.
+     *
+     * @param directory The directory for the log.
+     */
+    RegexHitIndex(Path directory) {
+        this.logPath = directory.resolve(LOG_FILE_NAME);
+        boolean loaded = false;
+        if (Files.exists(logPath)) {
+            try {
+                loaded = load();
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Unable to load the regex hit log " + logPath, ex); //NON-NLS
+            }
+            if (!loaded) {
+                logger.log(Level.INFO, "Starting the regex hit log {0} over", logPath); //NON-NLS
+                patternsByRegex.clear();
+                patterns.clear();
+                totalHitCount = 0;
+                logHitRecordCount = 0;
+            }
+        }
+        try {
+            Files.createDirectories(directory);
+            // The log may have been written with higher limits.
+            for (RegisteredPattern pattern : patterns) {
+                if (pattern.hitCount > MAX_HITS_PER_PATTERN) {
+                    overflow(pattern);
+                }
+            }
+            overflowPatterns();
+            if (loaded && logHitRecordCount == totalHitCount) {
+                log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logPath, StandardOpenOption.APPEND)));
+            } else {
+                // Also drops the hits of the expressions that overflowed
+                // from a loaded log.
+                writeCompactedLog();
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Unable to open the regex hit log " + logPath + ", regex hits will not be recorded", ex); //NON-NLS
+            log = null;
+            patternsByRegex.clear();
+            patterns.clear();
+        }
+        updateActivePatterns();
+    }
+
+    /**
+     * Registers regular expressions to be matched against the documents added
+     * to the index from now on. Expressions already registered and invalid
+     * expressions are ignored.
+     *
+     * @param regexes              The expressions.
+     * @param lastSequenceSupplier Supplies the highest ingest sequence number
+     *                             assigned to a document so far.
+     */
+    void register(Collection<String> regexes, LongSupplier lastSequenceSupplier) {
+        synchronized (this) {
+            if (null == log || patternsByRegex.keySet().containsAll(regexes)) {
+                return;
+            }
+        }
+        registrationLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (null == log) {
+                    return;
+                }
+                long coveredFrom = lastSequenceSupplier.getAsLong() + 1;
+                for (String regex : regexes) {
+                    if (patternsByRegex.containsKey(regex)) {
+                        continue;
+                    }
+                    Pattern pattern;
+                    try {
+                        pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+                    } catch (PatternSyntaxException ex) {
+                        continue;
+                    }
+                    RegisteredPattern registeredPattern = new RegisteredPattern(patterns.size(), regex, pattern, coveredFrom);
+                    patternsByRegex.put(regex, registeredPattern);
+                    patterns.add(registeredPattern);
+                    try {
+                        writePatternRecord(registeredPattern);
+                    } catch (IOException ex) {
+                        stopLogging(ex);
+                        return;
+                    }
+                }
+                updateActivePatterns();
+            }
+        } finally {
+            registrationLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Matches the registered expressions against the text of a document that
+     * is about to be added to the index. The matches need to be recorded
+     * before the document is added, and closed after the document was added
+     * and they were given its ingest sequence number, or if adding it failed.
+     *
+     * @param texts The text of each field of the document that is copied to
+     *              the content_ws field.
+     *
+     * @return The matches.
+     */
+    DocumentMatches match(String... texts) {
+        registrationLock.readLock().lock();
+        try {
+            List<RegisteredPattern> patternsToMatch = activePatterns;
+            if (patternsToMatch.isEmpty()) {
+                return new DocumentMatches(new HashMap<>());
+            }
+            Set<String> tokens = new HashSet<>();
+            for (String text : texts) {
+                if (null != text) {
+                    addTokens(text, tokens);
+                }
+            }
+            Map<RegisteredPattern, List<String>> matchedTerms = new HashMap<>();
+            for (RegisteredPattern pattern : patternsToMatch) {
+                Matcher matcher = pattern.pattern.matcher("");
+                for (String token : tokens) {
+                    if (matcher.reset(token).matches()) {
+                        matchedTerms.computeIfAbsent(pattern, p -> new ArrayList<>()).add(token);
+                    }
+                }
+            }
+            return new DocumentMatches(matchedTerms);
+        } catch (RuntimeException | Error ex) {
+            registrationLock.readLock().unlock();
+            throw ex;
+        }
+    }
+
+    /**
+     * Splits text into tokens the way the whitespace tokenizer and the token
+     * count filter of the content_ws field type do: tokens are runs of code
+     * points that are not whitespace, a token is cut off once it is
+     * MAX_TOKEN_CHARS chars long (without splitting a surrogate pair) and the
+     * rest of the run starts a new token, and only the first
+     * MAX_TOKENS_PER_TEXT tokens are kept.
+     *
+     * @param text   The text.
+     * @param tokens The collection to add the tokens to.
+     */
+    static void addTokens(String text, Collection<String> tokens) {
+        int tokenCount = 0;
+        int start = -1;
+        final int length = text.length();
+        int i = 0;
+        while (i < length && tokenCount < MAX_TOKENS_PER_TEXT) {
+            int codePoint = text.codePointAt(i);
+            int end = i + Character.charCount(codePoint);
+            if (Character.isWhitespace(codePoint)) {
+                if (start >= 0) {
+                    tokens.add(text.substring(start, i));
+                    ++tokenCount;
+                    start = -1;
+                }
+            } else {
+                if (start < 0) {
+                    start = i;
+                }
+                if (end - start >= MAX_TOKEN_CHARS) {
+                    tokens.add(text.substring(start, end));
+                    ++tokenCount;
+                    start = -1;
+                }
+            }
+            i = end;
+        }
+        if (start >= 0 && tokenCount < MAX_TOKENS_PER_TEXT) {
+            tokens.add(text.substring(start));
+        }
+    }
+
+    /**
+     * Gets the ingest sequence number from which on every document added to
+     * the index was matched against an expression.
+     *
+     * @param regex The expression.
+     *
+     * @return The sequence number, or -1 if the hits of the expression are not
+     *         recorded.
+     */
+    synchronized long getCoveredFrom(String regex) {
+        RegisteredPattern pattern = patternsByRegex.get(regex);
+        if (null == pattern || pattern.overflowed || null == log) {
+            return -1;
+        }
+        return pattern.coveredFrom;
+    }
+
+    /**
+     * Gets the recorded hits of an expression, grouped by the term that
+     * matched it. A document is listed once per term, however many times it
+     * was added to the index.
+     *
+     * @param regex  The expression.
+     * @param filter Selects the hits to get.
+     *
+     * @return The hits, or null if the hits of the expression are not
+     *         recorded.
+     */
+    synchronized Map<String, List<Hit>> getHits(String regex, Predicate<Hit> filter) {
+        RegisteredPattern pattern = patternsByRegex.get(regex);
+        if (null == pattern || pattern.overflowed || null == log) {
+            return null;
+        }
+        Map<String, List<Hit>> hitsByTerm = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Hit>> entry : pattern.hitsByTerm.entrySet()) {
+            Set<String> documentIds = new HashSet<>();
+            List<Hit> hits = new ArrayList<>();
+            for (Hit hit : entry.getValue()) {
+                if (filter.test(hit) && documentIds.add(hit.getDocumentId())) {
+                    hits.add(hit);
+                }
+            }
+            if (!hits.isEmpty()) {
+                hitsByTerm.put(entry.getKey(), hits);
+            }
+        }
+        return hitsByTerm;
+    }
+
+    /**
+     * Records the hits of the documents that have been committed to the index
+     * and writes them to the log file.
+     *
+     * @param committedSequence The highest ingest sequence number of the
+     *                          documents committed.
+     */
+    synchronized void commit(long committedSequence) {
+        if (null == log) {
+            return;
+        }
+        try {
+            Iterator<PendingHits> iterator = pendingHits.iterator();
+            while (iterator.hasNext()) {
+                PendingHits pending = iterator.next();
+                if (pending.sequence >= 0 && pending.sequence <= committedSequence) {
+                    iterator.remove();
+                    recordHits(pending);
+                }
+            }
+            overflowPatterns();
+            if (logHitRecordCount > MIN_HIT_RECORDS_TO_COMPACT && logHitRecordCount > 2L * totalHitCount) {
+                log.close();
+                writeCompactedLog();
+            } else {
+                log.flush();
+            }
+        } catch (IOException ex) {
+            stopLogging(ex);
+        }
+    }
+
+    /**
+     * Drops the hits of a document that could not be added to the index.
+     *
+     * @param documentId The id of the document.
+     */
+    synchronized void discard(String documentId) {
+        List<PendingHits> discarded = new ArrayList<>();
+        for (PendingHits pending : pendingHits) {
+            if (pending.documentId.equals(documentId)) {
+                discarded.add(pending);
+            }
+        }
+        pendingHits.removeAll(discarded);
+        if (discarded.size() > 1) {
+            // The document is being added more than once, and there is no
+            // telling which of the adds failed, so the expressions it
+            // matched can not rely on the recorded hits anymore.
+            try {
+                for (PendingHits pending : discarded) {
+                    for (RegisteredPattern pattern : pending.matchedTerms.keySet()) {
+                        overflow(pattern);
+                    }
+                }
+            } catch (IOException ex) {
+                stopLogging(ex);
+            }
+        }
+    }
+
+    /**
+     * Closes the log, marking it as complete unless there are hits of
+     * documents that have not been committed. These documents may still be
+     * committed when the index is closed, so the log is started over when the
+     * case is opened again.
+     */
+    synchronized void close() {
+        if (null == log) {
+            return;
+        }
+        try {
+            if (pendingHits.isEmpty()) {
+                log.writeByte(CLOSED_RECORD);
+            } else {
+                logger.log(Level.INFO, "Closing the regex hit log {0} with the hits of {1} uncommitted documents", new Object[]{logPath, pendingHits.size()}); //NON-NLS
+            }
+            log.close();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Error closing the regex hit log " + logPath, ex); //NON-NLS
+        }
+        log = null;
+        pendingHits.clear();
+    }
+
+    private synchronized void addPendingHits(PendingHits pending) {
+        if (null != log) {
+            pendingHits.add(pending);
+        }
+    }
+
+    private synchronized void removePendingHits(PendingHits pending) {
+        pendingHits.remove(pending);
+    }
+
+    private void recordHits(PendingHits pending) throws IOException {
+        for (Map.Entry<RegisteredPattern, List<String>> entry : pending.matchedTerms.entrySet()) {
+            RegisteredPattern pattern = entry.getKey();
+            if (pattern.overflowed) {
+                continue;
+            }
+            for (String term : entry.getValue()) {
+                Hit hit = new Hit(pending.objectId, pending.chunkId, pending.dataSourceId, pending.sequence);
+                pattern.addHit(term, hit);
+                ++totalHitCount;
+                writeHitRecord(pattern, term, hit);
+            }
+            if (pattern.hitCount > MAX_HITS_PER_PATTERN) {
+                overflow(pattern);
+            }
+        }
+    }
+
+    /**
+     * Stops matching the expressions with the most hits while all of the
+     * expressions together have too many.
+     */
+    private void overflowPatterns() throws IOException {
+        while (totalHitCount > MAX_HITS) {
+            RegisteredPattern largest = null;
+            for (RegisteredPattern pattern : patterns) {
+                if (!pattern.overflowed && (null == largest || pattern.hitCount > largest.hitCount)) {
+                    largest = pattern;
+                }
+            }
+            overflow(largest);
+        }
+    }
+
+    private void overflow(RegisteredPattern pattern) throws IOException {
+        if (pattern.overflowed) {
+            return;
+        }
+        totalHitCount -= pattern.hitCount;
+        pattern.overflow();
+        updateActivePatterns();
+        if (null != log) {
+            log.writeByte(OVERFLOW_RECORD);
+            log.writeInt(pattern.index);
+        }
+    }
+
+    private void writeHitRecord(RegisteredPattern pattern, String term, Hit hit) throws IOException {
+        log.writeByte(HIT_RECORD);
+        log.writeInt(pattern.index);
+        log.writeUTF(term);
+        log.writeLong(hit.objectId);
+        log.writeInt(hit.chunkId);
+        log.writeLong(hit.dataSourceId);
+        log.writeLong(hit.ingestSequence);
+        ++logHitRecordCount;
+    }
+
+    /**
+     * Replaces the log with one that has only the registrations, the
+     * overflows and the hits kept, and opens it for appending.
+     *
+     * @throws IOException if there is a problem writing the log.
+     */
+    private void writeCompactedLog() throws IOException {
+        Path compactedLogPath = logPath.resolveSibling(COMPACTED_LOG_FILE_NAME);
+        log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(compactedLogPath)));
+        try {
+            logHitRecordCount = 0;
+            log.writeInt(LOG_VERSION);
+            for (RegisteredPattern pattern : patterns) {
+                writePatternRecord(pattern);
+            }
+            for (RegisteredPattern pattern : patterns) {
+                if (pattern.overflowed) {
+                    log.writeByte(OVERFLOW_RECORD);
+                    log.writeInt(pattern.index);
+                    continue;
+                }
+                for (Map.Entry<String, List<Hit>> entry : pattern.hitsByTerm.entrySet()) {
+                    for (Hit hit : entry.getValue()) {
+                        writeHitRecord(pattern, entry.getKey(), hit);
+                    }
+                }
+            }
+        } finally {
+            log.close();
+        }
+        Files.move(compactedLogPath, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logPath, StandardOpenOption.APPEND)));
+    }
+
+    private void writePatternRecord(RegisteredPattern pattern) throws IOException {
+        log.writeByte(PATTERN_RECORD);
+        log.writeUTF(pattern.regex);
+        log.writeLong(pattern.coveredFrom);
+    }
+
+    /**
+     * Loads the log.
+     *
+     * @return True if the log was closed cleanly and is loaded, false if it
+     *         needs to be started over.
+     *
+     * @throws IOException if there is a problem reading the log.
+     */
+    private boolean load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logPath)))) {
+            if (in.readInt() != LOG_VERSION) {
+                return false;
+            }
+            byte lastRecord = 0;
+            while (true) {
+                byte record;
+                try {
+                    record = in.readByte();
+                } catch (EOFException ex) {
+                    return lastRecord == CLOSED_RECORD;
+                }
+                switch (record) {
+                    case PATTERN_RECORD: {
+                        String regex = in.readUTF();
+                        long coveredFrom = in.readLong();
+                        Pattern pattern;
+                        try {
+                            pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+                        } catch (PatternSyntaxException ex) {
+                            return false;
+                        }
+                        RegisteredPattern registeredPattern = new RegisteredPattern(patterns.size(), regex, pattern, coveredFrom);
+                        patternsByRegex.put(regex, registeredPattern);
+                        patterns.add(registeredPattern);
+                        break;
+                    }
+                    case HIT_RECORD: {
+                        int index = in.readInt();
+                        String term = in.readUTF();
+                        Hit hit = new Hit(in.readLong(), in.readInt(), in.readLong(), in.readLong());
+                        if (index < 0 || index >= patterns.size()) {
+                            return false;
+                        }
+                        RegisteredPattern pattern = patterns.get(index);
+                        if (!pattern.overflowed) {
+                            pattern.addHit(term, hit);
+                            ++totalHitCount;
+                        }
+                        ++logHitRecordCount;
+                        break;
+                    }
+                    case OVERFLOW_RECORD: {
+                        int index = in.readInt();
+                        if (index < 0 || index >= patterns.size()) {
+                            return false;
+                        }
+                        RegisteredPattern pattern = patterns.get(index);
+                        if (!pattern.overflowed) {
+                            totalHitCount -= pattern.hitCount;
+                            pattern.overflow();
+                        }
+                        break;
+                    }
+                    case CLOSED_RECORD:
+                        break;
+                    default:
+                        return false;
+                }
+                lastRecord = record;
+            }
+        } catch (EOFException ex) {
+            // The log ends in the middle of a record
+            return false;
+        }
+    }
+
+    private synchronized void stopLogging(IOException ex) {
+        logger.log(Level.WARNING, "Error writing the regex hit log " + logPath + ", regex hits will not be recorded", ex); //NON-NLS
+        try {
+            log.close();
+        } catch (IOException ignored) {
+        }
+        log = null;
+        patternsByRegex.clear();
+        patterns.clear();
+        pendingHits.clear();
+        totalHitCount = 0;
+        updateActivePatterns();
+    }
+
+    private synchronized void updateActivePatterns() {
+        List<RegisteredPattern> active = new ArrayList<>();
+        for (RegisteredPattern pattern : patterns) {
+            if (!pattern.overflowed) {
+                active.add(pattern);
+            }
+        }
+        activePatterns = active;
+    }
+
+    /**
+     * The terms of a document that matched the registered expressions, from
+     * matching it until it is added to the index.
+     */
+    final class DocumentMatches implements AutoCloseable {
+
+        private final Map<RegisteredPattern, List<String>> matchedTerms;
+        private PendingHits pending;
+        private boolean closed;
+
+        private DocumentMatches(Map<RegisteredPattern, List<String>> matchedTerms) {
+            this.matchedTerms = matchedTerms;
+        }
+
+        /**
+         * Records the matches as hits of the document, to be kept once the
+         * document is committed. Needs to be called before the document is
+         * added to the index, so that the hits can be dropped if adding it
+         * fails.
+         *
+         * @param documentId   The id of the document.
+         * @param dataSourceId The object id of the data source of the
+         *                     document.
+         */
+        void record(String documentId, long dataSourceId) {
+            if (matchedTerms.isEmpty()) {
+                return;
+            }
+            int separator = documentId.indexOf(Server.ID_CHUNK_SEP);
+            try {
+                long objectId = Long.parseLong((separator == -1) ? documentId : documentId.substring(0, separator));
+                int chunkId = (separator == -1) ? 0 : Integer.parseInt(documentId.substring(separator + 1));
+                pending = new PendingHits(matchedTerms, documentId, objectId, chunkId, dataSourceId);
+                addPendingHits(pending);
+            } catch (NumberFormatException ex) {
+                logger.log(Level.WARNING, "Unexpected document id {0}, regex hits not recorded", documentId); //NON-NLS
+            }
+        }
+
+        /**
+         * Sets the ingest sequence number of the document once it has been
+         * added to the index.
+         *
+         * @param sequence The ingest sequence number of the document.
+         */
+        void added(long sequence) {
+            if (null != pending) {
+                synchronized (RegexHitIndex.this) {
+                    pending.sequence = sequence;
+                }
+            }
+        }
+
+        /**
+         * Releases the matches, dropping the recorded hits if the document
+         * was not added to the index.
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                if (null != pending) {
+                    synchronized (RegexHitIndex.this) {
+                        if (pending.sequence < 0) {
+                            removePendingHits(pending);
+                        }
+                    }
+                }
+                registrationLock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * The hits of a document that has not been committed yet.
+     */
+    private static final class PendingHits {
+
+        private final Map<RegisteredPattern, List<String>> matchedTerms;
+        private final String documentId;
+        private final long objectId;
+        private final int chunkId;
+        private final long dataSourceId;
+        private long sequence = -1; // Guarded by the enclosing index
+
+        private PendingHits(Map<RegisteredPattern, List<String>> matchedTerms, String documentId, long objectId, int chunkId, long dataSourceId) {
+            this.matchedTerms = matchedTerms;
+            this.documentId = documentId;
+            this.objectId = objectId;
+            this.chunkId = chunkId;
+            this.dataSourceId = dataSourceId;
+        }
+    }
+
+    /**
+     * A registered expression and its hits.
+     */
+    private static final class RegisteredPattern {
+
+        private final int index;
+        private final String regex;
+        private final Pattern pattern;
+        private final long coveredFrom;
+        private final Map<String, List<Hit>> hitsByTerm = new HashMap<>();
+        private int hitCount;
+        private boolean overflowed;
+
+        private RegisteredPattern(int index, String regex, Pattern pattern, long coveredFrom) {
+            this.index = index;
+            this.regex = regex;
+            this.pattern = pattern;
+            this.coveredFrom = coveredFrom;
+        }
+
+        private void addHit(String term, Hit hit) {
+            if (!overflowed) {
+                hitsByTerm.computeIfAbsent(term, t -> new ArrayList<>()).add(hit);
+                ++hitCount;
+            }
+        }
+
+        private void overflow() {
+            logger.log(Level.INFO, "Too many hits for regex {0}, it will be searched with the terms component", regex); //NON-NLS
+            overflowed = true;
+            hitsByTerm.clear();
+            hitCount = 0;
+        }
+    }
+
+    /**
+     * A document in which a term matched an expression.
+     */
+    static final class Hit {
+
+        private final long objectId;
+        private final int chunkId;
+        private final long dataSourceId;
+        private final long ingestSequence;
+
+        private Hit(long objectId, int chunkId, long dataSourceId, long ingestSequence) {
+            this.objectId = objectId;
+            this.chunkId = chunkId;
+            this.dataSourceId = dataSourceId;
+            this.ingestSequence = ingestSequence;
+        }
+
+        long getObjectId() {
+            return objectId;
+        }
+
+        int getChunkId() {
+            return chunkId;
+        }
+
+        long getDataSourceId() {
+            return dataSourceId;
+        }
+
+        long getIngestSequence() {
+            return ingestSequence;
+        }
+
+        String getDocumentId() {
+            return (chunkId == 0) ? Long.toString(objectId) : Server.getChunkIdString(objectId, chunkId);
+        }
+    }
+}
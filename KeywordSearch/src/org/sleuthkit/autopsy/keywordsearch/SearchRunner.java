@@ -21,11 +21,19 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import javax.swing.SwingUtilities;
@@ -42,6 +50,7 @@
 import org.sleuthkit.autopsy.ingest.IngestMessage;
 import org.sleuthkit.autopsy.ingest.IngestServices;
 import org.sleuthkit.datamodel.BlackboardArtifact;
+import org.sleuthkit.datamodel.TskCoreException;
 
 /**
  * Singleton keyword search manager: Launches search threads for each job and
@@ -59,9 +68,40 @@ public final class SearchRunner {
     // maps a jobID to the search
     private Map<Long, SearchJobInfo> jobs = new HashMap<>(); //guarded by "this"
 
+    // the jobs that find literal keyword hits while the text is indexed;
+    // read by the indexing threads without locking
+    private final List<SearchJobInfo> jobsFindingHitsWhileIndexing = new CopyOnWriteArrayList<>();
+
+    // runs the keyword queries of all searchers, sized by the query threads
+    // setting when each searcher starts
+    private final ThreadPoolExecutor queryExecutor;
+
     SearchRunner() {
         ingester = Server.getIngester();
         updateTimer = new Timer(NbBundle.getMessage(this.getClass(), "SearchRunner.updateTimer.title.text"), true); // run as a daemon
+        final AtomicInteger queryThreadCount = new AtomicInteger(0);
+        int numberOfQueryThreads = KeywordSearchSettings.getQueryThreads();
+        queryExecutor = new ThreadPoolExecutor(numberOfQueryThreads, numberOfQueryThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (Runnable task) -> {
+            Thread thread = new Thread(task, "KWS-query-" + queryThreadCount.getAndIncrement()); //NON-NLS
+            thread.setDaemon(true);
+            return thread;
+        });
+        queryExecutor.allowCoreThreadTimeOut(true);
+        ingester.addDocumentListener(this::findHitsWhileIndexing);
+    }
+
+    /**
+     * Resizes the query pool to the current query threads setting.
+     */
+    private synchronized void updateQueryPoolSize() {
+        int numberOfQueryThreads = KeywordSearchSettings.getQueryThreads();
+        if (numberOfQueryThreads > queryExecutor.getMaximumPoolSize()) {
+            queryExecutor.setMaximumPoolSize(numberOfQueryThreads);
+            queryExecutor.setCorePoolSize(numberOfQueryThreads);
+        } else if (numberOfQueryThreads < queryExecutor.getMaximumPoolSize()) {
+            queryExecutor.setCorePoolSize(numberOfQueryThreads);
+            queryExecutor.setMaximumPoolSize(numberOfQueryThreads);
+        }
     }
 
     /**
@@ -90,6 +130,11 @@ public synchronized void startJob(long jobId, long dataSourceId, List<String> ke
             logger.log(Level.INFO, "Adding job {0}", jobId); //NON-NLS
             SearchJobInfo jobData = new SearchJobInfo(jobId, dataSourceId, keywordListNames);
             jobs.put(jobId, jobData);
+            registerRegexKeywords(keywordListNames);
+            if (KeywordSearchSettings.getFindHitsWhileIndexing()) {
+                jobData.createKeywordMatcher();
+                jobsFindingHitsWhileIndexing.add(jobData);
+            }
         }
 
         // keep track of how many threads / module instances from this job have asked for this
@@ -121,6 +166,7 @@ public void endJob(long jobId) {
             // Only do final search if this is the last module/thread in this job to call endJob()
             if (job.decrementModuleReferenceCount() == 0) {
                 jobs.remove(jobId);
+                jobsFindingHitsWhileIndexing.remove(job);
                 readyForFinalSearch = true;
             }
         }
@@ -155,6 +201,7 @@ public void stopJob(long jobId) {
             }
 
             jobs.remove(jobId);
+            jobsFindingHitsWhileIndexing.remove(job);
         }
     }
 
@@ -171,6 +218,50 @@ public synchronized void addKeywordListsToAllJobs(List<String> keywordListNames)
                 j.addKeywordListName(listName);
             }
         }
+        registerRegexKeywords(keywordListNames);
+    }
+
+    /**
+     * Finds the literal keywords of the jobs that find hits while indexing in
+     * a document added to the index for their data source, and writes the
+     * hits to the blackboard right away.
+     *
+     * @param fields  The fields of the document.
+     * @param content The text of the document.
+     */
+    private void findHitsWhileIndexing(Map<String, String> fields, String content) {
+        if (jobsFindingHitsWhileIndexing.isEmpty()) {
+            return;
+        }
+        final String dataSourceId = fields.get(Server.Schema.IMAGE_ID.toString());
+        for (SearchJobInfo job : jobsFindingHitsWhileIndexing) {
+            if (Long.toString(job.getDataSourceId()).equals(dataSourceId)) {
+                job.findHits(fields.get(Server.Schema.ID.toString()), content, fields.get(Server.Schema.FILE_NAME.toString()));
+            }
+        }
+    }
+
+    /**
+     * Registers the regex keywords of keyword lists with the ingester, so that
+     * their hits are found while the files are indexed.
+     *
+     * @param keywordListNames The names of the lists.
+     */
+    private void registerRegexKeywords(List<String> keywordListNames) {
+        XmlKeywordSearchList loader = XmlKeywordSearchList.getCurrent();
+        List<String> regexes = new ArrayList<>();
+        for (String name : keywordListNames) {
+            KeywordList list = loader.getList(name);
+            if (null == list) {
+                continue;
+            }
+            for (Keyword keyword : list.getKeywords()) {
+                if (!keyword.isLiteral()) {
+                    regexes.add(keyword.getQuery());
+                }
+            }
+        }
+        ingester.registerRegexes(regexes);
     }
 
     /**
@@ -261,15 +352,22 @@ private class SearchJobInfo {
         private volatile boolean workerRunning;
         private List<String> keywordListNames; //guarded by SearchJobInfo.this
         private Map<Keyword, List<Long>> currentResults; //guarded by SearchJobInfo.this
+        // the ingest sequence number each keyword has been searched through
+        private Map<Keyword, Long> searchedThrough; //guarded by SearchJobInfo.this
         private SearchRunner.Searcher currentSearcher;
         private AtomicLong moduleReferenceCount = new AtomicLong(0);
         private final Object finalSearchLock = new Object(); //used for a condition wait
+        // finds the literal keywords of the job while the text is indexed,
+        // null if the job searches for them periodically
+        private volatile KeywordMatcher keywordMatcher;
+        private Map<Keyword, KeywordList> matcherKeywordLists;
 
         public SearchJobInfo(long jobId, long dataSourceId, List<String> keywordListNames) {
             this.jobId = jobId;
             this.dataSourceId = dataSourceId;
             this.keywordListNames = new ArrayList<>(keywordListNames);
             currentResults = new HashMap<>();
+            searchedThrough = new HashMap<>();
             workerRunning = false;
             currentSearcher = null;
         }
@@ -300,6 +398,130 @@ public synchronized void addKeywordResults(Keyword k, List<Long> resultsIDs) {
             currentResults.put(k, resultsIDs);
         }
 
+        /**
+         * Adds an object to the results of a keyword, unless it is already
+         * there.
+         *
+         * @param k        The keyword.
+         * @param objectId The Solr object id of the file or artifact.
+         *
+         * @return True if the object was added, false if it was already a
+         *         result.
+         */
+        public synchronized boolean addKeywordResult(Keyword k, long objectId) {
+            List<Long> resultIds = currentResults.get(k);
+            if (null == resultIds) {
+                resultIds = new ArrayList<>();
+                currentResults.put(k, resultIds);
+            } else if (resultIds.contains(objectId)) {
+                return false;
+            }
+            resultIds.add(objectId);
+            return true;
+        }
+
+        /**
+         * Compiles the literal keywords of the lists of the job, so that they
+         * are found in the text of the files as it is indexed instead of by
+         * the periodic searches.
+         */
+        public void createKeywordMatcher() {
+            XmlKeywordSearchList loader = XmlKeywordSearchList.getCurrent();
+            Map<Keyword, KeywordList> keywordLists = new HashMap<>();
+            for (String name : getKeywordListNames()) {
+                KeywordList list = loader.getList(name);
+                if (null == list) {
+                    continue;
+                }
+                for (Keyword keyword : list.getKeywords()) {
+                    if (keyword.isLiteral()) {
+                        keywordLists.put(keyword, list);
+                    }
+                }
+            }
+            matcherKeywordLists = keywordLists;
+            keywordMatcher = new KeywordMatcher(keywordLists.keySet());
+            logger.log(Level.INFO, "Job {0} finds {1} literal keywords while indexing", new Object[]{jobId, keywordMatcher.getKeywords().size()}); //NON-NLS
+        }
+
+        /**
+         * Determines whether or not a keyword is found while the text is
+         * indexed rather than by the periodic searches.
+         *
+         * @param k The keyword.
+         *
+         * @return True or false.
+         */
+        public boolean isFoundWhileIndexing(Keyword k) {
+            KeywordMatcher matcher = keywordMatcher;
+            return null != matcher && matcher.canMatch(k);
+        }
+
+        /**
+         * Finds the literal keywords of the job in a document added to the
+         * index, and writes the hits in objects without earlier hits of the
+         * same keywords to the blackboard.
+         *
+         * @param documentId The id of the document.
+         * @param content    The text of the document.
+         * @param fileName   The file name of the document, or null.
+         */
+        public void findHits(String documentId, String content, String fileName) {
+            KeywordMatcher matcher = keywordMatcher;
+            if (null == matcher) {
+                return;
+            }
+            Map<Keyword, String> snippets = new HashMap<>();
+            for (Entry<Keyword, KeywordMatcher.Match> match : matcher.findFirstMatches(content).entrySet()) {
+                snippets.put(match.getKey(), KeywordMatcher.getSnippet(content, match.getValue()));
+            }
+            if (null != fileName) {
+                for (Entry<Keyword, KeywordMatcher.Match> match : matcher.findFirstMatches(fileName).entrySet()) {
+                    if (!snippets.containsKey(match.getKey())) {
+                        snippets.put(match.getKey(), KeywordMatcher.getSnippet(fileName, match.getValue()));
+                    }
+                }
+            }
+            for (Entry<Keyword, String> snippet : snippets.entrySet()) {
+                final Keyword keyword = snippet.getKey();
+                final KeywordList list = matcherKeywordLists.get(keyword);
+                KeywordHit hit;
+                try {
+                    hit = new KeywordHit(documentId, snippet.getValue());
+                } catch (TskCoreException ex) {
+                    logger.log(Level.WARNING, "Error creating keyword hit for document " + documentId, ex); //NON-NLS
+                    continue;
+                }
+                if (!addKeywordResult(keyword, hit.getSolrObjectId())) {
+                    continue;
+                }
+                LuceneQuery query = new LuceneQuery(list, keyword);
+                query.escape();
+                QueryResults results = new QueryResults(query, list);
+                List<KeywordHit> hits = new ArrayList<>();
+                hits.add(hit);
+                results.addResult(keyword, hits);
+                results.writeHitsWithSnippetsToBlackBoard(list.getIngestMessages());
+            }
+        }
+
+        /**
+         * Gets the ingest sequence number through which the committed
+         * documents have been searched for a keyword.
+         *
+         * @param k The keyword.
+         *
+         * @return The sequence number, or null if the keyword has not been
+         *         searched for yet.
+         */
+        public synchronized Long getSearchedThrough(Keyword k) {
+            return searchedThrough.get(k);
+        }
+
+        public synchronized void setSearchedThrough(Keyword k, long sequence) {
+            searchedThrough.put(k, sequence);
+        }
+
         public boolean isWorkerRunning() {
             return workerRunning;
         }
@@ -351,8 +573,12 @@ public void searchNotify() {
     /**
      * Searcher responsible for searching the current index and writing results
      * to blackboard and the inbox. Also, posts results to listeners as Ingest
-     * data events. Searches entire index, and keeps track of only new results
-     * to report and save. Runs as a background thread.
+     * data events. The first search for a keyword covers the entire index;
+     * later searches cover only the documents committed since, using the
+     * ingest sequence numbers of the documents when the core supports them.
+     * Keeps track of only new results to report and save. Runs as a background
+     * thread; the keyword queries themselves run concurrently on the query
+     * pool, and their results are processed here in keyword order.
      */
     private final class Searcher extends SwingWorker<Object, Void> {
 
@@ -410,14 +636,50 @@ public boolean cancel() {
 
             progressGroup.start();
 
+            // Every document with a sequence number up to this one was
+            // committed before this search started.
+            final long committedSequence = ingester.getCommittedIngestSequence();
+
+            final List<Future<QueryResults>> queryFutures = new ArrayList<>();
             final StopWatch stopWatch = new StopWatch();
             stopWatch.start();
             try {
                 progressGroup.setDisplayName(displayName);
 
-                int keywordsSearched = 0;
+                // Find the literal keywords with hits in a few batched
+                // queries, so that the others do not need a query each.
+                Set<Keyword> literalKeywordsWithHits;
+                try {
+                    literalKeywordsWithHits = findLiteralKeywordsWithHits(committedSequence);
+                } catch (NoOpenCoreException ex) {
+                    logger.log(Level.WARNING, "Error performing batched keyword query", ex); //NON-NLS
+                    return null;
+                }
 
+                // Start the queries on the query pool. The results are
+                // processed below in keyword order on this thread, so that
+                // writing to the blackboard and progress reporting stay
+                // sequential. A query not yet started when the searcher is
+                // cancelled does not run.
+                updateQueryPoolSize();
                 for (Keyword keywordQuery : keywords) {
+                    if (keywordQuery.isLiteral() && !literalKeywordsWithHits.contains(keywordQuery)) {
+                        queryFutures.add(null);
+                        continue;
+                    }
+                    final KeywordSearchQuery keywordSearchQuery = createQuery(keywordQuery, committedSequence);
+                    queryFutures.add(queryExecutor.submit(() -> {
+                        if (Searcher.this.isCancelled()) {
+                            throw new CancellationException();
+                        }
+                        return keywordSearchQuery.performQuery();
+                    }));
+                }
+
+                int keywordsSearched = 0;
+
+                for (int keywordIndex = 0; keywordIndex < keywords.size(); ++keywordIndex) {
+                    final Keyword keywordQuery = keywords.get(keywordIndex);
                     if (this.isCancelled()) {
                         logger.log(Level.INFO, "Cancel detected, bailing before new keyword processed: {0}", keywordQuery.getQuery()); //NON-NLS
                         return null;
@@ -432,44 +694,47 @@ public boolean cancel() {
                         subProgresses[keywordsSearched - 1].finish();
                     }
 
-                    KeywordSearchQuery keywordSearchQuery = null;
-
-                    boolean isRegex = !keywordQuery.isLiteral();
-                    if (isRegex) {
-                        keywordSearchQuery = new TermComponentQuery(list, keywordQuery);
-                    } else {
-                        keywordSearchQuery = new LuceneQuery(list, keywordQuery);
-                        keywordSearchQuery.escape();
+                    final Future<QueryResults> queryFuture = queryFutures.get(keywordIndex);
+                    if (null == queryFuture) {
+                        // a literal keyword without hits
+                        if (committedSequence >= 0) {
+                            job.setSearchedThrough(keywordQuery, committedSequence);
+                        }
+                        ++keywordsSearched;
+                        continue;
                     }
 
-                    // Filtering
-                    //limit search to currently ingested data sources
-                    //set up a filter with 1 or more image ids OR'ed
-                    final KeywordQueryFilter dataSourceFilter = new KeywordQueryFilter(KeywordQueryFilter.FilterType.DATA_SOURCE, job.getDataSourceId());
-                    keywordSearchQuery.addFilter(dataSourceFilter);
-
                     QueryResults queryResults;
 
-                    // Do the actual search
+                    // Wait for the search
                     try {
-                        queryResults = keywordSearchQuery.performQuery();
-                    } catch (NoOpenCoreException ex) {
-                        logger.log(Level.WARNING, "Error performing query: " + keywordQuery.getQuery(), ex); //NON-NLS
-                        //no reason to continue with next query if recovery failed
-                        //or wait for recovery to kick in and run again later
-                        //likely case has closed and threads are being interrupted
-                        return null;
+                        queryResults = queryFuture.get();
+                    } catch (ExecutionException ex) {
+                        if (ex.getCause() instanceof NoOpenCoreException) {
+                            logger.log(Level.WARNING, "Error performing query: " + keywordQuery.getQuery(), ex.getCause()); //NON-NLS
+                            //no reason to continue with next query if recovery failed
+                            //or wait for recovery to kick in and run again later
+                            //likely case has closed and threads are being interrupted
+                            return null;
+                        }
+                        if (ex.getCause() instanceof CancellationException) {
+                            logger.log(Level.INFO, "Cancel detected, bailing during keyword query: {0}", keywordQuery.getQuery()); //NON-NLS
+                            return null;
+                        }
+                        logger.log(Level.WARNING, "Error performing query: " + keywordQuery.getQuery(), ex.getCause()); //NON-NLS
+                        ++keywordsSearched;
+                        continue;
                     } catch (CancellationException e) {
                         logger.log(Level.INFO, "Cancel detected, bailing during keyword query: {0}", keywordQuery.getQuery()); //NON-NLS
                         return null;
-                    } catch (Exception e) {
-                        logger.log(Level.WARNING, "Error performing query: " + keywordQuery.getQuery(), e); //NON-NLS
-                        continue;
                     }
 
                     // calculate new results by substracting results already obtained in this ingest
                     // this creates a map of each keyword to the list of unique files that have that hit. 
                     QueryResults newResults = filterResults(queryResults);
+                    if (committedSequence >= 0) {
+                        job.setSearchedThrough(keywordQuery, committedSequence);
+                    }
 
                     if (!newResults.getKeywords().isEmpty()) {
 
@@ -503,6 +768,11 @@ public boolean cancel() {
             catch (Exception ex) {
                 logger.log(Level.WARNING, "searcher exception occurred", ex); //NON-NLS
             } finally {
+                for (Future<QueryResults> queryFuture : queryFutures) {
+                    if (null != queryFuture) {
+                        queryFuture.cancel(true);
+                    }
+                }
                 try {
                     finalizeSearcher();
                     stopWatch.stop();
@@ -542,14 +812,104 @@ private void updateKeywords() {
             keywordToList.clear();
             keywordLists.clear();
 
+            List<String> regexes = new ArrayList<>();
             for (String name : keywordListNames) {
                 KeywordList list = loader.getList(name);
                 keywordLists.add(list);
                 for (Keyword k : list.getKeywords()) {
+                    if (job.isFoundWhileIndexing(k)) {
+                        // already found in the text as it was indexed
+                        continue;
+                    }
                     keywords.add(k);
                     keywordToList.put(k.getQuery(), list);
+                    if (!k.isLiteral()) {
+                        regexes.add(k.getQuery());
+                    }
+                }
+            }
+
+            // Regexes added to the lists since the job started are matched
+            // while indexing from now on.
+            ingester.registerRegexes(regexes);
+        }
+
+        /**
+         * Creates the query for a keyword, limited to the data source of the
+         * job and, when possible, to the documents committed since the last
+         * search for the keyword.
+         *
+         * @param keywordQuery      The keyword.
+         * @param committedSequence The committed ingest sequence number, or
+         *                          -1 if not available.
+         *
+         * @return The query.
+         */
+        private KeywordSearchQuery createQuery(Keyword keywordQuery, long committedSequence) {
+            final KeywordList list = keywordToList.get(keywordQuery.getQuery());
+            KeywordSearchQuery keywordSearchQuery;
+            if (!keywordQuery.isLiteral()) {
+                keywordSearchQuery = new TermComponentQuery(list, keywordQuery);
+            } else {
+                keywordSearchQuery = new LuceneQuery(list, keywordQuery);
+                keywordSearchQuery.escape();
+            }
+
+            // Filtering
+            //limit search to currently ingested data sources
+            //set up a filter with 1 or more image ids OR'ed
+            final KeywordQueryFilter dataSourceFilter = new KeywordQueryFilter(KeywordQueryFilter.FilterType.DATA_SOURCE, job.getDataSourceId());
+            keywordSearchQuery.addFilter(dataSourceFilter);
+
+            //limit search to the documents committed since the last
+            //search for this keyword
+            final Long searchedThrough = job.getSearchedThrough(keywordQuery);
+            if (committedSequence >= 0 && searchedThrough != null) {
+                keywordSearchQuery.addFilter(new KeywordQueryFilter(searchedThrough, committedSequence));
+            }
+            return keywordSearchQuery;
+        }
+
+        /**
+         * Finds the literal keywords that have hits in the documents the
+         * searcher is to search for them, using batched queries. The keywords
+         * are grouped by the filters their own searches use, so that a keyword
+         * is reported to have hits exactly when its own search would find
+         * some.
+         *
+         * @param committedSequence The committed ingest sequence number, or
+         *                          -1 if not available.
+         *
+         * @return The literal keywords with hits.
+         *
+         * @throws NoOpenCoreException if there is no open core.
+         */
+        private Set<Keyword> findLiteralKeywordsWithHits(long committedSequence) throws NoOpenCoreException {
+            Map<Long, LiteralKeywordBatchQuery> batchQueries = new HashMap<>();
+            for (Keyword keyword : keywords) {
+                if (!keyword.isLiteral()) {
+                    continue;
+                }
+                Long searchedThrough = (committedSequence >= 0) ? job.getSearchedThrough(keyword) : null;
+                LiteralKeywordBatchQuery batchQuery = batchQueries.get(searchedThrough);
+                if (null == batchQuery) {
+                    batchQuery = new LiteralKeywordBatchQuery();
+                    batchQuery.addFilter(new KeywordQueryFilter(KeywordQueryFilter.FilterType.DATA_SOURCE, job.getDataSourceId()));
+                    if (null != searchedThrough) {
+                        batchQuery.addFilter(new KeywordQueryFilter(searchedThrough, committedSequence));
+                    }
+                    batchQueries.put(searchedThrough, batchQuery);
+                }
+                batchQuery.addKeyword(keywordToList.get(keyword.getQuery()), keyword);
+            }
+            Set<Keyword> keywordsWithHits = new HashSet<>();
+            for (LiteralKeywordBatchQuery batchQuery : batchQueries.values()) {
+                if (this.isCancelled()) {
+                    break;
                 }
+                keywordsWithHits.addAll(batchQuery.findKeywordsWithHits());
             }
+            return keywordsWithHits;
         }
 
         /**
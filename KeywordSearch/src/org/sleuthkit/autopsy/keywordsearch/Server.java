@@ -147,6 +147,14 @@ public String toString() {
                         return "num_chunks"; //NON-NLS
                     }
                 },
+        // increases with every document added, lets a search be restricted
+        // to the documents added since an earlier search
+        INGEST_SEQUENCE {
+                    @Override
+                    public String toString() {
+                        return "ingest_seq"; //NON-NLS
+                    }
+                },
     };
     public static final String HL_ANALYZE_CHARS_UNLIMITED = "500000"; //max 1MB in a chunk. use -1 for unlimited, but -1 option may not be supported (not documented)
     //max content size we can send to Solr
@@ -157,7 +165,6 @@ public String toString() {
     public static final char ID_CHUNK_SEP = '_';
     private String javaPath = "java"; //NON-NLS
     public static final Charset DEFAULT_INDEXED_TEXT_CHARSET = Charset.forName("UTF-8"); ///< default Charset to index text as
-    private static final int MAX_SOLR_MEM_MB = 512; //TODO set dynamically based on avail. system resources
     private Process curSolrProcess = null;
     static final String PROPERTIES_FILE = KeywordSearchSettings.MODULE_NAME;
     static final String PROPERTIES_CURRENT_SERVER_PORT = "IndexingServerPort"; //NON-NLS
@@ -186,6 +193,10 @@ public enum CORE_EVT_STATES {
     private Core currentCore;
     private final ReentrantReadWriteLock currentCoreLock;
 
+    // The store of extracted text for the case of the current core.
+    private volatile ExtractedTextStore extractedTextStore;
+    private volatile RegexHitIndex regexHitIndex;
+
     private final File solrFolder;
     private final ServerAction serverAction;
     private InputStreamPrinterThread errorRedirectThread;
@@ -391,7 +402,9 @@ void start() throws KeywordSearchModuleException, SolrServerNoPortException {
         if (isPortAvailable(currentSolrServerPort)) {
             logger.log(Level.INFO, "Port [{0}] available, starting Solr", currentSolrServerPort); //NON-NLS
             try {
-                final String MAX_SOLR_MEM_MB_PAR = "-Xmx" + Integer.toString(MAX_SOLR_MEM_MB) + "m"; //NON-NLS
+                SolrTuningProfile tuningProfile = KeywordSearchSettings.getSolrTuningProfile();
+                logger.log(Level.INFO, "Using Solr tuning profile {0}", tuningProfile.resolve().name()); //NON-NLS
+                final String MAX_SOLR_MEM_MB_PAR = "-Xmx" + Integer.toString(tuningProfile.getHeapSizeMb()) + "m"; //NON-NLS
                 List<String> commandLine = new ArrayList<>();
                 commandLine.add(javaPath);
                 commandLine.add(MAX_SOLR_MEM_MB_PAR);
@@ -400,6 +413,10 @@ void start() throws KeywordSearchModuleException, SolrServerNoPortException {
                 commandLine.add("-DSTOP.KEY=" + KEY); //NON-NLS
                 commandLine.add("-jar"); //NON-NLS
                 commandLine.add("start.jar"); //NON-NLS
+                // The Jetty start.jar sets -D arguments as system properties.
+                // They go last so that the positions of the arguments above,
+                // which are used to find running Solr processes, stay the same.
+                commandLine.addAll(tuningProfile.getSystemPropertyArguments());
 
                 ProcessBuilder solrProcessBuilder = new ProcessBuilder(commandLine);
                 solrProcessBuilder.directory(solrFolder);
@@ -605,12 +622,34 @@ void openCoreForCase(Case theCase) throws KeywordSearchModuleException {
         currentCoreLock.writeLock().lock();
         try {
             currentCore = openCore(theCase);
+            extractedTextStore = new ExtractedTextStore(Paths.get(theCase.getModuleDirectory(), "keywordsearch", "text")); //NON-NLS
+            regexHitIndex = new RegexHitIndex(Paths.get(theCase.getModuleDirectory(), "keywordsearch")); //NON-NLS
             serverAction.putValue(CORE_EVT, CORE_EVT_STATES.STARTED);
         } finally {
             currentCoreLock.writeLock().unlock();
         }
     }
 
+    /**
+     * Gets the store of the text extracted from the files of the case of the
+     * current core.
+     *
+     * @return The store, or null if there is no open core.
+     */
+    ExtractedTextStore getExtractedTextStore() {
+        return extractedTextStore;
+    }
+
+    /**
+     * Gets the index of the regex hits found while adding documents to the
+     * current core.
+     *
+     * @return The index, or null if there is no open core.
+     */
+    RegexHitIndex getRegexHitIndex() {
+        return regexHitIndex;
+    }
+
     /**
      * Determines whether or not there is a currently open core (index).
      *
@@ -626,8 +665,15 @@ boolean coreIsOpen() {
     }
 
     void closeCore() throws KeywordSearchModuleException {
+        // Send any documents still buffered for the core before closing it.
+        getIngester().flush();
         currentCoreLock.writeLock().lock();
         try {
+            extractedTextStore = null;
+            if (null != regexHitIndex) {
+                regexHitIndex.close();
+                regexHitIndex = null;
+            }
             if (null != currentCore) {
                 currentCore.close();
                 currentCore = null;
@@ -647,6 +693,42 @@ void addDocument(SolrInputDocument doc) throws KeywordSearchModuleException {
         }
     }
 
+    /**
+     * Determines whether the schema of the current core has the ingest
+     * sequence field. Cores on a server with an older schema do not.
+     *
+     * @return True or false.
+     */
+    boolean isIngestSequenceSupported() {
+        currentCoreLock.readLock().lock();
+        try {
+            return (null != currentCore) && currentCore.ingestSequenceSupported;
+        } finally {
+            currentCoreLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a batch of documents to the current core in a single update
+     * request.
+     *
+     * @param docs The documents.
+     *
+     * @throws KeywordSearchModuleException if there is no open core or the
+     *                                      batch could not be added.
+     */
+    void addDocuments(Collection<SolrInputDocument> docs) throws KeywordSearchModuleException {
+        currentCoreLock.readLock().lock();
+        try {
+            if (null == currentCore) {
+                throw new KeywordSearchModuleException(NbBundle.getMessage(this.getClass(), "Server.addDocs.exception.noOpenCore.msg"));
+            }
+            currentCore.addDocuments(docs);
+        } finally {
+            currentCoreLock.readLock().unlock();
+        }
+    }
+
     /**
      * Get index dir location for the case
      *
@@ -968,6 +1050,10 @@ public String getSolrContent(final Content content) throws NoOpenCoreException {
      * @throws NoOpenCoreException
      */
     public String getSolrContent(final Content content, int chunkID) throws NoOpenCoreException {
+        String storedText = getStoredContent(content.getId(), chunkID);
+        if (null != storedText) {
+            return storedText;
+        }
         currentCoreLock.readLock().lock();
         try {
             if (null == currentCore) {
@@ -1011,6 +1097,10 @@ public String getSolrContent(final long objectID) throws NoOpenCoreException {
      * @throws NoOpenCoreException
      */
     public String getSolrContent(final long objectID, final int chunkID) throws NoOpenCoreException {
+        String storedText = getStoredContent(objectID, chunkID);
+        if (null != storedText) {
+            return storedText;
+        }
         currentCoreLock.readLock().lock();
         try {
             if (null == currentCore) {
@@ -1022,6 +1112,28 @@ public String getSolrContent(final long objectID, final int chunkID) throws NoOp
         }
     }
 
+    /**
+     * Gets the text of a chunk from the extracted text store, which saves a
+     * query to Solr for the text of files that were parsed.
+     *
+     * @param objectID The object id.
+     * @param chunkID  The chunk id, starting at 1.
+     *
+     * @return The text, or null if the store does not have it.
+     */
+    private String getStoredContent(long objectID, int chunkID) {
+        ExtractedTextStore store = extractedTextStore;
+        if (null == store || chunkID < 1) {
+            return null;
+        }
+        try {
+            return store.getChunk(objectID, chunkID);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Error getting content from the extracted text store", ex); //NON-NLS
+            return null;
+        }
+    }
+
     /**
      * Method to return ingester instance
      *
@@ -1148,6 +1260,8 @@ class Core {
         // core in it, and is only good for core-specific operations
         private final HttpSolrServer solrCore;
 
+        private final boolean ingestSequenceSupported;
+
         private Core(String name, CaseType caseType) {
             this.name = name;
             this.caseType = caseType;
@@ -1157,8 +1271,10 @@ private Core(String name, CaseType caseType) {
             //TODO test these settings
             //solrCore.setSoTimeout(1000 * 60);  // socket read timeout, make large enough so can index larger files
             //solrCore.setConnectionTimeout(1000);
-            solrCore.setDefaultMaxConnectionsPerHost(2);
-            solrCore.setMaxTotalConnections(5);
+            // Leave a connection for queries besides those used by the
+            // batching indexer's sender threads.
+            solrCore.setDefaultMaxConnectionsPerHost(4);
+            solrCore.setMaxTotalConnections(8);
             solrCore.setFollowRedirects(false);  // defaults to false
             // allowCompression defaults to false.
             // Server side must support gzip or deflate for this to have any effect.
@@ -1166,6 +1282,28 @@ private Core(String name, CaseType caseType) {
             solrCore.setMaxRetries(1); // defaults to 0.  > 1 not recommended.
             solrCore.setParser(new XMLResponseParser()); // binary parser is used by default
 
+            this.ingestSequenceSupported = hasField(Schema.INGEST_SEQUENCE.toString());
+        }
+
+        /**
+         * Determines whether the schema of the core defines a field, by
+         * filtering on it. Solr rejects a query on an undefined field.
+         *
+         * @param fieldName The name of the field.
+         *
+         * @return True or false.
+         */
+        private boolean hasField(String fieldName) {
+            SolrQuery q = new SolrQuery("*:*");
+            q.addFilterQuery(fieldName + ":[* TO *]");
+            q.setRows(0);
+            try {
+                solrCore.query(q);
+                return true;
+            } catch (SolrServerException | SolrException ex) {
+                logger.log(Level.INFO, "Core " + name + " does not have the " + fieldName + " field", ex); //NON-NLS
+                return false;
+            }
         }
 
         private QueryResponse query(SolrQuery sq) throws SolrServerException {
@@ -1216,6 +1354,20 @@ void addDocument(SolrInputDocument doc) throws KeywordSearchModuleException {
             }
         }
 
+        void addDocuments(Collection<SolrInputDocument> docs) throws KeywordSearchModuleException {
+            try {
+                solrCore.add(docs);
+            } catch (SolrServerException ex) {
+                logger.log(Level.SEVERE, "Could not add a batch of " + docs.size() + " documents to index via update handler", ex); //NON-NLS
+                throw new KeywordSearchModuleException(
+                        NbBundle.getMessage(this.getClass(), "Server.addDocs.exception.msg", docs.size()), ex);
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, "Could not add a batch of " + docs.size() + " documents to index via update handler", ex); //NON-NLS
+                throw new KeywordSearchModuleException(
+                        NbBundle.getMessage(this.getClass(), "Server.addDocs.exception.msg", docs.size()), ex);
+            }
+        }
+
         /**
          * get the text from the content field for the given file
          *
@@ -0,0 +1,147 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import org.openide.util.NbBundle;
+import org.sleuthkit.autopsy.coreutils.PlatformUtil;
+
+/**
+ * Indexing profiles for the locally run Solr server. A profile sets the heap
+ * size of the Solr JVM from the physical memory of the machine, and the
+ * indexing settings of the cores, which are system properties referenced by
+ * solrconfig.xml: the RAM buffer and buffered document limits for flushing
+ * new documents, the merge factor, and the number of documents added between
+ * automatic commits. Bigger buffers and fewer, larger merges make indexing
+ * faster at the cost of memory.
+ * <p>
+ * The AUTOMATIC profile picks one of the others from the physical memory of
+ * the machine. Profiles are applied when Solr is started.
+ */
+enum SolrTuningProfile {
+
+    AUTOMATIC(0, 0, 0, 0, 0, 0, 0),
+    SMALL_LAPTOP(8, 512, 1024, 32, 200, 10, 15000),
+    WORKSTATION(6, 1024, 4096, 128, 1000, 20, 50000),
+    BULK_SERVER(4, 2048, 16384, 512, 5000, 30, 200000);
+
+    static final String RAM_BUFFER_SIZE_PROPERTY = "autopsy.ramBufferSizeMB"; //NON-NLS
+    static final String MAX_BUFFERED_DOCS_PROPERTY = "autopsy.maxBufferedDocs"; //NON-NLS
+    static final String MERGE_FACTOR_PROPERTY = "autopsy.mergeFactor"; //NON-NLS
+    static final String AUTO_COMMIT_MAX_DOCS_PROPERTY = "autopsy.autoCommit.maxDocs"; //NON-NLS
+    private static final long MB = 1024L * 1024;
+    private static final long SMALL_LAPTOP_MAX_MEMORY_MB = 8 * 1024;
+    private static final long WORKSTATION_MAX_MEMORY_MB = 48 * 1024;
+    private static final int MAX_32_BIT_HEAP_MB = 1024;
+    private final int memoryDivisor;
+    private final int minHeapMb;
+    private final int maxHeapMb;
+    private final int ramBufferSizeMb;
+    private final int maxBufferedDocs;
+    private final int mergeFactor;
+    private final int autoCommitMaxDocs;
+
+    SolrTuningProfile(int memoryDivisor, int minHeapMb, int maxHeapMb, int ramBufferSizeMb, int maxBufferedDocs, int mergeFactor, int autoCommitMaxDocs) {
+        this.memoryDivisor = memoryDivisor;
+        this.minHeapMb = minHeapMb;
+        this.maxHeapMb = maxHeapMb;
+        this.ramBufferSizeMb = ramBufferSizeMb;
+        this.maxBufferedDocs = maxBufferedDocs;
+        this.mergeFactor = mergeFactor;
+        this.autoCommitMaxDocs = autoCommitMaxDocs;
+    }
+
+    @Override
+    public String toString() {
+        return NbBundle.getMessage(SolrTuningProfile.class, "SolrTuningProfile." + name() + ".displayName");
+    }
+
+    /**
+     * Gets the profile to apply for this profile, which is the profile itself
+     * except for AUTOMATIC.
+     *
+     * @return The profile.
+     */
+    SolrTuningProfile resolve() {
+        if (this != AUTOMATIC) {
+            return this;
+        }
+        long physicalMemoryMb = getPhysicalMemoryMb();
+        if (physicalMemoryMb < 0 || physicalMemoryMb <= SMALL_LAPTOP_MAX_MEMORY_MB) {
+            return SMALL_LAPTOP;
+        } else if (physicalMemoryMb <= WORKSTATION_MAX_MEMORY_MB) {
+            return WORKSTATION;
+        } else {
+            return BULK_SERVER;
+        }
+    }
+
+    /**
+     * Gets the maximum heap size for the Solr JVM: a share of the physical
+     * memory of the machine, within the limits of the profile.
+     *
+     * @return The heap size in MB.
+     */
+    int getHeapSizeMb() {
+        SolrTuningProfile profile = resolve();
+        long physicalMemoryMb = getPhysicalMemoryMb();
+        long heapMb = (physicalMemoryMb < 0) ? profile.minHeapMb : physicalMemoryMb / profile.memoryDivisor;
+        heapMb = Math.max(profile.minHeapMb, Math.min(profile.maxHeapMb, heapMb));
+        if (!PlatformUtil.is64BitJVM()) {
+            // Solr runs on the same JRE as the application.
+            heapMb = Math.min(heapMb, MAX_32_BIT_HEAP_MB);
+        }
+        return (int) heapMb;
+    }
+
+    /**
+     * Gets the system property arguments that set the indexing settings of
+     * the profile in solrconfig.xml.
+     *
+     * @return The arguments, in -Dname=value form.
+     */
+    List<String> getSystemPropertyArguments() {
+        SolrTuningProfile profile = resolve();
+        // Leave most of the heap for searching and merging.
+        int ramBufferMb = Math.min(profile.ramBufferSizeMb, getHeapSizeMb() / 4);
+        List<String> arguments = new ArrayList<>();
+        arguments.add("-D" + RAM_BUFFER_SIZE_PROPERTY + "=" + ramBufferMb); //NON-NLS
+        arguments.add("-D" + MAX_BUFFERED_DOCS_PROPERTY + "=" + profile.maxBufferedDocs); //NON-NLS
+        arguments.add("-D" + MERGE_FACTOR_PROPERTY + "=" + profile.mergeFactor); //NON-NLS
+        arguments.add("-D" + AUTO_COMMIT_MAX_DOCS_PROPERTY + "=" + profile.autoCommitMaxDocs); //NON-NLS
+        return arguments;
+    }
+
+    /**
+     * Gets the physical memory of the machine.
+     *
+     * @return The memory in MB, or -1 if it is not available.
+     */
+    private static long getPhysicalMemoryMb() {
+        OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) osBean).getTotalPhysicalMemorySize() / MB;
+        }
+        return -1;
+    }
+
+}
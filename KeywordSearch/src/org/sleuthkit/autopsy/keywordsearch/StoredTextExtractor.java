@@ -0,0 +1,121 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.coreutils.StringExtract.StringExtractUnicodeTable.SCRIPT;
+import org.sleuthkit.autopsy.keywordsearch.Ingester.IngesterException;
+import org.sleuthkit.datamodel.AbstractFile;
+
+/**
+ * "Extractor" of the text of files that was saved to the extracted text store
+ * of the case when the files were parsed before, for example by an earlier run
+ * of the keyword search ingest module. The saved chunks are indexed as they
+ * are, so that indexing the files again does not parse them again.
+ */
+class StoredTextExtractor implements TextExtractor {
+
+    private static final Logger logger = Logger.getLogger(StoredTextExtractor.class.getName());
+    private final Ingester ingester;
+    private AbstractFile sourceFile;
+    private int numChunks = 0;
+
+    StoredTextExtractor() {
+        ingester = Server.getIngester();
+    }
+
+    @Override
+    public boolean setScripts(List<SCRIPT> extractScripts) {
+        return false;
+    }
+
+    @Override
+    public List<SCRIPT> getScripts() {
+        return null;
+    }
+
+    @Override
+    public Map<String, String> getOptions() {
+        return null;
+    }
+
+    @Override
+    public void setOptions(Map<String, String> options) {
+    }
+
+    @Override
+    public int getNumChunks() {
+        return numChunks;
+    }
+
+    @Override
+    public AbstractFile getSourceFile() {
+        return sourceFile;
+    }
+
+    @Override
+    public boolean index(AbstractFile sourceFile) throws IngesterException {
+        this.sourceFile = sourceFile;
+        numChunks = 0;
+
+        ExtractedTextStore store = KeywordSearch.getServer().getExtractedTextStore();
+        if (null == store) {
+            return false;
+        }
+        boolean success = true;
+        try (ExtractedTextStore.ChunkReader chunks = store.openText(sourceFile.getId())) {
+            if (null == chunks) {
+                return false;
+            }
+            String text;
+            while ((text = chunks.readNextChunk()) != null) {
+                new AbstractFileChunk(this, numChunks + 1).index(ingester, text);
+                ++numChunks;
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Unable to read the stored text of file '" + sourceFile.getName() + "' (id: " + sourceFile.getId() + ").", ex); //NON-NLS
+            success = false;
+        } catch (IngesterException ex) {
+            logger.log(Level.WARNING, "Ingester had a problem with the stored text of file '" //NON-NLS
+                    + sourceFile.getName() + "' (id: " + sourceFile.getId() + ").", ex); //NON-NLS
+            ingester.ingest(this);
+            throw ex; //need to rethrow/return to signal error and move on
+        }
+
+        //after all chunks, ingest the parent file without content itself, and store numChunks
+        ingester.ingest(this);
+
+        return success;
+    }
+
+    @Override
+    public boolean isContentTypeSpecific() {
+        return true;
+    }
+
+    @Override
+    public boolean isSupported(AbstractFile file, String detectedFormat) {
+        ExtractedTextStore store = KeywordSearch.getServer().getExtractedTextStore();
+        return null != store && store.hasText(file.getId());
+    }
+}
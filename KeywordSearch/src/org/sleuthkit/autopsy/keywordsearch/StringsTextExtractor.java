@@ -20,6 +20,7 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -33,15 +34,12 @@
 
 /**
  * Takes an AbstractFile, extract strings, converts into chunks (associated with
- * the original source file) up to 1MB then and indexes chunks as text with Solr
+ * the original source file) and indexes chunks as text with Solr
  */
 class StringsTextExtractor implements TextExtractor {
 
     private static Ingester ingester;
     private static final Logger logger = Logger.getLogger(StringsTextExtractor.class.getName());
-    private static final long MAX_STRING_CHUNK_SIZE = 1 * 1024 * 1024L;
-    //private static final int BOM_LEN = 3; 
-    private static final int BOM_LEN = 0;  //disabled prepending of BOM
     private static final Charset INDEX_CHARSET = Server.DEFAULT_INDEXED_TEXT_CHARSET;
     private static final SCRIPT DEFAULT_SCRIPT = SCRIPT.LATIN_2;
     private KeywordSearchIngestModule module;
@@ -50,13 +48,6 @@ class StringsTextExtractor implements TextExtractor {
     private final List<SCRIPT> extractScripts = new ArrayList<>();
     private Map<String, String> extractOptions = new HashMap<>();
 
-    //disabled prepending of BOM
-    //static {
-    //prepend UTF-8 BOM to start of the buffer
-    //stringChunkBuf[0] = (byte) 0xEF;
-    //stringChunkBuf[1] = (byte) 0xBB;
-    //stringChunkBuf[2] = (byte) 0xBF;
-    //}
     public StringsTextExtractor(KeywordSearchIngestModule module) {
         this.module = module;
         ingester = Server.getIngester();
@@ -116,34 +107,24 @@ public boolean index(AbstractFile sourceFile) throws IngesterException {
         //check which extract stream to use
         if (extractScripts.size() == 1 && extractScripts.get(0).equals(SCRIPT.LATIN_1)) {
             //optimal for english, english only
-            stringStream = new AbstractFileStringStream(sourceFile, INDEX_CHARSET);
+            stringStream = new AbstractFileStringStream(module.getFileContent(sourceFile), INDEX_CHARSET);
         } else {
             stringStream = new AbstractFileStringIntStream(
-                    sourceFile, extractScripts, extractUTF8, extractUTF16, INDEX_CHARSET);
+                    module.getFileContent(sourceFile), extractScripts, extractUTF8, extractUTF16, INDEX_CHARSET);
         }
 
         try {
             success = true;
-            //break input stream into chunks 
-
-            final byte[] stringChunkBuf = new byte[(int) MAX_STRING_CHUNK_SIZE];
-            long readSize;
-            while ((readSize = stringStream.read(stringChunkBuf, BOM_LEN, (int) MAX_STRING_CHUNK_SIZE - BOM_LEN)) != -1) {
-                //FileOutputStream debug = new FileOutputStream("c:\\temp\\" + sourceFile.getName() + Integer.toString(this.numChunks+1));
-                //debug.write(stringChunkBuf, 0, (int)readSize);
-
-                AbstractFileChunk chunk = new AbstractFileChunk(this, this.numChunks + 1);
-
-                try {
-                    chunk.index(ingester, stringChunkBuf, readSize + BOM_LEN, INDEX_CHARSET);
-                    ++this.numChunks;
-                } catch (IngesterException ingEx) {
-                    success = false;
-                    logger.log(Level.WARNING, "Ingester had a problem with extracted strings from file '" + sourceFile.getName() + "' (id: " + sourceFile.getId() + ").", ingEx); //NON-NLS
-                    throw ingEx; //need to rethrow/return to signal error and move on
-                }
-
-                //debug.close();    
+            //break the decoded strings into chunks and index
+            TextChunker chunker = new TextChunker(ingester, this);
+            try {
+                chunker.index(new InputStreamReader(stringStream, INDEX_CHARSET), null);
+            } catch (IngesterException ingEx) {
+                success = false;
+                logger.log(Level.WARNING, "Ingester had a problem with extracted strings from file '" + sourceFile.getName() + "' (id: " + sourceFile.getId() + ").", ingEx); //NON-NLS
+                throw ingEx; //need to rethrow/return to signal error and move on
+            } finally {
+                this.numChunks = chunker.getNumChunks();
             }
 
             //after all chunks, ingest the parent file without content itself, and store numChunks
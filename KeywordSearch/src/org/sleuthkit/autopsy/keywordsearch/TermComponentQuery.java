@@ -23,6 +23,7 @@
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import org.sleuthkit.autopsy.coreutils.Logger;
@@ -37,6 +38,7 @@
 import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
 import org.sleuthkit.datamodel.BlackboardAttribute;
 import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+import org.sleuthkit.datamodel.TskCoreException;
 import org.sleuthkit.datamodel.TskException;
 
 /**
@@ -208,8 +210,80 @@ public KeywordCachedArtifact writeSingleFileHitsToBlackBoard(String termHit, Key
         return null;
     }
 
+    /**
+     * Gets the results of the query from the hits recorded while indexing, if
+     * the expression was matched against every document the query searches.
+     *
+     * @return The results, or null if the recorded hits cannot be used.
+     *
+     * @throws NoOpenCoreException if there is no open core.
+     */
+    private QueryResults performRecordedHitsQuery() throws NoOpenCoreException {
+        Server solrServer = KeywordSearch.getServer();
+        RegexHitIndex regexHitIndex = solrServer.getRegexHitIndex();
+        if (null == regexHitIndex) {
+            return null;
+        }
+        long coveredFrom = regexHitIndex.getCoveredFrom(queryEscaped);
+        if (coveredFrom < 0) {
+            return null;
+        }
+
+        // Check that no document searched was added before the expression
+        // was registered.
+        SolrQuery q = new SolrQuery("*:*"); //NON-NLS
+        for (KeywordQueryFilter filter : filters) {
+            q.addFilterQuery(filter.toString());
+        }
+        q.addFilterQuery("-" + Server.Schema.INGEST_SEQUENCE.toString() + ":[" + coveredFrom + " TO *]"); //NON-NLS
+        q.setRows(0);
+        try {
+            if (solrServer.query(q).getResults().getNumFound() > 0) {
+                return null;
+            }
+        } catch (KeywordSearchModuleException ex) {
+            logger.log(Level.WARNING, "Error checking the regex hits recorded for: " + keyword.getQuery(), ex); //NON-NLS
+            return null;
+        }
+
+        Map<String, List<RegexHitIndex.Hit>> hitsByTerm = regexHitIndex.getHits(queryEscaped, (RegexHitIndex.Hit hit) -> {
+            for (KeywordQueryFilter filter : filters) {
+                if (!filter.accepts(hit)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+        if (null == hitsByTerm) {
+            return null;
+        }
+
+        QueryResults results = new QueryResults(this, keywordList);
+        int resultSize = 0;
+        for (Map.Entry<String, List<RegexHitIndex.Hit>> entry : hitsByTerm.entrySet()) {
+            List<KeywordHit> keywordHits = new ArrayList<>();
+            for (RegexHitIndex.Hit hit : entry.getValue()) {
+                try {
+                    keywordHits.add(new KeywordHit(hit.getDocumentId(), ""));
+                } catch (TskCoreException ex) {
+                    logger.log(Level.WARNING, "Error creating keyword hit for document " + hit.getDocumentId(), ex); //NON-NLS
+                }
+            }
+            resultSize += keywordHits.size();
+            results.addResult(new Keyword(entry.getKey(), false), keywordHits);
+        }
+        logger.log(Level.INFO, "Regex # results from recorded hits: {0}", resultSize); //NON-NLS
+        return results;
+    }
+
     @Override
     public QueryResults performQuery() throws NoOpenCoreException {
+        // Use the hits found while indexing when they cover the search, so
+        // that the terms dictionary does not need to be enumerated.
+        QueryResults recordedResults = performRecordedHitsQuery();
+        if (null != recordedResults) {
+            return recordedResults;
+        }
 
         final SolrQuery q = createQuery();
         q.setShowDebugInfo(DEBUG);
@@ -0,0 +1,125 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads text from a reader a chunk at a time into a buffer. A chunk is as long
+ * as the buffer allows, but ends at whitespace where possible so that words
+ * are not split across chunks. Characters Solr cannot store are replaced with
+ * '^'.
+ */
+final class TextChunkReader {
+
+    //we read max 1024 chars at time, this seems to max what the readers return
+    private static final int SINGLE_READ_CHARS = 1024;
+    private static final int EXTRA_CHARS = 128; //for whitespace
+    private final Reader reader;
+    private final char[] buf;
+    private boolean eof = false;
+
+    /**
+     * Constructs an object that reads text a chunk at a time.
+     *
+     * @param reader The reader.
+     * @param buf    The buffer to read the chunks into. Its length is the
+     *               maximum length of a chunk, and must be more than 1152
+     *               characters.
+     */
+    TextChunkReader(Reader reader, char[] buf) {
+        this.reader = reader;
+        this.buf = buf;
+    }
+
+    /**
+     * Indicates whether the end of the reader has been reached, i.e., whether
+     * the last chunk read was the last chunk of the text.
+     *
+     * @return True or false.
+     */
+    boolean isAtEnd() {
+        return eof;
+    }
+
+    /**
+     * Reads the next chunk into the start of the buffer and sanitizes it.
+     *
+     * @return The number of characters in the chunk. May be zero, e.g., for
+     *         the last chunk of a text with a length that is a multiple of
+     *         the chunk size.
+     *
+     * @throws IOException if there is a problem reading the text.
+     */
+    int readChunk() throws IOException {
+        int totalRead = 0;
+        int readSize = 0;
+        //consume chars to fill entire chunk (leave EXTRA_CHARS to end the word)
+        while ((totalRead < buf.length - SINGLE_READ_CHARS - EXTRA_CHARS)
+                && (readSize = reader.read(buf, totalRead, SINGLE_READ_CHARS)) != -1) {
+            totalRead += readSize;
+        }
+        if (readSize == -1) {
+            //this is the last chunk
+            eof = true;
+        } else {
+            //try to read char-by-char until whitespace to not break words
+            while ((totalRead < buf.length - 1)
+                    && (totalRead == 0 || !Character.isWhitespace(buf[totalRead - 1]))
+                    && (readSize = reader.read(buf, totalRead, 1)) != -1) {
+                totalRead += readSize;
+            }
+            if (readSize == -1) {
+                //this is the last chunk
+                eof = true;
+            }
+        }
+
+        // Sanitize by replacing non-UTF-8 characters with caret '^'
+        for (int i = 0; i < totalRead; ++i) {
+            if (!isValidSolrUTF8(buf[i])) {
+                buf[i] = '^';
+            }
+        }
+        return totalRead;
+    }
+
+    /**
+     * This method determines if a passed-in Java char (16 bits) is a valid
+     * UTF-8 printable character, returning true if so, false if not.
+     *
+     * Note that this method can have ramifications for characters outside the
+     * Unicode Base Multilingual Plane (BMP), which require more than 16 bits.
+     * We are using Java characters (16 bits) to look at the data and this will
+     * not accurately identify any non-BMP character (larger than 16 bits)
+     * ending with 0xFFFF and 0xFFFE. In the interest of a fast solution, we
+     * have chosen to ignore the extended planes above Unicode BMP for the time
+     * being. The net result of this is some non-BMP characters may be
+     * interspersed with '^' characters in Autopsy.
+     *
+     * @param ch the character to test
+     *
+     * @return Returns true if the character is valid UTF-8, false if not.
+     */
+    private static boolean isValidSolrUTF8(char ch) {
+        return ((ch <= 0xFDD0 || ch >= 0xFDEF) && (ch > 0x1F || ch == 0x9 || ch == 0xA || ch == 0xD) && (ch != 0xFFFF) && (ch != 0xFFFE));
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.keywordsearch.Ingester.IngesterException;
+
+/**
+ * Splits the text produced by a text extractor into chunks and indexes each
+ * chunk as it is read (see TextChunkReader). Chunks end at whitespace where
+ * possible, so that words are not split across chunks, and characters Solr
+ * cannot store are replaced with '^'.
+ * <p>
+ * The text of a chunk is read into a buffer that is reused by all extractors
+ * running on the same thread, sanitized in place, and handed to the ingester
+ * as the string for the content field of the chunk document, without being
+ * encoded to bytes and decoded again.
+ * <p>
+ * The chunks can also be saved to the extracted text store of the case, so
+ * that the file does not need to be parsed again to index it again or to show
+ * its text. A problem saving the text is logged and does not stop the
+ * indexing.
+ */
+final class TextChunker {
+
+    private static final Logger logger = Logger.getLogger(TextChunker.class.getName());
+    static final int MAX_CHUNK_CHARS = 512 * 1024;
+    private static final ThreadLocal<char[]> chunkBuffers = ThreadLocal.withInitial(() -> new char[MAX_CHUNK_CHARS]);
+    private final Ingester ingester;
+    private final TextExtractor parent;
+    private ExtractedTextStore textStore;
+    private int numChunks = 0;
+
+    /**
+     * Constructs an object that splits the text of a file into chunks and
+     * indexes them.
+     *
+     * @param ingester The ingester to index the chunks with.
+     * @param parent   The extractor the text comes from.
+     */
+    TextChunker(Ingester ingester, TextExtractor parent) {
+        this(ingester, parent, false);
+    }
+
+    /**
+     * Constructs an object that splits the text of a file into chunks and
+     * indexes them, optionally saving them to the extracted text store.
+     *
+     * @param ingester The ingester to index the chunks with.
+     * @param parent   The extractor the text comes from.
+     * @param saveText Whether or not to save the chunks to the extracted text
+     *                 store of the case.
+     */
+    TextChunker(Ingester ingester, TextExtractor parent, boolean saveText) {
+        this.ingester = ingester;
+        this.parent = parent;
+        this.textStore = saveText ? KeywordSearch.getServer().getExtractedTextStore() : null;
+    }
+
+    /**
+     * Gets the number of chunks indexed so far.
+     *
+     * @return The number of chunks.
+     */
+    int getNumChunks() {
+        return numChunks;
+    }
+
+    /**
+     * Reads text until the end of a reader, indexing it chunk by chunk.
+     *
+     * @param reader  The reader.
+     * @param trailer Supplies text to append to the last chunk, or null. If
+     *                not null, a last chunk is indexed even if the reader has
+     *                no text.
+     *
+     * @throws IOException       if there is a problem reading the text.
+     * @throws IngesterException if there is a problem indexing a chunk.
+     */
+    void index(Reader reader, Supplier<String> trailer) throws IOException, IngesterException {
+        final long objectId = parent.getSourceFile().getId();
+        if (null != textStore) {
+            try {
+                textStore.startText(objectId);
+            } catch (IOException ex) {
+                stopSavingText(objectId, ex);
+            }
+        }
+        boolean finished = false;
+        try {
+            indexChunks(reader, trailer);
+            finished = true;
+        } finally {
+            if (null != textStore) {
+                if (finished) {
+                    try {
+                        textStore.finishText(objectId);
+                    } catch (IOException ex) {
+                        stopSavingText(objectId, ex);
+                    }
+                } else {
+                    textStore.discardText(objectId);
+                }
+            }
+        }
+    }
+
+    private void indexChunks(Reader reader, Supplier<String> trailer) throws IOException, IngesterException {
+        char[] buf = chunkBuffers.get();
+        TextChunkReader chunkReader = new TextChunkReader(reader, buf);
+        while (!chunkReader.isAtEnd()) {
+            int totalRead = chunkReader.readChunk();
+            boolean eof = chunkReader.isAtEnd();
+            if (totalRead == 0 && !(eof && trailer != null)) {
+                continue;
+            }
+
+            String text;
+            if (eof && trailer != null) {
+                String trailerText = trailer.get();
+                text = new StringBuilder(totalRead + trailerText.length()).append(buf, 0, totalRead).append(trailerText).toString();
+            } else {
+                text = new String(buf, 0, totalRead);
+            }
+
+            new AbstractFileChunk(parent, numChunks + 1).index(ingester, text);
+            ++numChunks;
+            if (null != textStore) {
+                try {
+                    textStore.putChunk(parent.getSourceFile().getId(), numChunks, text);
+                } catch (IOException ex) {
+                    stopSavingText(parent.getSourceFile().getId(), ex);
+                }
+            }
+        }
+    }
+
+    private void stopSavingText(long objectId, IOException ex) {
+        logger.log(Level.WARNING, "Failed to save the extracted text of object " + objectId, ex); //NON-NLS
+        textStore.discardText(objectId);
+        textStore = null;
+    }
+
+}
@@ -0,0 +1,424 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import org.apache.tika.Tika;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.sleuthkit.autopsy.coreutils.Logger;
+
+/**
+ * A pool of warm Tika parsers shared by the Tika text extractors. Creating a
+ * Tika instance loads the parser registry, which is expensive, so a fixed
+ * number of parser slots keep their Tika instance from parse to parse. A slot
+ * gets a new instance after a number of parses, or when the heap is nearly
+ * full after a parse, to contain the memory leaks of some parsers.
+ * <p>
+ * Parses run on pool threads and stream their text to the caller through a
+ * bounded buffer, so the text of a file is never held in memory all at once.
+ * The timeout of a parse applies to the time the caller spends waiting on the
+ * parser for text, not just to the start of the parse. When a parse times out,
+ * it is cancelled and its slot is given a new parser, so that a parse that
+ * never returns cannot hold a slot.
+ * <p>
+ * This class is thread-safe.
+ */
+final class TikaParserPool {
+
+    private static final Logger logger = Logger.getLogger(TikaParserPool.class.getName());
+    private static final int NUMBER_OF_SLOTS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int MAX_PARSES_PER_PARSER = 1000;
+    private static final double MAX_HEAP_USAGE = 0.8;
+    private static final int PIPE_BUFFER_CHARS = 64 * 1024;
+    private static TikaParserPool instance;
+    private final BlockingQueue<ParserSlot> idleSlots = new LinkedBlockingQueue<>();
+    private final ExecutorService parseExecutor;
+    private final List<String> supportedTypes;
+
+    /**
+     * Gets the parser pool.
+     *
+     * @return The pool.
+     */
+    static synchronized TikaParserPool getInstance() {
+        if (null == instance) {
+            instance = new TikaParserPool();
+        }
+        return instance;
+    }
+
+    private TikaParserPool() {
+        AtomicInteger threadCount = new AtomicInteger(0);
+        // Not a fixed size pool: a thread stuck in a parse that timed out
+        // must not keep later parses from running.
+        parseExecutor = Executors.newCachedThreadPool((Runnable task) -> {
+            Thread thread = new Thread(task, "KWS-tika-parser-" + threadCount.getAndIncrement()); //NON-NLS
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < NUMBER_OF_SLOTS; ++i) {
+            idleSlots.add(new ParserSlot());
+        }
+
+        // Warm up one slot while getting the supported types.
+        ParserSlot slot = idleSlots.peek();
+        List<String> types = new ArrayList<>();
+        Set<MediaType> mediaTypes = slot.getTika().getParser().getSupportedTypes(new ParseContext());
+        for (MediaType mt : mediaTypes) {
+            types.add(mt.getType() + "/" + mt.getSubtype());
+        }
+        supportedTypes = Collections.unmodifiableList(types);
+    }
+
+    /**
+     * Gets the media types the Tika parsers support.
+     *
+     * @return The media types, as type/subtype strings.
+     */
+    List<String> getSupportedTypes() {
+        return supportedTypes;
+    }
+
+    /**
+     * Starts parsing a stream with a pooled parser, blocking while all of the
+     * parsers are busy.
+     *
+     * @param stream         The stream to parse. The caller remains
+     *                       responsible for closing it.
+     * @param meta           The metadata object to fill in. It is complete
+     *                       once the returned reader reaches the end of the
+     *                       text.
+     * @param timeoutSeconds The longest time reads of the text may spend
+     *                       waiting on the parser in total.
+     *
+     * @return A reader for the text of the stream. Reads throw a
+     *         ParseTimeoutException if the parse takes too long, or an
+     *         IOException if the parse fails. Closing the reader cancels the
+     *         parse if it is still running.
+     *
+     * @throws InterruptedIOException if the thread is interrupted while
+     *                                waiting for a parser.
+     */
+    Reader parse(InputStream stream, Metadata meta, long timeoutSeconds) throws InterruptedIOException {
+        ParserSlot slot;
+        try {
+            slot = idleSlots.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a Tika parser"); //NON-NLS
+        }
+        ParseJob job = new ParseJob(slot, stream, meta, TimeUnit.SECONDS.toNanos(timeoutSeconds));
+        try {
+            job.future = parseExecutor.submit(job);
+        } catch (RuntimeException ex) {
+            job.releaseSlot(true);
+            throw ex;
+        }
+        return job.pipe;
+    }
+
+    /**
+     * Makes a slot available to other parses again. The slot gets a new
+     * parser on its next use if its parser has done enough parses, if the heap
+     * is nearly full, or if the caller asks for it.
+     *
+     * @param slot    The slot.
+     * @param recycle Whether or not to discard the parser of the slot.
+     */
+    private void release(ParserSlot slot, boolean recycle) {
+        ++slot.parses;
+        Runtime runtime = Runtime.getRuntime();
+        long usedHeap = runtime.totalMemory() - runtime.freeMemory();
+        if (recycle || slot.parses >= MAX_PARSES_PER_PARSER || usedHeap > MAX_HEAP_USAGE * runtime.maxMemory()) {
+            slot.tika = null;
+            slot.parses = 0;
+        }
+        idleSlots.add(slot);
+    }
+
+    /**
+     * Exception thrown by reads of the text of a parse that took longer than
+     * its timeout.
+     */
+    static final class ParseTimeoutException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        ParseTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A parser that is kept warm between parses.
+     */
+    private static final class ParserSlot {
+
+        private Tika tika;
+        private int parses;
+
+        Tika getTika() {
+            if (null == tika) {
+                tika = new Tika();
+            }
+            return tika;
+        }
+    }
+
+    /**
+     * A parse running on a pool thread, writing the text of a stream to a
+     * pipe.
+     */
+    private final class ParseJob implements Runnable {
+
+        private final ParserSlot slot;
+        private final InputStream stream;
+        private final Metadata meta;
+        private final TextPipe pipe;
+        private final AtomicBoolean slotReleased = new AtomicBoolean(false);
+        private volatile Future<?> future;
+
+        ParseJob(ParserSlot slot, InputStream stream, Metadata meta, long timeoutNanos) {
+            this.slot = slot;
+            this.stream = stream;
+            this.meta = meta;
+            this.pipe = new TextPipe(this, timeoutNanos);
+        }
+
+        @Override
+        public void run() {
+            boolean recycle = false;
+            try {
+                Parser parser = slot.getTika().getParser();
+                ParseContext context = new ParseContext();
+                context.set(Parser.class, parser);
+                Writer writer = new BufferedWriter(pipe.getWriter());
+                parser.parse(stream, new BodyContentHandler(writer), meta, context);
+                writer.flush();
+                pipe.closeWriter(null);
+            } catch (Exception ex) {
+                pipe.closeWriter(ex);
+            } catch (StackOverflowError ex) {
+                recycle = true;
+                pipe.closeWriter(ex);
+            } catch (OutOfMemoryError ex) {
+                recycle = true;
+                pipe.closeWriter(ex);
+                throw ex;
+            } finally {
+                releaseSlot(recycle);
+            }
+        }
+
+        /**
+         * Releases the slot of the parse, the first time it is called.
+         *
+         * @param recycle Whether or not to discard the parser of the slot.
+         */
+        void releaseSlot(boolean recycle) {
+            if (slotReleased.compareAndSet(false, true)) {
+                release(slot, recycle);
+            }
+        }
+
+        /**
+         * Cancels the parse, if it is still running. If it does not stop, it
+         * keeps its parser, and the slot gets a new one.
+         */
+        void cancel() {
+            Future<?> parseFuture = future;
+            if (null != parseFuture && !parseFuture.isDone()) {
+                parseFuture.cancel(true);
+                if (slotReleased.compareAndSet(false, true)) {
+                    idleSlots.add(new ParserSlot());
+                }
+            }
+        }
+    }
+
+    /**
+     * A bounded buffer between a parse writing text and the reader of the
+     * text, which is handed to the caller of parse().
+     */
+    private static final class TextPipe extends Reader {
+
+        private final ParseJob job;
+        private final long timeoutNanos;
+        private final char[] buffer = new char[PIPE_BUFFER_CHARS];
+        private final ReentrantLock pipeLock = new ReentrantLock();
+        private final Condition notEmpty = pipeLock.newCondition();
+        private final Condition notFull = pipeLock.newCondition();
+        private int readPos; // Guarded by pipeLock
+        private int count; // Guarded by pipeLock
+        private boolean writerClosed; // Guarded by pipeLock
+        private boolean readerClosed; // Guarded by pipeLock
+        private Throwable parseError; // Guarded by pipeLock
+        private long waitedNanos; // Guarded by pipeLock
+
+        TextPipe(ParseJob job, long timeoutNanos) {
+            this.job = job;
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        Writer getWriter() {
+            return new Writer() {
+                @Override
+                public void write(char[] cbuf, int off, int len) throws IOException {
+                    TextPipe.this.write(cbuf, off, len);
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        private void write(char[] cbuf, int off, int len) throws IOException {
+            pipeLock.lock();
+            try {
+                while (len > 0) {
+                    while (count == buffer.length && !readerClosed) {
+                        notFull.await();
+                    }
+                    if (readerClosed) {
+                        throw new IOException("Reader of the parsed text is closed"); //NON-NLS
+                    }
+                    int writePos = (readPos + count) % buffer.length;
+                    int n = Math.min(len, Math.min(buffer.length - count, buffer.length - writePos));
+                    System.arraycopy(cbuf, off, buffer, writePos, n);
+                    count += n;
+                    off += n;
+                    len -= n;
+                    notEmpty.signalAll();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Parse cancelled"); //NON-NLS
+            } finally {
+                pipeLock.unlock();
+            }
+        }
+
+        private void closeWriter(Throwable error) {
+            pipeLock.lock();
+            try {
+                writerClosed = true;
+                parseError = error;
+                notEmpty.signalAll();
+            } finally {
+                pipeLock.unlock();
+            }
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            boolean timedOut = false;
+            pipeLock.lock();
+            try {
+                while (count == 0) {
+                    if (readerClosed) {
+                        throw new IOException("Reader is closed"); //NON-NLS
+                    }
+                    if (writerClosed) {
+                        if (null != parseError) {
+                            throw new IOException("Tika parse failed", parseError); //NON-NLS
+                        }
+                        return -1;
+                    }
+                    long remaining = timeoutNanos - waitedNanos;
+                    if (remaining <= 0) {
+                        timedOut = true;
+                        break;
+                    }
+                    long start = System.nanoTime();
+                    notEmpty.awaitNanos(remaining);
+                    waitedNanos += System.nanoTime() - start;
+                }
+                if (!timedOut) {
+                    int n = Math.min(len, Math.min(count, buffer.length - readPos));
+                    System.arraycopy(buffer, readPos, cbuf, off, n);
+                    readPos = (readPos + n) % buffer.length;
+                    count -= n;
+                    notFull.signalAll();
+                    return n;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for parsed text"); //NON-NLS
+            } finally {
+                pipeLock.unlock();
+            }
+            logger.log(Level.WARNING, "Tika parse timed out after {0} seconds, cancelling it", TimeUnit.NANOSECONDS.toSeconds(timeoutNanos)); //NON-NLS
+            close();
+            throw new ParseTimeoutException("Tika parse timed out"); //NON-NLS
+        }
+
+        @Override
+        public void close() {
+            boolean parseRunning;
+            pipeLock.lock();
+            try {
+                if (readerClosed) {
+                    return;
+                }
+                readerClosed = true;
+                parseRunning = !writerClosed;
+                notFull.signalAll();
+                notEmpty.signalAll();
+            } finally {
+                pipeLock.unlock();
+            }
+            if (parseRunning) {
+                job.cancel();
+            }
+        }
+    }
+
+}
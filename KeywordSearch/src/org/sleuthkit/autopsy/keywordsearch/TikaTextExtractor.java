@@ -21,36 +21,25 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 
 import org.openide.util.NbBundle;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.datamodel.AbstractFile;
-import org.sleuthkit.datamodel.ReadContentInputStream;
-import org.apache.tika.Tika;
 import org.apache.tika.metadata.Metadata;
-import org.apache.tika.mime.MediaType;
-import org.apache.tika.parser.ParseContext;
 import org.sleuthkit.autopsy.coreutils.StringExtract;
 import org.sleuthkit.autopsy.keywordsearch.Ingester.IngesterException;
 
 /**
  * Extractor of text from TIKA supported AbstractFile content. Extracted text is
- * divided into chunks and indexed with Solr. Protects against Tika parser hangs
- * (for unexpected/corrupt content) using a timeout mechanism. If Tika
- * extraction succeeds, chunks are indexed with Solr.
+ * divided into chunks and indexed with Solr. Parses run on a shared pool of
+ * warm Tika parsers, which protects against parser hangs (for
+ * unexpected/corrupt content) using a timeout mechanism. If Tika extraction
+ * succeeds, chunks are indexed with Solr.
  *
  * This Tika extraction/chunking utility is useful for large files of Tika
  * parsers-supported content type.
@@ -60,25 +49,17 @@ class TikaTextExtractor implements TextExtractor {
 
     private static final Logger logger = Logger.getLogger(TikaTextExtractor.class.getName());
     private static Ingester ingester;
-    private static final Charset OUTPUT_CHARSET = Server.DEFAULT_INDEXED_TEXT_CHARSET;
-    private static final int MAX_EXTR_TEXT_CHARS = 512 * 1024;
-    private static final int SINGLE_READ_CHARS = 1024;
-    private static final int EXTRA_CHARS = 128; //for whitespace
-    private final char[] textChunkBuf = new char[MAX_EXTR_TEXT_CHARS];
     private final KeywordSearchIngestModule module;
     private AbstractFile sourceFile; //currently processed file
     private int numChunks = 0;
-    private final ExecutorService tikaParseExecutor = Executors.newSingleThreadExecutor();
-    private final List<String> TIKA_SUPPORTED_TYPES = new ArrayList<>();
+    private final TikaParserPool parserPool;
+    private final List<String> TIKA_SUPPORTED_TYPES;
 
     TikaTextExtractor(KeywordSearchIngestModule module) {
         this.module = module;
         ingester = Server.getIngester();
-
-        Set<MediaType> mediaTypes = new Tika().getParser().getSupportedTypes(new ParseContext());
-        for (MediaType mt : mediaTypes) {
-            TIKA_SUPPORTED_TYPES.add(mt.getType() + "/" + mt.getSubtype());
-        }
+        parserPool = TikaParserPool.getInstance();
+        TIKA_SUPPORTED_TYPES = parserPool.getSupportedTypes();
         //logger.log(Level.INFO, "Tika supported media types: {0}", TIKA_SUPPORTED_TYPES); //NON-NLS
     }
 
@@ -118,112 +99,35 @@ public boolean index(AbstractFile sourceFile) throws Ingester.IngesterException
 
         boolean success = false;
         Reader reader = null;
-        final InputStream stream = new ReadContentInputStream(sourceFile);
+        final InputStream stream = module.getFileContent(sourceFile).getInputStream();
         try {
             Metadata meta = new Metadata();
 
-            //Parse the file in a task
-            Tika tika = new Tika(); //new tika instance for every file, to workaround tika memory issues
-            ParseRequestTask parseTask = new ParseRequestTask(tika, stream, meta, sourceFile);
-            final Future<?> future = tikaParseExecutor.submit(parseTask);
-            try {
-                future.get(Ingester.getTimeout(sourceFile.getSize()), TimeUnit.SECONDS);
-            } catch (TimeoutException te) {
-                final String msg = NbBundle.getMessage(this.getClass(),
-                        "AbstractFileTikaTextExtract.index.tikaParseTimeout.text",
-                        sourceFile.getId(), sourceFile.getName());
-                KeywordSearch.getTikaLogger().log(Level.WARNING, msg, te);
-                logger.log(Level.WARNING, msg);
-                throw new IngesterException(msg);
-            } catch (Exception ex) {
-                final String msg = NbBundle.getMessage(this.getClass(),
-                        "AbstractFileTikaTextExtract.index.exception.tikaParse.msg",
-                        sourceFile.getId(), sourceFile.getName());
-                KeywordSearch.getTikaLogger().log(Level.WARNING, msg, ex);
-                logger.log(Level.WARNING, msg);
-                throw new IngesterException(msg);
-            }
-
-            // get the reader with the results
-            reader = parseTask.getReader();
-            if (reader == null) {
-                //likely due to exception in parse()
-                logger.log(Level.WARNING, "No reader available from Tika parse"); //NON-NLS
-                return false;
-            }
+            //Parse the file with a pooled parser, the text is read as the
+            //parse goes and the parse is cancelled if it takes too long
+            reader = parserPool.parse(stream, meta, Ingester.getTimeout(sourceFile.getSize()));
 
-            // break the results into chunks and index
+            // break the results into chunks and index, appending the
+            // meta data to the last chunk
             success = true;
-            long readSize;
-            long totalRead = 0;
-            boolean eof = false;
-            //we read max 1024 chars at time, this seems to max what this Reader would return
-            while (!eof) {
-                readSize = reader.read(textChunkBuf, 0, SINGLE_READ_CHARS);
-                if (readSize == -1) {
-                    eof = true;
-                } else {
-                    totalRead += readSize;
-                }
-                //consume more bytes to fill entire chunk (leave EXTRA_CHARS to end the word)
-                while (!eof && (totalRead < MAX_EXTR_TEXT_CHARS - SINGLE_READ_CHARS - EXTRA_CHARS)
-                        && (readSize = reader.read(textChunkBuf, (int) totalRead, SINGLE_READ_CHARS)) != -1) {
-                    totalRead += readSize;
-                }
-                if (readSize == -1) {
-                    //this is the last chunk
-                    eof = true;
-                } else {
-                    //try to read char-by-char until whitespace to not break words
-                    while ((totalRead < MAX_EXTR_TEXT_CHARS - 1)
-                            && !Character.isWhitespace(textChunkBuf[(int) totalRead - 1])
-                            && (readSize = reader.read(textChunkBuf, (int) totalRead, 1)) != -1) {
-                        totalRead += readSize;
-                    }
-                    if (readSize == -1) {
-                        //this is the last chunk
-                        eof = true;
-                    }
-                }
-
-                // Sanitize by replacing non-UTF-8 characters with caret '^'
-                for (int i = 0; i < totalRead; ++i) {
-                    if (!isValidSolrUTF8(textChunkBuf[i])) {
-                        textChunkBuf[i] = '^';
-                    }
-                }
-
-                StringBuilder sb = new StringBuilder((int) totalRead + 1000);
-                sb.append(textChunkBuf, 0, (int) totalRead);
-
-                //reset for next chunk
-                totalRead = 0;
-
-                //append meta data if last chunk
-                if (eof) {
-                    //sort meta data keys
-                    List<String> sortedKeyList = Arrays.asList(meta.names());
-                    Collections.sort(sortedKeyList);
-                    sb.append("\n\n------------------------------METADATA------------------------------\n\n"); //NON-NLS
-                    for (String key : sortedKeyList) {
-                        String value = meta.get(key);
-                        sb.append(key).append(": ").append(value).append("\n");
-                    }
-                }
-
-                // Encode from UTF-8 charset to bytes
-                byte[] encodedBytes = sb.toString().getBytes(OUTPUT_CHARSET);
-                AbstractFileChunk chunk = new AbstractFileChunk(this, this.numChunks + 1);
-                try {
-                    chunk.index(ingester, encodedBytes, encodedBytes.length, OUTPUT_CHARSET);
-                    ++this.numChunks;
-                } catch (Ingester.IngesterException ingEx) {
-                    success = false;
-                    logger.log(Level.WARNING, "Ingester had a problem with extracted strings from file '" //NON-NLS
-                            + sourceFile.getName() + "' (id: " + sourceFile.getId() + ").", ingEx); //NON-NLS
-                    throw ingEx; //need to rethrow/return to signal error and move on
-                }
+            TextChunker chunker = new TextChunker(ingester, this, true);
+            try {
+                chunker.index(reader, () -> getMetadataText(meta));
+            } catch (Ingester.IngesterException ingEx) {
+                success = false;
+                logger.log(Level.WARNING, "Ingester had a problem with extracted strings from file '" //NON-NLS
+                        + sourceFile.getName() + "' (id: " + sourceFile.getId() + ").", ingEx); //NON-NLS
+                throw ingEx; //need to rethrow/return to signal error and move on
+            } finally {
+                numChunks = chunker.getNumChunks();
             }
+        } catch (TikaParserPool.ParseTimeoutException ex) {
+            final String msg = NbBundle.getMessage(this.getClass(),
+                    "AbstractFileTikaTextExtract.index.tikaParseTimeout.text",
+                    sourceFile.getId(), sourceFile.getName());
+            KeywordSearch.getTikaLogger().log(Level.WARNING, msg, ex);
+            logger.log(Level.WARNING, msg);
+            success = false;
         } catch (IOException ex) {
             final String msg = "Exception: Unable to read Tika content stream from " + sourceFile.getId() + ": " + sourceFile.getName(); //NON-NLS
             KeywordSearch.getTikaLogger().log(Level.WARNING, msg, ex);
@@ -256,24 +160,24 @@ public boolean index(AbstractFile sourceFile) throws Ingester.IngesterException
     }
 
     /**
-     * This method determines if a passed-in Java char (16 bits) is a valid
-     * UTF-8 printable character, returning true if so, false if not.
-     *
-     * Note that this method can have ramifications for characters outside the
-     * Unicode Base Multilingual Plane (BMP), which require more than 16 bits.
-     * We are using Java characters (16 bits) to look at the data and this will
-     * not accurately identify any non-BMP character (larger than 16 bits)
-     * ending with 0xFFFF and 0xFFFE. In the interest of a fast solution, we
-     * have chosen to ignore the extended planes above Unicode BMP for the time
-     * being. The net result of this is some non-BMP characters may be
-     * interspersed with '^' characters in Autopsy.
+     * Formats the meta data Tika extracted from a file, sorted by key, to be
+     * indexed with the text of the file.
      *
-     * @param ch the character to test
+     * @param meta The meta data.
      *
-     * @return Returns true if the character is valid UTF-8, false if not.
+     * @return The text.
      */
-    private static boolean isValidSolrUTF8(char ch) {
-        return ((ch <= 0xFDD0 || ch >= 0xFDEF) && (ch > 0x1F || ch == 0x9 || ch == 0xA || ch == 0xD) && (ch != 0xFFFF) && (ch != 0xFFFE));
+    private static String getMetadataText(Metadata meta) {
+        //sort meta data keys
+        List<String> sortedKeyList = Arrays.asList(meta.names());
+        Collections.sort(sortedKeyList);
+        StringBuilder sb = new StringBuilder();
+        sb.append("\n\n------------------------------METADATA------------------------------\n\n"); //NON-NLS
+        for (String key : sortedKeyList) {
+            String value = meta.get(key);
+            sb.append(key).append(": ").append(value).append("\n");
+        }
+        return sb.toString();
     }
 
     @Override
@@ -306,45 +210,4 @@ else if (detectedFormat.contains("video/") //NON-NLS
         return TIKA_SUPPORTED_TYPES.contains(detectedFormat);
 
     }
-
-    /**
-     * Runnable task that calls tika to parse the content using the input
-     * stream. Provides reader for results.
-     */
-    private static class ParseRequestTask implements Runnable {
-
-        //in
-        private Tika tika;
-        private InputStream stream;
-        private Metadata meta;
-        private AbstractFile sourceFile;
-        //out
-        private Reader reader;
-
-        ParseRequestTask(Tika tika, InputStream stream, Metadata meta, AbstractFile sourceFile) {
-            this.tika = tika;
-            this.stream = stream;
-            this.meta = meta;
-            this.sourceFile = sourceFile;
-        }
-
-        @Override
-        public void run() {
-            try {
-                reader = tika.parse(stream, meta);
-            } catch (IOException ex) {
-                KeywordSearch.getTikaLogger().log(Level.WARNING, "Exception: Unable to Tika parse the content" + sourceFile.getId() + ": " + sourceFile.getName(), ex); //NON-NLS
-                tika = null;
-                reader = null;
-            } catch (Exception ex) {
-                KeywordSearch.getTikaLogger().log(Level.WARNING, "Exception: Unable to Tika parse the content" + sourceFile.getId() + ": " + sourceFile.getName(), ex); //NON-NLS
-                tika = null;
-                reader = null;
-            }
-        }
-
-        public Reader getReader() {
-            return reader;
-        }
-    }
 }
@@ -0,0 +1,105 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.util.Arrays;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests that the keyword matcher finds literal keywords only where a phrase
+ * query on the text field would, i.e., as whole words of the
+ * StandardTokenizer, which splits text with the word boundary rules of UAX
+ * #29.
+ */
+public class KeywordMatcherTest {
+
+    /**
+     * @return the text of the first match of the keyword in the text, or null
+     *         if it does not match
+     */
+    private static String firstMatch(String keyword, String text) {
+        Keyword literal = new Keyword(keyword, true);
+        Map<Keyword, KeywordMatcher.Match> matches = new KeywordMatcher(Arrays.asList(literal)).findFirstMatches(text);
+        KeywordMatcher.Match match = matches.get(literal);
+        return null == match ? null : text.substring(match.getStart(), match.getEnd());
+    }
+
+    @Test
+    public void matchesWholeWordsIgnoringCase() {
+        assertEquals("Example", firstMatch("example", "This is an Example."));
+        assertEquals("two words", firstMatch("Two  Words", "(two words)"));
+        assertEquals("two, words", firstMatch("two words", "two, words"));
+        assertNull(firstMatch("example", "counterexample"));
+    }
+
+    @Test
+    public void doesNotMatchPartsOfWordsJoinedByPunctuation() {
+        // the tokenizer keeps host names, identifiers and contractions as one word
+        assertNull(firstMatch("example", "see www.example.com today"));
+        assertNull(firstMatch("example", "foo_example"));
+        assertNull(firstMatch("example", "_example_"));
+        assertNull(firstMatch("example", "the example's name"));
+        assertNull(firstMatch("14", "pi is 3.14"));
+        assertNull(firstMatch("1", "1,000"));
+    }
+
+    @Test
+    public void matchesWordsJoinedByPunctuation() {
+        assertEquals("www.example.com", firstMatch("WWW.Example.com", "see www.example.com."));
+        assertEquals("foo_bar", firstMatch("foo_bar", "call foo_bar()"));
+        assertEquals("3.14", firstMatch("3.14", "pi is 3.14."));
+    }
+
+    @Test
+    public void splitsWhereTheTokenizerDoes() {
+        // hyphens, slashes and "@" are word boundaries
+        assertEquals("555-1234", firstMatch("555 1234", "call 555-1234 now"));
+        assertEquals("1234", firstMatch("1234", "call 555-1234 now"));
+        assertEquals("example", firstMatch("example", "mail joe@example"));
+        // a period not followed by a letter ends the word
+        assertEquals("example", firstMatch("example", "an example."));
+    }
+
+    @Test
+    public void ideographsAreWordsOfTheirOwn() {
+        assertEquals("\u6771\u4EAC", firstMatch("\u6771\u4EAC", "\u6211\u5728\u6771\u4EAC\u90FD"));
+        assertEquals("\u4EAC", firstMatch("\u4EAC", "\u6771\u4EAC"));
+    }
+
+    @Test
+    public void combiningMarksStayInTheirWord() {
+        assertEquals("cafe\u0301", firstMatch("cafe\u0301", "un cafe\u0301 noir"));
+        assertNull(firstMatch("cafe", "un cafe\u0301 noir"));
+    }
+
+    @Test
+    public void keywordsWithoutWordsCannotMatch() {
+        Keyword punctuation = new Keyword("--", true);
+        Keyword regex = new Keyword("ab+", false);
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList(punctuation, regex));
+        assertFalse(matcher.canMatch(punctuation));
+        assertFalse(matcher.canMatch(regex));
+        assertTrue(matcher.getKeywords().isEmpty());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests the grouping of literal keywords into batched Solr requests and the
+ * interpretation of the responses.
+ */
+public class LiteralKeywordBatchQueryTest {
+
+    private static List<Keyword> keywords(int count) {
+        List<Keyword> keywords = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            keywords.add(new Keyword("term" + i, true));
+        }
+        return keywords;
+    }
+
+    private static Map<Keyword, String> queryStrings(List<Keyword> keywords) {
+        Map<Keyword, String> queryStrings = new LinkedHashMap<>();
+        for (Keyword keyword : keywords) {
+            queryStrings.put(keyword, "text:" + keyword.getQuery());
+        }
+        return queryStrings;
+    }
+
+    @Test
+    public void keywordsAreGroupedIntoFullBatchesInOrder() {
+        List<Keyword> keywords = keywords(7);
+        List<List<Keyword>> batches = LiteralKeywordBatchQuery.groupIntoBatches(keywords, 3);
+        assertEquals(3, batches.size());
+        assertEquals(keywords.subList(0, 3), batches.get(0));
+        assertEquals(keywords.subList(3, 6), batches.get(1));
+        assertEquals(keywords.subList(6, 7), batches.get(2));
+    }
+
+    @Test
+    public void exactMultipleOfTheBatchSizeLeavesNoEmptyBatch() {
+        List<Keyword> keywords = keywords(6);
+        List<List<Keyword>> batches = LiteralKeywordBatchQuery.groupIntoBatches(keywords, 3);
+        assertEquals(2, batches.size());
+        assertEquals(keywords.subList(3, 6), batches.get(1));
+        assertTrue(LiteralKeywordBatchQuery.groupIntoBatches(Collections.<Keyword>emptyList(), 3).isEmpty());
+    }
+
+    @Test
+    public void batchQueryOrsTheKeywordQueries() {
+        assertEquals("text:a OR text:\"b c\" OR text:d", LiteralKeywordBatchQuery.buildOrQuery(Arrays.asList("text:a", "text:\"b c\"", "text:d")));
+        assertEquals("text:a", LiteralKeywordBatchQuery.buildOrQuery(Collections.singletonList("text:a")));
+    }
+
+    @Test
+    public void onlyKeywordsWithPositiveFacetCountsHaveHits() {
+        List<Keyword> batch = keywords(3);
+        Map<Keyword, String> queryStrings = queryStrings(batch);
+        Map<String, Integer> facetCounts = new HashMap<>();
+        facetCounts.put("text:term0", 0);
+        facetCounts.put("text:term1", 5);
+        facetCounts.put("text:term2", 0);
+        assertEquals(Collections.singleton(batch.get(1)), LiteralKeywordBatchQuery.getKeywordsWithHits(batch, queryStrings, 5, facetCounts));
+    }
+
+    @Test
+    public void batchWithoutMatchesHasNoHits() {
+        List<Keyword> batch = keywords(3);
+        assertTrue(LiteralKeywordBatchQuery.getKeywordsWithHits(batch, queryStrings(batch), 0, null).isEmpty());
+    }
+
+    @Test
+    public void keywordsWithoutFacetCountsAreAssumedToHaveHits() {
+        List<Keyword> batch = keywords(3);
+        Map<Keyword, String> queryStrings = queryStrings(batch);
+        assertEquals(new HashSet<>(batch), LiteralKeywordBatchQuery.getKeywordsWithHits(batch, queryStrings, 1, null));
+        Map<String, Integer> facetCounts = new HashMap<>();
+        facetCounts.put("text:term0", 0);
+        assertEquals(new HashSet<>(batch.subList(1, 3)), LiteralKeywordBatchQuery.getKeywordsWithHits(batch, queryStrings, 1, facetCounts));
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the regex hit index splits text into the same terms as the
+ * analyzer of the content_ws field, i.e., the Lucene WhitespaceTokenizer
+ * followed by a LimitTokenCountFilter, and that it only keeps the hits of
+ * committed documents, in memory and in its log.
+ */
+public class RegexHitIndexTest {
+
+    private static final String PHONE_NUMBER = "\\d{3}-\\d{4}";
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("regexhits");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        for (File file : directory.toFile().listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory);
+    }
+
+    /*
+     * The limits of the Lucene CharTokenizer and of the token count filter
+     * in the text_ws field type of the Solr schema.
+     */
+    private static final int MAX_WORD_LEN = 255;
+    private static final int MAX_TOKEN_COUNT = 200000;
+
+    /**
+     * Splits text into tokens following the steps of the incrementToken()
+     * method of the Lucene 4 CharTokenizer with the token character test of
+     * the WhitespaceTokenizer, then keeps the first tokens as the token count
+     * filter does.
+     */
+    private static List<String> whitespaceTokenizer(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder buffer = new StringBuilder();
+        int bufferIndex = 0;
+        while (tokens.size() < MAX_TOKEN_COUNT) {
+            if (bufferIndex >= text.length()) {
+                if (buffer.length() > 0) {
+                    tokens.add(buffer.toString());
+                }
+                break;
+            }
+            int c = text.codePointAt(bufferIndex);
+            bufferIndex += Character.charCount(c);
+            if (!Character.isWhitespace(c)) {
+                buffer.appendCodePoint(c);
+                if (buffer.length() >= MAX_WORD_LEN) {
+                    tokens.add(buffer.toString());
+                    buffer.setLength(0);
+                }
+            } else if (buffer.length() > 0) {
+                tokens.add(buffer.toString());
+                buffer.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    private static List<String> regexHitIndexTokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        RegexHitIndex.addTokens(text, tokens);
+        return tokens;
+    }
+
+    private static void assertSameTokens(String text) {
+        assertEquals(whitespaceTokenizer(text), regexHitIndexTokens(text));
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < times; ++i) {
+            text.append(s);
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void splitsOnRunsOfWhitespace() {
+        assertEquals(Arrays.asList("Call", "555-1234", "or", "mail:a@b.com"), regexHitIndexTokens("  Call\t555-1234 \r\n or\u2003mail:a@b.com\n"));
+        assertSameTokens("  Call\t555-1234 \r\n or\u2003mail:a@b.com\n");
+    }
+
+    @Test
+    public void emptyAndBlankTextHasNoTokens() {
+        assertSameTokens("");
+        assertSameTokens(" \t\n\u3000");
+        assertEquals(0, regexHitIndexTokens(" \t\n\u3000").size());
+    }
+
+    @Test
+    public void noBreakSpacesAreNotWhitespace() {
+        // Character.isWhitespace() excludes the no-break spaces, and so does
+        // the tokenizer, so they are part of the terms.
+        assertSameTokens("a\u00A0b c\u2007d e\u202Ff");
+        assertEquals(3, regexHitIndexTokens("a\u00A0b c\u2007d e\u202Ff").size());
+    }
+
+    @Test
+    public void longTokensAreCutIntoMaximumLengthTokens() {
+        String text = "start " + repeat("x", 2 * MAX_WORD_LEN + 10) + " end";
+        assertSameTokens(text);
+        List<String> tokens = regexHitIndexTokens(text);
+        assertEquals(5, tokens.size());
+        assertEquals(MAX_WORD_LEN, tokens.get(1).length());
+        assertEquals(MAX_WORD_LEN, tokens.get(2).length());
+        assertEquals(10, tokens.get(3).length());
+    }
+
+    @Test
+    public void tokenOfExactlyTheMaximumLengthIsNotFollowedByAnEmptyToken() {
+        assertSameTokens(repeat("y", MAX_WORD_LEN));
+        assertSameTokens(repeat("y", MAX_WORD_LEN) + " z");
+        assertSameTokens(repeat("y", MAX_WORD_LEN - 1) + "\uD83D\uDE00");
+    }
+
+    @Test
+    public void surrogatePairsAreNotSplitAtTheMaximumLength() {
+        // A pair that straddles the maximum length stays in the first token,
+        // which is then one char longer than the maximum.
+        String text = repeat("y", MAX_WORD_LEN - 1) + "\uD83D\uDE00" + "rest";
+        assertSameTokens(text);
+        List<String> tokens = regexHitIndexTokens(text);
+        assertEquals(Arrays.asList(repeat("y", MAX_WORD_LEN - 1) + "\uD83D\uDE00", "rest"), tokens);
+    }
+
+    @Test
+    public void onlyTheFirstTokensOfATextAreKept() {
+        String text = repeat("t ", MAX_TOKEN_COUNT + 5);
+        assertSameTokens(text);
+        assertEquals(MAX_TOKEN_COUNT, regexHitIndexTokens(text).size());
+    }
+
+    @Test
+    public void randomTextIsTokenizedTheSameWay() {
+        char[] alphabet = {'a', 'B', '7', '.', '@', ' ', ' ', '\t', '\n', '\u00A0', '\u2003', '\u0000', '\uD83D', '\uDE00', '\u00E9'};
+        Random random = new Random(2016);
+        for (int round = 0; round < 200; ++round) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(2000);
+            // Long runs without whitespace, so that tokens reach the maximum
+            // length, with the occasional whitespace character.
+            boolean sparseWhitespace = random.nextBoolean();
+            for (int i = 0; i < length; ++i) {
+                char c = alphabet[random.nextInt(alphabet.length)];
+                if (sparseWhitespace && Character.isWhitespace(c) && random.nextInt(50) != 0) {
+                    c = 'q';
+                }
+                text.append(c);
+            }
+            assertSameTokens(text.toString());
+        }
+    }
+
+    /**
+     * Opens the index in the test directory, with the phone number expression
+     * registered from ingest sequence number 1 on if it is not yet.
+     */
+    private RegexHitIndex openIndex() {
+        RegexHitIndex index = new RegexHitIndex(directory);
+        index.register(Collections.singletonList(PHONE_NUMBER), () -> 0L);
+        return index;
+    }
+
+    /**
+     * Matches a document and records its hits the way the ingester does.
+     *
+     * @param sequence The ingest sequence number of the document, or -1 if
+     *                 adding it to the index fails.
+     */
+    private static void addDocument(RegexHitIndex index, String documentId, long sequence, String text) {
+        try (RegexHitIndex.DocumentMatches matches = index.match(text)) {
+            matches.record(documentId, 1);
+            if (sequence >= 0) {
+                matches.added(sequence);
+            }
+        }
+    }
+
+    private static List<String> hitDocumentIds(RegexHitIndex index) {
+        List<String> documentIds = new ArrayList<>();
+        Map<String, List<RegexHitIndex.Hit>> hitsByTerm = index.getHits(PHONE_NUMBER, (RegexHitIndex.Hit hit) -> true);
+        for (List<RegexHitIndex.Hit> hits : hitsByTerm.values()) {
+            for (RegexHitIndex.Hit hit : hits) {
+                documentIds.add(hit.getDocumentId());
+            }
+        }
+        Collections.sort(documentIds);
+        return documentIds;
+    }
+
+    @Test
+    public void hitsAreKeptOnceTheirDocumentsAreCommitted() {
+        RegexHitIndex index = openIndex();
+        addDocument(index, "7", 1, "call 555-1234");
+        addDocument(index, "8", 2, "or 555-9876");
+        assertTrue(hitDocumentIds(index).isEmpty());
+        index.commit(1);
+        assertEquals(Arrays.asList("7"), hitDocumentIds(index));
+        index.commit(2);
+        assertEquals(Arrays.asList("7", "8"), hitDocumentIds(index));
+        index.close();
+    }
+
+    @Test
+    public void hitsOfDocumentsThatWereNotAddedAreDropped() {
+        RegexHitIndex index = openIndex();
+        addDocument(index, "7", -1, "call 555-1234");
+        addDocument(index, "8", 2, "or 555-9876");
+        index.discard("8");
+        addDocument(index, "9", 3, "or 555-0000");
+        index.commit(3);
+        assertEquals(Arrays.asList("9"), hitDocumentIds(index));
+        index.close();
+    }
+
+    @Test
+    public void committedHitsAreLoadedWhenTheCaseIsOpenedAgain() {
+        RegexHitIndex index = openIndex();
+        addDocument(index, "7", 1, "call 555-1234");
+        index.commit(1);
+        index.close();
+
+        index = new RegexHitIndex(directory);
+        assertEquals(1, index.getCoveredFrom(PHONE_NUMBER));
+        assertEquals(Arrays.asList("7"), hitDocumentIds(index));
+        index.close();
+    }
+
+    @Test
+    public void logIsStartedOverIfTheCaseIsClosedWithUncommittedHits() {
+        RegexHitIndex index = openIndex();
+        addDocument(index, "7", 1, "call 555-1234");
+        index.commit(1);
+        addDocument(index, "8", 2, "or 555-9876");
+        index.close();
+
+        index = new RegexHitIndex(directory);
+        assertEquals(-1, index.getCoveredFrom(PHONE_NUMBER));
+        index.close();
+    }
+
+    @Test
+    public void hitsOfExpressionsWithTooManyHitsAreDroppedFromTheLog() throws IOException {
+        RegexHitIndex index = openIndex();
+        Path log = directory.resolve("regexhits.log");
+        int maxHits = 100000;
+        for (int i = 1; i <= maxHits; ++i) {
+            addDocument(index, Integer.toString(i), i, "call 555-1234");
+        }
+        index.commit(maxHits);
+        assertEquals(1, index.getCoveredFrom(PHONE_NUMBER));
+        assertTrue(Files.size(log) > maxHits);
+
+        addDocument(index, Integer.toString(maxHits + 1), maxHits + 1, "call 555-1234");
+        index.commit(maxHits + 1);
+        assertEquals(-1, index.getCoveredFrom(PHONE_NUMBER));
+        assertTrue(Files.size(log) < 100);
+        index.close();
+
+        // The expression stays registered, so that it is not matched again.
+        index = openIndex();
+        assertEquals(-1, index.getCoveredFrom(PHONE_NUMBER));
+        index.close();
+        assertTrue(Files.size(log) < 100);
+    }
+}
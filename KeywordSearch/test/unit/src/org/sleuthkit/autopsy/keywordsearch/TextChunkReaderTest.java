@@ -0,0 +1,164 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2016 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests where the text chunker splits text into chunks and how it sanitizes
+ * the chunks.
+ */
+public class TextChunkReaderTest {
+
+    private static final int CHUNK_CHARS = 4096;
+
+    private static List<String> readChunks(Reader reader) throws IOException {
+        char[] buf = new char[CHUNK_CHARS];
+        TextChunkReader chunkReader = new TextChunkReader(reader, buf);
+        List<String> chunks = new ArrayList<>();
+        while (!chunkReader.isAtEnd()) {
+            int length = chunkReader.readChunk();
+            chunks.add(new String(buf, 0, length));
+        }
+        return chunks;
+    }
+
+    private static String words(int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < length; ++i) {
+            text.append("word").append(i).append(i % 10 == 9 ? '\n' : ' ');
+        }
+        return text.substring(0, length);
+    }
+
+    /**
+     * A reader that returns fewer characters than asked for, as some text
+     * extractors do.
+     */
+    private static final class TricklingReader extends Reader {
+
+        private final Reader reader;
+        private final int maxCharsPerRead;
+
+        TricklingReader(String text, int maxCharsPerRead) {
+            this.reader = new StringReader(text);
+            this.maxCharsPerRead = maxCharsPerRead;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            return reader.read(cbuf, off, Math.min(len, maxCharsPerRead));
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void shortTextIsOneLastChunk() throws IOException {
+        List<String> chunks = readChunks(new StringReader("a short text"));
+        assertEquals(1, chunks.size());
+        assertEquals("a short text", chunks.get(0));
+    }
+
+    @Test
+    public void emptyTextIsOneEmptyLastChunk() throws IOException {
+        List<String> chunks = readChunks(new StringReader(""));
+        assertEquals(1, chunks.size());
+        assertEquals("", chunks.get(0));
+    }
+
+    /**
+     * Checks that chunks fit in the buffer, that all chunks but the last end
+     * with whitespace, and that together they are the whole text.
+     */
+    private static void assertChunksEndAtWhitespace(String text, List<String> chunks) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < chunks.size(); ++i) {
+            String chunk = chunks.get(i);
+            assertTrue(chunk.length() <= CHUNK_CHARS - 1);
+            if (i < chunks.size() - 1) {
+                assertTrue("chunk " + i + " splits a word", Character.isWhitespace(chunk.charAt(chunk.length() - 1)));
+            }
+            joined.append(chunk);
+        }
+        assertEquals(text, joined.toString());
+    }
+
+    @Test
+    public void chunksEndAtWhitespaceAndLoseNothing() throws IOException {
+        String text = words(5 * CHUNK_CHARS + 123);
+        List<String> chunks = readChunks(new StringReader(text));
+        assertTrue(chunks.size() > 5);
+        assertChunksEndAtWhitespace(text, chunks);
+    }
+
+    @Test
+    public void shortReadsAlsoEndChunksAtWhitespace() throws IOException {
+        String text = words(3 * CHUNK_CHARS);
+        List<String> chunks = readChunks(new TricklingReader(text, 7));
+        assertTrue(chunks.size() > 3);
+        assertChunksEndAtWhitespace(text, chunks);
+    }
+
+    @Test
+    public void wordLongerThanTheRoomLeftIsSplitAtTheEndOfTheBuffer() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2 * CHUNK_CHARS; ++i) {
+            text.append('x');
+        }
+        List<String> chunks = readChunks(new StringReader(text.toString()));
+        assertEquals(CHUNK_CHARS - 1, chunks.get(0).length());
+        StringBuilder joined = new StringBuilder();
+        for (String chunk : chunks) {
+            joined.append(chunk);
+        }
+        assertEquals(text.toString(), joined.toString());
+    }
+
+    @Test
+    public void textThatEndsOnAChunkBoundaryEndsWithAnEmptyLastChunk() throws IOException {
+        // The first chunk is filled by three full reads and ends with
+        // whitespace, so the end of the reader is only found when reading the
+        // next chunk.
+        String text = words(3 * 1024 - 1) + " ";
+        char[] buf = new char[CHUNK_CHARS];
+        TextChunkReader chunkReader = new TextChunkReader(new StringReader(text), buf);
+        assertEquals(text.length(), chunkReader.readChunk());
+        assertFalse(chunkReader.isAtEnd());
+        assertEquals(0, chunkReader.readChunk());
+        assertTrue(chunkReader.isAtEnd());
+    }
+
+    @Test
+    public void charactersSolrCannotStoreAreReplaced() throws IOException {
+        List<String> chunks = readChunks(new StringReader("a\u0000b\u0007c\td\ne\rf\ufffeg\uffffh\ufdd5i"));
+        assertEquals("a^b^c\td\ne\rf^g^h^i", chunks.get(0));
+    }
+}